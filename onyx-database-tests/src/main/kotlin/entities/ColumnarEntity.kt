@@ -0,0 +1,35 @@
+package entities
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.Attribute
+import com.onyx.persistence.annotations.Entity
+import com.onyx.persistence.annotations.Identifier
+
+/**
+ * Entity with columnar attributes and a copy of each that is not columnar.  The copies are used to verify the
+ * columns produce the same group function results as reading the records.
+ */
+@Entity
+class ColumnarEntity : AbstractEntity(), IManagedEntity {
+    @Attribute
+    @Identifier
+    var id: String? = null
+
+    @Attribute(columnar = true)
+    var quantity: Int = 0
+
+    @Attribute(columnar = true)
+    var total: Long? = null
+
+    @Attribute(columnar = true)
+    var price: Double? = null
+
+    @Attribute
+    var quantityCopy: Int = 0
+
+    @Attribute
+    var totalCopy: Long? = null
+
+    @Attribute
+    var priceCopy: Double? = null
+}
@@ -0,0 +1,27 @@
+package entities
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.Attribute
+import com.onyx.persistence.annotations.Entity
+import com.onyx.persistence.annotations.Identifier
+import com.onyx.persistence.annotations.Index
+
+/**
+ * Entity joined to JoinOrderEntity by attributes rather than a relationship
+ */
+@Entity
+class JoinCustomerEntity : AbstractEntity(), IManagedEntity {
+    @Attribute
+    @Identifier
+    var id: Long = 0
+
+    @Attribute
+    @Index
+    var code: String? = null
+
+    @Attribute
+    var name: String? = null
+
+    @Attribute
+    var region: Int = 0
+}
@@ -0,0 +1,25 @@
+package entities
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.Attribute
+import com.onyx.persistence.annotations.Entity
+import com.onyx.persistence.annotations.Identifier
+
+/**
+ * Entity joined to JoinCustomerEntity by its customer code or customer number
+ */
+@Entity
+class JoinOrderEntity : AbstractEntity(), IManagedEntity {
+    @Attribute
+    @Identifier
+    var id: Long = 0
+
+    @Attribute
+    var customerCode: String? = null
+
+    @Attribute
+    var customerNumber: Int = 0
+
+    @Attribute
+    var amount: Double = 0.0
+}
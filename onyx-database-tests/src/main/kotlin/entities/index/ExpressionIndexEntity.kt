@@ -0,0 +1,23 @@
+package entities.index
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.Attribute
+import com.onyx.persistence.annotations.Entity
+import com.onyx.persistence.annotations.Identifier
+import com.onyx.persistence.annotations.Index
+import entities.AbstractEntity
+
+/**
+ * Entity with an expression index on lower(email)
+ */
+@Entity
+class ExpressionIndexEntity : AbstractEntity(), IManagedEntity {
+    @Attribute
+    @Identifier
+    var identifier: String? = null
+
+    @Attribute
+    @Index(function = "LOWER")
+    var email: String? = null
+
+}
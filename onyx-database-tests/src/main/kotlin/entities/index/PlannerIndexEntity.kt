@@ -0,0 +1,30 @@
+package entities.index
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.annotations.Attribute
+import com.onyx.persistence.annotations.Entity
+import com.onyx.persistence.annotations.Identifier
+import com.onyx.persistence.annotations.Index
+import entities.AbstractEntity
+
+/**
+ * Entity with multiple indexes used to verify the query planner
+ */
+@Entity
+class PlannerIndexEntity : AbstractEntity(), IManagedEntity {
+    @Attribute
+    @Identifier
+    var identifier: String? = null
+
+    @Attribute
+    @Index
+    var category: Int = 0
+
+    @Attribute
+    @Index
+    var code: String? = null
+
+    @Attribute
+    var note: String? = null
+
+}
@@ -190,4 +190,26 @@ class GroupByTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(facto
         assertEquals(35, results.first { it["relationship.id"] == "HI5"}["sum(relationship.intValue)"] , "Relationship intValue is invalid")
         assertEquals(results.first(), results.first { it["relationship.id"] == "HI5" }, "Failure to sort")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testFunctionsMatchGroupedRecords() {
+        val records = manager.select("stringValue", "longPrimitive")
+                .from(AllAttributeEntityWithRelationship::class)
+                .list<Map<String, Any?>>()
+                .groupBy { it["stringValue"] }
+
+        val results = manager.select("stringValue", count("longPrimitive"), sum("longPrimitive"), min("longPrimitive"), max("longPrimitive"))
+                .from(AllAttributeEntityWithRelationship::class)
+                .groupBy("stringValue")
+                .list<Map<String, Any?>>()
+
+        assertEquals(records.size, results.size, "There should be a result for each group")
+        results.forEach { result ->
+            val values = records[result["stringValue"]]!!.map { it["longPrimitive"] as Long }
+            assertEquals(values.size, result["count(longPrimitive)"], "Invalid count")
+            assertEquals(values.sum(), result["sum(longPrimitive)"], "Invalid sum")
+            assertEquals(values.min(), result["min(longPrimitive)"], "Invalid min")
+            assertEquals(values.max(), result["max(longPrimitive)"], "Invalid max")
+        }
+    }
+}
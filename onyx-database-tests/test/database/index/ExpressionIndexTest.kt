@@ -0,0 +1,93 @@
+package database.index
+
+import com.onyx.interactors.scanner.ScannerFactory
+import com.onyx.interactors.scanner.impl.FullTableScanner
+import com.onyx.interactors.scanner.impl.IndexScanner
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.factory.impl.CacheManagerFactory
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.ExpressionIndexEntity
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class ExpressionIndexTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    private fun saveEntity(identifier: String, email: String): ExpressionIndexEntity {
+        val entity = ExpressionIndexEntity()
+        entity.identifier = identifier
+        entity.email = email
+        manager.saveEntity<IManagedEntity>(entity)
+        return entity
+    }
+
+    @Test
+    fun testFindWithExpressionIndex() {
+        saveEntity("A", "Bob@Onyx.Dev")
+        saveEntity("B", "alice@onyx.dev")
+
+        val results = manager.executeQuery<ExpressionIndexEntity>(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "bob@onyx.dev")))
+        assertEquals(1, results.size, "Expression index value was not found")
+        assertEquals("Bob@Onyx.Dev", results.first().email, "Entity should keep its original value")
+    }
+
+    @Test
+    fun testExpressionIndexUpdated() {
+        val entity = saveEntity("A", "Bob@Onyx.Dev")
+        entity.email = "Robert@Onyx.Dev"
+        manager.saveEntity<IManagedEntity>(entity)
+
+        var results = manager.executeQuery<ExpressionIndexEntity>(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "bob@onyx.dev")))
+        assertTrue(results.isEmpty(), "Expression index value was not updated")
+
+        results = manager.executeQuery(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.IN, arrayListOf("robert@onyx.dev"))))
+        assertEquals(1, results.size, "Updated expression index value was not found")
+
+        manager.executeUpdate(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "robert@onyx.dev"), AttributeUpdate("email", "Tim@Onyx.Dev")))
+        results = manager.executeQuery(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "tim@onyx.dev")))
+        assertEquals(1, results.size, "Expression index was not updated by update query")
+    }
+
+    @Test
+    fun testExpressionIndexDeleted() {
+        val entity = saveEntity("A", "Bob@Onyx.Dev")
+        manager.deleteEntity(entity)
+
+        val results = manager.executeQuery<ExpressionIndexEntity>(Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "bob@onyx.dev")))
+        assertTrue(results.isEmpty(), "Expression index value was not deleted")
+    }
+
+    @Test
+    fun testCriteriaWithoutMatchingFunction() {
+        saveEntity("A", "Bob@Onyx.Dev")
+
+        var results = manager.executeQuery<ExpressionIndexEntity>(Query(ExpressionIndexEntity::class.java, QueryCriteria("email", QueryCriteriaOperator.EQUAL, "Bob@Onyx.Dev")))
+        assertEquals(1, results.size, "Plain attribute criteria should not use the expression index")
+
+        results = manager.executeQuery(Query(ExpressionIndexEntity::class.java, QueryCriteria("upper(email)", QueryCriteriaOperator.EQUAL, "BOB@ONYX.DEV")))
+        assertEquals(1, results.size, "Criteria with a different function should not use the expression index")
+    }
+
+    @Test
+    fun testScannerForExpressionCriteria() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class && factoryClass != CacheManagerFactory::class)
+            return
+
+        val temporaryDataFile = context!!.createTemporaryMapBuilder()
+        try {
+            val query = Query(ExpressionIndexEntity::class.java, QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "bob@onyx.dev"))
+            assertTrue(ScannerFactory.getScannerForQueryCriteria(context!!, query.criteria!!, ExpressionIndexEntity::class.java, temporaryDataFile, query, manager) is IndexScanner, "Expression criteria should use the index")
+
+            val plainQuery = Query(ExpressionIndexEntity::class.java, QueryCriteria("email", QueryCriteriaOperator.EQUAL, "bob@onyx.dev"))
+            assertTrue(ScannerFactory.getScannerForQueryCriteria(context!!, plainQuery.criteria!!, ExpressionIndexEntity::class.java, temporaryDataFile, plainQuery, manager) is FullTableScanner, "Plain criteria should not use the expression index")
+        } finally {
+            context!!.releaseMapBuilder(temporaryDataFile)
+        }
+    }
+}
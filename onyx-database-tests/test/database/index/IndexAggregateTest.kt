@@ -0,0 +1,111 @@
+package database.index
+
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import entities.partition.IndexPartitionEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+@RunWith(Parameterized::class)
+class IndexAggregateTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(PlannerIndexEntity::class).delete()
+        manager.from(IndexPartitionEntity::class).delete()
+
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = (it * 7) % 12
+            entity.code = "C" + (1000 + it)
+            entity.note = "N$it"
+            entity
+        })
+
+        // Remove a category so its index value is left without references
+        manager.from(PlannerIndexEntity::class).where("category" eq 11).delete()
+    }
+
+    @Test
+    fun testDistinctIndexValues() {
+        val results = manager.select("category").from(PlannerIndexEntity::class).distinct().list<Map<String, Any?>>()
+        assertEquals((0 until 11).toSet(), results.map { it["category"] }.toSet(), "Invalid distinct values")
+        assertEquals(11, results.size, "Distinct values should not repeat")
+    }
+
+    @Test
+    fun testDistinctIndexValuesSorted() {
+        val results = manager.select("code").from(PlannerIndexEntity::class).distinct().orderBy("code".desc()).list<Map<String, Any?>>()
+        val expected = (0 until 100).filter { (it * 7) % 12 != 11 }.map { "C" + (1000 + it) }.sortedDescending()
+        assertEquals(expected, results.map { it["code"] }, "Invalid sorted distinct values")
+    }
+
+    @Test
+    fun testCountGroupedByIndex() {
+        val results = manager.select("category", count("identifier")).from(PlannerIndexEntity::class).groupBy("category").list<Map<String, Any?>>()
+        val expected = (0 until 100).map { (it * 7) % 12 }.filter { it != 11 }.groupBy { it }.mapValues { it.value.size }
+
+        assertEquals<Map<*, *>>(expected, results.associate { Pair(it["category"], it["count(identifier)"]) }, "Invalid group counts")
+    }
+
+    @Test
+    fun testMinAndMaxOfIndex() {
+        val result = manager.select(min("category"), max("code")).from(PlannerIndexEntity::class).list<Map<String, Any?>>().first()
+        assertEquals(0, result["min(category)"], "Invalid minimum")
+        assertEquals("C1099", result["max(code)"], "Invalid maximum")
+    }
+
+    @Test
+    fun testMinAndMaxOfEmptyIndex() {
+        manager.from(PlannerIndexEntity::class).delete()
+
+        val result = manager.select(min("category"), max("category")).from(PlannerIndexEntity::class).list<Map<String, Any?>>().first()
+        assertEquals(null, result["min(category)"], "Minimum of no records should be null")
+        assertEquals(null, result["max(category)"], "Maximum of no records should be null")
+    }
+
+    @Test
+    fun testIndexAggregatesAcrossPartitions() {
+        manager.saveEntities((0 until 60).map {
+            val entity = IndexPartitionEntity()
+            entity.partitionId = (it % 3 + 1).toLong()
+            entity.indexVal = (it % 20).toLong() + it % 3
+            entity
+        })
+
+        val countQuery = Query(IndexPartitionEntity::class.java)
+        countQuery.selections = listOf("indexVal", "count(indexVal)")
+        countQuery.groupBy = listOf("indexVal")
+        countQuery.partition = QueryPartitionMode.ALL
+        val expected = (0 until 60).map { (it % 20).toLong() + it % 3 }.groupBy { it }.mapValues { it.value.size }
+        assertEquals<Map<*, *>>(expected, manager.executeQuery<Map<String, Any?>>(countQuery).associate { Pair(it["indexVal"], it["count(indexVal)"]) }, "Invalid partition group counts")
+
+        val extremeQuery = Query(IndexPartitionEntity::class.java)
+        extremeQuery.selections = listOf("min(indexVal)", "max(indexVal)")
+        extremeQuery.partition = QueryPartitionMode.ALL
+        val extremes = manager.executeQuery<Map<String, Any?>>(extremeQuery).first()
+        assertEquals(0L, extremes["min(indexVal)"], "Invalid partition minimum")
+        assertEquals(21L, extremes["max(indexVal)"], "Invalid partition maximum")
+
+        extremeQuery.partition = 2L
+        assertEquals(1L, manager.executeQuery<Map<String, Any?>>(extremeQuery).first()["min(indexVal)"], "Invalid minimum within partition")
+    }
+
+    @Test
+    fun testExplainIndexAggregate() {
+        val query = Query(PlannerIndexEntity::class.java)
+        query.selections = listOf("category")
+        query.isDistinct = true
+
+        val plan = manager.explain(query)
+        assertEquals(1, plan.steps.size, "Expected a single access path")
+        assertEquals("IndexValues", plan.steps[0].scanner, "Expected distinct values to be read from the index")
+        assertEquals(11, plan.resultCount, "Invalid result count")
+    }
+}
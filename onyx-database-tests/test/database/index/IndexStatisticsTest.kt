@@ -0,0 +1,135 @@
+package database.index
+
+import com.onyx.interactors.index.data.IndexStatistics
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.factory.impl.CacheManagerFactory
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class IndexStatisticsTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 10
+            entity.code = "C$it"
+            entity.note = "N$it"
+            entity
+        })
+        manager.analyze(PlannerIndexEntity::class.java)
+    }
+
+    @Test
+    fun testHistogramEstimates() {
+        val statistics = IndexStatistics.build((0 until 100).map { Pair<Any?, Long>(it, 10L) })
+
+        assertEquals(1000L, statistics.recordCount, "Invalid record count")
+        assertEquals(100L, statistics.distinctValues, "Invalid distinct value count")
+        assertEquals(10L, statistics.estimate(QueryCriteriaOperator.EQUAL, 42), "Invalid equality estimate")
+        assertTrue(statistics.estimate(QueryCriteriaOperator.GREATER_THAN, 90) in 50L..150L, "Invalid range estimate")
+        assertTrue(statistics.estimate(QueryCriteriaOperator.LESS_THAN, 10) in 50L..150L, "Invalid range estimate")
+        assertEquals(0L, statistics.estimate(QueryCriteriaOperator.LESS_THAN, -1), "Values below the histogram should not match")
+
+        statistics.added(200, true)
+        statistics.removed(42, false)
+        assertEquals(1000L, statistics.recordCount, "Statistics were not maintained")
+        assertEquals(101L, statistics.distinctValues, "Statistics were not maintained")
+    }
+
+    @Test
+    fun testAnalyzeIndex() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class && factoryClass != CacheManagerFactory::class)
+            return
+
+        val descriptor = context!!.getBaseDescriptorForEntity(PlannerIndexEntity::class.java)!!
+        val interactor = context!!.getIndexInteractor(descriptor.indexes["category"]!!)
+
+        assertEquals(100L, interactor.statistics.recordCount, "Invalid analyzed record count")
+        assertEquals(10L, interactor.statistics.distinctValues, "Invalid analyzed distinct value count")
+        assertEquals(10L, interactor.estimateCount(QueryCriteriaOperator.EQUAL, 3), "Equality estimate should use the reference count")
+        assertEquals(20L, interactor.estimateCount(QueryCriteriaOperator.IN, arrayListOf(3, 4)), "In estimate should use the reference count")
+
+        val entity = PlannerIndexEntity()
+        entity.identifier = "ID1000"
+        entity.category = 11
+        entity.code = "C1000"
+        manager.saveEntity<IManagedEntity>(entity)
+
+        assertEquals(101L, interactor.statistics.recordCount, "Statistics were not maintained upon save")
+        assertEquals(11L, interactor.statistics.distinctValues, "Statistics were not maintained upon save")
+
+        manager.deleteEntity(entity)
+        assertEquals(100L, interactor.statistics.recordCount, "Statistics were not maintained upon delete")
+        assertEquals(10L, interactor.statistics.distinctValues, "Statistics were not maintained upon delete")
+    }
+
+    @Test
+    fun testStatisticsSavedOnShutdown() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class)
+            return
+
+        val entity = PlannerIndexEntity()
+        entity.identifier = "ID1000"
+        entity.category = 11
+        entity.code = "C1000"
+        manager.saveEntity<IManagedEntity>(entity)
+
+        shutdown()
+        initialize()
+
+        val descriptor = context!!.getBaseDescriptorForEntity(PlannerIndexEntity::class.java)!!
+        val interactor = context!!.getIndexInteractor(descriptor.indexes["category"]!!)
+
+        assertEquals(101L, interactor.statistics.recordCount, "Statistics modifications were lost upon restart")
+        assertEquals(11L, interactor.statistics.distinctValues, "Statistics modifications were lost upon restart")
+    }
+
+    @Test
+    fun testSelectiveCriteriaLast() {
+        val results = manager.executeQuery<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.NOT_EQUAL, "N3")
+                .and("category", QueryCriteriaOperator.EQUAL, 3)
+                .and("code", QueryCriteriaOperator.EQUAL, "C13")))
+
+        assertEquals(1, results.size, "Expected one result")
+        assertEquals("ID13", results.first().identifier, "Invalid result")
+    }
+
+    @Test
+    fun testIndexedConjunction() {
+        val results = manager.executeQuery<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.GREATER_THAN_EQUAL, 5)
+                .and("code", QueryCriteriaOperator.IN, arrayListOf("C3", "C15", "C27", "C99"))))
+
+        assertEquals(3, results.size, "Expected three results")
+        assertTrue(results.all { it.category >= 5 }, "Criteria was not applied")
+    }
+
+    @Test
+    fun testConjunctionWithGroup() {
+        val results = manager.executeQuery<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.EQUAL, 3)
+                .and(QueryCriteria("note", QueryCriteriaOperator.EQUAL, "N13").or("note", QueryCriteriaOperator.EQUAL, "N23"))))
+
+        assertEquals(2, results.size, "Expected two results")
+    }
+
+    @Test
+    fun testConjunctionWithNoMatches() {
+        val results = manager.executeQuery<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.STARTS_WITH, "N")
+                .and("code", QueryCriteriaOperator.EQUAL, "missing")
+                .and("category", QueryCriteriaOperator.EQUAL, 3)))
+
+        assertTrue(results.isEmpty(), "Expected no results")
+    }
+}
@@ -0,0 +1,65 @@
+package database.list
+
+import com.onyx.persistence.query.*
+import database.base.PrePopulatedDatabaseTest
+import entities.AllAttributeForFetch
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.util.*
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+/**
+ * Verifies criteria compiled into predicates match the same entities as comparing each attribute value
+ */
+@RunWith(Parameterized::class)
+class CompiledCriteriaTest(override var factoryClass: KClass<*>) : PrePopulatedDatabaseTest(factoryClass) {
+
+    private fun assertCriteria(criteria: QueryCriteria, expected: (AllAttributeForFetch) -> Boolean) {
+        val all = manager.list<AllAttributeForFetch>(AllAttributeForFetch::class.java)
+        val results = manager.from(AllAttributeForFetch::class).where(criteria).list<AllAttributeForFetch>()
+        assertEquals(all.filter(expected).map { it.id }.toSet(), results.map { it.id }.toSet(), "Invalid results for $criteria")
+    }
+
+    @Test
+    fun testPrimitiveComparisons() {
+        assertCriteria("intPrimitive" gt 3) { it.intPrimitive > 3 }
+        assertCriteria("longPrimitive" lte 1001L) { it.longPrimitive <= 1001L }
+        assertCriteria("doublePrimitive" gte 3.32) { it.doublePrimitive >= 3.32 }
+        assertCriteria("floatValue" lt 55.3f) { it.floatValue < 55.3f }
+        assertCriteria("shortValue" neq 882.toShort()) { it.shortValue != 882.toShort() }
+        assertCriteria("byteValue" eq 99.toByte()) { it.byteValue == 99.toByte() }
+    }
+
+    @Test
+    fun testComparisonsCastToCriteriaType() {
+        assertCriteria("longPrimitive" gt 1001) { it.longPrimitive > 1001L }
+        assertCriteria("intValue" gte 5L) { it.intValue != null && it.intValue!! >= 5 }
+        assertCriteria("mutableFloat" lt 34.3f) { it.mutableFloat == null || it.mutableFloat!! < 34.3f }
+        assertCriteria("dateValue" lte Date(1001)) { it.dateValue == null || it.dateValue!! <= Date(1001) }
+    }
+
+    @Test
+    fun testListCriteria() {
+        assertCriteria("intValue" IN listOf(2, 5)) { it.intValue == 2 || it.intValue == 5 }
+        assertCriteria("intValue" IN listOf(2L, 6L)) { it.intValue == 2 || it.intValue == 6 }
+        assertCriteria("stringValue" notIn listOf("A", "Some test string1")) { it.stringValue != "A" && it.stringValue != "Some test string1" }
+    }
+
+    @Test
+    fun testStringCriteria() {
+        assertCriteria("stringValue" match "Some test string[13]") { it.stringValue?.matches(Regex("Some test string[13]")) == true }
+        assertCriteria("stringValue" notMatch "Some.*") { it.stringValue?.matches(Regex("Some.*")) != true }
+        assertCriteria("stringValue" like "SOME TEST STRING2") { it.stringValue.equals("SOME TEST STRING2", true) }
+        assertCriteria("stringValue" notCont "string") { !it.stringValue.toString().contains("string") }
+        assertCriteria("stringValue".isNull()) { it.stringValue == null }
+    }
+
+    @Test
+    fun testCriteriaGroups() {
+        assertCriteria(("booleanPrimitive" eq true) or ("longValue" gt 322L)) { it.booleanPrimitive || it.longValue != null && it.longValue!! > 322L }
+        assertCriteria(!(("intPrimitive" eq 3) and ("stringValue" cont "string"))) { !(it.intPrimitive == 3 && it.stringValue.toString().contains("string")) }
+        assertCriteria(("intPrimitive" eq 3) and (("stringValue" eq "A") or ("doublePrimitive" lt 3.31))) { it.intPrimitive == 3 && (it.stringValue == "A" || it.doublePrimitive < 3.31) }
+    }
+}
@@ -1,17 +1,30 @@
 package database.list
 
+import com.onyx.buffer.RecordValues
+import com.onyx.buffer.ValueFormat
+import com.onyx.diskmap.DiskMap
+import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
 import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.persistence.query.cont
+import com.onyx.persistence.query.from
+import com.onyx.persistence.query.gt
+import com.onyx.persistence.query.lt
+import com.onyx.persistence.query.lte
 import com.onyx.persistence.query.eq
 import com.onyx.persistence.query.neq
 import com.onyx.persistence.query.startsWith
 import database.base.PrePopulatedDatabaseTest
 import entities.AllAttributeForFetch
+import entities.index.PlannerIndexEntity
 import org.junit.*
 import org.junit.runner.RunWith
 import org.junit.runners.Parameterized
+import java.util.*
 import kotlin.reflect.KClass
 import kotlin.test.assertEquals
+import kotlin.test.assertTrue
 
 @RunWith(Parameterized::class)
 class FullTableScanTest(override var factoryClass: KClass<*>) : PrePopulatedDatabaseTest(factoryClass) {
@@ -56,4 +69,116 @@ class FullTableScanTest(override var factoryClass: KClass<*>) : PrePopulatedData
                         .or ( "stringValue"  eq   "Some test string2")
         assertEquals(6, manager.list<IManagedEntity>(AllAttributeForFetch::class.java, criteria).size, "Expected 6 results")
     }
-}
\ No newline at end of file
+
+    /**
+     * Scans a table large enough to have its segments scanned in parallel
+     */
+    @Test
+    fun testParallelScan() {
+        val parallelScanThreshold = context!!.parallelScanThreshold
+        context!!.parallelScanThreshold = 10
+
+        try {
+            manager.from(PlannerIndexEntity::class).delete()
+            manager.saveEntities((0 until 500).map {
+                val entity = PlannerIndexEntity()
+                entity.identifier = "ID$it"
+                entity.code = "C$it"
+                entity.note = "N" + (it % 7)
+                entity
+            })
+
+            val results = manager.from(PlannerIndexEntity::class).where("note" eq "N3").list<PlannerIndexEntity>()
+            val expected = (0 until 500).filter { it % 7 == 3 }.map { "ID$it" }.toSet()
+            assertEquals(expected, results.map { it.identifier }.toSet(), "Invalid parallel scan results")
+            assertEquals(expected.size, results.size, "Parallel scan results should not repeat")
+            assertEquals(expected.size.toLong(), manager.from(PlannerIndexEntity::class).where("note" eq "N3").count(), "Invalid parallel scan count")
+        } finally {
+            context?.parallelScanThreshold = parallelScanThreshold
+        }
+    }
+
+    /**
+     * Scans records that are not cached so only the attributes referenced by the criteria are decoded
+     */
+    @Test
+    fun testScanDecodesCriteriaAttributes() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class)
+            return
+
+        // Re-open the database so no records are cached
+        shutdown()
+        initialize()
+
+        val descriptor = context!!.getBaseDescriptorForEntity(AllAttributeForFetch::class.java)!!
+        val records = context!!.getDataFile(descriptor).getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.entityClass.name, descriptor.identifier!!.loadFactor.toInt())
+        val attributes = records.entrySegments().flatten().map {
+            @Suppress("UNCHECKED_CAST")
+            records.getAttributesWithRecID((it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>).node!!, setOf("id", "intPrimitive"))
+        }
+        assertTrue(attributes.all { it != null && it.keys == setOf("id", "intPrimitive") }, "Expected only the requested attributes to be decoded")
+
+        val criteria = listOf(
+                "intPrimitive" eq 3,
+                "longValue" eq 322L,
+                "dateValue" eq Date(1001),
+                "booleanPrimitive" eq false,
+                "mutableChar" eq 'A',
+                "operator" eq QueryCriteriaOperator.CONTAINS,
+                ("doublePrimitive" gt 3.3) and ("shortValue" neq 882.toShort()))
+        val results = criteria.map { manager.from(AllAttributeForFetch::class).where(it).list<AllAttributeForFetch>().map { it.id }.toSet() }
+
+        val all = manager.list<AllAttributeForFetch>(AllAttributeForFetch::class.java)
+        val expected = listOf<(AllAttributeForFetch) -> Boolean>(
+                { it.intPrimitive == 3 },
+                { it.longValue == 322L },
+                { it.dateValue == Date(1001) },
+                { !it.booleanPrimitive },
+                { it.mutableChar == 'A' },
+                { it.operator == QueryCriteriaOperator.CONTAINS },
+                { it.doublePrimitive > 3.3 && it.shortValue != 882.toShort() }
+        ).map { predicate -> all.filter(predicate).map { it.id }.toSet() }
+
+        assertEquals(expected, results, "Invalid results when decoding only criteria attributes")
+    }
+
+    /**
+     * Reads every record into a single reusable set of record values and compares them to the decoded attribute maps
+     */
+    @Test
+    fun testScanReusesRecordValues() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class)
+            return
+
+        // Re-open the database so no records are cached
+        shutdown()
+        initialize()
+
+        val descriptor = context!!.getBaseDescriptorForEntity(AllAttributeForFetch::class.java)!!
+        val records = context!!.getDataFile(descriptor).getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.entityClass.name, descriptor.identifier!!.loadFactor.toInt())
+        val attributes = setOf("id", "longPrimitive", "floatValue", "mutableShort")
+        val values = RecordValues(attributes)
+
+        records.entrySegments().flatten().forEach {
+            @Suppress("UNCHECKED_CAST")
+            val node = (it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>).node!!
+            val expected = records.getAttributesWithRecID(node, attributes)
+            assertTrue(records.getAttributesWithRecID(node, values), "Expected all attributes to be read")
+            assertEquals(expected, values, "Record values do not match decoded attributes")
+            assertEquals(ValueFormat.LONG, values.formatAt(values.indexOf("longPrimitive")), "Expected long to be held unboxed")
+            assertEquals(expected!!["longPrimitive"], values.longAt(values.indexOf("longPrimitive")))
+        }
+
+        val results = listOf("longPrimitive" gt 2L, "floatValue" lt 55.3f, "intPrimitive" lte 3)
+                .map { manager.from(AllAttributeForFetch::class).where(it).list<AllAttributeForFetch>().map { it.id }.toSet() }
+
+        val all = manager.list<AllAttributeForFetch>(AllAttributeForFetch::class.java)
+        val expected = listOf<(AllAttributeForFetch) -> Boolean>(
+                { it.longPrimitive > 2L },
+                { it.floatValue < 55.3f },
+                { it.intPrimitive <= 3 }
+        ).map { predicate -> all.filter(predicate).map { it.id }.toSet() }
+
+        assertEquals(expected, results, "Invalid results when comparing unboxed record values")
+    }
+}
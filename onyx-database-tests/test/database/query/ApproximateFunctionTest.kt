@@ -0,0 +1,129 @@
+package database.query
+
+import com.onyx.exception.InvalidQueryException
+import com.onyx.interactors.query.data.HyperLogLog
+import com.onyx.interactors.query.data.TDigest
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.ColumnarEntity
+import entities.index.PlannerIndexEntity
+import entities.partition.IndexPartitionEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class ApproximateFunctionTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(PlannerIndexEntity::class).delete()
+        manager.from(ColumnarEntity::class).delete()
+
+        manager.saveEntities((0 until 3000).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 10
+            entity.code = "C" + (it % 1200)
+            entity.note = "N" + (it % 3)
+            entity
+        })
+
+        // Values are saved out of order so the percentiles do not depend on the order they are read in
+        manager.saveEntities((0 until 2000).map {
+            val entity = ColumnarEntity()
+            entity.id = "ID$it"
+            entity.quantityCopy = (it * 7919) % 2000
+            entity.totalCopy = (entity.quantityCopy % 4).toLong()
+            entity.priceCopy = if (it % 10 == 0) null else entity.quantityCopy / 4.0
+            entity
+        })
+    }
+
+    private fun assertNear(expected: Double, actual: Any?, tolerance: Double, message: String) =
+            assertTrue(actual is Double && Math.abs(expected - actual) <= tolerance, "$message: expected $expected but was $actual")
+
+    @Test
+    fun testApproximateCountDistinct() {
+        val result = manager.select(approxCountDistinct("code"), approxCountDistinct("category"), approxCountDistinct("note"))
+                .from(PlannerIndexEntity::class).list<Map<String, Any?>>().first()
+
+        val codes = result["approx_count_distinct(code)"] as Long
+        assertTrue(Math.abs(codes - 1200) <= 60, "Estimate $codes should be within 5% of 1200")
+        assertEquals(10L, result["approx_count_distinct(category)"], "Small cardinalities should be exact")
+        assertEquals(3L, result["approx_count_distinct(note)"], "Small cardinalities should be exact")
+    }
+
+    @Test
+    fun testPercentiles() {
+        val result = manager.select(median("quantityCopy"), percentile("quantityCopy", 0.95), percentile("quantityCopy", 0.99), percentile("priceCopy", 0.5))
+                .from(ColumnarEntity::class).list<Map<String, Any?>>().first()
+
+        assertNear(999.5, result["median(quantityCopy)"], 10.0, "Invalid median")
+        assertNear(1899.5, result["percentile(quantityCopy, 0.95)"], 5.0, "Invalid 95th percentile")
+        assertNear(1979.5, result["percentile(quantityCopy, 0.99)"], 2.0, "Invalid 99th percentile")
+        assertNear(250.0, result["percentile(priceCopy, 0.5)"], 5.0, "Null values should be ignored")
+    }
+
+    @Test
+    fun testGroupedPercentiles() {
+        val results = manager.select("totalCopy", median("quantityCopy"), approxCountDistinct("quantityCopy"), count("quantityCopy"))
+                .from(ColumnarEntity::class).groupBy("totalCopy").list<Map<String, Any?>>()
+
+        assertEquals(4, results.size)
+        results.forEach {
+            val group = (it["totalCopy"] as Long).toInt()
+            assertNear(998.0 + group, it["median(quantityCopy)"], 10.0, "Invalid median of group $group")
+            assertTrue(Math.abs(it["approx_count_distinct(quantityCopy)"] as Long - 500) <= 15, "Invalid distinct count of group $group")
+            assertEquals(500, it["count(quantityCopy)"])
+        }
+    }
+
+    @Test
+    fun testPercentileAcrossPartitions() {
+        manager.from(IndexPartitionEntity::class).delete()
+        manager.saveEntities((0 until 900).map {
+            val entity = IndexPartitionEntity()
+            entity.partitionId = (it % 3 + 1).toLong()
+            entity.indexVal = it.toLong()
+            entity
+        })
+
+        val query = Query(IndexPartitionEntity::class.java)
+        query.selections = listOf(median("indexVal"), approxCountDistinct("indexVal"))
+        query.partition = QueryPartitionMode.ALL
+        val result = manager.executeQuery<Map<String, Any?>>(query).first()
+
+        assertNear(449.5, result["median(indexVal)"], 5.0, "Invalid median across partitions")
+        assertTrue(Math.abs(result["approx_count_distinct(indexVal)"] as Long - 900) <= 27, "Invalid distinct count across partitions")
+    }
+
+    @Test(expected = InvalidQueryException::class)
+    fun testInvalidPercentile() {
+        manager.select(percentile("quantityCopy", 95.0)).from(ColumnarEntity::class).list<Map<String, Any?>>()
+    }
+
+    @Test
+    fun testMergeSketches() {
+        val distinct = (0 until 4).map { HyperLogLog() }
+        val digests = (0 until 4).map { TDigest() }
+        (0 until 100000).forEach {
+            distinct[it % 4].add("V$it")
+            digests[it % 4].add(it.toDouble())
+        }
+
+        (1 until 4).forEach {
+            distinct[0].merge(distinct[it])
+            digests[0].merge(digests[it])
+        }
+
+        assertTrue(Math.abs(distinct[0].estimate - 100000) <= 5000, "Merged estimate ${distinct[0].estimate} should be within 5% of 100000")
+        assertNear(50000.0, digests[0].quantile(0.5), 500.0, "Invalid merged median")
+        assertNear(99900.0, digests[0].quantile(0.999), 50.0, "Invalid merged 99.9th percentile")
+        assertEquals(100000.0, digests[0].count)
+    }
+}
@@ -0,0 +1,113 @@
+package database.query
+
+import com.onyx.persistence.factory.impl.CacheManagerFactory
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.ColumnarEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class ColumnarAggregateTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    private val attributes = listOf("quantity", "total", "price")
+    private val functions = listOf(::sum, ::avg, ::min, ::max, ::count)
+
+    @Before
+    fun seedData() {
+        manager.from(ColumnarEntity::class).delete()
+
+        manager.saveEntities((0 until 1500).map {
+            val entity = ColumnarEntity()
+            entity.id = "ID$it"
+            entity.quantity = (it * 37) % 101 - 50
+            entity.total = if (it % 7 == 0) null else it * 1000L
+            entity.price = if (it % 5 == 0) null else it * 0.25
+            entity.quantityCopy = entity.quantity
+            entity.totalCopy = entity.total
+            entity.priceCopy = entity.price
+            entity
+        })
+    }
+
+    /**
+     * Assert the results calculated from the columns match those calculated from the records
+     */
+    private fun assertMatchesRecords() {
+        val selections = attributes.flatMap { attribute -> functions.map { it(attribute) } }
+        val query = { columns: List<String> -> Query(ColumnarEntity::class.java).apply { this.selections = columns } }
+
+        assertEquals("Columns", manager.explain(query(selections)).steps[0].scanner, "Expected the columns to be scanned")
+
+        val columns = manager.executeQuery<Map<String, Any?>>(query(selections)).first()
+        val records = manager.executeQuery<Map<String, Any?>>(query(selections.map { it.replace(")", "Copy)") })).first()
+
+        selections.forEach {
+            val expected = records[it.replace(")", "Copy)")]
+            val actual = columns[it]
+            if (expected is Double && actual is Double)
+                assertTrue(Math.abs(expected - actual) <= Math.abs(expected) * 1e-9, "Invalid result for $it")
+            else
+                assertEquals(expected, actual, "Invalid result for $it")
+        }
+    }
+
+    @Test
+    fun testColumnResults() {
+        assertMatchesRecords()
+
+        val result = manager.select(count("quantity"), min("total"), max("total"), sum("quantity")).from(ColumnarEntity::class).list<Map<String, Any?>>().first()
+        assertEquals(1500, result["count(quantity)"], "Count should include every record")
+        assertEquals(null, result["min(total)"], "A null value is the minimum")
+        assertEquals(1499000L, result["max(total)"], "Invalid maximum")
+        assertEquals((0 until 1500).map { (it * 37) % 101 - 50 }.sum(), result["sum(quantity)"], "Invalid sum")
+    }
+
+    @Test
+    fun testColumnsAfterUpdateAndDelete() {
+        manager.from(ColumnarEntity::class).where("quantityCopy" gt 20).delete()
+        manager.from(ColumnarEntity::class).where("totalCopy" lt 5000L).set("total" to 777L, "totalCopy" to 777L).update()
+
+        val entity = manager.findById<ColumnarEntity>(ColumnarEntity::class.java, "ID3")!!
+        entity.price = 99999.0
+        entity.priceCopy = 99999.0
+        manager.saveEntity(entity)
+
+        assertMatchesRecords()
+    }
+
+    @Test
+    fun testDeletedSlotsAreReused() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class && factoryClass != CacheManagerFactory::class)
+            return
+
+        val descriptor = context!!.getBaseDescriptorForEntity(ColumnarEntity::class.java)!!
+        val interactor = context!!.getColumnInteractor(descriptor, descriptor.attributes["quantity"]!!)
+
+        repeat(3) {
+            manager.from(ColumnarEntity::class).where("quantityCopy" gt 0).delete()
+            seedData()
+        }
+
+        assertEquals(1500L, interactor.slotCount, "Slots of deleted records should be reused")
+        assertMatchesRecords()
+    }
+
+    @Test
+    fun testColumnsOfEmptyTable() {
+        manager.from(ColumnarEntity::class).delete()
+
+        val result = manager.select(sum("price"), avg("price"), min("quantity"), max("total"), count("quantity")).from(ColumnarEntity::class).list<Map<String, Any?>>().first()
+        assertEquals(null, result["sum(price)"])
+        assertEquals(null, result["avg(price)"])
+        assertEquals(null, result["min(quantity)"])
+        assertEquals(null, result["max(total)"])
+        assertEquals(0, result["count(quantity)"])
+    }
+}
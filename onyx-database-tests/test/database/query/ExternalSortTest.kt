@@ -0,0 +1,132 @@
+package database.query
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import entities.partition.FullTablePartitionEntity
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+@RunWith(Parameterized::class)
+class ExternalSortTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    private var sortBufferSize = 0
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+        manager.from(FullTablePartitionEntity::class).delete()
+
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 10
+            entity.code = "C" + (1000 + (it * 37) % 100)
+            entity.note = "N$it"
+            entity
+        })
+
+        manager.saveEntities((0 until 60).map {
+            val entity = FullTablePartitionEntity()
+            entity.partitionId = (it % 3).toLong()
+            entity.indexVal = ((it * 7) % 60).toLong()
+            entity
+        })
+
+        sortBufferSize = context!!.sortBufferSize
+        context!!.sortBufferSize = 7
+    }
+
+    @After
+    fun resetSortBuffer() {
+        context?.sortBufferSize = sortBufferSize
+    }
+
+    @Test
+    fun testExternalSort() {
+        val results = manager.from(PlannerIndexEntity::class)
+                .where("category" gte 0)
+                .orderBy("category".desc(), "code".asc())
+                .list<PlannerIndexEntity>()
+
+        val expected = (0 until 100).sortedWith(compareBy<Int>({ -(it % 10) }, { 1000 + (it * 37) % 100 })).map { "ID$it" }
+        assertEquals(expected, results.map { it.identifier }, "Invalid sort order")
+    }
+
+    @Test
+    fun testExternalSortWithRows() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.NOT_EQUAL, 3))
+        query.queryOrders = listOf(QueryOrder("note", false))
+        query.firstRow = 5
+        query.maxResults = 95
+
+        val results = manager.executeQuery<PlannerIndexEntity>(query)
+        val expected = (0 until 100).filter { it % 10 != 3 }.map { "N$it" }.sortedDescending().drop(5)
+        assertEquals(expected, results.map { it.note }, "Invalid page")
+        assertEquals(90, query.resultsCount, "Results count should include all matches")
+    }
+
+    @Test
+    fun testExternalSortAcrossPartitions() {
+        val query = Query(FullTablePartitionEntity::class.java, QueryCriteria("indexVal", QueryCriteriaOperator.GREATER_THAN_EQUAL, 0L))
+        query.partition = QueryPartitionMode.ALL
+        query.queryOrders = listOf(QueryOrder("indexVal", false))
+
+        val results = manager.executeQuery<FullTablePartitionEntity>(query)
+        assertEquals((0 until 60).map { (59 - it).toLong() }, results.map { it.indexVal }, "Partitions were not sorted")
+    }
+
+    @Test
+    fun testExternalSortLazy() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.GREATER_THAN_EQUAL, 0))
+        query.queryOrders = listOf(QueryOrder("code", true))
+
+        val results = manager.executeLazyQuery<IManagedEntity>(query)
+        assertEquals((0 until 100).map { "C" + (1000 + it) }, results.map { (it as PlannerIndexEntity).code }, "Invalid lazy sort order")
+    }
+
+    @Test
+    fun testExternalSortSelections() {
+        val results = manager.select("code", "category")
+                .from(PlannerIndexEntity::class)
+                .where("category" gte 0)
+                .orderBy("code".desc())
+                .list<Map<String, Any?>>()
+
+        assertEquals((0 until 100).map { "C" + (1099 - it) }, results.map { it["code"] }, "Selections were not merged in sort order")
+    }
+
+    @Test
+    fun testExternalSortStream() {
+        val codes = manager.from(PlannerIndexEntity::class)
+                .where("category" gte 0)
+                .orderBy("code".asc())
+                .first(3)
+                .sequence<PlannerIndexEntity, List<String?>> { results -> results.map { it.code }.toList() }
+
+        assertEquals((3 until 100).map { "C" + (1000 + it) }, codes, "Streamed results were not merged in sort order")
+    }
+
+    @Test
+    fun testExternalSortIsNotCached() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.EQUAL, 4))
+        query.queryOrders = listOf(QueryOrder("code", true))
+        val first = manager.executeQuery<PlannerIndexEntity>(query)
+
+        val entity = PlannerIndexEntity()
+        entity.identifier = "ID100"
+        entity.category = 4
+        entity.code = "C0999"
+        entity.note = "N100"
+        manager.saveEntity<IManagedEntity>(entity)
+
+        val second = manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(listOf("C0999") + first.map { it.code }, second.map { it.code }, "New entity was not sorted into the results")
+    }
+}
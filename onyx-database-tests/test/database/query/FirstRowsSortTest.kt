@@ -0,0 +1,89 @@
+package database.query
+
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import entities.partition.FullTablePartitionEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+@RunWith(Parameterized::class)
+class FirstRowsSortTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+        manager.from(FullTablePartitionEntity::class).delete()
+
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 10
+            entity.code = "C" + (1000 + (it * 37) % 100)
+            entity.note = "N$it"
+            entity
+        })
+
+        manager.saveEntities((0 until 60).map {
+            val entity = FullTablePartitionEntity()
+            entity.partitionId = (it % 3).toLong()
+            entity.indexVal = ((it * 7) % 60).toLong()
+            entity
+        })
+    }
+
+    @Test
+    fun testFirstRowsAscending() {
+        val results = manager.from(PlannerIndexEntity::class)
+                .where("note".notNull())
+                .orderBy("code".asc())
+                .limit(5)
+                .list<PlannerIndexEntity>()
+
+        assertEquals(listOf("C1000", "C1001", "C1002", "C1003", "C1004"), results.map { it.code }, "Invalid first rows")
+    }
+
+    @Test
+    fun testFirstRowsDescendingWithOffset() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.GREATER_THAN_EQUAL, 0))
+        query.queryOrders = listOf(QueryOrder("code", false))
+        query.firstRow = 10
+        query.maxResults = 3
+
+        val results = manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(listOf("C1089", "C1088", "C1087"), results.map { it.code }, "Invalid page")
+        assertEquals(100, query.resultsCount, "Results count should include all matches")
+    }
+
+    @Test
+    fun testFirstRowsMatchFullSort() {
+        val sorted = manager.from(PlannerIndexEntity::class)
+                .where("category" gte 0)
+                .orderBy("category".desc(), "code".asc())
+                .list<PlannerIndexEntity>()
+
+        val firstRows = manager.from(PlannerIndexEntity::class)
+                .where("category" gte 0)
+                .orderBy("category".desc(), "code".asc())
+                .first(7)
+                .limit(12)
+                .list<PlannerIndexEntity>()
+
+        assertEquals(sorted.subList(7, 19).map { it.identifier }, firstRows.map { it.identifier }, "First rows do not match sorted results")
+    }
+
+    @Test
+    fun testFirstRowsAcrossPartitions() {
+        val query = Query(FullTablePartitionEntity::class.java, QueryCriteria("indexVal", QueryCriteriaOperator.GREATER_THAN_EQUAL, 0L))
+        query.partition = QueryPartitionMode.ALL
+        query.queryOrders = listOf(QueryOrder("indexVal", true))
+        query.maxResults = 6
+
+        val results = manager.executeQuery<FullTablePartitionEntity>(query)
+        assertEquals(listOf(0L, 1L, 2L, 3L, 4L, 5L), results.map { it.indexVal }, "Partitions were not merged in order")
+    }
+}
@@ -0,0 +1,140 @@
+package database.query
+
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import entities.partition.IndexPartitionEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertNotEquals
+
+@RunWith(Parameterized::class)
+class IndexOrderTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+        manager.from(IndexPartitionEntity::class).delete()
+
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID" + (1000 + it)
+            entity.category = it % 10
+            entity.code = "C" + (1000 + (it * 37) % 100)
+            entity.note = "N$it"
+            entity
+        })
+
+        manager.saveEntities((0 until 60).map {
+            val entity = IndexPartitionEntity()
+            entity.partitionId = (it % 3).toLong()
+            entity.indexVal = ((it * 7) % 60).toLong()
+            entity
+        })
+    }
+
+    @Test
+    fun testIndexOrderDescending() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.NOT_NULL))
+        query.queryOrders = listOf(QueryOrder("code", false))
+        query.firstRow = 10
+        query.maxResults = 3
+
+        val plan = manager.explain(query)
+        assertEquals("IndexOrderScanner", plan.steps[0].scanner, "Expected the index to be read in order")
+        assertEquals(13L, plan.steps[0].actualRows, "Scan should stop once the page is filled")
+
+        val results = manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(listOf("C1089", "C1088", "C1087"), results.map { it.code }, "Invalid page")
+    }
+
+    @Test
+    fun testIndexOrderDoesNotScanToCount() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.NOT_NULL))
+        query.queryOrders = listOf(QueryOrder("code", false))
+        query.maxResults = 3
+
+        val plan = manager.explain(query)
+        assertEquals(1, plan.steps.size, "Only the index should be read")
+        assertEquals(3L, plan.steps[0].actualRows, "Scan should stop once the page is filled")
+
+        manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(Query.RESULTS_COUNT_UNKNOWN, query.resultsCount, "Matches of criteria that are not indexed should not be counted by scanning the table")
+    }
+
+    @Test
+    fun testIndexOrderCountsFromIndex() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.GREATER_THAN_EQUAL, 1))
+        query.queryOrders = listOf(QueryOrder("code", false))
+        query.maxResults = 3
+
+        val plan = manager.explain(query)
+        assertEquals("IndexOrderScanner", plan.steps[0].scanner, "Expected the index to be read in order")
+
+        manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(90, query.resultsCount, "Results count of indexed criteria should include all matches")
+    }
+
+    @Test
+    fun testIndexOrderWithFilter() {
+        val results = manager.from(PlannerIndexEntity::class)
+                .where("note" startsWith "N1")
+                .orderBy("code".asc())
+                .limit(4)
+                .list<PlannerIndexEntity>()
+
+        val expected = (0 until 100).filter { it == 1 || it in 10..19 }.map { "C" + (1000 + (it * 37) % 100) }.sorted().take(4)
+        assertEquals(expected, results.map { it.code }, "Filtered rows are not in index order")
+    }
+
+    @Test
+    fun testIdentifierOrder() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.NOT_EQUAL, 3))
+        query.queryOrders = listOf(QueryOrder("identifier", false))
+        query.maxResults = 5
+
+        val results = manager.executeQuery<PlannerIndexEntity>(query)
+        assertEquals(listOf("ID1099", "ID1098", "ID1097", "ID1096", "ID1095"), results.map { it.identifier }, "Invalid identifier order")
+    }
+
+    @Test
+    fun testIndexOrderTiesUseRemainingOrders() {
+        val sorted = manager.from(PlannerIndexEntity::class)
+                .orderBy("category".desc(), "code".asc())
+                .list<PlannerIndexEntity>()
+
+        val page = manager.from(PlannerIndexEntity::class)
+                .orderBy("category".desc(), "code".asc())
+                .first(7)
+                .limit(6)
+                .list<PlannerIndexEntity>()
+
+        assertEquals(sorted.subList(7, 13).map { it.identifier }, page.map { it.identifier }, "Ties were not sorted by the remaining orders")
+    }
+
+    @Test
+    fun testSelectiveCriteriaIsScanned() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("code", QueryCriteriaOperator.EQUAL, "C1042"))
+        query.queryOrders = listOf(QueryOrder("category", true))
+        query.maxResults = 5
+
+        val plan = manager.explain(query)
+        assertNotEquals("IndexOrderScanner", plan.steps[0].scanner, "Selective criteria should be scanned rather than reading in order")
+        assertEquals(1, plan.resultCount, "Invalid result count")
+    }
+
+    @Test
+    fun testIndexOrderAcrossPartitions() {
+        val query = Query(IndexPartitionEntity::class.java, QueryCriteria("indexVal", QueryCriteriaOperator.NOT_EQUAL, 2L))
+        query.partition = QueryPartitionMode.ALL
+        query.queryOrders = listOf(QueryOrder("indexVal", false))
+        query.maxResults = 5
+
+        val results = manager.executeQuery<IndexPartitionEntity>(query)
+        assertEquals(listOf(59L, 58L, 57L, 56L, 55L), results.map { it.indexVal }, "Partitions were not merged in order")
+    }
+}
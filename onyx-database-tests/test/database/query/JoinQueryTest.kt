@@ -0,0 +1,154 @@
+package database.query
+
+import com.onyx.exception.AttributeMissingException
+import com.onyx.exception.InvalidQueryException
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.JoinCustomerEntity
+import entities.JoinOrderEntity
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class JoinQueryTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    private var sortBufferSize = 0
+
+    @Before
+    fun seedData() {
+        manager.from(JoinCustomerEntity::class).delete()
+        manager.from(JoinOrderEntity::class).delete()
+
+        manager.saveEntities((0 until 50).map {
+            val customer = JoinCustomerEntity()
+            customer.id = it.toLong()
+            customer.code = "CUST$it"
+            customer.name = "Customer $it"
+            customer.region = it % 5
+            customer
+        })
+
+        // Orders of customers 50 through 59 have no customer to join to
+        manager.saveEntities((0 until 600).map {
+            val order = JoinOrderEntity()
+            order.id = it + 1L
+            order.customerCode = "CUST${it % 60}"
+            order.customerNumber = it % 60
+            order.amount = it.toDouble()
+            order
+        })
+
+        sortBufferSize = context!!.sortBufferSize
+    }
+
+    @After
+    fun resetSortBuffer() {
+        context?.sortBufferSize = sortBufferSize
+    }
+
+    private fun joinQuery(criteria: QueryCriteria? = null, joinCriteria: QueryCriteria? = null): Query {
+        val query = Query(JoinOrderEntity::class.java)
+        query.selections = listOf("id", "amount")
+        query.criteria = criteria
+        query.join = QueryJoin(JoinCustomerEntity::class.java, "customerCode", "code", joinCriteria, listOf("name", "region"), "customer")
+        return query
+    }
+
+    private fun expectedRows(filter: (Int) -> Boolean): Map<Long, String> =
+            (0 until 600).filter { it % 60 < 50 && filter(it) }.associate { Pair(it + 1L, "Customer ${it % 60}") }
+
+    @Test
+    fun testJoin() {
+        val results = manager.executeQuery<Map<String, Any?>>(joinQuery())
+
+        assertEquals(expectedRows { true }, results.associate { Pair(it["id"] as Long, it["customer.name"] as String) }, "Each order should be joined to its customer")
+        results.forEach {
+            assertEquals((((it["id"] as Long) - 1) % 60 % 5).toInt(), it["customer.region"], "Joined columns should be from the same customer")
+            assertEquals(((it["id"] as Long) - 1).toDouble(), it["amount"], "Query columns should be from the same order")
+        }
+    }
+
+    @Test
+    fun testJoinWithCriteria() {
+        val results = manager.executeQuery<Map<String, Any?>>(joinQuery("amount" lt 300.0, "region" eq 1))
+
+        assertEquals(expectedRows { it < 300 && it % 60 % 5 == 1 }, results.associate { Pair(it["id"] as Long, it["customer.name"] as String) }, "Both criteria should apply")
+    }
+
+    @Test
+    fun testJoinOnNumericAttributes() {
+        val results = manager.select("id")
+                .from(JoinOrderEntity::class)
+                .join(JoinCustomerEntity::class, "customerNumber", "id", selections = listOf("name"))
+                .list<Map<String, Any?>>()
+
+        assertEquals(expectedRows { true }, results.associate { Pair(it["id"] as Long, it["joinCustomerEntity.name"] as String) }, "An Int should join to a Long")
+    }
+
+    @Test
+    fun testJoinOrderAndLimit() {
+        val query = joinQuery()
+        query.queryOrders = listOf(QueryOrder("customer.name", false), QueryOrder("id", true))
+        query.firstRow = 5
+        query.maxResults = 20
+        val results = manager.executeQuery<Map<String, Any?>>(query)
+
+        val expected = expectedRows { true }.entries.sortedWith(compareByDescending<Map.Entry<Long, String>> { it.value }.thenBy { it.key }).drop(5).take(20).map { it.key }
+        assertEquals(expected, results.map { it["id"] }, "Joined rows should be sorted by the joined columns")
+        assertEquals(500, query.resultsCount, "Results count should include all joined rows")
+    }
+
+    @Test
+    fun testBuildSideFromStatistics() {
+        val customersBuilt = manager.explain(joinQuery())
+        assertTrue(customersBuilt.steps.any { it.scanner == "HashJoin(build=JoinCustomerEntity)" }, "The smaller customer table should be the build side")
+
+        val ordersBuilt = manager.explain(joinQuery("id" eq 61L))
+        assertTrue(ordersBuilt.steps.any { it.scanner == "HashJoin(build=JoinOrderEntity)" }, "A single order should be the build side")
+        assertEquals(1, ordersBuilt.resultCount, "Only the order should be joined")
+    }
+
+    @Test
+    fun testSpilledJoin() {
+        context!!.sortBufferSize = 7
+
+        val plan = manager.explain(joinQuery())
+        assertTrue(plan.steps.any { it.scanner == "HashJoin(build=JoinCustomerEntity, spilled)" }, "The hash table should be written to temporary storage")
+
+        val results = manager.executeQuery<Map<String, Any?>>(joinQuery())
+        assertEquals(expectedRows { true }, results.associate { Pair(it["id"] as Long, it["customer.name"] as String) }, "Spilled join should match")
+    }
+
+    @Test
+    fun testSpilledJoinWithRepeatedValues() {
+        context!!.sortBufferSize = 7
+
+        val query = Query(JoinCustomerEntity::class.java)
+        query.selections = listOf("id")
+        query.join = QueryJoin(JoinOrderEntity::class.java, "region", "customerNumber", null, listOf("id"), "order")
+
+        val plan = manager.explain(query)
+        assertTrue(plan.steps.any { it.scanner == "HashJoin(build=JoinCustomerEntity, spilled)" }, "The hash table should be written to temporary storage")
+
+        val results = manager.executeQuery<Map<String, Any?>>(query)
+        val expected = (0 until 600).filter { it % 60 < 5 }.flatMap { order -> (0 until 50).filter { it % 5 == order % 60 }.map { Pair(it.toLong(), order + 1L) } }
+        assertEquals(expected.size, results.size, "Every row with a repeated join value should match")
+        assertEquals(expected.toSet(), results.map { Pair(it["id"] as Long, it["order.id"] as Long) }.toSet(), "Spilled join should match")
+    }
+
+    @Test(expected = AttributeMissingException::class)
+    fun testJoinAttributeMissing() {
+        manager.select("id").from(JoinOrderEntity::class).join(JoinCustomerEntity::class, "customerCode", "missing").list<Map<String, Any?>>()
+    }
+
+    @Test(expected = InvalidQueryException::class)
+    fun testJoinWithFunctions() {
+        manager.select(count("id")).from(JoinOrderEntity::class).join(JoinCustomerEntity::class, "customerCode", "code").list<Map<String, Any?>>()
+    }
+}
@@ -0,0 +1,101 @@
+package database.query
+
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class KeysetPaginationTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID" + (1000 + it)
+            entity.category = it % 10
+            entity.code = "C" + (1000 + (it * 37) % 100)
+            entity.note = "N" + (it % 7)
+            entity
+        })
+    }
+
+    /**
+     * Read every page of a query following the cursor of the last row of each page
+     */
+    private fun pages(orders: Array<QueryOrder>, pageSize: Int): List<String> {
+        val builder = manager.from(PlannerIndexEntity::class).orderBy(*orders).after(QueryCursor.START).limit(pageSize)
+        val results = ArrayList<String>()
+        var page = builder.list<PlannerIndexEntity>()
+        while (page.isNotEmpty()) {
+            assertTrue(page.size <= pageSize, "Page exceeds the limit")
+            results.addAll(page.map { it.identifier!! })
+            page = builder.after(builder.cursorAfter(page.last())).list()
+        }
+        return results
+    }
+
+    @Test
+    fun testIndexedOrder() {
+        val expected = manager.from(PlannerIndexEntity::class).orderBy("code".asc(), "identifier".asc()).list<PlannerIndexEntity>().map { it.identifier }
+        assertEquals(expected, pages(arrayOf("code".asc()), 7), "Pages of an indexed order do not match the sorted results")
+    }
+
+    @Test
+    fun testIndexedOrderWithTies() {
+        val expected = manager.from(PlannerIndexEntity::class).orderBy("category".desc(), "identifier".asc()).list<PlannerIndexEntity>().map { it.identifier }
+        assertEquals(expected, pages(arrayOf("category".desc()), 6), "Rows with the same value were skipped or repeated")
+    }
+
+    @Test
+    fun testNonIndexedOrder() {
+        val expected = manager.from(PlannerIndexEntity::class).orderBy("note".asc(), "identifier".asc()).list<PlannerIndexEntity>().map { it.identifier }
+        assertEquals(expected, pages(arrayOf("note".asc()), 9), "Pages of a non indexed order do not match the sorted results")
+    }
+
+    @Test
+    fun testIdentifierOrder() {
+        val expected = (0 until 100).map { "ID" + (1099 - it) }
+        assertEquals(expected, pages(arrayOf("identifier".desc()), 10), "Pages of the identifier order do not match")
+    }
+
+    @Test
+    fun testSoughtPageIsNotCounted() {
+        val builder = manager.from(PlannerIndexEntity::class).where("category" gte 0).orderBy("code".asc()).after(QueryCursor.START).limit(5)
+        val first = builder.list<PlannerIndexEntity>()
+        builder.after(builder.cursorAfter(first.last()))
+
+        val plan = manager.explain(builder.query)
+        assertEquals("IndexOrderScanner", plan.steps[0].scanner, "Expected the index to be sought to the cursor")
+        assertTrue(plan.steps[0].actualRows <= 6L, "Rows before the cursor should not be read")
+
+        val next = builder.list<PlannerIndexEntity>()
+        assertEquals(listOf("C1005", "C1006", "C1007", "C1008", "C1009"), next.map { it.code }, "Invalid page after the cursor")
+        assertEquals(Query.RESULTS_COUNT_UNKNOWN, builder.query.resultsCount, "Matches should not be counted for each page")
+    }
+
+    @Test
+    fun testCursorToken() {
+        val builder = manager.from(PlannerIndexEntity::class).orderBy("category".asc()).after(QueryCursor.START).limit(15)
+        val first = builder.list<PlannerIndexEntity>()
+        val cursor = builder.cursorAfter(first.last())
+        assertEquals(cursor, QueryCursor.fromToken(cursor.token), "Token did not round trip")
+
+        val next = manager.from(PlannerIndexEntity::class)
+                .orderBy("category".asc())
+                .after(QueryCursor.fromToken(cursor.token))
+                .limit(15)
+                .list<PlannerIndexEntity>()
+
+        val expected = manager.from(PlannerIndexEntity::class).orderBy("category".asc(), "identifier".asc()).list<PlannerIndexEntity>().map { it.identifier }
+        assertEquals(expected.subList(15, 30), next.map { it.identifier }, "Page after the token is invalid")
+    }
+}
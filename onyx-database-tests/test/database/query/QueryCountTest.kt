@@ -1,12 +1,12 @@
 package database.query
 
 import com.onyx.persistence.IManagedEntity
-import com.onyx.persistence.query.Query
-import com.onyx.persistence.query.from
-import com.onyx.persistence.query.gt
+import com.onyx.persistence.query.*
 import database.base.DatabaseBaseTest
 import entities.SimpleEntity
+import entities.index.PlannerIndexEntity
 import entities.partition.BasicPartitionEntity
+import entities.partition.IndexPartitionEntity
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -21,6 +21,8 @@ class QueryCountTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(fa
     fun removeTestData() {
         manager.from(SimpleEntity::class).delete()
         manager.from(BasicPartitionEntity::class).delete()
+        manager.from(PlannerIndexEntity::class).delete()
+        manager.from(IndexPartitionEntity::class).delete()
     }
 
     /**
@@ -107,4 +109,65 @@ class QueryCountTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(fa
 
         assertEquals(1, manager.from(BasicPartitionEntity::class).where("id" gt 1L).count(), "Expected 1 result")
     }
+
+    /**
+     * Tests counts resolved from index values and full table scans match the number of results
+     */
+    @Test
+    fun testQueryCountMatchesResults() {
+        manager.saveEntities((0 until 100).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 10
+            entity.code = "C" + (1000 + it)
+            entity.note = "N" + (it % 4)
+            entity
+        })
+
+        listOf(
+                "category" eq 3,
+                "category" eq 11,
+                "category" gt 6,
+                "category" gte 6,
+                "category" lt 2,
+                "category" lte 2,
+                "code" gte "C1050",
+                "category" IN listOf(1, 3, 3, 12),
+                "note" eq "N1",
+                !("category" eq 3),
+                ("note" eq "N1") and ("note" neq "N3"),
+                ("category" eq 3) or ("note" eq "N1"),
+                ("category" gte 5) and ("note" eq "N1")
+        ).forEach {
+            val expected = manager.from(PlannerIndexEntity::class).where(it).list<PlannerIndexEntity>().size.toLong()
+            assertEquals(expected, manager.from(PlannerIndexEntity::class).where(it).count(), "Invalid count for $it")
+        }
+    }
+
+    /**
+     * Tests counts of indexed and full table scan criteria across partitions
+     */
+    @Test
+    fun testQueryCountForPartitionCriteria() {
+        manager.saveEntities((0 until 60).map {
+            val entity = IndexPartitionEntity()
+            entity.partitionId = (it % 3 + 1).toLong()
+            entity.indexVal = (it % 20).toLong()
+            entity
+        })
+
+        val query = Query(IndexPartitionEntity::class.java, QueryCriteria("indexVal", QueryCriteriaOperator.LESS_THAN, 3L))
+        query.partition = QueryPartitionMode.ALL
+        assertEquals(9L, manager.countForQuery(query), "Expected 9 results")
+
+        query.partition = 1L
+        assertEquals(3L, manager.countForQuery(query), "Expected 3 results")
+
+        query.partition = 7L
+        assertEquals(0L, manager.countForQuery(query), "Expected no results")
+
+        val fullScanQuery = Query(IndexPartitionEntity::class.java, QueryCriteria("partitionId", QueryCriteriaOperator.EQUAL, 2L))
+        fullScanQuery.partition = QueryPartitionMode.ALL
+        assertEquals(20L, manager.countForQuery(fullScanQuery), "Expected 20 results")
+    }
 }
@@ -0,0 +1,93 @@
+package database.query
+
+import com.onyx.persistence.factory.impl.CacheManagerFactory
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class QueryPlanTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+        manager.saveEntities((0 until 50).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID$it"
+            entity.category = it % 5
+            entity.code = "C$it"
+            entity.note = "N$it"
+            entity
+        })
+    }
+
+    @Test
+    fun testExplainIndexScan() {
+        val plan = manager.explain(Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.EQUAL, 3)))
+
+        assertEquals(PlannerIndexEntity::class.java.name, plan.entityType, "Invalid entity type")
+        assertEquals(1, plan.steps.size, "Expected a single access path")
+        assertEquals("IndexScanner", plan.steps[0].scanner, "Expected index to be used")
+        assertEquals(10L, plan.steps[0].estimatedRows, "Invalid estimate")
+        assertEquals(10L, plan.steps[0].actualRows, "Invalid actual row count")
+        assertEquals(10, plan.resultCount, "Invalid result count")
+        assertFalse(plan.isCached, "Results should not have been cached")
+    }
+
+    @Test
+    fun testExplainFullTableScan() {
+        val plan = manager.explain(Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.STARTS_WITH, "N1")))
+
+        assertEquals("FullTableScanner", plan.steps[0].scanner, "Expected a full table scan")
+        assertEquals(50L, plan.steps[0].estimatedRows, "Full scans are estimated as the table size")
+        assertEquals(11L, plan.steps[0].actualRows, "Invalid actual row count")
+    }
+
+    @Test
+    fun testExplainPhases() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.EQUAL, 1).and(QueryCriteria("note", QueryCriteriaOperator.NOT_NULL)))
+        query.queryOrders = listOf(QueryOrder("code"))
+        query.selections = listOf("code", "note")
+        val plan = manager.explain(query)
+
+        assertTrue(plan.steps.isNotEmpty(), "Access paths were not recorded")
+        assertTrue(plan.scanTime > 0, "Scan time was not recorded")
+        assertTrue(plan.sortTime > 0, "Sort time was not recorded")
+        assertTrue(plan.selectTime > 0, "Selection time was not recorded")
+        assertEquals(plan.scanTime + plan.sortTime + plan.hydrateTime + plan.selectTime, plan.totalTime, "Invalid total time")
+        assertEquals(10, plan.resultCount, "Invalid result count")
+    }
+
+    @Test
+    fun testSlowQueryLog() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class && factoryClass != CacheManagerFactory::class)
+            return
+
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("code", QueryCriteriaOperator.EQUAL, "C7"))
+
+        manager.executeQuery<PlannerIndexEntity>(query)
+        assertTrue(context!!.slowQueryLog.isEmpty(), "Slow query log should be disabled by default")
+
+        context!!.slowQueryThreshold = 0
+        context!!.slowQueryLogSize = 2
+        try {
+            (0 until 3).forEach { manager.executeQuery<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("code", QueryCriteriaOperator.EQUAL, "C$it"))) }
+
+            val log = context!!.slowQueryLog
+            assertEquals(2, log.size, "Slow query log should be capped")
+            assertEquals("IndexScanner", log[1].steps[0].scanner, "Plan was not recorded")
+            assertEquals(1, log[1].resultCount, "Invalid result count")
+        } finally {
+            context!!.slowQueryThreshold = -1
+        }
+    }
+}
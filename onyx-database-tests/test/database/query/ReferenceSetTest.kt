@@ -0,0 +1,69 @@
+package database.query
+
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
+import org.junit.Test
+import java.util.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+/**
+ * Verifies the packed reference set used for query results behaves as a map of references
+ */
+class ReferenceSetTest {
+
+    @Test
+    fun testMatchesHashMap() {
+        val random = Random(42)
+        val references = ReferenceSet<Any?>()
+        val expected = HashMap<Reference, Any?>()
+
+        repeat(20000) {
+            val reference = Reference(random.nextInt(4).toLong(), random.nextInt(5000).toLong())
+            when (random.nextInt(4)) {
+                0 -> { references.add(reference.partition, reference.reference); if (!expected.containsKey(reference)) expected.put(reference, reference) }
+                1 -> assertEquals(expected.remove(reference), references.remove(reference))
+                2 -> { references.put(reference, "value $it"); expected.put(reference, "value $it") }
+                else -> assertEquals(expected.containsKey(reference), references.containsKey(reference))
+            }
+        }
+
+        assertEquals(expected.size, references.size)
+        assertEquals<Map<Reference, Any?>>(expected, references)
+    }
+
+    @Test
+    fun testIntersectAndUnion() {
+        val first = ReferenceSet<Reference>()
+        val second = ReferenceSet<Reference>()
+        (1L..1000L).forEach { first.add(1L, it) }
+        (500L..1500L).forEach { second.add(1L, it) }
+
+        val intersection = ReferenceSet.intersect(first, second)
+        assertEquals(501, intersection.size)
+        assertTrue(intersection.containsKey(Reference(1L, 500L)))
+        assertFalse(intersection.containsKey(Reference(1L, 499L)))
+
+        first.retainAll(second)
+        assertEquals<Map<Reference, Reference>>(intersection, first)
+
+        first.putAll(ReferenceSet.intersect(second, second))
+        assertEquals(1001, first.size)
+    }
+
+    @Test
+    fun testAssignValues() {
+        val references = ReferenceSet<Any?>()
+        (1L..100L).forEach { references.add(0L, it) }
+
+        assertEquals(Reference(0L, 5L), references[Reference(0L, 5L)])
+        references.entries.forEach { it.setValue(if (it.key.reference % 2 == 0L) null else it.key.reference) }
+
+        assertNull(references[Reference(0L, 4L)])
+        assertTrue(references.containsKey(Reference(0L, 4L)))
+        assertEquals(5L, references[Reference(0L, 5L)])
+        assertEquals(50, references.values.count { it == null })
+    }
+}
@@ -0,0 +1,54 @@
+package database.query
+
+import com.onyx.interactors.query.data.QuerySortComparator
+import com.onyx.interactors.query.data.SortKey
+import com.onyx.interactors.record.data.Reference
+import com.onyx.persistence.factory.impl.EmbeddedPersistenceManagerFactory
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryOrder
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.util.*
+import kotlin.reflect.KClass
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class SortPerformanceTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    /**
+     * Sorts 1 million sort keys by 2 order by values where the first has only 10 distinct values.  Ties must remain
+     * in reference order.
+     */
+    @Test
+    fun testSortKeysFor1MRows() {
+        if (factoryClass != EmbeddedPersistenceManagerFactory::class)
+            return
+
+        val orders = arrayOf(QueryOrder("category", false), QueryOrder("code", true))
+        val query = Query(PlannerIndexEntity::class.java)
+        query.queryOrders = orders.toList()
+        val comparator = QuerySortComparator(query, orders, context!!.getBaseDescriptorForEntity(PlannerIndexEntity::class.java)!!, context!!)
+
+        val random = Random(1024)
+        val keys = Array(1000000) { SortKey(Reference(0L, it.toLong()), arrayOf<Any?>(random.nextInt(10), "C" + random.nextInt(1000))) }
+
+        val before = System.currentTimeMillis()
+        Arrays.sort(keys, { key1, key2 -> comparator.compareKeys(key1, key2) })
+        val after = System.currentTimeMillis()
+
+        val outOfOrder = (1 until keys.size).firstOrNull {
+            val previous = keys[it - 1]
+            val current = keys[it]
+            val category = (previous.values[0] as Int).compareTo(current.values[0] as Int)
+            val code = (previous.values[1] as String).compareTo(current.values[1] as String)
+            category < 0 || category == 0 && (code > 0 || code == 0 && previous.reference > current.reference)
+        }
+
+        assertNull(outOfOrder, "Sort keys are out of order")
+        assertTrue(after - before < 10000, "Sorting 1 million sort keys took more than 10 seconds")
+    }
+}
@@ -0,0 +1,160 @@
+package database.query
+
+import com.onyx.exception.InvalidQueryException
+import com.onyx.persistence.query.*
+import database.base.DatabaseBaseTest
+import entities.JoinCustomerEntity
+import entities.JoinOrderEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class SubQueryTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.from(JoinCustomerEntity::class).delete()
+        manager.from(JoinOrderEntity::class).delete()
+
+        manager.saveEntities((0 until 50).map {
+            val customer = JoinCustomerEntity()
+            customer.id = it.toLong()
+            customer.code = "CUST$it"
+            customer.name = "Customer $it"
+            customer.region = it % 5
+            customer
+        })
+
+        // Orders of customers 50 through 59 have no customer
+        manager.saveEntities((0 until 600).map {
+            val order = JoinOrderEntity()
+            order.id = it + 1L
+            order.customerCode = "CUST${it % 60}"
+            order.customerNumber = it % 60
+            order.amount = it.toDouble()
+            order
+        })
+    }
+
+    private fun customerIds(criteria: QueryCriteria): Set<Long> =
+            manager.from(JoinCustomerEntity::class).where(criteria).list<JoinCustomerEntity>().map { it.id }.toSet()
+
+    @Test
+    fun testInIndexedSubQuery() {
+        val results = customerIds("code" IN manager.select("customerCode").from(JoinOrderEntity::class).where("amount" lt 20.0))
+        assertEquals((0 until 20L).toSet(), results, "Customers with an order less than 20 should be found")
+    }
+
+    @Test
+    fun testNotInSubQuery() {
+        val results = customerIds("code" notIn manager.select("customerCode").from(JoinOrderEntity::class).where("amount" lt 20.0))
+        assertEquals((20 until 50L).toSet(), results, "Customers without an order less than 20 should be found")
+    }
+
+    @Test
+    fun testExistsSubQuery() {
+        assertEquals((0 until 50L).toSet(), customerIds("id" exists manager.from(JoinOrderEntity::class).where("amount" lt 20.0)), "Every customer should match when the sub query returns rows")
+        assertEquals(emptySet(), customerIds("id" exists manager.from(JoinOrderEntity::class).where("amount" gt 1000.0)), "No customer should match when the sub query is empty")
+    }
+
+    @Test
+    fun testNotExistsSubQuery() {
+        assertEquals(emptySet(), customerIds("id" notExists manager.from(JoinOrderEntity::class).where("amount" lt 20.0)), "No customer should match when the sub query returns rows")
+        assertEquals((0 until 50L).toSet(), customerIds("id" notExists manager.from(JoinOrderEntity::class).where("amount" gt 1000.0)), "Every customer should match when the sub query is empty")
+    }
+
+    @Test
+    fun testExistsWithOtherCriteria() {
+        val exists = customerIds(("region" eq 2).and("id" exists manager.from(JoinOrderEntity::class).where("customerCode" eq "CUST7")))
+        assertEquals((0 until 50L).filter { it % 5 == 2L }.toSet(), exists, "Other criteria should still apply")
+
+        val missing = customerIds(("region" eq 2).and("id" exists manager.from(JoinOrderEntity::class).where("customerCode" eq "CUST99")))
+        assertEquals(emptySet(), missing, "An empty sub query should not match any record")
+    }
+
+    @Test
+    fun testIdentifierSubQuery() {
+        val results = manager.from(JoinOrderEntity::class)
+                .where("customerNumber" IN manager.from(JoinCustomerEntity::class).where("region" eq 1))
+                .list<JoinOrderEntity>()
+
+        assertEquals((0 until 600).filter { it % 60 < 50 && it % 60 % 5 == 1 }.map { it + 1L }.toSet(), results.map { it.id }.toSet(), "A sub query without selections should select the identifier")
+    }
+
+    @Test
+    fun testDefaultSubQueryFromIndexValues() {
+        val results = manager.from(JoinOrderEntity::class)
+                .where("customerCode" notIn manager.select("code").from(JoinCustomerEntity::class))
+                .list<JoinOrderEntity>()
+
+        assertEquals((0 until 600).filter { it % 60 >= 50 }.map { it + 1L }.toSet(), results.map { it.id }.toSet(), "Orders without a customer should be found")
+    }
+
+    @Test
+    fun testSubQueryExecutedAgain() {
+        val query = Query(JoinCustomerEntity::class.java, QueryCriteria("code", QueryCriteriaOperator.IN, manager.select("customerCode").from(JoinOrderEntity::class).where("amount" lt 20.0).query))
+        assertEquals(20, manager.executeQuery<JoinCustomerEntity>(query).size, "Initial results should match")
+
+        manager.from(JoinOrderEntity::class).where("amount" lt 10.0).delete()
+        assertEquals(10, manager.executeQuery<JoinCustomerEntity>(query).size, "The sub query should be executed again")
+    }
+
+    @Test
+    fun testSubQueryDoesNotChangeQuery() {
+        val added = CountDownLatch(1)
+        val query = Query(JoinCustomerEntity::class.java, QueryCriteria("code", QueryCriteriaOperator.IN, manager.select("customerCode").from(JoinOrderEntity::class).where("amount" lt 20.0).query))
+        query.changeListener = object : QueryListener<JoinCustomerEntity> {
+            override fun onItemUpdated(item: JoinCustomerEntity) = Unit
+            override fun onItemAdded(item: JoinCustomerEntity) = added.countDown()
+            override fun onItemRemoved(item: JoinCustomerEntity) = Unit
+        }
+
+        assertEquals(20, manager.executeQuery<JoinCustomerEntity>(query).size, "Initial results should match")
+        val hashCode = query.hashCode()
+
+        manager.from(JoinOrderEntity::class).where("amount" lt 10.0).delete()
+        assertEquals(10, manager.executeQuery<JoinCustomerEntity>(query).size, "Cached results should be read again")
+        assertEquals(hashCode, query.hashCode(), "Resolving the sub query should not change the query")
+        assertTrue(query.criteria!!.value is Query, "The criteria value should remain the sub query")
+        assertEquals(1, manager.context.queryCacheInteractor.getCachedQueryResults(query)?.listeners?.size, "The listener should remain subscribed")
+
+        manager.from(JoinCustomerEntity::class).where("id" eq 15L).delete()
+        val customer = JoinCustomerEntity()
+        customer.id = 15L
+        customer.code = "CUST15"
+        manager.saveEntity(customer)
+        assertTrue(added.await(1, TimeUnit.SECONDS), "The listener should be notified of a customer within the sub query")
+    }
+
+    @Test
+    fun testCountAndDeleteWithSubQuery() {
+        assertEquals(100, manager.from(JoinOrderEntity::class)
+                .where("customerCode" notIn manager.select("code").from(JoinCustomerEntity::class))
+                .count(), "Count should apply the sub query")
+
+        assertEquals(10, manager.from(JoinCustomerEntity::class)
+                .where("code" IN manager.select("customerCode").from(JoinOrderEntity::class).where("amount" lt 10.0))
+                .delete(), "Delete should apply the sub query")
+        assertEquals(40, manager.from(JoinCustomerEntity::class).count())
+    }
+
+    @Test
+    fun testNestedSubQuery() {
+        val results = customerIds("code" IN manager.select("customerCode").from(JoinOrderEntity::class)
+                .where("customerNumber" IN manager.from(JoinCustomerEntity::class).where("region" eq 2)))
+
+        assertEquals((0 until 50L).filter { it % 5 == 2L }.toSet(), results, "Nested sub queries should be resolved")
+    }
+
+    @Test(expected = InvalidQueryException::class)
+    fun testSubQueryWithMultipleSelections() {
+        customerIds("code" IN manager.select("customerCode", "amount").from(JoinOrderEntity::class))
+    }
+}
@@ -0,0 +1,116 @@
+package database.save
+
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.eq
+import database.base.DatabaseBaseTest
+import entities.AllAttributeForFetch
+import entities.AllAttributeV2Entity
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.util.*
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+/**
+ * Verifies each attribute type is written and read back by the entity serializer
+ */
+@RunWith(Parameterized::class)
+class SaveAttributeValuesTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Test
+    fun testSavePopulatedAttributes() {
+        val entity = AllAttributeForFetch()
+        entity.id = "SERIALIZE_POPULATED"
+        entity.longValue = 4L
+        entity.longPrimitive = 3L
+        entity.intValue = 23
+        entity.intPrimitive = 3
+        entity.stringValue = "Serialized string"
+        entity.dateValue = Date(1483736263743L)
+        entity.doubleValue = 2.3
+        entity.doublePrimitive = 3.32
+        entity.booleanValue = true
+        entity.booleanPrimitive = true
+        entity.mutableFloat = 34.3f
+        entity.floatValue = 55.3f
+        entity.mutableByte = 43.toByte()
+        entity.byteValue = 99.toByte()
+        entity.mutableShort = 828.toShort()
+        entity.shortValue = 882.toShort()
+        entity.mutableChar = 'A'
+        entity.charValue = 'C'
+        entity.operator = QueryCriteriaOperator.CONTAINS
+        entity.entity = AllAttributeV2Entity()
+        entity.entity!!.id = "SERIALIZE_NESTED"
+        entity.entity!!.mutableShorts = arrayOf(1.toShort(), 2.toShort())
+        manager.saveEntity<IManagedEntity>(entity)
+
+        val result = manager.findById<AllAttributeForFetch>(AllAttributeForFetch::class.java, entity.id!!)
+        assertNotNull(result)
+        assertEquals(4L, result!!.longValue)
+        assertEquals(3L, result.longPrimitive)
+        assertEquals(23, result.intValue)
+        assertEquals(3, result.intPrimitive)
+        assertEquals("Serialized string", result.stringValue)
+        assertEquals(Date(1483736263743L), result.dateValue)
+        assertEquals(2.3, result.doubleValue)
+        assertEquals(3.32, result.doublePrimitive)
+        assertEquals(true, result.booleanValue)
+        assertEquals(true, result.booleanPrimitive)
+        assertEquals(34.3f, result.mutableFloat)
+        assertEquals(55.3f, result.floatValue)
+        assertEquals(43.toByte(), result.mutableByte)
+        assertEquals(99.toByte(), result.byteValue)
+        assertEquals(828.toShort(), result.mutableShort)
+        assertEquals(882.toShort(), result.shortValue)
+        assertEquals('A', result.mutableChar)
+        assertEquals('C', result.charValue)
+        assertEquals(QueryCriteriaOperator.CONTAINS, result.operator)
+        assertEquals("SERIALIZE_NESTED", result.entity?.id, "Overridden attribute should be serialized")
+        assertEquals(listOf(1.toShort(), 2.toShort()), result.entity?.mutableShorts?.toList())
+    }
+
+    @Test
+    fun testSaveNullAttributes() {
+        val entity = AllAttributeForFetch()
+        entity.id = "SERIALIZE_NULL"
+        entity.intPrimitive = 7
+        manager.saveEntity<IManagedEntity>(entity)
+
+        val result = manager.findById<AllAttributeForFetch>(AllAttributeForFetch::class.java, entity.id!!)
+        assertNotNull(result)
+        assertNull(result!!.longValue)
+        assertNull(result.intValue)
+        assertNull(result.stringValue)
+        assertNull(result.dateValue)
+        assertNull(result.mutableChar)
+        assertNull(result.operator)
+        assertNull(result.entity)
+        assertEquals(7, result.intPrimitive)
+    }
+
+    @Test
+    fun testSelectAttributesFromRecord() {
+        val entity = AllAttributeForFetch()
+        entity.id = "SERIALIZE_SELECT"
+        entity.intPrimitive = 9
+        entity.stringValue = "été string"
+        entity.charValue = 'Z'
+        manager.saveEntity<IManagedEntity>(entity)
+
+        val results = manager.select("stringValue", "intPrimitive", "longValue", "charValue")
+                .from(AllAttributeForFetch::class)
+                .where("id" eq "SERIALIZE_SELECT")
+                .list<Map<String, Any?>>()
+
+        assertEquals(1, results.size)
+        assertEquals("été string", results[0]["stringValue"])
+        assertEquals(9, results[0]["intPrimitive"])
+        assertNull(results[0]["longValue"])
+        assertEquals('Z', results[0]["charValue"])
+    }
+}
@@ -0,0 +1,133 @@
+package database.stream
+
+import com.onyx.persistence.query.*
+import com.onyx.persistence.stream.QuerySubscriber
+import com.onyx.persistence.stream.QuerySubscription
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class QueryPublisherTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    /**
+     * Subscriber recording the signals it receives
+     */
+    private class RecordingSubscriber(private val initialRequest: Long, private val requestOnNext: Long = 0) : QuerySubscriber<PlannerIndexEntity> {
+        lateinit var subscription: QuerySubscription
+        val items = ArrayList<PlannerIndexEntity>()
+        var isComplete = false
+        var error: Throwable? = null
+
+        override fun onSubscribe(subscription: QuerySubscription) {
+            this.subscription = subscription
+            if (initialRequest != 0L)
+                subscription.request(initialRequest)
+        }
+
+        override fun onNext(item: PlannerIndexEntity) {
+            items.add(item)
+            if (requestOnNext > 0)
+                subscription.request(requestOnNext)
+        }
+
+        override fun onError(throwable: Throwable) {
+            error = throwable
+        }
+
+        override fun onComplete() {
+            isComplete = true
+        }
+    }
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+
+        manager.saveEntities((0 until 120).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID" + (1000 + it)
+            entity.category = it % 10
+            entity.code = "C" + (1000 + it)
+            entity.note = "N" + (it % 3)
+            entity
+        })
+    }
+
+    @Test
+    fun testBackpressure() {
+        val subscriber = RecordingSubscriber(10)
+        manager.from(PlannerIndexEntity::class).where("note" eq "N1").publish<PlannerIndexEntity>().subscribe(subscriber)
+
+        assertEquals(10, subscriber.items.size, "Only the requested results should be sent")
+        assertFalse(subscriber.isComplete)
+
+        subscriber.subscription.request(5)
+        assertEquals(15, subscriber.items.size, "Requests should be additive")
+
+        subscriber.subscription.request(Long.MAX_VALUE)
+        assertEquals(40, subscriber.items.size, "Every result should be sent")
+        assertTrue(subscriber.isComplete, "Publisher should complete once the results are exhausted")
+        assertTrue(subscriber.items.all { it.note == "N1" })
+    }
+
+    @Test
+    fun testRequestWithinOnNext() {
+        val subscriber = RecordingSubscriber(1, 1)
+        manager.from(PlannerIndexEntity::class).orderBy("code".desc()).publish<PlannerIndexEntity>().subscribe(subscriber)
+
+        assertEquals((0 until 120).map { "C" + (1119 - it) }, subscriber.items.map { it.code }, "Results should be sent in sort order")
+        assertTrue(subscriber.isComplete)
+    }
+
+    @Test
+    fun testCancel() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.GREATER_THAN, 2))
+        val subscriber = RecordingSubscriber(3)
+        manager.publish<PlannerIndexEntity>(query).subscribe(subscriber)
+
+        subscriber.subscription.cancel()
+        subscriber.subscription.request(10)
+
+        assertEquals(3, subscriber.items.size, "No results should be sent after cancelling")
+        assertFalse(subscriber.isComplete)
+        assertFalse(query.isTerminated, "Cancelling should not terminate the query of the caller")
+    }
+
+    @Test
+    fun testCancelDoesNotAffectOtherSubscriptions() {
+        val publisher = manager.from(PlannerIndexEntity::class).where("category" gt 2).publish<PlannerIndexEntity>()
+        val cancelled = RecordingSubscriber(3)
+        val active = RecordingSubscriber(3)
+        publisher.subscribe(cancelled)
+        publisher.subscribe(active)
+
+        cancelled.subscription.cancel()
+        active.subscription.request(Long.MAX_VALUE)
+        assertEquals(84, active.items.size, "An active subscription should continue after another is cancelled")
+        assertTrue(active.isComplete)
+
+        val later = RecordingSubscriber(Long.MAX_VALUE)
+        publisher.subscribe(later)
+        assertEquals(84, later.items.size, "A later subscription should execute the query again")
+        assertTrue(later.isComplete)
+    }
+
+    @Test
+    fun testInvalidRequest() {
+        val subscriber = RecordingSubscriber(0)
+        manager.from(PlannerIndexEntity::class).publish<PlannerIndexEntity>().subscribe(subscriber)
+        subscriber.subscription.request(0)
+
+        assertNotNull(subscriber.error, "Requesting no results is a protocol violation")
+        assertTrue(subscriber.items.isEmpty())
+    }
+}
@@ -0,0 +1,96 @@
+package database.stream
+
+import com.onyx.persistence.query.*
+import com.onyx.persistence.stream.QueryPageIterator
+import com.onyx.persistence.stream.QueryResultIterator
+import database.base.DatabaseBaseTest
+import entities.index.PlannerIndexEntity
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.util.stream.Collectors
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+@RunWith(Parameterized::class)
+class QueryResultStreamTest(override var factoryClass: KClass<*>) : DatabaseBaseTest(factoryClass) {
+
+    @Before
+    fun seedData() {
+        manager.executeDelete(Query(PlannerIndexEntity::class.java))
+
+        manager.saveEntities((0 until 250).map {
+            val entity = PlannerIndexEntity()
+            entity.identifier = "ID" + (1000 + it)
+            entity.category = it % 10
+            entity.code = "C" + (1000 + (it * 37) % 250)
+            entity.note = "N" + (it % 7)
+            entity
+        })
+    }
+
+    @Test
+    fun testStreamScannedResults() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.EQUAL, "N3"))
+        val expected = manager.executeQuery<PlannerIndexEntity>(query).map { it.identifier }.toSet()
+
+        val streamed = manager.stream<PlannerIndexEntity>(Query(PlannerIndexEntity::class.java, QueryCriteria("note", QueryCriteriaOperator.EQUAL, "N3")))
+                .map { it.identifier }
+                .collect(Collectors.toList())
+
+        assertEquals(expected.size, streamed.size, "Streamed results should not repeat")
+        assertEquals(expected, streamed.toSet(), "Streamed results do not match the query results")
+    }
+
+    @Test
+    fun testStreamSortedResults() {
+        val expected = manager.from(PlannerIndexEntity::class).where("category" lt 5).orderBy("code".desc()).list<PlannerIndexEntity>().map { it.identifier }
+        val streamed = manager.from(PlannerIndexEntity::class).where("category" lt 5).orderBy("code".desc()).stream<PlannerIndexEntity>()
+                .map { it.identifier }
+                .collect(Collectors.toList())
+
+        assertEquals(expected, streamed, "Streamed results are not in sort order")
+    }
+
+    @Test
+    fun testSequenceRowLimitations() {
+        val sequenced = manager.from(PlannerIndexEntity::class).where("note" neq "N1").first(20).limit(30).sequence<PlannerIndexEntity, List<PlannerIndexEntity>> { it.toList() }
+
+        assertEquals(30, sequenced.size, "Sequence should be limited to max results")
+        assertEquals(30, sequenced.map { it.identifier }.toSet().size, "Sequence should not repeat results")
+        assertTrue(sequenced.none { it.note == "N1" }, "Sequence contains results not matching the criteria")
+    }
+
+    @Test
+    fun testSequenceStopsEarly() {
+        val first = manager.from(PlannerIndexEntity::class).sequence<PlannerIndexEntity, List<PlannerIndexEntity>> { it.take(5).toList() }
+        assertEquals(5, first.size, "Sequence should stop once the results are no longer consumed")
+    }
+
+    @Test
+    fun testPagedResults() {
+        val query = Query(PlannerIndexEntity::class.java, QueryCriteria("category", QueryCriteriaOperator.NOT_EQUAL, 4))
+        query.queryOrders = listOf(QueryOrder("note"))
+
+        val expected = manager.from(PlannerIndexEntity::class).where("category" neq 4).orderBy("note".asc(), "identifier".asc()).list<PlannerIndexEntity>().map { it.identifier }
+        val paged = QueryPageIterator<PlannerIndexEntity>(manager, query, 16).asSequence().map { it.identifier }.toList()
+
+        assertEquals(expected, paged, "Pages do not match the sorted results")
+        assertEquals(null, query.after, "The query should not be modified")
+    }
+
+    @Test
+    fun testIteratorReleasesOnce() {
+        var released = 0
+        val iterator = QueryResultIterator<Int>(listOf(1, null, 2).iterator(), release = { released++ })
+
+        assertEquals(listOf(1, 2), iterator.asSequence().toList(), "Null results should be skipped")
+        iterator.close()
+
+        assertEquals(1, released, "Resources should be released once")
+        assertFalse(iterator.hasNext())
+    }
+}
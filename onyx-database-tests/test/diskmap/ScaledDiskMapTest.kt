@@ -1,7 +1,9 @@
 package diskmap
 
+import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.impl.DefaultDiskMapFactory
 import com.onyx.diskmap.store.StoreType
+import com.onyx.extension.common.parallelMap
 import database.base.DatabaseBaseTest
 import org.junit.BeforeClass
 import org.junit.FixMethodOrder
@@ -14,6 +16,7 @@ import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertNull
+import kotlin.test.assertTrue
 
 /**
  * Created by Tim Osborn on 1/6/17.
@@ -205,4 +208,50 @@ class ScaledDiskMapTest {
         assertEquals(skipList.size, numberOfValues.get())
     }
 
+    @Test
+    fun testSortedReferences() {
+        val builder = DefaultDiskMapFactory(TEST_SCALED_DATABASE)
+
+        // Load factors below 5 use a hash map and the rest use a hash matrix
+        listOf(1, 10).forEach { loadFactor ->
+            val map = builder.getHashMap<DiskMap<Int, Int>>("sorted$loadFactor", loadFactor)
+            val keys = HashSet<Int>()
+            for (i in 0..4999) {
+                val randomNum = ThreadLocalRandom.current().nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE)
+                map.put(randomNum, randomNum)
+                keys.add(randomNum)
+            }
+            keys.filterIndexed { index, _ -> index % 10 == 0 }.forEach {
+                map.remove(it)
+                keys.remove(it)
+            }
+
+            assertEquals(keys.sorted(), map.sortedReferences(true).asSequence().map { map.getWithRecID(it) }.toList(), "Keys are not in ascending order")
+            assertEquals(keys.sortedDescending(), map.sortedReferences(false).asSequence().map { map.getWithRecID(it) }.toList(), "Keys are not in descending order")
+        }
+    }
+
+    @Test
+    fun testEntrySegments() {
+        val builder = DefaultDiskMapFactory(TEST_SCALED_DATABASE)
+
+        listOf(1, 10).forEach { loadFactor ->
+            val map = builder.getHashMap<DiskMap<Int, Int>>("segments$loadFactor", loadFactor)
+            val keyValues = HashMap<Int, Int>()
+            for (i in 0..4999) {
+                val randomNum = ThreadLocalRandom.current().nextInt(Integer.MIN_VALUE, Integer.MAX_VALUE)
+                map.put(randomNum, i)
+                keyValues.put(randomNum, i)
+            }
+
+            val segments = map.entrySegments()
+            assertTrue(segments.size > 1, "Expected the hash table to be split into multiple segments")
+
+            // Iterate the segments concurrently and ensure every entry is found exactly once
+            val found = segments.parallelMap { segment -> segment.map { Pair(it.key, it.value) } }.flatten()
+            assertEquals(keyValues.size, found.size, "Segments should not overlap")
+            assertEquals<Map<*, *>>(keyValues, found.toMap(), "Segments are missing entries")
+        }
+    }
+
 }
@@ -0,0 +1,56 @@
+package serialization
+
+import com.onyx.buffer.BufferPool
+import com.onyx.buffer.BufferStream
+import com.onyx.interactors.query.data.SelectionRow
+import com.onyx.interactors.query.data.SelectionSchema
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+/**
+ * Verifies selection rows behave as maps and share their schema when serialized
+ */
+class SelectionRowTest {
+
+    private fun rows(): List<SelectionRow> {
+        val schema = SelectionSchema(listOf("name", "age", "max(score)"))
+        return (0 until 100).map { SelectionRow(schema, arrayOf<Any?>("Name $it", it, if (it % 2 == 0) null else it * 1.5)) }
+    }
+
+    @Test
+    fun testMapSemantics() {
+        val row = rows()[3]
+        val expected = hashMapOf<String, Any?>("name" to "Name 3", "age" to 3, "max(score)" to 4.5)
+
+        assertEquals<Map<String, Any?>>(expected, row)
+        assertEquals(expected.hashCode(), row.hashCode())
+        assertEquals(listOf("name", "age", "max(score)"), row.keys.toList(), "Keys should be in selection order")
+        assertTrue(row.containsKey("age"))
+        assertFalse(row.containsKey("missing"))
+        assertNull(row["missing"])
+        assertEquals(2, setOf(rows()[3], expected, rows()[5]).size, "Equal rows should be distinct")
+    }
+
+    @Test
+    fun testSerializedRowsShareSchema() {
+        val rows = rows()
+        val maps = rows.map { HashMap(it) }
+
+        val rowBuffer = BufferStream.toBuffer(ArrayList(rows))
+        val mapBuffer = BufferStream.toBuffer(ArrayList(maps))
+        val rowSize = rowBuffer.limit()
+        val mapSize = mapBuffer.limit()
+
+        @Suppress("UNCHECKED_CAST")
+        val read = BufferStream.fromBuffer(rowBuffer) as List<SelectionRow>
+        BufferPool.recycle(mapBuffer)
+
+        assertEquals<List<Map<String, Any?>>>(maps, read)
+        assertSame(read[0].schema, read[99].schema, "Rows read from a buffer should share their schema")
+        assertTrue(rowSize * 3 < mapSize * 2, "Rows ($rowSize bytes) should be far smaller than maps ($mapSize bytes)")
+    }
+}
@@ -60,33 +60,55 @@ enum class BufferObjectType constructor(private val type: Class<*>?) {
 
     companion object {
 
+        /**
+         * All object types indexed by ordinal.  This avoids copying the values every time a type is read.
+         *
+         * @since 2.2.0
+         */
+        @JvmField
+        val types: Array<BufferObjectType> = values()
+
+        /**
+         * Object type of each class.  Resolving a type scans the object types so it is only done once per class.
+         */
+        private val classTypes = object : ClassValue<BufferObjectType>() {
+            override fun computeValue(type: Class<*>): BufferObjectType = when {
+                type.isEnum -> ENUM
+                else -> types.firstOrNull { it.type != null && it.type.isAssignableFrom(type) }
+                        ?.let {
+                            if (it == BufferObjectType.OBJECT_ARRAY && type != Array<Any>::class.java) {
+                                OTHER_ARRAY
+                            } else it
+                        }
+                        ?: BufferObjectType.OTHER
+            }
+        }
+
         /**
          * Get Object type for the class
          *
          * @param `value` Object in Question
          * @return The serializer type that correlates to that class.
+         * @since 2.2.0 Types are cached per class
          */
         fun getTypeCodeForClass(value: Any?, context: SchemaContext?): BufferObjectType {
 
             if (value == null)
                 return NULL
 
-            val type = value.javaClass
-
-            if (type.isEnum)
-                return ENUM
-
-            else if (value is IManagedEntity && context == null)
+            else if (value is IManagedEntity && context == null && !value.javaClass.isEnum)
                 return BufferObjectType.OTHER
 
-            return BufferObjectType.values()
-                    .firstOrNull { it.type != null && it.type.isAssignableFrom(type) }
-                    ?.let {
-                        if (it == BufferObjectType.OBJECT_ARRAY && type != Array<Any>::class.java) {
-                            OTHER_ARRAY
-                        } else it
-                    }
-                    ?: BufferObjectType.OTHER
+            return classTypes.get(value.javaClass)
         }
+
+        /**
+         * Get Object type for values of a class
+         *
+         * @param type Class of the values
+         * @return The serializer type that correlates to that class.
+         * @since 2.2.0
+         */
+        fun getTypeCodeForClass(type: Class<*>): BufferObjectType = classTypes.get(type)
     }
 }
@@ -284,30 +284,54 @@ class BufferStream(buffer: ByteBuffer) {
         @Throws(BufferingException::class)
         get() {
             expandableByteBuffer!!.ensureRequiredSize(java.lang.Byte.BYTES)
-            val bufferObjectType = BufferObjectType.values()[expandableByteBuffer!!.buffer.get().toInt()]
+            return getValue(BufferObjectType.types[expandableByteBuffer!!.buffer.get().toInt()])
+        }
 
-            when (bufferObjectType) {
-                BufferObjectType.NULL -> return null
-                BufferObjectType.REFERENCE -> return referenceOf(short.toInt())
-                BufferObjectType.ENUM -> return enum
-                BufferObjectType.BYTE, BufferObjectType.MUTABLE_BYTE -> return byte
-                BufferObjectType.INT, BufferObjectType.MUTABLE_INT -> return int
-                BufferObjectType.LONG, BufferObjectType.MUTABLE_LONG -> return long
-                BufferObjectType.SHORT, BufferObjectType.MUTABLE_SHORT -> return short
-                BufferObjectType.FLOAT, BufferObjectType.MUTABLE_FLOAT -> return float
-                BufferObjectType.DOUBLE, BufferObjectType.MUTABLE_DOUBLE -> return double
-                BufferObjectType.BOOLEAN, BufferObjectType.MUTABLE_BOOLEAN -> return boolean
-                BufferObjectType.CHAR, BufferObjectType.MUTABLE_CHAR -> return char
-                BufferObjectType.BYTE_ARRAY, BufferObjectType.INT_ARRAY, BufferObjectType.LONG_ARRAY, BufferObjectType.SHORT_ARRAY, BufferObjectType.FLOAT_ARRAY, BufferObjectType.DOUBLE_ARRAY, BufferObjectType.BOOLEAN_ARRAY, BufferObjectType.CHAR_ARRAY, BufferObjectType.OBJECT_ARRAY, BufferObjectType.OTHER_ARRAY -> return getArray(bufferObjectType)
-                BufferObjectType.BUFFERED -> return buffered
-                BufferObjectType.DATE -> return date
-                BufferObjectType.STRING -> return string
-                BufferObjectType.CLASS -> return objectClass
-                BufferObjectType.COLLECTION -> return collection
-                BufferObjectType.MAP -> return map
-                BufferObjectType.OTHER -> return other
-            }
+    /**
+     * Get the type of the next value.  The type must be followed by reading the value using [getValue].
+     *
+     * @return Type of the next value
+     * @since 2.2.0
+     */
+    val valueType: BufferObjectType
+        @Throws(BufferingException::class)
+        get() {
+            expandableByteBuffer!!.ensureRequiredSize(java.lang.Byte.BYTES)
+            return BufferObjectType.types[expandableByteBuffer!!.buffer.get().toInt()]
+        }
+
+    /**
+     * Get a value whose type has already been read from the buffer
+     *
+     * @param bufferObjectType Type of the value
+     * @return Object read from the buffer
+     * @throws BufferingException Generic Buffer Exception
+     * @since 2.2.0
+     */
+    @Throws(BufferingException::class)
+    fun getValue(bufferObjectType: BufferObjectType): Any? {
+        when (bufferObjectType) {
+            BufferObjectType.NULL -> return null
+            BufferObjectType.REFERENCE -> return referenceOf(short.toInt())
+            BufferObjectType.ENUM -> return enum
+            BufferObjectType.BYTE, BufferObjectType.MUTABLE_BYTE -> return byte
+            BufferObjectType.INT, BufferObjectType.MUTABLE_INT -> return int
+            BufferObjectType.LONG, BufferObjectType.MUTABLE_LONG -> return long
+            BufferObjectType.SHORT, BufferObjectType.MUTABLE_SHORT -> return short
+            BufferObjectType.FLOAT, BufferObjectType.MUTABLE_FLOAT -> return float
+            BufferObjectType.DOUBLE, BufferObjectType.MUTABLE_DOUBLE -> return double
+            BufferObjectType.BOOLEAN, BufferObjectType.MUTABLE_BOOLEAN -> return boolean
+            BufferObjectType.CHAR, BufferObjectType.MUTABLE_CHAR -> return char
+            BufferObjectType.BYTE_ARRAY, BufferObjectType.INT_ARRAY, BufferObjectType.LONG_ARRAY, BufferObjectType.SHORT_ARRAY, BufferObjectType.FLOAT_ARRAY, BufferObjectType.DOUBLE_ARRAY, BufferObjectType.BOOLEAN_ARRAY, BufferObjectType.CHAR_ARRAY, BufferObjectType.OBJECT_ARRAY, BufferObjectType.OTHER_ARRAY -> return getArray(bufferObjectType)
+            BufferObjectType.BUFFERED -> return buffered
+            BufferObjectType.DATE -> return date
+            BufferObjectType.STRING -> return string
+            BufferObjectType.CLASS -> return objectClass
+            BufferObjectType.COLLECTION -> return collection
+            BufferObjectType.MAP -> return map
+            BufferObjectType.OTHER -> return other
         }
+    }
 
     /**
      * Get value from the buffer that is not a pre defined value.  This will iterate through the fields and
@@ -390,6 +414,43 @@ class BufferStream(buffer: ByteBuffer) {
             return String(stringBytes)
         }
 
+    /**
+     * Get an unsigned variable length int from the buffer.  Each byte holds 7 bits of the value and the high bit
+     * indicates another byte follows.
+     *
+     * @since 2.2.0
+     * @return int read from the buffer
+     * @throws BufferingException Generic Buffer Exception
+     */
+    val varInt: Int
+        @Throws(BufferingException::class)
+        get() {
+            var result = 0
+            var shift = 0
+            var next: Int
+            do {
+                next = expandableByteBuffer!!.buffer.get().toInt()
+                result = result or ((next and 0x7F) shl shift)
+                shift += 7
+            } while (next and 0x80 != 0)
+            return result
+        }
+
+    /**
+     * Get string from the buffer that was written with a variable length size
+     *
+     * @since  2.2.0
+     * @return string read from the buffer
+     * @throws BufferingException Generic Buffer Exception
+     */
+    val varString: String
+        @Throws(BufferingException::class)
+        get() {
+            val stringBytes = ByteArray(varInt)
+            expandableByteBuffer!!.buffer.get(stringBytes)
+            return String(stringBytes)
+        }
+
     /**
      * Get Date from the buffer.  This uses the epoch timestamp
      *
@@ -715,6 +776,42 @@ class BufferStream(buffer: ByteBuffer) {
         expandableByteBuffer!!.buffer.put(stringBytes)
     }
 
+    /**
+     * Put an unsigned variable length int to the buffer.  Small values such as string sizes take a single byte.
+     *
+     * @since 2.2.0
+     * @param value int to write
+     *
+     * @throws BufferingException Generic Buffer Exception
+     */
+    @Throws(BufferingException::class)
+    fun putVarInt(value: Int) {
+        var remaining = value
+        expandableByteBuffer!!.ensureSize(5)
+        while (remaining and 0x7F.inv() != 0) {
+            expandableByteBuffer!!.buffer.put(((remaining and 0x7F) or 0x80).toByte())
+            remaining = remaining ushr 7
+        }
+        expandableByteBuffer!!.buffer.put(remaining.toByte())
+    }
+
+    /**
+     * Put a String to the buffer with a variable length size rather than a fixed int
+     *
+     * @since 2.2.0
+     * @param value String to write
+     *
+     * @throws BufferingException Generic Buffer Exception
+     */
+    @Throws(BufferingException::class)
+    fun putVarString(value: String) {
+        val stringBytes = value.toByteArray()
+
+        putVarInt(stringBytes.size)
+        expandableByteBuffer!!.ensureSize(stringBytes.size)
+        expandableByteBuffer!!.buffer.put(stringBytes)
+    }
+
     /**
      * Put an Date to the buffer.  This stores as an epoch timestamp
      *
@@ -922,7 +1019,7 @@ class BufferStream(buffer: ByteBuffer) {
      * @throws BufferingException Generic Buffer Exception
      */
     @Throws(BufferingException::class)
-    private fun putFloat(value: Float) {
+    fun putFloat(value: Float) {
         expandableByteBuffer!!.ensureSize(java.lang.Float.BYTES)
         expandableByteBuffer!!.buffer.putFloat(value)
     }
@@ -936,7 +1033,7 @@ class BufferStream(buffer: ByteBuffer) {
      * @throws BufferingException Generic Buffer Exception
      */
     @Throws(BufferingException::class)
-    private fun putDouble(value: Double) {
+    fun putDouble(value: Double) {
         expandableByteBuffer!!.ensureSize(java.lang.Double.BYTES)
         expandableByteBuffer!!.buffer.putDouble(value)
     }
@@ -964,7 +1061,7 @@ class BufferStream(buffer: ByteBuffer) {
      * @throws BufferingException Generic Buffer Exception
      */
     @Throws(BufferingException::class)
-    private fun putChar(value: Char) {
+    fun putChar(value: Char) {
         expandableByteBuffer!!.ensureSize(Character.BYTES)
         expandableByteBuffer!!.buffer.putChar(value)
     }
@@ -1043,15 +1140,86 @@ class BufferStream(buffer: ByteBuffer) {
     fun toMap(context: SchemaContext): Map<String, Any?> {
         val results = HashMap<String, Any?>()
 
+        this.context = context // Nested entities must be read using the schema
         byte  // Read the buffer value metadata
         value // Read the entity type
-        val systemEntity = context.getSystemEntityById(int)!!
+        val header = int
+        val systemEntity = context.getSystemEntityById(RecordFormat.systemEntityId(header))!!
+
+        if (RecordFormat.isCompact(header))
+            return systemEntity.recordFormat().toMap(this)!!
 
         for ((name) in systemEntity.attributes) results.put(name, value)
 
         return results
     }
 
+    /**
+     * Converts only the requested attributes of a ManagedEntity buffer to a key value structure.  Attributes are
+     * stored in order so reading stops once the last requested attribute has been read.  The entity is never
+     * instantiated.
+     *
+     * @param context Schema context
+     * @param attributes Names of the attributes to read
+     * @return Map of the requested attributes or null if the record was written without one of them
+     * @since 2.2.0
+     */
+    fun toMap(context: SchemaContext, attributes: Set<String>): Map<String, Any?>? {
+        this.context = context // Nested entities must be read using the schema
+        byte  // Read the buffer value metadata
+        value // Read the entity type
+        val header = int
+        val systemEntity = context.getSystemEntityById(RecordFormat.systemEntityId(header))!!
+
+        if (RecordFormat.isCompact(header))
+            return systemEntity.recordFormat().toMap(this, attributes)
+
+        val results = HashMap<String, Any?>()
+        var remaining = attributes.size
+        for ((name) in systemEntity.attributes) {
+            if (remaining == 0)
+                break
+            val attributeValue = value
+            if (attributes.contains(name)) {
+                results.put(name, attributeValue)
+                remaining--
+            }
+        }
+
+        return if (remaining == 0) results else null
+    }
+
+    /**
+     * Read the attributes held by reusable record values from a ManagedEntity buffer.  The entity is never
+     * instantiated and compact records are read without boxing integral and decimal values.
+     *
+     * @param context Schema context
+     * @param values Values to read into.  They must be reset beforehand.
+     * @return Whether the record contains all of the attributes
+     * @since 2.2.0
+     */
+    fun toMap(context: SchemaContext, values: RecordValues): Boolean {
+        this.context = context // Nested entities must be read using the schema
+        byte  // Read the buffer value metadata
+        value // Read the entity type
+        val header = int
+        val systemEntity = context.getSystemEntityById(RecordFormat.systemEntityId(header))!!
+
+        if (RecordFormat.isCompact(header))
+            return systemEntity.recordFormat().read(this, values)
+
+        for ((name) in systemEntity.attributes) {
+            if (values.isComplete)
+                break
+            val attributeValue = value
+            val slot = values.indexOf(name)
+            if (slot >= 0)
+                values.setObject(slot, attributeValue)
+        }
+
+        return values.isComplete
+    }
+
     companion object {
 
         /**
@@ -0,0 +1,209 @@
+package com.onyx.buffer
+
+import com.onyx.entity.SystemEntity
+import com.onyx.exception.BufferingException
+import com.onyx.extension.common.ClassMetadata
+import com.onyx.extension.common.catchAll
+import com.onyx.extension.common.setAny
+import com.onyx.persistence.IManagedEntity
+import java.lang.reflect.Field
+
+/**
+ * Serializes the attributes of a managed entity in the order of a system entity version.  The field and format of
+ * each attribute are resolved once so writing and reading an entity does not look up attributes by name or resolve
+ * the type of each value.  Entities are written using the compact [RecordFormat].  Records written before it, with
+ * a type tag for each value, can still be read using [readTagged].
+ *
+ * @param systemEntity Version of the entity's attributes
+ * @param type Entity class
+ *
+ * @since 2.2.0
+ */
+class EntitySerializer(systemEntity: SystemEntity, val type: Class<*>) {
+
+    private val format = systemEntity.recordFormat()
+    private val attributes: Array<AttributeSerializer>
+
+    init {
+        // Fields are listed from the class to its super classes so the first field of a name is the one that shadows the others
+        val fields = HashMap<String, Field>()
+        ClassMetadata.fields(type).forEach { fields.putIfAbsent(it.name, it) }
+        attributes = systemEntity.attributes.mapIndexed { index, attribute -> serializerFor(fields[attribute.name], format.formats[index]) }.toTypedArray()
+    }
+
+    /**
+     * Write the attributes of an entity as a compact record.  The record header must already be written.
+     *
+     * @param entity Entity to write
+     * @param buffer Buffer to write to
+     */
+    @Throws(BufferingException::class)
+    fun write(entity: IManagedEntity, buffer: BufferStream) {
+        val bitmap = format.reserveNullBitmap(buffer)
+        var nulls = 0
+        for (i in attributes.indices) {
+            if (!attributes[i].write(entity, buffer))
+                nulls = nulls or (1 shl (i and 7))
+            if (i and 7 == 7 || i == attributes.size - 1) {
+                if (nulls != 0)
+                    format.setNulls(buffer, bitmap, i, nulls)
+                nulls = 0
+            }
+        }
+    }
+
+    /**
+     * Read the attributes of an entity from a compact record
+     *
+     * @param entity Entity to populate
+     * @param buffer Buffer positioned after the record header
+     */
+    @Throws(BufferingException::class)
+    fun read(entity: IManagedEntity, buffer: BufferStream) {
+        val bitmap = format.skipNullBitmap(buffer)
+        for (i in attributes.indices) {
+            if (format.isNull(buffer, bitmap, i))
+                attributes[i].readNull(entity)
+            else
+                attributes[i].read(entity, buffer)
+        }
+    }
+
+    /**
+     * Read the attributes of an entity from a record with a type tag for each value
+     *
+     * @param entity Entity to populate
+     * @param buffer Buffer positioned after the record header
+     */
+    @Throws(BufferingException::class)
+    fun readTagged(entity: IManagedEntity, buffer: BufferStream) = attributes.forEach { it.readTagged(entity, buffer) }
+
+    /**
+     * Choose how to serialize an attribute based on the type of its field
+     *
+     * @param field Field of the attribute or null if the entity no longer declares it
+     * @param format Format of the attribute in the system entity version
+     */
+    private fun serializerFor(field: Field?, format: ValueFormat): AttributeSerializer = when {
+        field == null -> MissingAttributeSerializer(format)
+        field.type.isPrimitive && format == formatOfPrimitive(field.type) -> PrimitiveAttributeSerializer(field, format)
+        else -> ObjectAttributeSerializer(field, format)
+    }
+
+    /**
+     * Format a primitive field is written in
+     */
+    private fun formatOfPrimitive(type: Class<*>): ValueFormat? = when (type) {
+        Byte::class.javaPrimitiveType -> ValueFormat.BYTE
+        Short::class.javaPrimitiveType -> ValueFormat.SHORT
+        Int::class.javaPrimitiveType -> ValueFormat.INT
+        Long::class.javaPrimitiveType -> ValueFormat.LONG
+        Float::class.javaPrimitiveType -> ValueFormat.FLOAT
+        Double::class.javaPrimitiveType -> ValueFormat.DOUBLE
+        Boolean::class.javaPrimitiveType -> ValueFormat.BOOLEAN
+        Char::class.javaPrimitiveType -> ValueFormat.CHAR
+        else -> null
+    }
+
+    /**
+     * Writes and reads a single attribute
+     */
+    private interface AttributeSerializer {
+
+        /**
+         * Write the value of the attribute
+         *
+         * @return false if the value is null and nothing was written
+         */
+        fun write(entity: IManagedEntity, buffer: BufferStream): Boolean
+
+        fun read(entity: IManagedEntity, buffer: BufferStream)
+        fun readNull(entity: IManagedEntity)
+        fun readTagged(entity: IManagedEntity, buffer: BufferStream)
+    }
+
+    /**
+     * Attribute of the system entity that is no longer a field of the entity.  It is written as null and values
+     * written by another version are skipped.
+     */
+    private class MissingAttributeSerializer(private val format: ValueFormat) : AttributeSerializer {
+        override fun write(entity: IManagedEntity, buffer: BufferStream) = false
+        override fun read(entity: IManagedEntity, buffer: BufferStream) { format.read(buffer) }
+        override fun readNull(entity: IManagedEntity) = Unit
+        override fun readTagged(entity: IManagedEntity, buffer: BufferStream) { catchAll { buffer.value } }
+    }
+
+    /**
+     * Attribute whose field holds an object.  If the field's type has changed since the record was written, the value
+     * is cast to the field type.
+     */
+    private class ObjectAttributeSerializer(private val field: Field, private val format: ValueFormat) : AttributeSerializer {
+
+        override fun write(entity: IManagedEntity, buffer: BufferStream): Boolean {
+            val value = field.get(entity) ?: return false
+            format.write(buffer, value)
+            return true
+        }
+
+        override fun read(entity: IManagedEntity, buffer: BufferStream) { entity.setAny(field, format.read(buffer)) }
+        override fun readNull(entity: IManagedEntity) { entity.setAny(field, null) }
+        override fun readTagged(entity: IManagedEntity, buffer: BufferStream) { catchAll { entity.setAny(field, buffer.value) } }
+    }
+
+    /**
+     * Attribute whose primitive field has the same type it was written with.  Values are accessed without boxing.
+     */
+    private class PrimitiveAttributeSerializer(private val field: Field, private val format: ValueFormat) : AttributeSerializer {
+
+        // Type tag boxed values of the field were written with
+        private val tag = when (format) {
+            ValueFormat.BYTE -> BufferObjectType.MUTABLE_BYTE
+            ValueFormat.SHORT -> BufferObjectType.MUTABLE_SHORT
+            ValueFormat.INT -> BufferObjectType.MUTABLE_INT
+            ValueFormat.LONG -> BufferObjectType.MUTABLE_LONG
+            ValueFormat.FLOAT -> BufferObjectType.MUTABLE_FLOAT
+            ValueFormat.DOUBLE -> BufferObjectType.MUTABLE_DOUBLE
+            ValueFormat.BOOLEAN -> BufferObjectType.MUTABLE_BOOLEAN
+            else -> BufferObjectType.MUTABLE_CHAR
+        }
+
+        override fun write(entity: IManagedEntity, buffer: BufferStream): Boolean {
+            when (format) {
+                ValueFormat.BYTE -> buffer.putByte(field.getByte(entity))
+                ValueFormat.SHORT -> buffer.putShort(field.getShort(entity))
+                ValueFormat.INT -> buffer.putInt(field.getInt(entity))
+                ValueFormat.LONG -> buffer.putLong(field.getLong(entity))
+                ValueFormat.FLOAT -> buffer.putFloat(field.getFloat(entity))
+                ValueFormat.DOUBLE -> buffer.putDouble(field.getDouble(entity))
+                ValueFormat.BOOLEAN -> buffer.putBoolean(field.getBoolean(entity))
+                else -> buffer.putChar(field.getChar(entity))
+            }
+            return true
+        }
+
+        override fun read(entity: IManagedEntity, buffer: BufferStream) {
+            when (format) {
+                ValueFormat.BYTE -> field.setByte(entity, buffer.byte)
+                ValueFormat.SHORT -> field.setShort(entity, buffer.short)
+                ValueFormat.INT -> field.setInt(entity, buffer.int)
+                ValueFormat.LONG -> field.setLong(entity, buffer.long)
+                ValueFormat.FLOAT -> field.setFloat(entity, buffer.float)
+                ValueFormat.DOUBLE -> field.setDouble(entity, buffer.double)
+                ValueFormat.BOOLEAN -> field.setBoolean(entity, buffer.boolean)
+                else -> field.setChar(entity, buffer.char)
+            }
+        }
+
+        override fun readNull(entity: IManagedEntity) = Unit
+
+        override fun readTagged(entity: IManagedEntity, buffer: BufferStream) {
+            catchAll {
+                val valueType = buffer.valueType
+                if (valueType === tag)
+                    read(entity, buffer)
+                else
+                    entity.setAny(field, buffer.getValue(valueType))
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.onyx.buffer
+
+import com.onyx.entity.SystemAttribute
+import com.onyx.entity.SystemEntity
+import com.onyx.exception.BufferingException
+import java.util.Date
+
+/**
+ * Layout of a compact entity record for a version of a system entity.  Since the attribute types are known from the
+ * schema, a compact record does not need type tags for them.
+ *
+ * A record starts with the inverted system entity id so it can be told apart from a tagged record, which starts
+ * with the id itself.  It is followed by a bitmap with a bit set for each null attribute and then the non null
+ * values in attribute order.  Primitives, boxed primitives and dates are written at their fixed width and strings
+ * with a variable length size.  Any other value is written with [BufferStream.putObject].
+ *
+ * @param systemEntity Version of the entity's attributes
+ *
+ * @since 2.2.0
+ */
+class RecordFormat(systemEntity: SystemEntity) {
+
+    private val names = systemEntity.attributes.map { it.name }.toTypedArray()
+
+    /**
+     * Format of each attribute's value in attribute order
+     */
+    val formats = systemEntity.attributes.map { ValueFormat.of(it) }.toTypedArray()
+
+    private val bitmapSize = (formats.size + 7) / 8
+
+    /**
+     * Write an empty null bitmap.  Bits are set using [setNulls] once the values are written.
+     *
+     * @param buffer Buffer to write to
+     * @return Position of the bitmap
+     */
+    @Throws(BufferingException::class)
+    fun reserveNullBitmap(buffer: BufferStream): Int {
+        val position = buffer.byteBuffer.position()
+        for (i in 0 until bitmapSize)
+            buffer.putByte(0)
+        return position
+    }
+
+    /**
+     * Set the null bits of 8 attributes
+     *
+     * @param buffer Buffer the record is written to
+     * @param bitmap Position of the bitmap
+     * @param index Index of any of the 8 attributes
+     * @param bits Null bits of the 8 attributes
+     */
+    fun setNulls(buffer: BufferStream, bitmap: Int, index: Int, bits: Int) {
+        buffer.byteBuffer.put(bitmap + (index shr 3), bits.toByte())
+    }
+
+    /**
+     * Skip over the null bitmap
+     *
+     * @param buffer Buffer to read from
+     * @return Position of the bitmap
+     */
+    fun skipNullBitmap(buffer: BufferStream): Int {
+        val position = buffer.byteBuffer.position()
+        buffer.byteBuffer.position(position + bitmapSize)
+        return position
+    }
+
+    /**
+     * Whether an attribute was null when the record was written
+     *
+     * @param buffer Buffer to read from
+     * @param bitmap Position of the bitmap
+     * @param index Attribute index
+     */
+    fun isNull(buffer: BufferStream, bitmap: Int, index: Int): Boolean =
+            buffer.byteBuffer.get(bitmap + (index shr 3)).toInt() and (1 shl (index and 7)) != 0
+
+    /**
+     * Read the attributes of a record without instantiating the entity.  Attributes are stored in order so reading
+     * stops once the last requested attribute has been read.
+     *
+     * @param buffer Buffer positioned after the record header
+     * @param attributes Names of the attributes to read or null for all of them
+     * @return Map of attribute values or null if the record was written without one of the requested attributes
+     */
+    @Throws(BufferingException::class)
+    fun toMap(buffer: BufferStream, attributes: Set<String>? = null): Map<String, Any?>? {
+        val bitmap = skipNullBitmap(buffer)
+        val results = HashMap<String, Any?>()
+        var remaining = attributes?.size ?: names.size
+
+        for (i in names.indices) {
+            if (remaining == 0)
+                break
+            val value = if (isNull(buffer, bitmap, i)) null else formats[i].read(buffer)
+            if (attributes == null || attributes.contains(names[i])) {
+                results.put(names[i], value)
+                remaining--
+            }
+        }
+
+        return if (remaining == 0) results else null
+    }
+
+    /**
+     * Read the attributes held by reusable record values.  Integral and decimal values are read without boxing.
+     *
+     * @param buffer Buffer positioned after the record header
+     * @param values Values to read into.  They must be reset beforehand.
+     * @return Whether the record contains all of the attributes
+     */
+    @Throws(BufferingException::class)
+    fun read(buffer: BufferStream, values: RecordValues): Boolean {
+        val bitmap = skipNullBitmap(buffer)
+        val slots = values.slots(this, names)
+
+        for (i in names.indices) {
+            if (values.isComplete)
+                break
+            val slot = slots[i]
+            when {
+                slot < 0 -> if (!isNull(buffer, bitmap, i)) formats[i].skip(buffer)
+                isNull(buffer, bitmap, i) -> values.setObject(slot, null)
+                else -> formats[i].read(buffer, values, slot)
+            }
+        }
+
+        return values.isComplete
+    }
+
+    companion object {
+
+        /**
+         * Header of a compact record written using a system entity
+         *
+         * @param systemEntity Version of the entity's attributes
+         */
+        @JvmStatic
+        fun header(systemEntity: SystemEntity): Int = systemEntity.primaryKey.inv()
+
+        /**
+         * Whether a record header indicates a compact record rather than a tagged record
+         */
+        @JvmStatic
+        fun isCompact(header: Int): Boolean = header < 0
+
+        /**
+         * System entity id of a compact or tagged record
+         */
+        @JvmStatic
+        fun systemEntityId(header: Int): Int = if (header < 0) header.inv() else header
+    }
+}
+
+/**
+ * How a single attribute value is stored in a compact record
+ *
+ * @since 2.2.0
+ */
+enum class ValueFormat {
+    BYTE {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putByte(value as Byte)
+        override fun read(buffer: BufferStream): Any? = buffer.byte
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setLong(slot, this, buffer.byte.toLong())
+    },
+    SHORT {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putShort(value as Short)
+        override fun read(buffer: BufferStream): Any? = buffer.short
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setLong(slot, this, buffer.short.toLong())
+    },
+    INT {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putInt(value as Int)
+        override fun read(buffer: BufferStream): Any? = buffer.int
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setLong(slot, this, buffer.int.toLong())
+    },
+    LONG {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putLong(value as Long)
+        override fun read(buffer: BufferStream): Any? = buffer.long
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setLong(slot, this, buffer.long)
+    },
+    FLOAT {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putFloat(value as Float)
+        override fun read(buffer: BufferStream): Any? = buffer.float
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setDouble(slot, this, buffer.float.toDouble())
+    },
+    DOUBLE {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putDouble(value as Double)
+        override fun read(buffer: BufferStream): Any? = buffer.double
+        override fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setDouble(slot, this, buffer.double)
+    },
+    BOOLEAN {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putBoolean(value as Boolean)
+        override fun read(buffer: BufferStream): Any? = buffer.boolean
+    },
+    CHAR {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putChar(value as Char)
+        override fun read(buffer: BufferStream): Any? = buffer.char
+    },
+    STRING {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putVarString(value as String)
+        override fun read(buffer: BufferStream): Any? = buffer.varString
+    },
+    DATE {
+        override fun write(buffer: BufferStream, value: Any) = buffer.putDate(value as Date)
+        override fun read(buffer: BufferStream): Any? = buffer.date
+    },
+    OBJECT {
+        override fun write(buffer: BufferStream, value: Any) { buffer.putObject(value) }
+        override fun read(buffer: BufferStream): Any? = buffer.value
+    };
+
+    /**
+     * Write a non null value
+     *
+     * @param buffer Buffer to write to
+     * @param value Value of the attribute
+     */
+    @Throws(BufferingException::class)
+    abstract fun write(buffer: BufferStream, value: Any)
+
+    /**
+     * Read a non null value
+     *
+     * @param buffer Buffer to read from
+     * @return Value of the attribute
+     */
+    @Throws(BufferingException::class)
+    abstract fun read(buffer: BufferStream): Any?
+
+    /**
+     * Read a non null value into a slot of reusable record values
+     *
+     * @param buffer Buffer to read from
+     * @param values Values to read into
+     * @param slot Slot of the attribute
+     */
+    @Throws(BufferingException::class)
+    open fun read(buffer: BufferStream, values: RecordValues, slot: Int) = values.setObject(slot, read(buffer))
+
+    /**
+     * Skip over a non null value that is not needed.  Fixed width values are skipped without being read.
+     *
+     * @param buffer Buffer to read from
+     */
+    @Throws(BufferingException::class)
+    fun skip(buffer: BufferStream) {
+        val width = when (this) {
+            BYTE, BOOLEAN -> 1
+            SHORT, CHAR -> 2
+            INT, FLOAT -> 4
+            LONG, DOUBLE, DATE -> 8
+            else -> -1
+        }
+        if (width < 0)
+            read(buffer)
+        else
+            buffer.byteBuffer.position(buffer.byteBuffer.position() + width)
+    }
+
+    companion object {
+
+        /**
+         * Format of an attribute based on its data type
+         *
+         * @param attribute Schema attribute
+         */
+        fun of(attribute: SystemAttribute): ValueFormat = if (attribute.isEnum) OBJECT else when (attribute.dataType) {
+            "byte", "java.lang.Byte" -> BYTE
+            "short", "java.lang.Short" -> SHORT
+            "int", "java.lang.Integer" -> INT
+            "long", "java.lang.Long" -> LONG
+            "float", "java.lang.Float" -> FLOAT
+            "double", "java.lang.Double" -> DOUBLE
+            "boolean", "java.lang.Boolean" -> BOOLEAN
+            "char", "java.lang.Character" -> CHAR
+            "java.lang.String" -> STRING
+            "java.util.Date" -> DATE
+            else -> OBJECT
+        }
+    }
+}
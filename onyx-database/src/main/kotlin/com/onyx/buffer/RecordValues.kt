@@ -0,0 +1,139 @@
+package com.onyx.buffer
+
+/**
+ * Reusable holder of attribute values decoded from records.  A full table scan reads the same attributes from every
+ * record so rather than building a map for each record, a worker resets and refills a single instance.  Integral and
+ * decimal values are held unboxed and are only boxed if read through the map interface.
+ *
+ * This is not thread safe.
+ *
+ * @param attributes Names of the attributes to hold
+ *
+ * @since 2.2.0
+ */
+class RecordValues(attributes: Set<String>) : AbstractMap<String, Any?>() {
+
+    private val names = attributes.toTypedArray()
+    private val formats = arrayOfNulls<ValueFormat>(names.size)
+    private val objects = arrayOfNulls<Any?>(names.size)
+    private val longs = LongArray(names.size)
+    private val doubles = DoubleArray(names.size)
+    private val assigned = BooleanArray(names.size)
+    private var count = 0
+
+    // Slot of each attribute of the last record format read.  -1 if the attribute is not held.
+    private var lastFormat: RecordFormat? = null
+    private var slots = IntArray(0)
+
+    override val size: Int
+        get() = count
+
+    /**
+     * Whether all of the attributes have been read
+     */
+    val isComplete: Boolean
+        get() = count == names.size
+
+    /**
+     * Clear the values of the previous record
+     */
+    fun reset() {
+        for (i in assigned.indices) {
+            assigned[i] = false
+            objects[i] = null
+        }
+        count = 0
+    }
+
+    /**
+     * Slot of an attribute
+     *
+     * @param name Attribute name
+     * @return Index of the attribute's slot or -1 if it is not held
+     */
+    fun indexOf(name: String): Int {
+        for (i in names.indices)
+            if (names[i] == name)
+                return i
+        return -1
+    }
+
+    /**
+     * Slots of the attributes of a record format in attribute order.  The slots are resolved again only when a record
+     * was written with another version of the entity.
+     *
+     * @param format Format of the record being read
+     * @param names Attribute names of the format
+     */
+    internal fun slots(format: RecordFormat, names: Array<String>): IntArray {
+        if (lastFormat !== format) {
+            slots = IntArray(names.size) { indexOf(names[it]) }
+            lastFormat = format
+        }
+        return slots
+    }
+
+    /**
+     * Format the value of a slot was read with or null if it was not read or is held as an object
+     */
+    fun formatAt(slot: Int): ValueFormat? = if (slot >= 0 && assigned[slot]) formats[slot] else null
+
+    /**
+     * Unboxed value of an integral slot
+     */
+    fun longAt(slot: Int): Long = longs[slot]
+
+    /**
+     * Unboxed value of a decimal slot
+     */
+    fun doubleAt(slot: Int): Double = doubles[slot]
+
+    fun setObject(slot: Int, value: Any?) {
+        assign(slot, null)
+        objects[slot] = value
+    }
+
+    fun setLong(slot: Int, format: ValueFormat, value: Long) {
+        assign(slot, format)
+        longs[slot] = value
+    }
+
+    fun setDouble(slot: Int, format: ValueFormat, value: Double) {
+        assign(slot, format)
+        doubles[slot] = value
+    }
+
+    private fun assign(slot: Int, format: ValueFormat?) {
+        if (!assigned[slot]) {
+            assigned[slot] = true
+            count++
+        }
+        formats[slot] = format
+    }
+
+    /**
+     * Value of a slot boxed to the type it was written with
+     */
+    private fun valueAt(slot: Int): Any? = when (formats[slot]) {
+        ValueFormat.BYTE -> longs[slot].toByte()
+        ValueFormat.SHORT -> longs[slot].toShort()
+        ValueFormat.INT -> longs[slot].toInt()
+        ValueFormat.LONG -> longs[slot]
+        ValueFormat.FLOAT -> doubles[slot].toFloat()
+        ValueFormat.DOUBLE -> doubles[slot]
+        else -> objects[slot]
+    }
+
+    override fun get(key: String): Any? {
+        val slot = indexOf(key)
+        return if (slot >= 0 && assigned[slot]) valueAt(slot) else null
+    }
+
+    override fun containsKey(key: String): Boolean {
+        val slot = indexOf(key)
+        return slot >= 0 && assigned[slot]
+    }
+
+    override val entries: Set<Map.Entry<String, Any?>>
+        get() = names.indices.filter { assigned[it] }.mapTo(LinkedHashSet()) { java.util.AbstractMap.SimpleImmutableEntry(names[it], valueAt(it)) }
+}
@@ -11,5 +11,6 @@ data class AttributeDescriptor(
     var isEnum: Boolean = false,
     var enumValues: String? = null,
     var name: String = "",
-    var type: Class<*> = Any::class.java
+    var type: Class<*> = Any::class.java,
+    var isColumnar: Boolean = false
 ) : AbstractBaseDescriptor()
@@ -1,8 +1,11 @@
 package com.onyx.descriptor
 
+import com.onyx.exception.InvalidIndexException
 import com.onyx.exception.OnyxException
 import com.onyx.persistence.annotations.*
 import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.QueryFunction
+import com.onyx.persistence.query.QueryFunctionType
 import com.onyx.extension.validate
 import com.onyx.extension.validateIsManagedEntity
 import java.io.Serializable
@@ -142,6 +145,7 @@ constructor(
                 attribute.type = it.type
                 attribute.isNullable = annotation?.nullable != false
                 attribute.size = annotation?.size ?: -1
+                attribute.isColumnar = annotation?.columnar == true
                 attribute.isEnum = attribute.type.isEnum
 
                 if (attribute.isEnum) {
@@ -194,6 +198,14 @@ constructor(
             index.name = it.name
             index.loadFactor = annotation.loadFactor
             index.type = it.type
+            if (annotation.function.isNotEmpty()) {
+                val functionType = try {
+                    QueryFunctionType.value(annotation.function)
+                } catch (e: Exception) {
+                    throw InvalidIndexException(InvalidIndexException.INDEX_INVALID_FUNCTION)
+                }
+                index.function = QueryFunction(functionType, it.name)
+            }
             index.entityDescriptor = this
             it.isAccessible = true
             index.field = it
@@ -259,6 +271,16 @@ constructor(
     val hasRelationships: Boolean
         get() = relationships.isNotEmpty()
 
+    /**
+     * Attributes whose values are also stored as columns
+     *
+     * @since 2.2.0
+     */
+    val columns: List<AttributeDescriptor> by lazy { attributes.values.filter { it.isColumnar } }
+
+    val hasColumns: Boolean
+        get() = columns.isNotEmpty()
+
     val hasPartition:Boolean
         get() = partition != null
 }
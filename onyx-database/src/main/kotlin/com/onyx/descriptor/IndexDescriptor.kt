@@ -1,5 +1,6 @@
 package com.onyx.descriptor
 
+import com.onyx.persistence.query.QueryFunction
 import kotlin.jvm.internal.Intrinsics
 
 /**
@@ -10,18 +11,38 @@ import kotlin.jvm.internal.Intrinsics
 open class IndexDescriptor(
     open var loadFactor: Byte = 1,
     override var name: String = "",
-    open var type: Class<*> = Any::class.java
+    open var type: Class<*> = Any::class.java,
+    open var function: QueryFunction? = null
 ) : AbstractBaseDescriptor(), BaseDescriptor {
 
     open lateinit var entityDescriptor: EntityDescriptor
 
-    override fun hashCode(): Int = (((this.entityDescriptor.entityClass.hashCode()) * 31 + this.loadFactor) * 31 + this.name.hashCode()) * 31 + this.type.hashCode()
+    /**
+     * Get the value to index for an attribute value.  If the index is an expression index, the
+     * function is applied to the attribute value.
+     *
+     * @param attributeValue Raw attribute value of the entity
+     * @return Value stored within the index
+     * @since 2.2.0
+     */
+    fun indexValue(attributeValue: Any?): Any? = if (function == null) attributeValue else function!!.execute(attributeValue)
+
+    /**
+     * Whether the index can be used to resolve a criteria with the given function.  An expression index can only
+     * resolve criteria with the same function and a plain index can only resolve criteria without one.
+     *
+     * @param criteriaFunction Function defined within the query criteria attribute
+     * @since 2.2.0
+     */
+    fun matches(criteriaFunction: QueryFunction?): Boolean = function?.type == criteriaFunction?.type
+
+    override fun hashCode(): Int = ((((this.entityDescriptor.entityClass.hashCode()) * 31 + this.loadFactor) * 31 + this.name.hashCode()) * 31 + this.type.hashCode()) * 31 + (this.function?.type?.hashCode() ?: 0)
 
     override fun equals(other: Any?): Boolean {
         return if (this !== other) {
             if (other is IndexDescriptor) {
                 val var2 = other as IndexDescriptor?
-                if (Intrinsics.areEqual(this.entityDescriptor.partition, var2!!.entityDescriptor.partition) && this.loadFactor == var2.loadFactor && Intrinsics.areEqual(this.name, var2.name) && Intrinsics.areEqual(this.type, var2.type)) {
+                if (Intrinsics.areEqual(this.entityDescriptor.partition, var2!!.entityDescriptor.partition) && this.loadFactor == var2.loadFactor && Intrinsics.areEqual(this.name, var2.name) && Intrinsics.areEqual(this.type, var2.type) && this.function?.type == var2.function?.type) {
                     return true
                 }
             }
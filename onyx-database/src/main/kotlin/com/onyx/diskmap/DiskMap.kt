@@ -1,5 +1,6 @@
 package com.onyx.diskmap
 
+import com.onyx.buffer.RecordValues
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.store.Store
@@ -81,6 +82,31 @@ interface DiskMap<K, V> : MutableMap<K, V> {
     @Throws(AttributeTypeMismatchException::class)
     fun <T : Any?> getAttributeWithRecID(field: Field, reference: SkipNode): T
 
+    /**
+     * Get a subset of attributes of a record without hydrating the entire entity.  Only the requested attributes are
+     * decoded from the store.  If the entity is already cached, null is returned since reading the cached value is
+     * cheaper.
+     *
+     * @param reference record reference where the record is stored
+     * @param attributes Names of the attributes to decode
+     *
+     * @return Attribute values of record or null if the full value should be used instead
+     * @since 2.2.0
+     */
+    fun getAttributesWithRecID(reference: SkipNode, attributes: Set<String>): Map<String, Any?>?
+
+    /**
+     * Read a subset of attributes of a record into reusable values.  This is used by full table scans so a map is
+     * not built for each record.  If the entity is already cached, nothing is read.
+     *
+     * @param reference record reference where the record is stored
+     * @param values Values to read into
+     *
+     * @return Whether all of the attributes were read.  If not, the full value should be used instead.
+     * @since 2.2.0
+     */
+    fun getAttributesWithRecID(reference: SkipNode, values: RecordValues): Boolean
+
     /**
      * Returns the record count as a long rather than an integer.
      *
@@ -111,6 +137,37 @@ interface DiskMap<K, V> : MutableMap<K, V> {
      */
     fun below(index: K, includeFirst: Boolean): Set<Long>
 
+    /**
+     * Iterate through the references in the order of their keys.  The underlying data structure is sorted so only
+     * the nodes that are iterated are read.
+     *
+     * @param ascending Whether to start from the lowest key or the highest
+     * @return Iterator of references in key order
+     * @since 2.2.0
+     */
+    fun sortedReferences(ascending: Boolean): Iterator<Long>
+
+    /**
+     * Iterate through the references in the order of their keys starting from a key.  Only the nodes along the path
+     * to the key are read to find where to start.
+     *
+     * @param ascending Whether to iterate from lower keys to higher keys or the reverse
+     * @param from Key to start from.  References of an equal key are included.
+     * @return Iterator of references in key order starting from the key
+     * @since 2.2.0
+     */
+    fun sortedReferences(ascending: Boolean, from: K): Iterator<Long>
+
+    /**
+     * Split the entries into segments that can be iterated independently of each other.  Each skip list within a hash
+     * table is its own segment.  Iterating a segment does not move the cursor of the map so segments can be iterated
+     * on separate threads.
+     *
+     * @return Segments that combined contain every entry
+     * @since 2.2.0
+     */
+    fun entrySegments(): List<Iterable<MutableMap.MutableEntry<K, V>>>
+
     /**
      * Added in order to get around requiring Java 8.  This is a workaround
      * for Android older devices.  Works as intended for Map interface
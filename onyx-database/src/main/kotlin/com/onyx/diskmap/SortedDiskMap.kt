@@ -30,4 +30,25 @@ interface SortedDiskMap<K, out V> : Map<K, V> {
      * @since 1.2.0
      */
     fun below(index: K, includeFirst: Boolean): Set<Long>
+
+    /**
+     * Iterate through the references in the order of their keys.  The underlying data structure is sorted so only
+     * the nodes that are iterated are read.
+     *
+     * @param ascending Whether to start from the lowest key or the highest
+     * @return Iterator of references in key order
+     * @since 2.2.0
+     */
+    fun sortedReferences(ascending: Boolean): Iterator<Long>
+
+    /**
+     * Iterate through the references in the order of their keys starting from a key.  Only the nodes along the path
+     * to the key are read to find where to start.
+     *
+     * @param ascending Whether to iterate from lower keys to higher keys or the reverse
+     * @param from Key to start from.  References of an equal key are included.
+     * @return Iterator of references in key order starting from the key
+     * @since 2.2.0
+     */
+    fun sortedReferences(ascending: Boolean, from: K): Iterator<Long>
 }
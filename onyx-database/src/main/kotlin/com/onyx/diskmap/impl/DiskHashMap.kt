@@ -228,6 +228,35 @@ class DiskHashMap<K, V> : AbstractIterableMultiMapHashMap<K, V>, SortedDiskMap<K
         return returnValue
     }
 
+    /**
+     * Iterate through the references in the order of their keys.  Each skip list within the hash table is sorted so
+     * the skip lists are merged as they are iterated.
+     *
+     * @param ascending Whether to start from the lowest key or the highest
+     * @return Iterator of references in key order
+     * @since 2.2.0
+     */
+    override fun sortedReferences(ascending: Boolean): Iterator<Long> = sortedReferences(maps.toList(), ascending)
+
+    /**
+     * Iterate through the references in the order of their keys starting from a key.  Each skip list within the hash table
+     * is sought to the key and then merged.
+     *
+     * @param ascending Whether to iterate from lower keys to higher keys or the reverse
+     * @param from Key to start from.  References of an equal key are included.
+     * @return Iterator of references in key order starting from the key
+     * @since 2.2.0
+     */
+    override fun sortedReferences(ascending: Boolean, from: K): Iterator<Long> = sortedReferences(maps.toList(), ascending, from)
+
+    /**
+     * Split the entries into a segment for each skip list within the hash table
+     *
+     * @return Entries of each skip list
+     * @since 2.2.0
+     */
+    override fun entrySegments(): List<Iterable<MutableMap.MutableEntry<K, V>>> = entrySegments(maps.toList())
+
     /**
      * The nuts and bolts of the map lie here.  This finds the head of the skip list based on the key
      * It uses the bitmap index on the disk map.
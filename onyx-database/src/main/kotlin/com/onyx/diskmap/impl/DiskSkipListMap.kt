@@ -1,6 +1,7 @@
 package com.onyx.diskmap.impl
 
 import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
+import com.onyx.buffer.RecordValues
 import com.onyx.diskmap.data.Header
 import com.onyx.diskmap.data.SkipNode
 import com.onyx.diskmap.store.Store
@@ -163,6 +164,36 @@ open class DiskSkipListMap<K, V>(fileStore:Store, header: Header, detached: Bool
         return@optimisticReadLock value.getAny<T>(field)
     }
 
+    /**
+     * Get a subset of attributes of a record without hydrating the entity.  If the entity is cached, null is returned
+     * so the cached value is used instead.
+     *
+     * @param reference Record reference within storage structure
+     * @param attributes Names of the attributes to decode
+     * @return Map of attribute values or null if the full value should be used
+     * @since 2.2.0
+     */
+    override fun getAttributesWithRecID(reference: SkipNode, attributes: Set<String>): Map<String, Any?>? = mapReadWriteLock.optimisticReadLock {
+        if (isValueCached(reference.record))
+            return@optimisticReadLock null
+        return@optimisticReadLock getRecordAttributesAsDictionary(reference.record, attributes)
+    }
+
+    /**
+     * Read a subset of attributes of a record into reusable values without hydrating the entity.  If the entity is
+     * cached, nothing is read so the cached value is used instead.
+     *
+     * @param reference Record reference within storage structure
+     * @param values Values to read into
+     * @return Whether all of the attributes were read
+     * @since 2.2.0
+     */
+    override fun getAttributesWithRecID(reference: SkipNode, values: RecordValues): Boolean = mapReadWriteLock.optimisticReadLock {
+        if (isValueCached(reference.record))
+            return@optimisticReadLock false
+        return@optimisticReadLock getRecordAttributes(reference.record, values)
+    }
+
     /**
      * Find all references above and perhaps equal to the key you are sending in.  The underlying data structure
      * is sorted so this should be very efficient
@@ -220,4 +251,32 @@ open class DiskSkipListMap<K, V>(fileStore:Store, header: Header, detached: Bool
         return@readLock results
     }
 
+    /**
+     * Iterate through the references in the order of their keys.  The underlying data structure is sorted so only
+     * the nodes that are iterated are read.
+     *
+     * @param ascending Whether to start from the lowest key or the highest
+     * @return Iterator of references in key order
+     * @since 2.2.0
+     */
+    override fun sortedReferences(ascending: Boolean): Iterator<Long> = mapReadWriteLock.readLock { sortedReferences(listOf(head!!), ascending) }
+
+    /**
+     * Iterate through the references in the order of their keys starting from a key.
+     *
+     * @param ascending Whether to iterate from lower keys to higher keys or the reverse
+     * @param from Key to start from.  References of an equal key are included.
+     * @return Iterator of references in key order starting from the key
+     * @since 2.2.0
+     */
+    override fun sortedReferences(ascending: Boolean, from: K): Iterator<Long> = mapReadWriteLock.readLock { sortedReferences(listOf(head!!), ascending, from) }
+
+    /**
+     * The skip list is a single segment
+     *
+     * @return Entries of the skip list
+     * @since 2.2.0
+     */
+    override fun entrySegments(): List<Iterable<MutableMap.MutableEntry<K, V>>> = mapReadWriteLock.readLock { entrySegments(listOf(head!!)) }
+
 }
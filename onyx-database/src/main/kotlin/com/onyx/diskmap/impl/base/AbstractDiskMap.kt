@@ -1,6 +1,7 @@
 package com.onyx.diskmap.impl.base
 
 import com.onyx.buffer.BufferPool
+import com.onyx.buffer.RecordValues
 import com.onyx.buffer.BufferPool.withLongBuffer
 import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.data.HashMatrixNode
@@ -51,6 +52,46 @@ abstract class AbstractDiskMap<K, V> constructor(override val fileStore: Store,
         return fileStore.read(recordId + Integer.BYTES, size).perform { it!!.toMap(fileStore.context!!) }
     }
 
+    /**
+     * Get only the requested attributes of a record as a dictionary.  Note: This is only intended for ManagedEntities
+     *
+     * @param recordId Record reference to pull
+     * @param attributes Names of the attributes to read
+     * @return Map of the requested attributes or null if the record does not contain all of them
+     *
+     * @since 2.2.0
+     */
+    protected fun getRecordAttributesAsDictionary(recordId: Long, attributes: Set<String>): Map<String, Any?>? {
+        var size = 0
+        BufferPool.withIntBuffer {
+            fileStore.read(it, recordId)
+            it.rewind()
+            size = it.int
+        }
+        return fileStore.read(recordId + Integer.BYTES, size).perform { it!!.toMap(fileStore.context!!, attributes) }
+    }
+
+    /**
+     * Read the attributes held by reusable record values from a record.  Note: This is only intended for
+     * ManagedEntities
+     *
+     * @param recordId Record reference to pull
+     * @param values Values to read into
+     * @return Whether the record contains all of the attributes
+     *
+     * @since 2.2.0
+     */
+    protected fun getRecordAttributes(recordId: Long, values: RecordValues): Boolean {
+        var size = 0
+        BufferPool.withIntBuffer {
+            fileStore.read(it, recordId)
+            it.rewind()
+            size = it.int
+        }
+        values.reset()
+        return fileStore.read(recordId + Integer.BYTES, size).perform { it!!.toMap(fileStore.context!!, values) }
+    }
+
     /**
      * This method will only update the record count rather than the entire header
      */
@@ -35,6 +35,15 @@ abstract class AbstractCachedSkipList<K, V> @JvmOverloads constructor(fileStore:
      */
     override fun findValueAtPosition(position: Long): V? = valueByPositionCache.getOrPut(position) { super.findValueAtPosition(position) }
 
+    /**
+     * Whether the value at a position has already been hydrated and is still cached
+     *
+     * @param position The position within the file structure of the value
+     * @return True if the value is cached
+     * @since 2.2.0
+     */
+    protected fun isValueCached(position: Long): Boolean = valueByPositionCache[position] != null
+
     /**
      * Find a data at a position.  First check the cache.  If it is in there great return it otherwise go the the
      * store to find it.
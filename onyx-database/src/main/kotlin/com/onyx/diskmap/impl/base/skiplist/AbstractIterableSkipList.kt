@@ -39,6 +39,17 @@ abstract class AbstractIterableSkipList<K, V>(store: Store, header: Header, head
     override val keys: MutableSet<K>
         get() = KeyCollection()
 
+    /**
+     * Entries of each skip list starting at its head.  The iterators start from the given heads rather than the head
+     * of the map.
+     *
+     * @param heads Heads of the skip lists
+     * @return Entries of each skip list
+     * @since 2.2.0
+     */
+    protected fun entrySegments(heads: Collection<SkipNode>): List<Iterable<MutableMap.MutableEntry<K, V>>> =
+            heads.map { head -> Iterable<MutableMap.MutableEntry<K, V>> { EntryIterator(head) as MutableIterator<MutableMap.MutableEntry<K, V>> } }
+
     // endregion
 
     // region Collection Types
@@ -162,8 +173,8 @@ abstract class AbstractIterableSkipList<K, V>(store: Store, header: Header, head
     /**
      * Entry.  Similar to the Key and Value iterator except it returns a custom entry that will lazy load the keys and values
      */
-    inner class EntryIterator : MutableIterator<SkipListEntry<K, V>> {
-        private val nodeIterator = NodeIterator()
+    inner class EntryIterator @JvmOverloads constructor(start: SkipNode? = head) : MutableIterator<SkipListEntry<K, V>> {
+        private val nodeIterator = NodeIterator(start)
 
         override fun remove() {
             if(hasNext()) {
@@ -217,13 +228,13 @@ abstract class AbstractIterableSkipList<K, V>(store: Store, header: Header, head
      *
      * Iterates through nodes and gets the left, right, next values
      */
-    inner class NodeIterator : MutableIterator<SkipNode?> {
+    inner class NodeIterator @JvmOverloads constructor(start: SkipNode? = head) : MutableIterator<SkipNode?> {
         override fun remove() {}
 
         private var current: SkipNode? = null
 
         init {
-            current = head
+            current = start
             while (current?.down ?: 0L > 0)
                 current = findNodeAtPosition(current!!.down)
 
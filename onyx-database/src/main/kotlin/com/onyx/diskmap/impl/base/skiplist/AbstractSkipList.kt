@@ -258,6 +258,96 @@ abstract class AbstractSkipList<K, V> @JvmOverloads constructor(override val fil
         return current
     }
 
+    /**
+     * Find the first record on the bottom level of a skip list.  If descending, this is the last record.
+     *
+     * @param head Head of the skip list
+     * @param ascending Whether to find the lowest key or the highest
+     * @return First record in order or null if the skip list is empty
+     * @since 2.2.0
+     */
+    protected fun firstRecord(head: SkipNode, ascending: Boolean): SkipNode? {
+        var current: SkipNode = head
+        while (true) {
+            if (!ascending)
+                while (current.right > 0L)
+                    current = findNodeAtPosition(current.right)!!
+            if (current.down > 0L)
+                current = findNodeAtPosition(current.down)!!
+            else
+                break
+        }
+
+        val first = if (ascending) findNodeAtPosition(current.right) else current
+        return if (first != null && first.isRecord) first else null
+    }
+
+    /**
+     * Find the first record on the bottom level of a skip list that is not before a key in iteration order.  The
+     * skip list is descended from the head the same way a key is found so only the nodes along the path are read.
+     *
+     * @param head Head of the skip list
+     * @param key Key to seek to
+     * @param ascending If true, find the lowest key greater than or equal to the key.  Otherwise the highest key
+     *                  less than or equal to it.
+     * @return First record in order from the key or null if there is none
+     * @since 2.2.0
+     */
+    protected fun seekRecord(head: SkipNode, key: K, ascending: Boolean): SkipNode? {
+        var current: SkipNode = head
+        while (true) {
+            while (current.right > 0L) {
+                val next = findNodeAtPosition(current.right)!!
+                val nextKey: K = next.getKey(fileStore)
+                if (isGreater(key, nextKey) || (!ascending && isEqual(key, nextKey)))
+                    current = next
+                else
+                    break
+            }
+            if (current.down > 0L)
+                current = findNodeAtPosition(current.down)!!
+            else
+                break
+        }
+
+        val first = if (ascending) findNodeAtPosition(current.right) else current
+        return if (first != null && first.isRecord) first else null
+    }
+
+    /**
+     * Iterate through the records of several skip lists in key order.  Each skip list is sorted so this is a merge
+     * that keeps the next record of each skip list within a heap.  Records are only read as they are iterated.
+     *
+     * @param heads Heads of the skip lists to merge
+     * @param ascending Whether to start from the lowest key or the highest
+     * @param from Key to seek each skip list to before iterating or null to start from the first record
+     * @return Iterator of record references in key order
+     * @since 2.2.0
+     */
+    protected fun sortedReferences(heads: Collection<SkipNode>, ascending: Boolean, from: K? = null): Iterator<Long> {
+        val order = Comparator<Pair<SkipNode, K>> { first, second ->
+            when {
+                isGreater(first.second, second.second) -> 1
+                isGreater(second.second, first.second) -> -1
+                else -> 0
+            }
+        }
+        val queue = PriorityQueue<Pair<SkipNode, K>>(Math.max(1, heads.size), if (ascending) order else Collections.reverseOrder(order))
+        heads.forEach { head -> (if (from == null) firstRecord(head, ascending) else seekRecord(head, from, ascending))?.let { queue.add(Pair(it, it.getKey(fileStore))) } }
+
+        return object : Iterator<Long> {
+            override fun hasNext(): Boolean = queue.isNotEmpty()
+
+            override fun next(): Long {
+                val node = queue.poll()?.first ?: throw NoSuchElementException()
+                val next = findNodeAtPosition(if (ascending) node.right else node.left)
+                if (next != null && next.isRecord)
+                    queue.add(Pair(next, next.getKey(fileStore)))
+                return node.position
+            }
+        }
+    }
+
     /**
      * Abstract method for updating cache for a node
      */
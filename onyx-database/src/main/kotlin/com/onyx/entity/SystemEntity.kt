@@ -1,5 +1,7 @@
 package com.onyx.entity
 
+import com.onyx.buffer.EntitySerializer
+import com.onyx.buffer.RecordFormat
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.persistence.ManagedEntity
 import com.onyx.persistence.annotations.*
@@ -48,6 +50,42 @@ data class SystemEntity @JvmOverloads constructor(
     @Attribute
     var isLatestVersion:Boolean = true
 
+    @Transient
+    private var serializer: EntitySerializer? = null
+
+    @Transient
+    private var recordFormat: RecordFormat? = null
+
+    /**
+     * Get the layout of compact records written with this version of the attributes
+     *
+     * @since 2.2.0
+     */
+    fun recordFormat(): RecordFormat {
+        var result = recordFormat
+        if (result == null) {
+            result = RecordFormat(this)
+            recordFormat = result
+        }
+        return result
+    }
+
+    /**
+     * Get the serializer for entities written with this version of the attributes
+     *
+     * @param type Entity class
+     * @return Serializer for the attributes of this version
+     * @since 2.2.0
+     */
+    fun serializer(type: Class<*>): EntitySerializer {
+        var result = serializer
+        if (result == null || result.type !== type) {
+            result = EntitySerializer(this, type)
+            serializer = result
+        }
+        return result
+    }
+
     constructor(descriptor: EntityDescriptor?) : this(
             name = descriptor!!.entityClass.canonicalName,
             className = descriptor.entityClass.simpleName,
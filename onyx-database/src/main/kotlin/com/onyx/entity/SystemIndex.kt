@@ -18,12 +18,16 @@ data class SystemIndex @JvmOverloads constructor(
     var name: String = "",
 
     @Attribute
-    var loadFactor: Int = 1
+    var loadFactor: Int = 1,
+
+    @Attribute
+    var function: String? = null
 
 ): ManagedEntity() {
 
     constructor(descriptor: IndexDescriptor):this(
         name = descriptor.name,
-        loadFactor = descriptor.loadFactor.toInt()
+        loadFactor = descriptor.loadFactor.toInt(),
+        function = descriptor.function?.type?.name
     )
 }
@@ -9,5 +9,6 @@ class EntityTypeMatchException @JvmOverloads constructor(message: String? = "")
 
     companion object {
         @JvmField val ATTRIBUTE_TYPE_IS_NOT_SUPPORTED = "Attribute type is not supported"
+        @JvmField val COLUMNAR_TYPE_IS_NOT_SUPPORTED = "Columnar attributes must be numeric"
     }
 }
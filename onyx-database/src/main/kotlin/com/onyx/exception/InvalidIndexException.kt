@@ -8,5 +8,6 @@ class InvalidIndexException @JvmOverloads constructor(message: String? = "") : O
 
     companion object {
         @JvmField val INDEX_MISSING_FIELD = "Index is missing attribute"
+        @JvmField val INDEX_INVALID_FUNCTION = "Index function is not supported.  Expression indexes must use either LOWER or UPPER"
     }
 }
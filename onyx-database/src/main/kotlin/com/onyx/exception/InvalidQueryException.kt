@@ -6,8 +6,13 @@ package com.onyx.exception
  *
  * This exception indicates an issue with the query detected during runtime.
  */
-class InvalidQueryException : OnyxException(RELATIONSHIP_PARTITION_ALL_EXCEPTION) {
+class InvalidQueryException @JvmOverloads constructor(message: String? = RELATIONSHIP_PARTITION_ALL_EXCEPTION) : OnyxException(message) {
     companion object {
         private val RELATIONSHIP_PARTITION_ALL_EXCEPTION = "Invalid Query Predicates.  When applying relationship query predicates you cannot specify QueryPartitionMode.ALL"
+        @JvmField val CURSOR_SIZE_MISMATCH = "Invalid Query Cursor.  The cursor must contain a value for each query order followed by the identifier"
+        @JvmField val CURSOR_VALUE_MISSING = "Invalid Query Cursor.  The result does not contain the query order values and identifier"
+        @JvmField val PERCENTILE_OUT_OF_RANGE = "Invalid Query Function.  A percentile must be a fraction between 0 and 1"
+        @JvmField val INVALID_SUB_QUERY = "Invalid Sub Query.  A sub query must be compared using IN, NOT_IN, EXISTS, or NOT_EXISTS and IN or NOT_IN must select a single attribute"
+        @JvmField val JOIN_FUNCTIONS_NOT_SUPPORTED = "Invalid Query Join.  Group by and query functions are not supported when joining"
     }
 }
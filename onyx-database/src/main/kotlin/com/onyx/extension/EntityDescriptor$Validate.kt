@@ -2,11 +2,13 @@ package com.onyx.extension
 
 import com.onyx.descriptor.*
 import com.onyx.exception.*
+import com.onyx.interactors.column.data.ColumnBlock
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.ManagedEntity
 import com.onyx.persistence.annotations.Entity
 import com.onyx.persistence.annotations.values.IdentifierGenerator
 import com.onyx.persistence.annotations.values.RelationshipType
+import com.onyx.persistence.query.QueryFunctionType
 
 @Throws(OnyxException::class)
 fun EntityDescriptor.validate() {
@@ -109,12 +111,15 @@ private fun EntityDescriptor.validateIndexes() =
         } catch (e: NoSuchFieldException) {
             throw InvalidIndexException(InvalidIndexException.INDEX_MISSING_FIELD)
         }
+
+        if (it.function != null && it.function!!.type != QueryFunctionType.LOWER && it.function!!.type != QueryFunctionType.UPPER)
+            throw InvalidIndexException(InvalidIndexException.INDEX_INVALID_FUNCTION)
     }
 
 /**
  * Validate Attributes.
  *
- * @throws EntityTypeMatchException Entity is not a valid type
+ * @throws EntityTypeMatchException Entity is not a valid type or a columnar attribute is not numeric
  */
 @Throws(EntityTypeMatchException::class)
 private fun EntityDescriptor.validateAttributes() =
@@ -164,6 +169,10 @@ private fun EntityDescriptor.validateAttributes() =
                 type.isEnum)) {
             throw EntityTypeMatchException(EntityTypeMatchException.ATTRIBUTE_TYPE_IS_NOT_SUPPORTED + ": " + type)
         }
+
+        if (it.isColumnar && !ColumnBlock.isSupported(type)) {
+            throw EntityTypeMatchException(EntityTypeMatchException.COLUMNAR_TYPE_IS_NOT_SUPPORTED + ": " + type)
+        }
     }
 
 /**
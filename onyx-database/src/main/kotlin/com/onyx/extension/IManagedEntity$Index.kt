@@ -18,6 +18,8 @@ fun IManagedEntity.indexInteractor(context: SchemaContext, name:String, descript
  * Save all indexes for an entity.  Sift through the indexed properties and update their references.  You must pass
  * in the previous reference of the entity so it can know what previous references it needs to update.
  *
+ * The columns of columnar attributes are saved along with the indexes.
+ *
  * @param context Schema context entity belongs to
  * @param previousReferenceId Previous entity reference id before updating entity
  *
@@ -31,15 +33,22 @@ fun IManagedEntity.saveIndexes(context: SchemaContext, previousReferenceId:Long,
         // Save All Indexes
         descriptor.indexes.values.forEach {
             val indexInteractor = indexInteractor(context, it.name, descriptor)
-            val indexValue:Any? = get(context, descriptor, it.name)
+            val indexValue:Any? = it.indexValue(get(context, descriptor, it.name))
             indexInteractor.save(indexValue, previousReferenceId, newReferenceId)
         }
     }
+
+    if (descriptor.hasColumns) {
+        val newReferenceId = referenceId(context, descriptor)
+        descriptor.columns.forEach {
+            context.getColumnInteractor(descriptor, it).save(get<Any?>(context, descriptor, it.name), previousReferenceId, newReferenceId)
+        }
+    }
 }
 
 /**
  * Delete all indexes for an entity.  This is typically done prior to deleting an entity so that the indexed data
- * is no longer hanging around.
+ * is no longer hanging around.  The values of columnar attributes are removed from their columns as well.
  *
  * @param context Schema context the entity belongs to
  * @param referenceId Entity's current reference ID
@@ -52,4 +61,10 @@ fun IManagedEntity.deleteAllIndexes(context: SchemaContext, referenceId:Long, de
             indexInteractor(context, it.name, descriptor).delete(referenceId)
         }
     }
+
+    if (descriptor.hasColumns) {
+        descriptor.columns.forEach {
+            context.getColumnInteractor(descriptor, it).delete(referenceId)
+        }
+    }
 }
\ No newline at end of file
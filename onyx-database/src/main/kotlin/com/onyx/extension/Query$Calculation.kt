@@ -2,13 +2,11 @@ package com.onyx.extension
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.exception.OnyxException
+import com.onyx.interactors.query.data.QueryPredicate
+import com.onyx.interactors.record.data.Reference
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
-import com.onyx.persistence.query.QueryCriteria
-import com.onyx.extension.common.compare
-import com.onyx.interactors.record.data.Reference
-import com.onyx.persistence.query.QueryCriteriaOperator
 
 /**
  * Entity meets the query criteria.  This method is used to determine whether the entity meets all the
@@ -23,104 +21,40 @@ import com.onyx.persistence.query.QueryCriteriaOperator
  * @throws OnyxException Cannot hydrate or pull an attribute from an entity
  *
  * @since 1.3.0 Simplified query criteria management
+ * @since 2.2.0 Checked using the compiled predicate of the query
  */
 @Throws(OnyxException::class)
-fun Query.meetsCriteria(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean {
-
-    var subCriteria: Boolean
-
-    // Iterate through
-    for(it in this.getAllCriteria()) {
-        if(it.flip)
-            continue
-        else if (it.isRelationship!!) {
-            // Compare operator for relationship value
-            subCriteria = relationshipMeetsCriteria(entity, entityReference, it, context)
-        }
-        else {
-            // Compare operator for attribute value
-            if (it.attributeDescriptor == null)
-                it.attributeDescriptor = descriptor.attributes[it.attribute!!]
-            subCriteria = it.value.compare(entity?.get(context = context, descriptor = descriptor, name = it.attribute!!), it.operator!!)
-        }
-        it.meetsCriteria = subCriteria
-    }
-
-    return calculateCriteriaMet(this.criteria!!)
-}
+fun Query.meetsCriteria(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext, descriptor: EntityDescriptor): Boolean =
+        predicate(descriptor).test(entity, entityReference, context)
 
 /**
- * Calculates the result of the parent criteria and correlates
- * its set of children criteria.  A pre-requisite to invoking this method
- * is that all of the criteria have the meet criteria field set and
- * it does NOT take into account the not modifier in the pre-requisite.
- *
+ * Attribute values meet the query criteria.  This is used when only the attributes referenced by the criteria were
+ * decoded rather than the entire entity.  Values are converted to the type of the entity's field the same way they
+ * would be when hydrating the entity.  The query must not contain relationship criteria.
  *
- * @param criteria Root criteria to check.  This maintains the order of operations
- * @return Whether all the criteria are met taking into account the order of operations
- * and the not() modifier
+ * @param attributes Attribute values of a record keyed by attribute name
+ * @param descriptor Entity descriptor of the record
+ * @return Whether the attribute values meet all the criteria
  *
- * @since 1.3.0 Added to enhance insertion based criteria checking
+ * @since 2.2.0
  */
-private fun Query.calculateCriteriaMet(criteria: QueryCriteria): Boolean {
-    var meetsCriteria = criteria.meetsCriteria
-
-    if (criteria.subCriteria.size > 0) {
-        criteria.subCriteria.forEach {
-            if(it.flip)
-                return@forEach
-            meetsCriteria = if (it.isOr) { calculateCriteriaMet(it) || meetsCriteria } else { calculateCriteriaMet(it) && meetsCriteria }
-        }
-    }
-
-    if (criteria.isNot)
-        meetsCriteria = !meetsCriteria
-    return meetsCriteria
-}
+@Throws(OnyxException::class)
+fun Query.meetsCriteria(attributes: Map<String, Any?>, descriptor: EntityDescriptor): Boolean = predicate(descriptor).test(attributes)
 
 /**
- * Relationship meets criteria.  This method will hydrate a relationship for an entity and
- * check its criteria to ensure the criteria is met
- *
- * @param entity Original entity containing the relationship.  This entity may or may not have
- * hydrated relationships.  For that reason we have to go back to the store to
- * retrieve the relationship entities.
- *
- * @param entityReference Used for quick reference so we do not have to retrieve the entities
- * reference before retrieving the relationship.
- *
- * @param criteria Criteria to check for to see if we meet the requirements
- *
- * @param context Schema context used to pull entity descriptors and record controllers and such
- *
- * @return Whether the relationship value has met all of the criteria
+ * Get the criteria of the query compiled into a predicate.  The predicate is compiled the first time it is needed and
+ * reused afterwards so the query must be validated beforehand.
  *
- * @throws OnyxException Something bad happened.
+ * @param descriptor Descriptor of the entities the query checks
+ * @return Compiled predicate of the query criteria
  *
- * @since 1.3.0 - Used to remove the dependency on relationship scanners and to allow query caching
- * to do a quick reference to see if newly saved entities meet the criteria
+ * @since 2.2.0
  */
-@Throws(OnyxException::class)
-private fun relationshipMeetsCriteria(entity: IManagedEntity?, entityReference: Reference, criteria: QueryCriteria, context: SchemaContext): Boolean {
-    var meetsCriteria = false
-    val operator = criteria.operator
-
-    // Grab the relationship from the store
-    val relationshipEntities = entity?.getRelationshipFromStore(context, criteria.attribute!!, entityReference = entityReference)
-
-    // If there are relationship values, check to see if they meet criteria
-    if (relationshipEntities?.isNotEmpty() == true) {
-        val items = criteria.attribute!!.split(".")
-        val attribute = items[items.size - 1]
-
-        // All we need is a single match.  If there is a relationship that meets the criteria, move along
-        for (relationshipEntity in relationshipEntities) {
-            meetsCriteria = criteria.value.compare(relationshipEntity?.get(context = context, name = attribute), operator!!)
-            if (meetsCriteria)
-                break
-        }
-    } else {
-        meetsCriteria = (operator == QueryCriteriaOperator.IS_NULL)
+fun Query.predicate(descriptor: EntityDescriptor): QueryPredicate {
+    var predicate = compiledPredicate
+    if (predicate == null) {
+        predicate = QueryPredicate(this, descriptor)
+        compiledPredicate = predicate
     }
-    return meetsCriteria
-}
\ No newline at end of file
+    return predicate
+}
@@ -0,0 +1,45 @@
+package com.onyx.extension
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.exception.InvalidQueryException
+import com.onyx.exception.OnyxException
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCursor
+import com.onyx.persistence.query.QueryOrder
+
+/**
+ * Query orders used to position rows for keyset pagination.  The identifier is added as the last order if the query
+ * orders do not already end with it so that every row has a distinct position.
+ *
+ * @param descriptor Descriptor of the entity being queried
+ * @return Query orders followed by the identifier
+ * @since 2.2.0
+ */
+fun Query.keysetOrders(descriptor: EntityDescriptor): List<QueryOrder> {
+    val orders = queryOrders ?: emptyList()
+    val identifier = descriptor.identifier!!.name
+    return if (orders.lastOrNull()?.attribute == identifier) orders else orders + QueryOrder(identifier)
+}
+
+/**
+ * Get the cursor positioned at a row of the query results.  Querying after the cursor returns the rows following it.
+ *
+ * @param result Entity or selection of the row.  A selection must contain the order by attributes and the identifier.
+ * @param context Schema context
+ * @return Cursor positioned at the row
+ * @throws InvalidQueryException The selection does not contain the values of the cursor
+ * @since 2.2.0
+ */
+@Throws(OnyxException::class)
+fun Query.cursorAfter(result: Any, context: SchemaContext): QueryCursor {
+    val descriptor = context.getBaseDescriptorForEntity(entityType!!)!!
+    return QueryCursor(keysetOrders(descriptor).map {
+        when (result) {
+            is IManagedEntity -> result.get<Any?>(context, descriptor, it.attribute)
+            is Map<*, *> -> if (result.containsKey(it.attribute)) result[it.attribute] else throw InvalidQueryException(InvalidQueryException.CURSOR_VALUE_MISSING)
+            else -> throw InvalidQueryException(InvalidQueryException.CURSOR_VALUE_MISSING)
+        }
+    })
+}
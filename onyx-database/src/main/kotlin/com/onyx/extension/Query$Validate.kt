@@ -3,10 +3,12 @@ package com.onyx.extension
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.exception.*
 import com.onyx.extension.common.castTo
+import com.onyx.interactors.query.impl.DefaultQueryInteractor
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryFunctionType
 import com.onyx.persistence.query.QueryPartitionMode
 
 /**
@@ -26,6 +28,32 @@ fun Query.validate(context: SchemaContext, descriptor: EntityDescriptor = contex
     definePartition(context)
 
     this.getAllCriteria()
+    resolveSubQueries(context, descriptor)
+    this.compiledPredicate = null // Criteria may have changed since the predicate was compiled
+
+    // Rows of a keyset page are positioned by the query orders followed by the identifier
+    val cursor = this.after
+    if (cursor != null) {
+        this.queryOrders = keysetOrders(descriptor)
+        if (!cursor.isStart && cursor.values.size != this.queryOrders!!.size)
+            throw InvalidQueryException(InvalidQueryException.CURSOR_SIZE_MISMATCH)
+    }
+
+    // Percentiles are a fraction of the values
+    this.functions().filter { it.type == QueryFunctionType.PERCENTILE }.forEach {
+        val percentile = try { it.percentile } catch (e: NumberFormatException) { -1.0 }
+        if (percentile < 0.0 || percentile > 1.0)
+            throw InvalidQueryException(InvalidQueryException.PERCENTILE_OUT_OF_RANGE)
+    }
+
+    // Joined queries select the columns of both entities
+    val join = this.join
+    if (join != null) {
+        if (descriptor.attributes[join.attribute] == null || context.getDescriptorForEntity(join.entityType, "").attributes[join.joinAttribute] == null)
+            throw AttributeMissingException(AttributeMissingException.ENTITY_MISSING_ATTRIBUTE)
+        if (shouldGroupResults() || shouldAggregateFunctions())
+            throw InvalidQueryException(InvalidQueryException.JOIN_FUNCTIONS_NOT_SUPPORTED)
+    }
 
     this.updates.forEach {
         val attribute = descriptor.attributes[it.fieldName]
@@ -67,6 +95,47 @@ fun Query.validate(context: SchemaContext, descriptor: EntityDescriptor = contex
     return true
 }
 
+/**
+ * Execute the sub queries of IN and NOT_IN criteria and keep the distinct values each selects on its criteria.  The
+ * values are cast to the type of the criteria attribute so they can be found within its index.  The sub query of an
+ * EXISTS or NOT_EXISTS criteria is counted instead, since it only matters whether it returns any rows.  The criteria
+ * value remains the sub query so the identity of the query does not change.  Queries are validated where they are
+ * executed so the sub queries never leave the database.
+ *
+ * @param context Schema context
+ * @param descriptor Entity descriptor for the entity it is querying
+ * @since 2.2.0
+ */
+@Throws(OnyxException::class)
+private fun Query.resolveSubQueries(context: SchemaContext, descriptor: EntityDescriptor) {
+    getAllCriteria().forEach { criteria ->
+        val subQuery = criteria.value as? Query ?: return@forEach
+
+        val isExists = criteria.operator == QueryCriteriaOperator.EXISTS || criteria.operator == QueryCriteriaOperator.NOT_EXISTS
+        if (criteria.operator !in SUB_QUERY_OPERATORS || (!isExists && (subQuery.selections?.size ?: 0) > 1) || subQuery.shouldAggregateFunctions())
+            throw InvalidQueryException(InvalidQueryException.INVALID_SUB_QUERY)
+
+        val subQueryDescriptor = context.getDescriptorForEntity(subQuery.entityType, subQuery.partition)
+        subQuery.validate(context, subQueryDescriptor)
+        if (subQuery.selections?.all { subQueryDescriptor.attributes.containsKey(it) } == false)
+            throw AttributeMissingException(AttributeMissingException.ENTITY_MISSING_ATTRIBUTE)
+
+        val interactor = DefaultQueryInteractor(subQueryDescriptor, context.systemPersistenceManager!!, context)
+        try {
+            if (isExists) {
+                criteria.subQueryHasRows = interactor.getCountForQuery(subQuery) > 0
+            } else {
+                val type = descriptor.attributes[criteria.attributeName]?.type
+                criteria.subQueryValues = interactor.getSubQueryValues(subQuery).map { if (type == null || it.javaClass == type) it else it.castTo(type) }
+            }
+        } finally {
+            interactor.cleanup()
+        }
+    }
+}
+
+private val SUB_QUERY_OPERATORS = setOf(QueryCriteriaOperator.IN, QueryCriteriaOperator.NOT_IN, QueryCriteriaOperator.EXISTS, QueryCriteriaOperator.NOT_EXISTS)
+
 /**
  * Set the partition field on a query based on the query criteria
  *
@@ -98,6 +167,11 @@ fun Query.hasPartitionField(context: SchemaContext): Boolean = context.getBaseDe
  * Indicates whether the query is a query all type or not
  *
  * @param descriptor Descriptor for entity type to query
+ * @since 2.2.0 Also recognizes the identifier not equal to null criteria added when validating a query without criteria
  */
-fun Query.isDefaultQuery(descriptor: EntityDescriptor): Boolean = this.criteria == null || this.criteria!!.subCriteria.size <= 0 && this.criteria!!.operator === QueryCriteriaOperator.NOT_NULL && this.criteria!!.attribute == descriptor.identifier!!.name
+fun Query.isDefaultQuery(descriptor: EntityDescriptor): Boolean {
+    val criteria = this.criteria ?: return true
+    return criteria.subCriteria.size <= 0 && !criteria.isNot && !criteria.flip && criteria.attribute == descriptor.identifier!!.name &&
+            (criteria.operator === QueryCriteriaOperator.NOT_NULL || criteria.operator === QueryCriteriaOperator.NOT_EQUAL && criteria.value == null)
+}
 
@@ -39,7 +39,9 @@ fun Any?.compare(compareTo: Any?, operator: QueryCriteriaOperator = QueryCriteri
 
     if(second != null && first != null && first::class !== second::class
             && operator != QueryCriteriaOperator.IN // Expected as List when IN
-            && operator != QueryCriteriaOperator.NOT_IN) {
+            && operator != QueryCriteriaOperator.NOT_IN
+            && operator != QueryCriteriaOperator.EXISTS // Whether the sub query returns any rows rather than a value
+            && operator != QueryCriteriaOperator.NOT_EXISTS) {
         first = first.castTo(second::class.java)
     }
 
@@ -97,6 +99,8 @@ fun Any?.compare(compareTo: Any?, operator: QueryCriteriaOperator = QueryCriteri
                 val list = second as List<Any>
                 return list.find { first.compare(it, QueryCriteriaOperator.EQUAL) } == null
             }
+            QueryCriteriaOperator.EXISTS -> second == true
+            QueryCriteriaOperator.NOT_EXISTS -> second != true
         }
     } catch (e:Exception) {
         // Comparison operator was not found, we should throw an exception because the data types are not supported
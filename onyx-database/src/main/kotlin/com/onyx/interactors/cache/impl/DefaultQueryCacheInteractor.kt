@@ -132,6 +132,8 @@ open class DefaultQueryCacheInteractor(private val context: SchemaContext) : Que
      * @param body Closure to execute to retrieve the results of the query
      *
      * @since 2.0.0
+     * @since 2.2.0 The results of a query with sub queries depend on other entities, so they are read again and
+     *              replace the cached results.  The listeners of the cached results remain subscribed.
      */
     @Suppress("UNCHECKED_CAST")
     override fun <T : Any?> cache(query: Query, body: () -> MutableMap<Reference, T>): MutableMap<Reference, T> {
@@ -143,15 +145,17 @@ open class DefaultQueryCacheInteractor(private val context: SchemaContext) : Que
             val results: MutableMap<Reference, T>
 
             // The query has already been cached.  Return the results from the cache
-            if (cachedResults?.references != null) {
+            if (cachedResults?.references != null && !query.hasSubQueries()) {
                 results = cachedResults.references as MutableMap<Reference, T>
             } else {
                 // There were no cached results, load them from the store
                 results = body.invoke()
                 if(cachedResults == null)
                     cachedResults = setCachedQueryResults(query, results as MutableMap<Reference, Any?>)
-                else
+                else {
                     cachedResults.references = results as MutableMap<Reference, Any?>
+                    replaceCachedQuery(query, cachedResults)
+                }
             }
 
             query.resultsCount = results.size
@@ -162,5 +166,25 @@ open class DefaultQueryCacheInteractor(private val context: SchemaContext) : Que
             }
         }
     }
+
+    /**
+     * Replace the query cached results are keyed by.  Entities are compared to the sub query values of the cached
+     * query, so it must be the query that was just executed rather than an equal query resolved earlier.
+     *
+     * @param query Query the results were just read for
+     * @param cachedResults Cached results of the query
+     *
+     * @since 2.2.0
+     */
+    private fun replaceCachedQuery(query: Query, cachedResults: CachedResults) {
+        val queryCachedResultsMap = cachedQueriesByClass.getOrPut(query.entityType!!) { CachedQueryMap(100, 5 * 60) }
+        if (queryCachedResultsMap[query] != null)
+            queryCachedResultsMap.remove(query)
+
+        if (query.changeListener != null || cachedResults.listeners.isNotEmpty())
+            queryCachedResultsMap.putStrongReference(query, cachedResults)
+        else
+            queryCachedResultsMap.put(query, cachedResults)
+    }
 }
 
@@ -0,0 +1,55 @@
+package com.onyx.interactors.column
+
+import com.onyx.descriptor.AttributeDescriptor
+import com.onyx.exception.OnyxException
+import com.onyx.interactors.column.data.ColumnSummary
+
+/**
+ * Contract on how the column of a columnar attribute interacts
+ *
+ * @since 2.2.0
+ */
+interface ColumnInteractor {
+
+    /**
+     * Attribute the column stores the values of
+     */
+    val attributeDescriptor: AttributeDescriptor
+
+    /**
+     * Number of slots within the blocks of the column including those that are free to be reused
+     */
+    val slotCount: Long
+
+    /**
+     * Save the attribute value of a record
+     *
+     * @param value Attribute value to save
+     * @param oldReferenceId Old entity reference for the value
+     * @param newReferenceId New entity reference for the value
+     */
+    @Throws(OnyxException::class)
+    fun save(value: Any?, oldReferenceId: Long, newReferenceId: Long)
+
+    /**
+     * Delete the attribute value of a record
+     *
+     * @param reference Entity reference
+     */
+    @Throws(OnyxException::class)
+    fun delete(reference: Long)
+
+    /**
+     * Scan the column and total its values
+     *
+     * @return Totals used to calculate the group functions of the attribute
+     */
+    @Throws(OnyxException::class)
+    fun summarize(): ColumnSummary
+
+    /**
+     * Re-build the column by iterating through all the records
+     */
+    @Throws(OnyxException::class)
+    fun rebuild()
+}
@@ -0,0 +1,204 @@
+package com.onyx.interactors.column.data
+
+import com.onyx.buffer.BufferPool
+import com.onyx.buffer.BufferPool.withLongBuffer
+import com.onyx.diskmap.store.Store
+
+/**
+ * A fixed number of consecutive values of a column.  Integral values are kept within a long array and decimal values
+ * within a double array so they can be summed and compared in tight loops over primitives the JIT can vectorize.
+ *
+ * Each slot has a bit within the live bitmap if it belongs to a record and a bit within the present bitmap if the
+ * value of the record is not null.  The value of a null or removed slot is 0 so it does not change the sum.
+ *
+ * A block is stored at a fixed position within the store.  The live bitmap is followed by the present bitmap and then
+ * the value of each slot.  Setting or clearing a slot writes only its value and bitmap words in place.
+ *
+ * @param position Position of the block within the store
+ * @param isDecimal Whether the values are kept as doubles rather than longs
+ * @since 2.2.0
+ */
+class ColumnBlock(val position: Long, val isDecimal: Boolean) {
+
+    var longs: LongArray = LongArray(0)
+    var doubles: DoubleArray = DoubleArray(0)
+    var live: LongArray = LongArray(BITMAP_WORDS)
+    var present: LongArray = LongArray(BITMAP_WORDS)
+
+    /**
+     * Set the value of a slot
+     *
+     * @param store Store the block is within
+     * @param index Slot within the block
+     * @param value Attribute value of the record
+     */
+    fun set(store: Store, index: Int, value: Any?) {
+        val bit = 1L shl index
+        updateWord(store, LIVE_OFFSET, index ushr 6) { it or bit }
+        updateWord(store, PRESENT_OFFSET, index ushr 6) { if (value == null) it and bit.inv() else it or bit }
+        withLongBuffer {
+            if (isDecimal)
+                it.putDouble((value as Number?)?.toDouble() ?: 0.0)
+            else
+                it.putLong((value as Number?)?.toLong() ?: 0L)
+            it.rewind()
+            store.write(it, position + VALUES_OFFSET + index * java.lang.Long.BYTES)
+        }
+    }
+
+    /**
+     * Remove the value of a slot
+     *
+     * @param store Store the block is within
+     * @param index Slot within the block
+     */
+    fun clear(store: Store, index: Int) {
+        val mask = (1L shl index).inv()
+        updateWord(store, LIVE_OFFSET, index ushr 6) { it and mask }
+        updateWord(store, PRESENT_OFFSET, index ushr 6) { it and mask }
+        withLongBuffer {
+            it.putLong(0L)
+            it.rewind()
+            store.write(it, position + VALUES_OFFSET + index * java.lang.Long.BYTES)
+        }
+    }
+
+    /**
+     * Write the block with every slot removed
+     *
+     * @param store Store the block is within
+     */
+    fun write(store: Store) = BufferPool.allocateAndLimit(BLOCK_BYTES) {
+        for (i in 0 until BLOCK_BYTES / java.lang.Long.BYTES)
+            it.putLong(0L)
+        it.rewind()
+        store.write(it, position)
+    }
+
+    /**
+     * Read the bitmaps and values of the block
+     *
+     * @param store Store the block is within
+     * @return This block
+     */
+    fun read(store: Store): ColumnBlock = BufferPool.allocateAndLimit(BLOCK_BYTES) {
+        store.read(it, position)
+        it.rewind()
+        live = LongArray(BITMAP_WORDS) { _ -> it.long }
+        present = LongArray(BITMAP_WORDS) { _ -> it.long }
+        if (isDecimal)
+            doubles = DoubleArray(BLOCK_SIZE) { _ -> it.double }
+        else
+            longs = LongArray(BLOCK_SIZE) { _ -> it.long }
+        this
+    }
+
+    /**
+     * Add the values of the block to a summary
+     *
+     * @param summary Summary of the column
+     */
+    fun summarize(summary: ColumnSummary) {
+        var rows = 0L
+        var values = 0L
+        for (word in live.indices) {
+            rows += java.lang.Long.bitCount(live[word])
+            values += java.lang.Long.bitCount(present[word])
+        }
+        if (rows == 0L)
+            return
+
+        summary.rows += rows
+        summary.values += values
+        if (values == 0L)
+            return
+
+        if (isDecimal) {
+            var sum = 0.0
+            var min = Double.POSITIVE_INFINITY
+            var max = Double.NEGATIVE_INFINITY
+            for (i in doubles.indices) {
+                sum += doubles[i]
+                if ((present[i ushr 6] ushr i) and 1L != 0L) {
+                    min = Math.min(min, doubles[i])
+                    max = Math.max(max, doubles[i])
+                }
+            }
+            summary.add(sum, min, max)
+        } else {
+            var sum = 0.0
+            var min = Long.MAX_VALUE
+            var max = Long.MIN_VALUE
+            for (i in longs.indices) {
+                sum += longs[i].toDouble()
+                if ((present[i ushr 6] ushr i) and 1L != 0L) {
+                    min = Math.min(min, longs[i])
+                    max = Math.max(max, longs[i])
+                }
+            }
+            summary.add(sum, min, max)
+        }
+    }
+
+    /**
+     * Read a bitmap word, update it, and write it back in place
+     *
+     * @param store Store the block is within
+     * @param offset Offset of the bitmap within the block
+     * @param word Index of the word within the bitmap
+     * @param update Function returning the new value of the word
+     */
+    private inline fun updateWord(store: Store, offset: Int, word: Int, update: (Long) -> Long) = withLongBuffer {
+        val wordPosition = position + offset + word * java.lang.Long.BYTES
+        store.read(it, wordPosition)
+        it.rewind()
+        val value = update(it.long)
+        it.rewind()
+        it.putLong(value)
+        it.rewind()
+        store.write(it, wordPosition)
+    }
+
+    companion object {
+        const val BLOCK_SIZE = 512
+
+        private const val BITMAP_WORDS = BLOCK_SIZE / 64
+        private const val LIVE_OFFSET = 0
+        private const val PRESENT_OFFSET = BITMAP_WORDS * java.lang.Long.BYTES
+        private const val VALUES_OFFSET = PRESENT_OFFSET * 2
+        private const val BLOCK_BYTES = VALUES_OFFSET + BLOCK_SIZE * java.lang.Long.BYTES
+
+        private val INTEGRAL_TYPES = listOf(Long::class, Int::class, Short::class, Byte::class)
+        private val DECIMAL_TYPES = listOf(Double::class, Float::class)
+
+        /**
+         * Allocate a block within the store with every slot removed
+         *
+         * @param store Store to allocate the block within
+         * @param isDecimal Whether the values are kept as doubles rather than longs
+         * @return The new block
+         */
+        @JvmStatic
+        fun create(store: Store, isDecimal: Boolean): ColumnBlock {
+            val block = ColumnBlock(store.allocate(BLOCK_BYTES), isDecimal)
+            block.write(store)
+            return block
+        }
+
+        /**
+         * Whether an attribute type can be stored as a column
+         *
+         * @param type Attribute type
+         */
+        @JvmStatic
+        fun isSupported(type: Class<*>): Boolean = INTEGRAL_TYPES.contains(type.kotlin) || DECIMAL_TYPES.contains(type.kotlin)
+
+        /**
+         * Whether an attribute type is stored as doubles
+         *
+         * @param type Attribute type
+         */
+        @JvmStatic
+        fun isDecimal(type: Class<*>): Boolean = DECIMAL_TYPES.contains(type.kotlin)
+    }
+}
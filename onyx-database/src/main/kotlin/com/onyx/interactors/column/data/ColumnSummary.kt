@@ -0,0 +1,81 @@
+package com.onyx.interactors.column.data
+
+import com.onyx.extension.common.castTo
+import com.onyx.persistence.query.QueryFunctionType
+
+/**
+ * Running totals of a column used to calculate its group functions.  Summaries of several blocks or partitions are
+ * combined by adding them to the same summary.
+ *
+ * The results match those of QueryFunctionAccumulator.  The count includes null values and so does the divisor of
+ * the average.  A null value is the minimum but is never the maximum.
+ *
+ * @since 2.2.0
+ */
+class ColumnSummary {
+
+    var rows = 0L
+    var values = 0L
+    var sum = 0.0
+    var min: Number? = null
+    var max: Number? = null
+
+    /**
+     * Add the totals of values that are not null
+     *
+     * @param sum Sum of the values
+     * @param min Minimum value
+     * @param max Maximum value
+     */
+    fun add(sum: Double, min: Double, max: Double) {
+        this.sum += sum
+        this.min = Math.min(min, this.min?.toDouble() ?: min)
+        this.max = Math.max(max, this.max?.toDouble() ?: max)
+    }
+
+    /**
+     * Add the totals of integral values that are not null
+     *
+     * @param sum Sum of the values
+     * @param min Minimum value
+     * @param max Maximum value
+     */
+    fun add(sum: Double, min: Long, max: Long) {
+        this.sum += sum
+        this.min = Math.min(min, this.min?.toLong() ?: min)
+        this.max = Math.max(max, this.max?.toLong() ?: max)
+    }
+
+    /**
+     * Add the totals of another summary such as the summary of another partition
+     *
+     * @param summary Totals to add
+     */
+    fun add(summary: ColumnSummary) {
+        rows += summary.rows
+        values += summary.values
+        val min = summary.min
+        val max = summary.max
+        when {
+            min == null || max == null -> sum += summary.sum
+            min is Long -> add(summary.sum, min, max.toLong())
+            else -> add(summary.sum, min.toDouble(), max.toDouble())
+        }
+    }
+
+    /**
+     * Result of a group function
+     *
+     * @param function Function to calculate
+     * @param type Type of the attribute the results are cast to
+     * @return Function result or null if there are no values to calculate it from
+     */
+    fun result(function: QueryFunctionType, type: Class<*>): Any? = when (function) {
+        QueryFunctionType.COUNT -> rows.toInt()
+        QueryFunctionType.SUM -> if (values == 0L) null else sum.castTo(type)
+        QueryFunctionType.AVG -> if (values == 0L) null else ((sum.castTo(type) as Number).toDouble() / rows.toDouble()).castTo(type)
+        QueryFunctionType.MIN -> if (values < rows) null else min?.castTo(type)
+        QueryFunctionType.MAX -> max?.castTo(type)
+        else -> null
+    }
+}
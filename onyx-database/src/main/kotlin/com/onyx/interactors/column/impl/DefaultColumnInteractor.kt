@@ -0,0 +1,169 @@
+package com.onyx.interactors.column.impl
+
+import com.onyx.descriptor.AttributeDescriptor
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.diskmap.DiskMap
+import com.onyx.exception.OnyxException
+import com.onyx.extension.get
+import com.onyx.interactors.column.ColumnInteractor
+import com.onyx.interactors.column.data.ColumnBlock
+import com.onyx.interactors.column.data.ColumnSummary
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.SchemaContext
+
+/**
+ * Stores the values of a columnar attribute as blocks of primitive values.  Each record is given a slot the first
+ * time its value is saved and keeps it while it is updated.  When the record is deleted its slot is put on a free
+ * list and given to the next record, so the column does not grow as records are deleted and added.  Blocks are
+ * allocated once at a fixed position within the store and their slots are updated in place, so saving a value does
+ * not rewrite its block.
+ *
+ * If the column has never been built, it is built from the records when the interactor is created.  This covers
+ * attributes that become columnar after records were saved.
+ *
+ * @since 2.2.0
+ */
+class DefaultColumnInteractor @Throws(OnyxException::class) constructor(private val descriptor: EntityDescriptor, override val attributeDescriptor: AttributeDescriptor, private val context: SchemaContext) : ColumnInteractor {
+
+    private val isDecimal = ColumnBlock.isDecimal(attributeDescriptor.type)
+    private val slots: DiskMap<Long, Long>
+    private val blocks: DiskMap<Long, Long>
+    private val freeSlots: DiskMap<Long, Long>
+    private val metadata: DiskMap<String, Long>
+
+    init {
+        val dataFile = context.getDataFile(descriptor)
+        val name = descriptor.entityClass.name + attributeDescriptor.name
+
+        slots = dataFile.getHashMap(name + "columnSlots", COLUMN_LOAD_FACTOR)
+        blocks = dataFile.getHashMap(name + "columnBlocks", COLUMN_LOAD_FACTOR)
+        freeSlots = dataFile.getHashMap(name + "columnFreeSlots", COLUMN_LOAD_FACTOR)
+        metadata = dataFile.getHashMap(name + "columnMetadata", COLUMN_LOAD_FACTOR)
+
+        if (metadata[NEXT_SLOT] == null)
+            rebuild()
+    }
+
+    /**
+     * Save the attribute value of a record into its slot.  If the record moved to a new reference, the value of
+     * the old reference is removed.
+     *
+     * @param value Attribute value to save
+     * @param oldReferenceId Old entity reference for the value
+     * @param newReferenceId New entity reference for the value
+     */
+    @Throws(OnyxException::class)
+    @Synchronized
+    override fun save(value: Any?, oldReferenceId: Long, newReferenceId: Long) {
+        if (oldReferenceId > 0 && oldReferenceId != newReferenceId)
+            delete(oldReferenceId)
+
+        val slot = slots[newReferenceId] ?: allocate(newReferenceId)
+        val block = getBlock(slot / ColumnBlock.BLOCK_SIZE) ?: newBlock(slot / ColumnBlock.BLOCK_SIZE)
+        block.set(blocks.fileStore, (slot % ColumnBlock.BLOCK_SIZE).toInt(), value)
+    }
+
+    /**
+     * Remove the attribute value of a record and free its slot to be reused
+     *
+     * @param reference Entity reference
+     */
+    @Throws(OnyxException::class)
+    @Synchronized
+    override fun delete(reference: Long) {
+        val slot = slots.remove(reference) ?: return
+        getBlock(slot / ColumnBlock.BLOCK_SIZE)?.clear(blocks.fileStore, (slot % ColumnBlock.BLOCK_SIZE).toInt())
+
+        val freeCount = metadata[FREE_SLOTS] ?: 0L
+        freeSlots[freeCount] = slot
+        metadata[FREE_SLOTS] = freeCount + 1
+    }
+
+    /**
+     * Number of slots within the blocks of the column including those that are free to be reused
+     */
+    override val slotCount: Long
+        get() = metadata[NEXT_SLOT] ?: 0L
+
+    /**
+     * Scan the blocks of the column in slot order and total their values
+     *
+     * @return Totals of the column
+     */
+    @Throws(OnyxException::class)
+    override fun summarize(): ColumnSummary {
+        val summary = ColumnSummary()
+        val blockCount = ((metadata[NEXT_SLOT] ?: 0L) + ColumnBlock.BLOCK_SIZE - 1) / ColumnBlock.BLOCK_SIZE
+        for (index in 0 until blockCount)
+            getBlock(index)?.read(blocks.fileStore)?.summarize(summary)
+        return summary
+    }
+
+    /**
+     * Re-build the column by saving the attribute value of every record.  The existing blocks are cleared in place
+     * and the slots are assigned again from the first slot, so the column is compacted.
+     */
+    @Throws(OnyxException::class)
+    @Synchronized
+    override fun rebuild() {
+        val dataFile = context.getDataFile(descriptor)
+        val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(descriptor.entityClass.name, descriptor.identifier!!.loadFactor.toInt())
+
+        slots.clear()
+        freeSlots.clear()
+        metadata[NEXT_SLOT] = 0L
+        metadata[FREE_SLOTS] = 0L
+        blocks.values.forEach { ColumnBlock(it, isDecimal).write(blocks.fileStore) }
+        records.entries.forEach {
+            val recId = records.getRecID(it.key)
+            if (recId > 0)
+                save(it.value.get<Any?>(context, descriptor, attributeDescriptor.name), recId, recId)
+        }
+    }
+
+    /**
+     * Get a block of the column
+     *
+     * @param index Index of the block
+     * @return The block or null if it has not been allocated
+     */
+    private fun getBlock(index: Long): ColumnBlock? = blocks[index]?.let { ColumnBlock(it, isDecimal) }
+
+    /**
+     * Allocate a block within the store and record its position
+     *
+     * @param index Index of the block
+     * @return The new block
+     */
+    private fun newBlock(index: Long): ColumnBlock {
+        val block = ColumnBlock.create(blocks.fileStore, isDecimal)
+        blocks[index] = block.position
+        return block
+    }
+
+    /**
+     * Assign a slot to a reference.  The most recently freed slot is reused before a new slot is added.
+     *
+     * @param reference Entity reference
+     * @return Slot of the reference
+     */
+    private fun allocate(reference: Long): Long {
+        val freeCount = metadata[FREE_SLOTS] ?: 0L
+        val slot = if (freeCount > 0) {
+            metadata[FREE_SLOTS] = freeCount - 1
+            freeSlots.remove(freeCount - 1)!!
+        } else {
+            val next = metadata[NEXT_SLOT] ?: 0L
+            metadata[NEXT_SLOT] = next + 1
+            next
+        }
+        slots[reference] = slot
+        return slot
+    }
+
+    companion object {
+        private val COLUMN_LOAD_FACTOR = 1
+        private val NEXT_SLOT = "nextSlot"
+        private val FREE_SLOTS = "freeSlots"
+    }
+}
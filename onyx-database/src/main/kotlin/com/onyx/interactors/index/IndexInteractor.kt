@@ -2,6 +2,8 @@ package com.onyx.interactors.index
 
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.exception.OnyxException
+import com.onyx.interactors.index.data.IndexStatistics
+import com.onyx.persistence.query.QueryCriteriaOperator
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -37,6 +39,16 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun findAll(indexValue: Any?): Map<Long, *>
 
+    /**
+     * Find the references of several index values such as the values of an in clause
+     *
+     * @param indexValues Index values to find references for
+     * @return References matching any of the index values
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllIn(indexValues: Collection<Any?>): Iterator<Long>
+
     /**
      * Find all the references above and perhaps equal to the key parameter
      * @param indexValue The key to compare.  This must be comparable.  It is only sorted by comparable values
@@ -63,6 +75,35 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun findAllBelow(indexValue: Any?, includeValue: Boolean): Set<Long>
 
+    /**
+     * Iterate through the record references in the order of their index values.  Only the index values that are
+     * iterated are read.
+     *
+     * @param ascending Whether to start from the lowest index value or the highest
+     * @return Iterator of record references in index order
+     *
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllInOrder(ascending: Boolean): Iterator<Long>
+
+    /**
+     * Iterate through the record references in the order of their index values starting from an index value.  The
+     * index is sought to the value rather than iterated from the first value.
+     *
+     * @param ascending Whether to iterate from lower index values to higher ones or the reverse
+     * @param from Index value to start from.  References of an equal index value are included.
+     * @return Iterator of record references in index order starting from the value
+     *
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllInOrder(ascending: Boolean, from: Any): Iterator<Long>
+
     /**
      * Get Index descriptor
      *
@@ -78,6 +119,40 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun findAllValues(): Set<Any>
 
+    /**
+     * Find all index values and the number of references of each.  Index values no longer referenced are excluded.
+     *
+     * @return Index values and their reference counts
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllValueCounts(): Map<Any, Long>
+
+    /**
+     * Find the lowest or highest index value that is referenced
+     *
+     * @param ascending Whether to find the lowest index value or the highest
+     * @return First index value or null if there are no references
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findFirstValue(ascending: Boolean): Any?
+
+    /**
+     * Count the records that have an index value.  Unlike the index statistics, this is always exact.
+     *
+     * @return Number of records referenced by the index
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun countRecords(): Long
+
     /**
      * ReBuilds an index by iterating through all the values and re-mapping index values
      *
@@ -85,4 +160,54 @@ interface IndexInteractor {
     @Throws(OnyxException::class)
     fun rebuild()
 
+    /**
+     * Statistics describing the distribution of index values
+     *
+     * @since 2.2.0
+     */
+    val statistics: IndexStatistics
+
+    /**
+     * Estimate the number of references matching an operator and index value
+     *
+     * @param operator Criteria operator
+     * @param indexValue Criteria value
+     * @return Estimated number of references
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun estimateCount(operator: QueryCriteriaOperator, indexValue: Any?): Long
+
+    /**
+     * Count the references matching an operator and index value.  The count is the sum of the reference counts kept
+     * within the header of each matching index value so the references are not read.
+     *
+     * @param operator Criteria operator
+     * @param indexValue Criteria value
+     * @return Number of references
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun count(operator: QueryCriteriaOperator, indexValue: Any?): Long
+
+    /**
+     * Re-calculate and persist the index statistics
+     *
+     * @return Analyzed statistics
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun analyze(): IndexStatistics
+
+    /**
+     * Persist the statistics modifications that have not been saved yet.  This is done before the data file is
+     * closed so the statistics do not lag the index after a restart.
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun flushStatistics()
+
 }
@@ -0,0 +1,196 @@
+package com.onyx.interactors.index.data
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.extension.common.castTo
+import com.onyx.persistence.query.QueryCriteriaOperator
+
+/**
+ * Statistics for an index used by the query planner to estimate how many references a criteria will match.
+ *
+ * The record and distinct value counts are maintained as index values are saved and deleted.  The histogram is an
+ * equi-depth histogram built when the index is analyzed.  Each bucket contains the lowest value within the bucket and
+ * the number of references within it.  The bucket counts are adjusted as values are added and removed but the bounds
+ * are only re-calculated upon analyzing the index.
+ *
+ * @since 2.2.0
+ */
+class IndexStatistics @JvmOverloads constructor(var recordCount: Long = 0L, var distinctValues: Long = 0L) : BufferStreamable {
+
+    var bounds: MutableList<Any?> = ArrayList()
+    var counts: LongArray = LongArray(0)
+
+    @Transient
+    var modifications = 0
+
+    /**
+     * Whether the index has been analyzed and has a histogram
+     */
+    val isAnalyzed: Boolean
+        get() = bounds.isNotEmpty()
+
+    /**
+     * Record an index value was added
+     *
+     * @param value Index value
+     * @param isNewValue Whether this is the first reference with that index value
+     */
+    @Synchronized
+    fun added(value: Any?, isNewValue: Boolean) {
+        recordCount++
+        if (isNewValue)
+            distinctValues++
+        if (isAnalyzed)
+            counts[bucketFor(value)]++
+        modifications++
+    }
+
+    /**
+     * Record an index value was removed
+     *
+     * @param value Index value
+     * @param isLastValue Whether that was the last reference with that index value
+     */
+    @Synchronized
+    fun removed(value: Any?, isLastValue: Boolean) {
+        if (recordCount > 0) recordCount--
+        if (isLastValue && distinctValues > 0)
+            distinctValues--
+        if (isAnalyzed) {
+            val bucket = bucketFor(value)
+            if (counts[bucket] > 0) counts[bucket]--
+        }
+        modifications++
+    }
+
+    /**
+     * Estimate the number of references that will match the operator and value
+     *
+     * @param operator Criteria operator
+     * @param value Criteria value
+     * @return Estimated number of matching references
+     */
+    @Synchronized
+    fun estimate(operator: QueryCriteriaOperator, value: Any?): Long = try {
+        when (operator) {
+            QueryCriteriaOperator.EQUAL -> if (distinctValues > 0) Math.max(1L, recordCount / distinctValues) else 0L
+            QueryCriteriaOperator.IN -> (value as? List<*>)?.map { estimate(QueryCriteriaOperator.EQUAL, it) }?.sum() ?: recordCount
+            QueryCriteriaOperator.GREATER_THAN,
+            QueryCriteriaOperator.GREATER_THAN_EQUAL -> if (isAnalyzed) estimateAbove(value) else recordCount / 2
+            QueryCriteriaOperator.LESS_THAN,
+            QueryCriteriaOperator.LESS_THAN_EQUAL -> if (isAnalyzed) estimateBelow(value) else recordCount / 2
+            else -> recordCount
+        }
+    } catch (e: Exception) {
+        recordCount
+    }
+
+    /**
+     * Estimate references above a value by taking all the buckets above it and half of the bucket containing it
+     */
+    private fun estimateAbove(value: Any?): Long {
+        if (compareKeys(value, bounds[0]) < 0)
+            return counts.sum()
+        val bucket = bucketFor(value)
+        return (bucket + 1 until counts.size).map { counts[it] }.sum() + counts[bucket] / 2
+    }
+
+    /**
+     * Estimate references below a value by taking all the buckets below it and half of the bucket containing it
+     */
+    private fun estimateBelow(value: Any?): Long {
+        if (compareKeys(value, bounds[0]) < 0)
+            return 0L
+        val bucket = bucketFor(value)
+        return (0 until bucket).map { counts[it] }.sum() + counts[bucket] / 2
+    }
+
+    /**
+     * Find the bucket a value belongs to.  That is the last bucket whose lower bound is less than or equal to the value.
+     */
+    private fun bucketFor(value: Any?): Int {
+        var low = 0
+        var high = bounds.size - 1
+        while (low < high) {
+            val middle = (low + high + 1) ushr 1
+            if (compareKeys(bounds[middle], value) <= 0)
+                low = middle
+            else
+                high = middle - 1
+        }
+        return low
+    }
+
+    override fun read(buffer: BufferStream) {
+        recordCount = buffer.long
+        distinctValues = buffer.long
+        @Suppress("UNCHECKED_CAST")
+        bounds = buffer.value as MutableList<Any?>
+        counts = buffer.value as LongArray
+    }
+
+    override fun write(buffer: BufferStream) {
+        buffer.putLong(recordCount)
+        buffer.putLong(distinctValues)
+        buffer.putObject(bounds)
+        buffer.putObject(counts)
+    }
+
+    companion object {
+
+        const val HISTOGRAM_BUCKETS = 32
+
+        /**
+         * Build statistics from index values and the number of references for each value
+         *
+         * @param valueCounts Index values and their reference counts
+         * @param buckets Maximum number of histogram buckets
+         * @return Statistics with an equi-depth histogram
+         */
+        @JvmStatic
+        fun build(valueCounts: List<Pair<Any?, Long>>, buckets: Int = HISTOGRAM_BUCKETS): IndexStatistics {
+            val values = valueCounts.filter { it.second > 0 }
+            val statistics = IndexStatistics(values.map { it.second }.sum(), values.size.toLong())
+
+            val sorted = try {
+                values.sortedWith(Comparator { first, second -> compareKeys(first.first, second.first) })
+            } catch (e: Exception) {
+                return statistics // Values are not comparable, there is no use for a histogram
+            }
+
+            if (sorted.isEmpty())
+                return statistics
+
+            val depth = Math.max(1L, statistics.recordCount / buckets)
+            val bounds = ArrayList<Any?>()
+            val counts = ArrayList<Long>()
+            var bucketCount = depth
+
+            sorted.forEach {
+                if (bucketCount >= depth && bounds.size < buckets) {
+                    bounds.add(it.first)
+                    counts.add(0L)
+                    bucketCount = 0L
+                }
+                counts[counts.size - 1] = counts[counts.size - 1] + it.second
+                bucketCount += it.second
+            }
+
+            statistics.bounds = bounds
+            statistics.counts = counts.toLongArray()
+            return statistics
+        }
+
+        /**
+         * Compare index keys.  Null values are sorted first.
+         */
+        @Suppress("UNCHECKED_CAST")
+        private fun compareKeys(first: Any?, second: Any?): Int = when {
+            first == null && second == null -> 0
+            first == null -> -1
+            second == null -> 1
+            first::class == second::class -> (first as Comparable<Any?>).compareTo(second)
+            else -> (first as Comparable<Any?>).compareTo(second.castTo(first::class.java))
+        }
+    }
+}
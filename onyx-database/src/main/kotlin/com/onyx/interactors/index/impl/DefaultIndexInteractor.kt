@@ -4,12 +4,14 @@ import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.index.IndexInteractor
+import com.onyx.interactors.index.data.IndexStatistics
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.interactors.record.RecordInteractor
 import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.data.Header
-import com.onyx.extension.identifier
+import com.onyx.extension.get
+import com.onyx.persistence.query.QueryCriteriaOperator
 
 import java.util.*
 import kotlin.collections.HashMap
@@ -24,6 +26,7 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
 
     private var references: DiskMap<Any, Header>// Stores the references for an index key
     private var indexValues: DiskMap<Long, Any>
+    private var statisticsStore: DiskMap<String, IndexStatistics>
     private var recordInteractor: RecordInteractor? = null
 
     init {
@@ -33,8 +36,21 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
 
         references = dataFile.getHashMap(descriptor.entityClass.name + indexDescriptor.name, indexDescriptor.loadFactor.toInt())
         indexValues = dataFile.getHashMap(descriptor.entityClass.name + indexDescriptor.name + "indexValues", indexDescriptor.loadFactor.toInt())
+        statisticsStore = dataFile.getHashMap(descriptor.entityClass.name + indexDescriptor.name + "statistics", STATISTICS_LOAD_FACTOR)
+    }
+
+    private val statisticsDelegate = lazy {
+        statisticsStore[indexDescriptor.name] ?: buildStatistics().apply { statisticsStore[indexDescriptor.name] = this }
     }
 
+    /**
+     * Index statistics.  If the index has never been analyzed, the statistics are built from the index values the
+     * first time they are used.
+     *
+     * @since 2.2.0
+     */
+    override val statistics: IndexStatistics by statisticsDelegate
+
     /**
      * Save an index key with the record reference
      *
@@ -50,8 +66,10 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
         }
 
         val dataFile = context.getDataFile(descriptor)
+        val statistics = statistics // Build the statistics before the index values are locked
 
         references.compute(indexValue!!) { _, existingHeader ->
+            statistics.added(indexValue, existingHeader == null || existingHeader.recordCount.get() == 0L)
             val header = existingHeader ?: dataFile.newMapHeader()
             val indexes: DiskMap<Long, Any?> = dataFile.newHashMap(header, INDEX_VALUE_MAP_LOAD_FACTOR)
             indexes.put(newReferenceId, null)
@@ -61,6 +79,7 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
             header
         }
         indexValues.put(newReferenceId, indexValue)
+        checkStatistics()
     }
 
     /**
@@ -74,6 +93,7 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
             val indexValue = indexValues.remove(reference)
             if (indexValue != null) {
                 val dataFile = context.getDataFile(descriptor)
+                val statistics = statistics // Build the statistics before the index values are locked
 
                 references.computeIfPresent(indexValue) { _, header ->
                     val indexes: DiskMap<Long, Any?> = dataFile.newHashMap(header!!, INDEX_VALUE_MAP_LOAD_FACTOR)
@@ -81,8 +101,10 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
                     header.firstNode = indexes.reference.firstNode
                     header.position = indexes.reference.position
                     header.recordCount.set(indexes.reference.recordCount.get())
+                    statistics.removed(indexValue, header.recordCount.get() == 0L)
                     header
                 }
+                checkStatistics()
             }
         }
     }
@@ -101,6 +123,43 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
         return dataFile.newHashMap(header, INDEX_VALUE_MAP_LOAD_FACTOR)
     }
 
+    /**
+     * Find the references of several index values.  Each distinct value is probed once in key order.  If there are
+     * enough values that probing would cost more than reading every index value, the index values are instead read
+     * once and matched against the values using a hash set.
+     *
+     * @param indexValues Index values to find references for
+     * @return References matching any of the index values
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun findAllIn(indexValues: Collection<Any?>): Iterator<Long> {
+        val values = LinkedHashSet(indexValues)
+        val headers = if (values.size.toLong() * PROBE_COST >= references.longSize())
+            references.entries.asSequence().filter { values.contains(it.key) }.map { it.value }
+        else
+            inKeyOrder(values).asSequence().mapNotNull { references[it] }
+
+        val dataFile = context.getDataFile(descriptor)
+        return headers.flatMap { dataFile.newHashMap<DiskMap<Long, Any?>>(it, INDEX_VALUE_MAP_LOAD_FACTOR).keys.asSequence() }.iterator()
+    }
+
+    /**
+     * Sort index values in key order with null first.  Values that cannot be compared are left in their order.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun inKeyOrder(values: Collection<Any?>): List<Any?> = try {
+        values.sortedWith(Comparator { first, second ->
+            when {
+                first == null -> if (second == null) 0 else -1
+                second == null -> 1
+                else -> (first as Comparable<Any?>).compareTo(second)
+            }
+        })
+    } catch (e: Exception) {
+        values.toList()
+    }
+
     /**
      * Find all index references
      *
@@ -109,6 +168,47 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
     @Throws(OnyxException::class)
     override fun findAllValues(): Set<Any> = references.keys
 
+    /**
+     * Find all index values and the number of references of each.  The count is read from the header of each index
+     * value so the references are not read.
+     *
+     * @return Index values and their reference counts
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun findAllValueCounts(): Map<Any, Long> {
+        val counts = HashMap<Any, Long>()
+        references.entries.forEach {
+            val count = it.value.recordCount.get()
+            if (count > 0)
+                counts.put(it.key, count)
+        }
+        return counts
+    }
+
+    /**
+     * Find the lowest or highest index value that is referenced.  The index values are sorted so this is the index
+     * value of the first reference in index order.
+     *
+     * @param ascending Whether to find the lowest index value or the highest
+     * @return First index value or null if there are no references
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun findFirstValue(ascending: Boolean): Any? {
+        val references = findAllInOrder(ascending)
+        return if (references.hasNext()) indexValues[references.next()] else null
+    }
+
+    /**
+     * Count the records that have an index value.  Each record has one entry within the index values.
+     *
+     * @return Number of records referenced by the index
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun countRecords(): Long = indexValues.longSize()
+
     /**
      * Find all the references above and perhaps equal to the key parameter
      *
@@ -165,6 +265,49 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
         return allReferences
     }
 
+    /**
+     * Iterate through the record references in the order of their index values.  The index values are sorted so the
+     * references of an index value are only read once the iteration reaches it.
+     *
+     * This has the same prerequisite as findAllAbove.  The index values must be comparable.
+     *
+     * @param ascending Whether to start from the lowest index value or the highest
+     * @return Iterator of record references in index order
+     *
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun findAllInOrder(ascending: Boolean): Iterator<Long> = referencesOf(references.sortedReferences(ascending))
+
+    /**
+     * Iterate through the record references in index order starting from an index value.  The index values are sought
+     * to the value so only the index values from it on are read.
+     *
+     * @param ascending Whether to iterate from lower index values to higher ones or the reverse
+     * @param from Index value to start from
+     * @return Iterator of record references in index order
+     *
+     * @throws OnyxException Exception while reading the data structure
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun findAllInOrder(ascending: Boolean, from: Any): Iterator<Long> = referencesOf(references.sortedReferences(ascending, from))
+
+    /**
+     * Expand index value references into the record references of each index value as they are iterated
+     */
+    private fun referencesOf(indexValueReferences: Iterator<Long>): Iterator<Long> {
+        val dataFile = context.getDataFile(descriptor)
+
+        return indexValueReferences.asSequence()
+                .mapNotNull { references.getWithRecID(it) }
+                .flatMap { dataFile.newHashMap<DiskMap<Long, Any?>>(it, INDEX_VALUE_MAP_LOAD_FACTOR).keys.asSequence() }
+                .iterator()
+    }
+
     /**
      * ReBuilds an index by iterating through all the values and re-mapping index values
      *
@@ -176,14 +319,122 @@ class DefaultIndexInteractor @Throws(OnyxException::class) constructor(private v
         records.entries.forEach {
             val recId = records.getRecID(it.key)
             if (recId > 0) {
-                val indexValue = it.value.identifier(context, descriptor)
+                val indexValue = indexDescriptor.indexValue(it.value.get<Any?>(context, descriptor, indexDescriptor.name))
                 if (indexValue != null)
                     save(indexValue, recId, recId)
             }
         }
     }
 
+    /**
+     * Estimate how many references match an operator and value.  Equality is resolved using the reference count
+     * within the header of the index value.  Ranges are estimated using the histogram of the index statistics.
+     *
+     * @param operator Criteria operator
+     * @param indexValue Criteria value
+     * @return Estimated number of references
+     *
+     * @since 2.2.0
+     */
+    override fun estimateCount(operator: QueryCriteriaOperator, indexValue: Any?): Long = when (operator) {
+        QueryCriteriaOperator.EQUAL -> if (indexValue == null) statistics.estimate(operator, indexValue) else references[indexValue]?.recordCount?.get() ?: 0L
+        QueryCriteriaOperator.IN -> (indexValue as? List<*>)?.map { estimateCount(QueryCriteriaOperator.EQUAL, it) }?.sum() ?: statistics.recordCount
+        else -> statistics.estimate(operator, indexValue)
+    }
+
+    /**
+     * Count the references matching an operator and index value.  Ranges sum the reference count of each index value
+     * within the range.  Otherwise it is the reference count of the index value.
+     *
+     * @param operator Criteria operator
+     * @param indexValue Criteria value
+     * @return Number of references
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun count(operator: QueryCriteriaOperator, indexValue: Any?): Long = when (operator) {
+        QueryCriteriaOperator.GREATER_THAN -> countReferences(references.above(indexValue!!, false))
+        QueryCriteriaOperator.GREATER_THAN_EQUAL -> countReferences(references.above(indexValue!!, true))
+        QueryCriteriaOperator.LESS_THAN -> countReferences(references.below(indexValue!!, false))
+        QueryCriteriaOperator.LESS_THAN_EQUAL -> countReferences(references.below(indexValue!!, true))
+        else -> references[indexValue]?.recordCount?.get() ?: 0L
+    }
+
+    /**
+     * Sum the reference counts of index values
+     *
+     * @param indexValueIds Record ids of the index values
+     * @return Number of references of the index values
+     */
+    private fun countReferences(indexValueIds: Set<Long>): Long = indexValueIds.map { references.getWithRecID(it)?.recordCount?.get() ?: 0L }.sum()
+
+    /**
+     * Analyze the index.  This gathers the reference count for each index value and builds the histogram used to
+     * estimate the selectivity of criteria.  The statistics are persisted so they survive restarts.
+     *
+     * @return Newly calculated statistics
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun analyze(): IndexStatistics {
+        val analyzed = buildStatistics()
+
+        synchronized(statistics) {
+            statistics.recordCount = analyzed.recordCount
+            statistics.distinctValues = analyzed.distinctValues
+            statistics.bounds = analyzed.bounds
+            statistics.counts = analyzed.counts
+            statistics.modifications = 0
+            statisticsStore[indexDescriptor.name] = statistics
+        }
+        return statistics
+    }
+
+    /**
+     * Persist the statistics if they have been modified since they were last saved
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun flushStatistics() {
+        if (statisticsDelegate.isInitialized() && statistics.modifications > 0)
+            saveStatistics()
+    }
+
+    /**
+     * Build statistics from the reference count of each index value.  Index values without references are not
+     * counted as distinct values.
+     *
+     * @return Statistics of the index values
+     */
+    private fun buildStatistics(): IndexStatistics =
+            IndexStatistics.build(references.entries.map { Pair<Any?, Long>(it.key, it.value.recordCount.get()) })
+
+    /**
+     * Persist the statistics once enough modifications have been made.  This avoids writing the statistics with every
+     * index change while still keeping the persisted copy reasonably close to the truth.  The remaining modifications
+     * are saved by [flushStatistics] when the data file is closed.
+     */
+    private fun checkStatistics() {
+        if (statistics.modifications >= Math.max(STATISTICS_FLUSH_THRESHOLD.toLong(), statistics.recordCount / 10))
+            saveStatistics()
+    }
+
+    /**
+     * Write the statistics to the statistics store
+     */
+    private fun saveStatistics() = synchronized(statistics) {
+        statistics.modifications = 0
+        statisticsStore[indexDescriptor.name] = statistics
+    }
+
     companion object {
         private val INDEX_VALUE_MAP_LOAD_FACTOR = 1
+        private val STATISTICS_LOAD_FACTOR = 1
+        private val STATISTICS_FLUSH_THRESHOLD = 1000
+
+        // Relative cost of probing an index value compared to reading the next index value in sequence
+        private val PROBE_COST = 4
     }
 }
@@ -18,6 +18,31 @@ interface QueryInteractor {
     @Throws(OnyxException::class)
     fun <T : Any?> getReferencesForQuery(query: Query): MutableMap<Reference, T>
 
+    /**
+     * Find the first references of a query with a row limitation by reading them in the order of the leading query
+     * order.  This avoids finding and sorting every matching reference.  It is only used if the leading query order is
+     * the identifier or indexed and reading in order is estimated to be cheaper than scanning the criteria.
+     *
+     * @param query Query containing order instructions and row limitations
+     * @return Sorted references or null if the references cannot or should not be read in order
+     * @throws OnyxException General query exception
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> getReferencesInIndexOrder(query: Query): MutableMap<Reference, T>?
+
+    /**
+     * Iterate the references matching a query as the records are scanned rather than collecting them first.  This
+     * is only possible if the query is unsorted and its criteria are checked with a full table scan.
+     *
+     * @param query Query Criteria
+     * @return References matching query criteria within the rows requested or null if they must be collected
+     * @throws OnyxException General query exception
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun streamReferences(query: Query): Iterator<Reference>?
+
     /**
      * Sort using order by query order objects with included values
      *
@@ -28,6 +53,34 @@ interface QueryInteractor {
      */
     fun <T : Any?> sort(query: Query, referenceValues: MutableMap<Reference, T>): MutableMap<Reference, T>
 
+    /**
+     * Sort references that do not fit within the sort buffer.  Sorted runs are written to temporary storage and
+     * merged as the entries are iterated so the sorted references are never collected.
+     *
+     * @param query           Query containing order instructions
+     * @param referenceValues Query reference values from result of scan
+     * @return Entries of the references in sort order.  They can be iterated once and only until the query is
+     *         cleaned up.
+     * @throws OnyxException Error sorting objects
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> sortExternally(query: Query, referenceValues: MutableMap<Reference, T>): Sequence<MutableMap.MutableEntry<Reference, T>>
+
+    /**
+     * Sort and retain only the first firstRow + maxResults references.  Memory and time scale with the number of
+     * rows requested rather than the number of matching references.  If the query has a keyset cursor, only the
+     * references after it are retained.
+     *
+     * @param query           Query containing order instructions and row limitations
+     * @param referenceValues Query reference values from result of scan
+     * @return Sorted references limited to the rows requested
+     * @throws OnyxException Error sorting objects
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> sortFirstRows(query: Query, referenceValues: MutableMap<Reference, T>): MutableMap<Reference, T>
+
     /**
      * Sort a set of hydrated results.  This is in the event of aggregation or grouping on data that
      * sorting the references is not sufficient
@@ -47,6 +100,18 @@ interface QueryInteractor {
     @Throws(OnyxException::class)
     fun <T : Any?> referencesToResults(query: Query, references: MutableMap<Reference, T>): List<T>
 
+    /**
+     * Hydrate the records of references in sort order within the rows of the query
+     *
+     * @param query      Query containing all the munging instructions
+     * @param references Entries of the references from query results
+     * @return Hydrated entities
+     * @throws OnyxException Error hydrating entities
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> referencesToResults(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): List<T>
+
     /**
      * Get grouped by results.  This is in the event a query has specified groupBy and has selections.
      *
@@ -80,6 +145,16 @@ interface QueryInteractor {
      */
     fun <T : Any?> filterReferences(query: Query, references: MutableMap<Reference, T>): MutableMap<Reference, T>
 
+    /**
+     * Return the entries within the rows of a query based on maxResults & firstRow
+     *
+     * @param query      Query containing all the munging instructions
+     * @param references Entries of the references from query results
+     * @return Entries within the rows of the query
+     * @since 2.2.0
+     */
+    fun <T : Any?> filterReferences(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): Sequence<MutableMap.MutableEntry<Reference, T>>
+
     /**
      * Hydrate given attributes
      *
@@ -91,6 +166,53 @@ interface QueryInteractor {
     @Throws(OnyxException::class)
     fun <T : Any?> referencesToSelectionResults(query: Query, references: Map<Reference, T>): List<T>
 
+    /**
+     * Hydrate given attributes of references in sort order
+     *
+     * @param query      Query containing selection and count information
+     * @param references Entries of the references found during query execution
+     * @return Hydrated key value set for entity attributes
+     * @throws OnyxException Cannot hydrate entities
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> referencesToSelectionResults(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): List<T>
+
+    /**
+     * Get the selection results of a query using only the values of an index and their reference counts.  This
+     * applies to distinct values, counts grouped by an indexed attribute, and the minimum or maximum of an indexed
+     * attribute of the entire table.
+     *
+     * @param query Query containing selections
+     * @return Selection results or null if the query cannot be answered using an index
+     * @throws OnyxException Cannot read index
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> getSelectionResultsFromIndex(query: Query): List<T>?
+
+    /**
+     * Join the records of a query to the records of the joined entity whose join attribute is equal
+     *
+     * @param query Query containing a join
+     * @return Selection rows containing the selections of both entities
+     * @throws OnyxException Error reading the joined records
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun <T : Any?> getJoinResults(query: Query): List<T>
+
+    /**
+     * Get the distinct values selected by a sub query
+     *
+     * @param query Sub query selecting a single attribute.  If it has no selections, the identifier is selected.
+     * @return Distinct values of the selection that are not null
+     * @throws OnyxException Error executing the sub query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun getSubQueryValues(query: Query): Set<Any>
+
     /**
      * Delete record with reference ids
      *
@@ -126,6 +248,19 @@ interface QueryInteractor {
     @Throws(OnyxException::class)
     fun getCountForQuery(query: Query): Long
 
+    /**
+     * Get the count for a query only if it can be counted without reading records.  A query without criteria is
+     * counted using the size of the entity's records and a single indexed criteria using the reference counts of its
+     * index values.
+     *
+     * @param query Query to identify count for
+     * @return The number of records matching query criterion or null if the records would have to be scanned
+     * @throws OnyxException Exception occurred while counting
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun getCountFromIndexes(query: Query): Long?
+
     /**
      * Cleanup the query controller references so that we do not have memory leaks.
      * The most important part of this is to recycle the temporary map builders.
@@ -0,0 +1,85 @@
+package com.onyx.interactors.query.data
+
+/**
+ * HyperLogLog sketch estimating the number of distinct values.  Each value is hashed and the register selected by
+ * the first bits of the hash keeps the longest run of leading zeros seen within the remaining bits.  The registers
+ * take a fixed amount of memory regardless of how many values are added.
+ *
+ * Sketches are merged by keeping the larger of each register so the sketches of partitions or groups built
+ * separately can be combined into the sketch of all their values.
+ *
+ * @param precision Number of hash bits used to select a register.  The standard error is about 1.04 / sqrt(2^precision).
+ * @since 2.2.0
+ */
+class HyperLogLog @JvmOverloads constructor(private val precision: Int = DEFAULT_PRECISION) {
+
+    private val registers = ByteArray(1 shl precision)
+
+    /**
+     * Add a value to the sketch
+     *
+     * @param value Value to add.  Null values are not counted.
+     */
+    fun add(value: Any?) {
+        if (value == null)
+            return
+
+        val hash = mix(when (value) {
+            is Long -> value
+            is Double -> java.lang.Double.doubleToLongBits(value)
+            else -> value.hashCode().toLong()
+        })
+
+        val index = (hash ushr (64 - precision)).toInt()
+        val rank = (java.lang.Long.numberOfLeadingZeros((hash shl precision) or (1L shl (precision - 1))) + 1).toByte()
+        if (rank > registers[index])
+            registers[index] = rank
+    }
+
+    /**
+     * Merge another sketch into this one
+     *
+     * @param other Sketch built with the same precision
+     */
+    fun merge(other: HyperLogLog) {
+        require(other.precision == precision) { "Sketches must have the same precision to be merged" }
+        for (i in registers.indices)
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i]
+    }
+
+    /**
+     * Estimated number of distinct values added.  Small cardinalities use linear counting of the empty registers.
+     */
+    val estimate: Long
+        get() {
+            val m = registers.size.toDouble()
+            var sum = 0.0
+            var zeros = 0
+            for (register in registers) {
+                sum += 1.0 / (1L shl register.toInt())
+                if (register.toInt() == 0)
+                    zeros++
+            }
+
+            val raw = (0.7213 / (1.0 + 1.079 / m)) * m * m / sum
+            return Math.round(if (raw <= 2.5 * m && zeros > 0) m * Math.log(m / zeros) else raw)
+        }
+
+    companion object {
+        const val DEFAULT_PRECISION = 12
+
+        /**
+         * Spread the bits of a hash code across all 64 bits.  This is the finalizer of MurmurHash3.
+         */
+        private fun mix(value: Long): Long {
+            var hash = value
+            hash = hash xor (hash ushr 33)
+            hash *= -0xae502812aa7333L
+            hash = hash xor (hash ushr 33)
+            hash *= -0x3b314601e57a13adL
+            hash = hash xor (hash ushr 33)
+            return hash
+        }
+    }
+}
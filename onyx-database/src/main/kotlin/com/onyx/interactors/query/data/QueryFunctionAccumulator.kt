@@ -0,0 +1,107 @@
+package com.onyx.interactors.query.data
+
+import com.onyx.extension.common.castTo
+import com.onyx.extension.common.compare
+import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryFunction
+import com.onyx.persistence.query.QueryFunctionType
+
+/**
+ * Calculates a group function one value at a time.  Rather than retaining every value of a group, only the running
+ * count, sum, and minimum or maximum are kept.  The results are the same as applying the function to the list of
+ * values.
+ *
+ * Approximate distinct counts and percentiles are kept as sketches of the values.  Accumulators of the same function
+ * can be merged so groups or partitions accumulated separately can be combined.
+ *
+ * @param function Group function to calculate
+ * @since 2.2.0
+ */
+class QueryFunctionAccumulator(val function: QueryFunction) {
+
+    private var count = 0
+    private var sum = 0.0
+    private var sumType: Class<*>? = null
+    private var extreme: Any? = null
+    private var distinct: HyperLogLog? = null
+    private var digest: TDigest? = null
+
+    /**
+     * Add a value to the function
+     *
+     * @param value Attribute value of a record
+     * @return Whether the value is the new minimum or maximum
+     */
+    fun add(value: Any?): Boolean {
+        count++
+        return when (function.type) {
+            QueryFunctionType.SUM, QueryFunctionType.AVG -> {
+                if (sumType == null && value != null)
+                    sumType = value.javaClass
+                sum += (value as Number?)?.toDouble() ?: 0.0
+                false
+            }
+            QueryFunctionType.MIN -> replaceExtreme(value, count == 1 || value.compare(extreme, QueryCriteriaOperator.GREATER_THAN))
+            QueryFunctionType.MAX -> replaceExtreme(value, count == 1 || extreme.compare(value, QueryCriteriaOperator.GREATER_THAN))
+            QueryFunctionType.APPROX_COUNT_DISTINCT -> {
+                (distinct ?: HyperLogLog().also { distinct = it }).add(value)
+                false
+            }
+            QueryFunctionType.PERCENTILE, QueryFunctionType.MEDIAN -> {
+                if (value is Number)
+                    (digest ?: TDigest().also { digest = it }).add(value.toDouble())
+                false
+            }
+            else -> false
+        }
+    }
+
+    /**
+     * Merge the values of another accumulator of the same function into this one
+     *
+     * @param other Accumulator to add the values of
+     * @since 2.2.0
+     */
+    fun merge(other: QueryFunctionAccumulator) {
+        count += other.count
+        sum += other.sum
+        sumType = sumType ?: other.sumType
+        if (other.count > 0) {
+            when (function.type) {
+                QueryFunctionType.MIN -> if (count == other.count || other.extreme.compare(extreme, QueryCriteriaOperator.GREATER_THAN)) extreme = other.extreme
+                QueryFunctionType.MAX -> if (count == other.count || extreme.compare(other.extreme, QueryCriteriaOperator.GREATER_THAN)) extreme = other.extreme
+                else -> Unit
+            }
+        }
+        other.distinct?.let { (distinct ?: HyperLogLog().also { distinct = it }).merge(it) }
+        other.digest?.let { (digest ?: TDigest().also { digest = it }).merge(it) }
+    }
+
+    /**
+     * Result of the function for the values added.  The sum and average are cast to the type of the values.  If there
+     * were no values to sum, the result is null.  Percentiles are interpolated so they are always a Double and the
+     * approximate distinct count is a Long.
+     */
+    val result: Any?
+        get() = when (function.type) {
+            QueryFunctionType.SUM -> sumType?.let { sum.castTo(it) }
+            QueryFunctionType.AVG -> sumType?.let { sum.castTo(it) }?.let { ((it as Number).toDouble() / count.toDouble()).castTo(it.javaClass) }
+            QueryFunctionType.MIN, QueryFunctionType.MAX -> extreme
+            QueryFunctionType.COUNT -> count
+            QueryFunctionType.APPROX_COUNT_DISTINCT -> distinct?.estimate ?: 0L
+            QueryFunctionType.PERCENTILE, QueryFunctionType.MEDIAN -> digest?.quantile(function.percentile)
+            else -> null
+        }
+
+    /**
+     * Whether the result is calculated from all of the values rather than taken from a single record
+     */
+    val isFullResult: Boolean
+        get() = function.type != QueryFunctionType.MIN && function.type != QueryFunctionType.MAX
+
+    private fun replaceExtreme(value: Any?, replace: Boolean): Boolean {
+        if (replace)
+            extreme = value
+        return replace
+    }
+}
@@ -0,0 +1,336 @@
+package com.onyx.interactors.query.data
+
+import com.onyx.buffer.RecordValues
+import com.onyx.buffer.ValueFormat
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.exception.InvalidDataTypeForOperator
+import com.onyx.exception.OnyxException
+import com.onyx.extension.common.castTo
+import com.onyx.extension.common.compare
+import com.onyx.extension.common.getAny
+import com.onyx.extension.get
+import com.onyx.extension.getRelationshipFromStore
+import com.onyx.interactors.record.data.Reference
+import com.onyx.persistence.IManagedEntity
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryFunction
+import java.lang.reflect.Field
+
+/**
+ * The criteria of a query compiled into a tree of predicates.  Each criteria is resolved once to the field it reads
+ * and a matcher for its operator so checking a record does not look up attributes by name, dispatch on the operator,
+ * or compile regular expressions.  Primitive fields compared to a value of the same type are read and compared
+ * without boxing.  And and or groups short circuit.
+ *
+ * The results are the same as comparing each criteria with [compare].  The predicate does not keep any state for the
+ * record being checked so it can be used by multiple threads at once.
+ *
+ * @param query Validated query to compile the criteria of
+ * @param descriptor Descriptor of the entity being checked
+ * @since 2.2.0
+ */
+class QueryPredicate(query: Query, descriptor: EntityDescriptor) {
+
+    /**
+     * Attributes referenced by the criteria.  Null if a criteria references a relationship since the entity is
+     * required to check it.
+     */
+    val attributes: Set<String>?
+
+    private val root: Predicate
+
+    init {
+        val allCriteria = query.getAllCriteria().filter { !it.flip }
+        attributes = if (allCriteria.any { it.isRelationship == true }) null else allCriteria.mapTo(HashSet<String>()) { it.attributeName!! }
+        root = compile(query.criteria!!, descriptor)
+    }
+
+    /**
+     * Whether an entity meets the criteria
+     *
+     * @param entity Entity to check
+     * @param entityReference Reference of the entity used to fetch its relationships
+     * @param context Schema context
+     * @return Whether the entity meets all of the criteria
+     * @throws OnyxException Cannot hydrate a relationship or the values cannot be compared
+     */
+    @Throws(OnyxException::class)
+    fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean = root.test(entity, entityReference, context)
+
+    /**
+     * Whether attribute values meet the criteria.  This can only be used if the criteria do not reference a
+     * relationship.
+     *
+     * @param attributes Attribute values of a record keyed by attribute name
+     * @return Whether the values meet all of the criteria
+     * @throws OnyxException The values cannot be compared
+     */
+    @Throws(OnyxException::class)
+    fun test(attributes: Map<String, Any?>): Boolean = root.test(attributes)
+
+    /**
+     * Compile a criteria and its sub criteria.  Criteria that were added to support a not() of a group are skipped
+     * as they have no value to compare.
+     */
+    private fun compile(criteria: QueryCriteria, descriptor: EntityDescriptor): Predicate {
+        val predicate = if (criteria.isRelationship == true) RelationshipPredicate(criteria) else compileAttribute(criteria, descriptor)
+        val subCriteria = criteria.subCriteria.filter { !it.flip }
+
+        if (subCriteria.isEmpty() && !criteria.isNot)
+            return predicate
+
+        return GroupPredicate(predicate, subCriteria.map { compile(it, descriptor) }.toTypedArray(), BooleanArray(subCriteria.size) { subCriteria[it].isOr }, criteria.isNot)
+    }
+
+    /**
+     * Compile a criteria of an attribute.  If the field is a primitive and the value is the same type, the field is
+     * read and compared without boxing.
+     */
+    private fun compileAttribute(criteria: QueryCriteria, descriptor: EntityDescriptor): Predicate {
+        val name = criteria.attributeName!!
+        if (criteria.attributeDescriptor == null)
+            criteria.attributeDescriptor = descriptor.attributes[name]
+
+        val field = descriptor.reflectionFields[name]!!
+        val value = criteria.comparedValue
+        val matcher = Matcher(criteria.operator!!, value)
+
+        if (criteria.function == null && value != null && field.type.isPrimitive && matcher.isComparison) {
+            when {
+                value.javaClass === java.lang.Long::class.java && field.type === Long::class.javaPrimitiveType
+                        || value.javaClass === java.lang.Integer::class.java && field.type === Int::class.javaPrimitiveType
+                        || value.javaClass === java.lang.Short::class.java && field.type === Short::class.javaPrimitiveType
+                        || value.javaClass === java.lang.Byte::class.java && field.type === Byte::class.javaPrimitiveType ->
+                    return IntegralPredicate(name, field, matcher, (value as Number).toLong())
+                value.javaClass === java.lang.Double::class.java && field.type === Double::class.javaPrimitiveType
+                        || value.javaClass === java.lang.Float::class.java && field.type === Float::class.javaPrimitiveType ->
+                    return DecimalPredicate(name, field, matcher, (value as Number).toDouble())
+            }
+        }
+
+        return AttributePredicate(name, field, criteria.function, matcher)
+    }
+
+    /**
+     * Predicate of a record that can either be an entity or its attribute values
+     */
+    private interface Predicate {
+        fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean
+        fun test(attributes: Map<String, Any?>): Boolean
+    }
+
+    /**
+     * A criteria and its sub criteria.  The sub criteria are and-ed or or-ed to the result in order and the first
+     * result that decides the outcome stops the evaluation.
+     */
+    private class GroupPredicate(private val predicate: Predicate, private val subPredicates: Array<Predicate>, private val isOr: BooleanArray, private val isNot: Boolean) : Predicate {
+
+        override fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean = evaluate { it.test(entity, entityReference, context) }
+
+        override fun test(attributes: Map<String, Any?>): Boolean = evaluate { it.test(attributes) }
+
+        private inline fun evaluate(test: (Predicate) -> Boolean): Boolean {
+            var meetsCriteria = test(predicate)
+            for (i in subPredicates.indices)
+                meetsCriteria = if (isOr[i]) meetsCriteria || test(subPredicates[i]) else meetsCriteria && test(subPredicates[i])
+            return meetsCriteria != isNot
+        }
+    }
+
+    /**
+     * Criteria of an attribute.  Attribute values are read from the reflection field and passed through the function
+     * of the criteria before being matched.
+     */
+    private open class AttributePredicate(protected val name: String, protected val field: Field, private val function: QueryFunction?, protected val matcher: Matcher) : Predicate {
+
+        override fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean {
+            val attributeValue: Any? = entity?.getAny(field)
+            return matcher.matches(if (function == null) attributeValue else function.execute(attributeValue))
+        }
+
+        /**
+         * Values decoded from a record are converted to the type of the field the same way they are when the entity is
+         * hydrated
+         */
+        override fun test(attributes: Map<String, Any?>): Boolean {
+            var attributeValue = attributes[name]
+            if (attributeValue != null && field.type !== attributeValue::class.javaPrimitiveType && !field.type.isAssignableFrom(attributeValue.javaClass))
+                attributeValue = attributeValue.castTo(field.type)
+            return matcher.matches(if (function == null) attributeValue else function.execute(attributeValue))
+        }
+    }
+
+    /**
+     * Comparison of a long, int, short, or byte field to a value of the same type.  Values read into record values
+     * are compared without boxing.
+     */
+    private class IntegralPredicate(name: String, field: Field, matcher: Matcher, private val value: Long) : AttributePredicate(name, field, null, matcher) {
+
+        // Format of record values that can be compared without boxing
+        private val format = when (field.type) {
+            Long::class.javaPrimitiveType -> ValueFormat.LONG
+            Int::class.javaPrimitiveType -> ValueFormat.INT
+            Short::class.javaPrimitiveType -> ValueFormat.SHORT
+            else -> ValueFormat.BYTE
+        }
+
+        override fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean {
+            if (entity == null)
+                return super.test(entity, entityReference, context)
+
+            val attributeValue = when (field.type) {
+                Long::class.javaPrimitiveType -> field.getLong(entity)
+                Int::class.javaPrimitiveType -> field.getInt(entity).toLong()
+                Short::class.javaPrimitiveType -> field.getShort(entity).toLong()
+                else -> field.getByte(entity).toLong()
+            }
+            return matcher.matchesComparison(java.lang.Long.compare(attributeValue, value))
+        }
+
+        override fun test(attributes: Map<String, Any?>): Boolean {
+            val slot = (attributes as? RecordValues)?.indexOf(name) ?: -1
+            if (slot < 0 || (attributes as RecordValues).formatAt(slot) !== format)
+                return super.test(attributes)
+            return matcher.matchesComparison(java.lang.Long.compare((attributes as RecordValues).longAt(slot), value))
+        }
+    }
+
+    /**
+     * Comparison of a double or float field to a value of the same type.  Values read into record values are
+     * compared without boxing.
+     */
+    private class DecimalPredicate(name: String, field: Field, matcher: Matcher, private val value: Double) : AttributePredicate(name, field, null, matcher) {
+
+        // Format of record values that can be compared without boxing
+        private val format = if (field.type === Double::class.javaPrimitiveType) ValueFormat.DOUBLE else ValueFormat.FLOAT
+
+        override fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean {
+            if (entity == null)
+                return super.test(entity, entityReference, context)
+
+            val attributeValue = if (field.type === Double::class.javaPrimitiveType) field.getDouble(entity) else field.getFloat(entity).toDouble()
+            return matcher.matchesComparison(java.lang.Double.compare(attributeValue, value))
+        }
+
+        override fun test(attributes: Map<String, Any?>): Boolean {
+            val slot = (attributes as? RecordValues)?.indexOf(name) ?: -1
+            if (slot < 0 || (attributes as RecordValues).formatAt(slot) !== format)
+                return super.test(attributes)
+            return matcher.matchesComparison(java.lang.Double.compare((attributes as RecordValues).doubleAt(slot), value))
+        }
+    }
+
+    /**
+     * Criteria of a relationship.  The relationship is fetched from the store so it requires the entity.
+     */
+    private class RelationshipPredicate(private val criteria: QueryCriteria) : Predicate {
+
+        private val attribute = criteria.attribute!!.split(".").last()
+
+        override fun test(entity: IManagedEntity?, entityReference: Reference, context: SchemaContext): Boolean {
+            val operator = criteria.operator
+
+            // Grab the relationship from the store
+            val relationshipEntities = entity?.getRelationshipFromStore(context, criteria.attribute!!, entityReference = entityReference)
+
+            // If there are relationship values, all we need is a single match
+            if (relationshipEntities?.isNotEmpty() == true)
+                return relationshipEntities.any { criteria.comparedValue.compare(it?.get(context = context, name = attribute), operator!!) }
+            return operator == QueryCriteriaOperator.IS_NULL
+        }
+
+        override fun test(attributes: Map<String, Any?>): Boolean = throw UnsupportedOperationException()
+    }
+
+    /**
+     * Matches an attribute value to the value of a criteria using its operator.  The value is prepared once so that
+     * string operators do not convert it and regular expressions are not compiled for each record.
+     */
+    private class Matcher(private val operator: QueryCriteriaOperator, private val value: Any?) {
+
+        private val valueClass: Class<*>? = value?.javaClass
+        private val valueString = value.toString()
+        private val regex: Regex? = if (operator == QueryCriteriaOperator.MATCHES || operator == QueryCriteriaOperator.NOT_MATCHES) try { Regex(valueString) } catch (e: Exception) { null } else null
+        private val valueSet: Set<Any>? = (value as? List<*>)?.let { list -> if (list.isNotEmpty() && list.all { it != null && it.javaClass === list[0]!!.javaClass }) list.filterNotNullTo(HashSet()) else null }
+        private val valueSetClass: Class<*>? = valueSet?.first()?.javaClass
+
+        /**
+         * Whether the operator compares the order of the values
+         */
+        val isComparison: Boolean = when (operator) {
+            QueryCriteriaOperator.EQUAL, QueryCriteriaOperator.NOT_EQUAL, QueryCriteriaOperator.GREATER_THAN,
+            QueryCriteriaOperator.GREATER_THAN_EQUAL, QueryCriteriaOperator.LESS_THAN, QueryCriteriaOperator.LESS_THAN_EQUAL -> true
+            else -> false
+        }
+
+        /**
+         * Match the result of comparing the attribute value to the criteria value
+         *
+         * @param comparison Negative if the attribute value is less, 0 if equal, and positive if greater
+         */
+        fun matchesComparison(comparison: Int): Boolean = when (operator) {
+            QueryCriteriaOperator.EQUAL -> comparison == 0
+            QueryCriteriaOperator.NOT_EQUAL -> comparison != 0
+            QueryCriteriaOperator.GREATER_THAN -> comparison > 0
+            QueryCriteriaOperator.GREATER_THAN_EQUAL -> comparison >= 0
+            QueryCriteriaOperator.LESS_THAN -> comparison < 0
+            else -> comparison <= 0
+        }
+
+        /**
+         * Match an attribute value.  The value is cast to the type of the criteria value the same way [compare] does.
+         *
+         * @param attributeValue Value of the attribute
+         * @throws InvalidDataTypeForOperator The values cannot be compared
+         */
+        @Suppress("UNCHECKED_CAST")
+        fun matches(attributeValue: Any?): Boolean {
+            if (operator == QueryCriteriaOperator.IN || operator == QueryCriteriaOperator.NOT_IN)
+                return matchesList(attributeValue)
+            if (operator == QueryCriteriaOperator.EXISTS || operator == QueryCriteriaOperator.NOT_EXISTS)
+                return (value == true) == (operator == QueryCriteriaOperator.EXISTS)
+
+            val first = if (attributeValue != null && valueClass != null && attributeValue.javaClass !== valueClass) attributeValue.castTo(valueClass) else attributeValue
+
+            try {
+                return when (operator) {
+                    QueryCriteriaOperator.EQUAL -> first == value
+                    QueryCriteriaOperator.NOT_EQUAL -> first != value
+                    QueryCriteriaOperator.GREATER_THAN -> if (value == null) first != null else first != null && (first as Comparable<Any?>) > value
+                    QueryCriteriaOperator.GREATER_THAN_EQUAL -> if (value == null) true else first != null && (first as Comparable<Any?>) >= value
+                    QueryCriteriaOperator.LESS_THAN -> if (value == null) false else first == null || (first as Comparable<Any?>) < value
+                    QueryCriteriaOperator.LESS_THAN_EQUAL -> if (value == null) first == null else first == null || (first as Comparable<Any?>) <= value
+                    QueryCriteriaOperator.CONTAINS -> first.toString().contains(valueString)
+                    QueryCriteriaOperator.NOT_CONTAINS -> !first.toString().contains(valueString)
+                    QueryCriteriaOperator.STARTS_WITH -> first.toString().startsWith(valueString)
+                    QueryCriteriaOperator.NOT_STARTS_WITH -> !first.toString().startsWith(valueString)
+                    QueryCriteriaOperator.LIKE -> first.toString().equals(valueString, true)
+                    QueryCriteriaOperator.NOT_LIKE -> !first.toString().equals(valueString, true)
+                    QueryCriteriaOperator.MATCHES -> if (regex == null) value.compare(attributeValue, operator) else first.toString().matches(regex)
+                    QueryCriteriaOperator.NOT_MATCHES -> if (regex == null) value.compare(attributeValue, operator) else !first.toString().matches(regex)
+                    QueryCriteriaOperator.NOT_NULL -> first != null
+                    QueryCriteriaOperator.IS_NULL -> first == null
+                    else -> value.compare(attributeValue, operator)
+                }
+            } catch (e: InvalidDataTypeForOperator) {
+                throw e
+            } catch (e: Exception) {
+                // The values are not comparable
+                throw InvalidDataTypeForOperator(InvalidDataTypeForOperator.INVALID_DATA_TYPE_FOR_OPERATOR)
+            }
+        }
+
+        /**
+         * Match an attribute value to a list of values.  If the list values are all the same type as the attribute
+         * value, a hash lookup is used rather than comparing each value.
+         */
+        private fun matchesList(attributeValue: Any?): Boolean {
+            if (valueSet == null || attributeValue == null || attributeValue.javaClass !== valueSetClass)
+                return value.compare(attributeValue, operator)
+            return valueSet.contains(attributeValue) == (operator == QueryCriteriaOperator.IN)
+        }
+    }
+}
@@ -6,52 +6,129 @@ import com.onyx.exception.OnyxException
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryCursor
 import com.onyx.persistence.query.QueryOrder
 import com.onyx.extension.attribute
 import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.compare
 import com.onyx.extension.toManyRelationshipAsMap
 import com.onyx.extension.toOneRelationshipAsMap
-import com.onyx.persistence.context.Contexts
 
 import java.util.*
 
 /**
  * Created by timothy.osborn on 2/11/15.
  * This class sorts query results only hydrating what it needs without putting attributes and entities in memory.
+ *
+ * @since 2.2.0 The order by values of a reference are read once into a sort key.  References with equal values are
+ *              ordered by reference so the order is consistent with equals and ties remain in a stable order.
  */
-class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>, descriptor: EntityDescriptor, context: SchemaContext) : Comparator<Reference> {
-    private var contextId: String = context.contextId
+class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>, descriptor: EntityDescriptor, private val context: SchemaContext) : Comparator<Reference> {
     private var scanObjects = QueryAttributeResource.create(orderBy.map { it.attribute }.toTypedArray(), descriptor, query, context)
-    private val parentObjects = ArrayList<MutableMap<Reference, Any?>>()
+    private val ascending = BooleanArray(orderBy.size) { orderBy[it].isAscending }
 
-    init {
-        orderBy.forEach { parentObjects.add(WeakHashMap()) }
+    override fun compare(reference1: Reference, reference2: Reference): Int = compareKeys(sortKey(reference1), sortKey(reference2))
+
+    /**
+     * Read the order by attribute values of a reference so they can be compared without hydrating them again
+     *
+     * @param reference Reference to read the sort key of
+     * @param context Schema context the reference belongs to
+     * @return Sort key containing the reference and its order by attribute values
+     * @since 2.2.0
+     */
+    fun sortKey(reference: Reference, context: SchemaContext = this.context): SortKey =
+            SortKey(reference, Array(scanObjects.size) { getAttributeToCompare(scanObjects[it], reference, context) })
+
+    /**
+     * Sort references by decorating each with its sort key, sorting the keys, and then reading the references back
+     * out in order.  The attributes of each reference are read only once rather than with each comparison.
+     *
+     * @param references References to sort
+     * @return Sort keys in sort order
+     * @since 2.2.0
+     */
+    fun sort(references: Collection<Reference>): Array<SortKey> {
+        val keys = arrayOfNulls<SortKey>(references.size)
+        references.forEachIndexed { index, reference -> keys[index] = sortKey(reference, context) }
+
+        @Suppress("UNCHECKED_CAST")
+        val sorted = keys as Array<SortKey>
+        Arrays.sort(sorted, { key1, key2 -> compareKeys(key1, key2) })
+        return sorted
+    }
+
+    /**
+     * Sort references into a map that iterates in sort order
+     *
+     * @param referenceValues References and values to sort
+     * @return Linked map of the references and their values in sort order
+     * @since 2.2.0
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> sortedMap(referenceValues: Map<Reference, T>): MutableMap<Reference, T> {
+        val results = LinkedHashMap<Reference, T>(referenceValues.size)
+        sort(referenceValues.keys).forEach { results.put(it.reference, referenceValues[it.reference] as T) }
+        return results
     }
 
-    override fun compare(reference1: Reference, reference2: Reference): Int {
-        val context = Contexts.get(contextId)!!
+    /**
+     * Compare the order by attribute values of two sort keys.  Keys with equal values are ordered by reference so that
+     * the order is consistent.
+     *
+     * @param key1 First sort key
+     * @param key2 Second sort key
+     * @return Direction of the first order by value that differs otherwise the reference order
+     * @since 2.2.0
+     */
+    fun compareKeys(key1: SortKey, key2: SortKey): Int {
+        val values1 = key1.values
+        val values2 = key2.values
+        for (index in ascending.indices) {
+            val compareValue = compareAttributes(values1[index], values2[index])
+            if (compareValue != 0)
+                return if (ascending[index]) compareValue else -compareValue
+        }
 
-        scanObjects.forEachIndexed { index, scannerProperties ->
-            val queryOrder = orderBy[index]
-            val attributeValues = parentObjects[index]
-            val attribute1 = attributeValues.getOrPut(reference1) { getAttributeToCompare(scannerProperties, reference1, context)}
-            val attribute2 = attributeValues.getOrPut(reference2) { getAttributeToCompare(scannerProperties, reference2, context)}
+        return key1.reference.compareTo(key2.reference)
+    }
+
+    /**
+     * Sort key of the position of a keyset cursor.  Its reference is greater than any other so the row the cursor was
+     * taken from is not after it.
+     *
+     * @param cursor Cursor containing the order by values of a row
+     * @return Sort key of the cursor or null if the cursor is before the first row
+     * @since 2.2.0
+     */
+    fun cursorKey(cursor: QueryCursor?): SortKey? =
+            if (cursor == null || cursor.isStart) null else SortKey(Reference(Long.MAX_VALUE, Long.MAX_VALUE), cursor.values.toTypedArray())
 
+    /**
+     * Compare two attribute values in ascending order.  Values of the same comparable type are compared directly.
+     * Otherwise they are compared using the same rules as query criteria.  Null values are the lowest.
+     *
+     * @param attribute1 First attribute value
+     * @param attribute2 Second attribute value
+     * @return Negative if the first value is lower, positive if greater, and 0 if equal or not comparable
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun compareAttributes(attribute1: Any?, attribute2: Any?): Int = when {
+        attribute1 === attribute2 -> 0
+        attribute1 == null -> -1
+        attribute2 == null -> 1
+        attribute1 is Comparable<*> && attribute1.javaClass === attribute2.javaClass -> (attribute1 as Comparable<Any>).compareTo(attribute2)
+        else -> {
             var compareValue = 0
             catchAll {
                 compareValue = when {
-                    attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> if (queryOrder.isAscending) 1 else -1
-                    attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> if (queryOrder.isAscending) -1 else 1
+                    attribute2.compare(attribute1, QueryCriteriaOperator.GREATER_THAN) -> 1
+                    attribute2.compare(attribute1, QueryCriteriaOperator.LESS_THAN) -> -1
                     else -> 0
                 }
             }
-
-            if(compareValue != 0)
-                return@compare compareValue
+            compareValue
         }
-
-        return if (reference1 == reference2) 0 else -1
     }
 
     /**
@@ -68,4 +145,4 @@ class QuerySortComparator(query: Query, private val orderBy: Array<QueryOrder>,
         queryAttributeResource.relationshipDescriptor != null && queryAttributeResource.relationshipDescriptor.isToMany -> reference.toManyRelationshipAsMap(context, queryAttributeResource)
         else -> reference.attribute(context, queryAttributeResource.attribute, queryAttributeResource.descriptor)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.onyx.interactors.query.data
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import java.util.AbstractMap.SimpleImmutableEntry
+
+/**
+ * Row of selection results.  Rather than a hash map per row, the values are held within an array in the column
+ * order of a schema shared by every row of the results.  Rows are read only maps of the column names to values.
+ *
+ * When serialized, a row writes a reference to its schema followed by its values so the column names are only
+ * written with the first row of a result.
+ *
+ * @param schema Columns of the row
+ * @param cells Values in column order
+ *
+ * @since 2.2.0
+ */
+class SelectionRow @JvmOverloads constructor(var schema: SelectionSchema = SelectionSchema(), var cells: Array<Any?> = arrayOfNulls(schema.size)) : AbstractMap<String, Any?>(), BufferStreamable {
+
+    override val size: Int
+        get() = schema.size
+
+    override fun get(key: String): Any? {
+        val index = schema.indexOf(key)
+        return if (index >= 0) cells[index] else null
+    }
+
+    override fun containsKey(key: String): Boolean = schema.indexOf(key) >= 0
+
+    override val entries: Set<Map.Entry<String, Any?>>
+        get() = schema.names.indices.mapTo(LinkedHashSet(schema.size * 2)) { SimpleImmutableEntry(schema.names[it], cells[it]) }
+
+    /**
+     * Assign the value of a column
+     *
+     * @param index Index of the column within the schema
+     * @param value Value of the column
+     */
+    operator fun set(index: Int, value: Any?) {
+        cells[index] = value
+    }
+
+    /**
+     * Assign the value of a column by name
+     *
+     * @param name Column name.  It must be within the schema.
+     * @param value Value of the column
+     */
+    operator fun set(name: String, value: Any?) {
+        cells[schema.indexOf(name)] = value
+    }
+
+    override fun read(buffer: BufferStream) {
+        schema = buffer.value as SelectionSchema
+        cells = Array(schema.size) { buffer.value }
+    }
+
+    override fun write(buffer: BufferStream) {
+        buffer.putObject(schema)
+        cells.forEach { buffer.putObject(it) }
+    }
+}
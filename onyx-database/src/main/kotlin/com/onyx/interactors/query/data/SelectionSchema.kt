@@ -0,0 +1,44 @@
+package com.onyx.interactors.query.data
+
+/**
+ * Names of the columns of selection rows.  The rows of a query result share a single schema so the lookup of a
+ * column by name is held once per result rather than once per row.
+ *
+ * A schema is serialized once per buffer.  The rows after the first only write a reference to it.
+ *
+ * @param names Column names in the order of the row values
+ *
+ * @since 2.2.0
+ */
+class SelectionSchema @JvmOverloads constructor(var names: List<String> = arrayListOf()) {
+
+    @Transient
+    @Volatile
+    private var indexes: HashMap<String, Int>? = null
+
+    /**
+     * Number of columns
+     */
+    val size: Int
+        get() = names.size
+
+    /**
+     * Index of a column
+     *
+     * @param name Column name
+     * @return Index of the column within a row or -1 if there is no such column
+     */
+    fun indexOf(name: String): Int {
+        var lookup = indexes
+        if (lookup == null) {
+            lookup = HashMap(names.size * 2)
+            names.forEachIndexed { index, column -> lookup.put(column, index) }
+            indexes = lookup
+        }
+        return lookup[name] ?: -1
+    }
+
+    override fun equals(other: Any?): Boolean = other is SelectionSchema && other.names == names
+
+    override fun hashCode(): Int = names.hashCode()
+}
@@ -0,0 +1,27 @@
+package com.onyx.interactors.query.data
+
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import com.onyx.interactors.record.data.Reference
+
+/**
+ * A reference along with the values of its order by attributes.  The values are read once so they do not need to
+ * be hydrated each time the reference is compared.  When a sort exceeds the sort buffer, sort keys are what is
+ * written to temporary storage.
+ *
+ * @since 2.2.0
+ */
+class SortKey @JvmOverloads constructor(var reference: Reference = Reference(), var values: Array<Any?> = arrayOf()) : BufferStreamable {
+
+    override fun read(buffer: BufferStream) {
+        reference = Reference(buffer.long, buffer.long)
+        values = Array(buffer.int) { buffer.value }
+    }
+
+    override fun write(buffer: BufferStream) {
+        buffer.putLong(reference.partition)
+        buffer.putLong(reference.reference)
+        buffer.putInt(values.size)
+        values.forEach { buffer.putObject(it) }
+    }
+}
@@ -0,0 +1,161 @@
+package com.onyx.interactors.query.data
+
+import java.util.Arrays
+
+/**
+ * Merging t-digest sketch estimating quantiles of numeric values.  Values are buffered and periodically merged into
+ * a sorted list of centroids.  Centroids near the tails are kept small so extreme quantiles such as the 99th
+ * percentile are accurate while the number of centroids stays bounded by the compression.
+ *
+ * Sketches are merged by adding the centroids of one to the other so the sketches of partitions or groups built
+ * separately can be combined into the sketch of all their values.
+ *
+ * @param compression Bound on the number of centroids.  Higher values are more accurate but use more memory.
+ * @since 2.2.0
+ */
+class TDigest @JvmOverloads constructor(private val compression: Double = DEFAULT_COMPRESSION) {
+
+    private var means = DoubleArray(0)
+    private var weights = DoubleArray(0)
+    private var centroids = 0
+
+    private val bufferMeans = DoubleArray((compression * BUFFER_FACTOR).toInt())
+    private val bufferWeights = DoubleArray(bufferMeans.size)
+    private var buffered = 0
+
+    private var min = Double.POSITIVE_INFINITY
+    private var max = Double.NEGATIVE_INFINITY
+
+    /**
+     * Total weight of the values added
+     */
+    var count = 0.0
+        private set
+
+    /**
+     * Add a value to the sketch
+     *
+     * @param value Value to add
+     * @param weight Number of times the value occurred
+     */
+    @JvmOverloads
+    fun add(value: Double, weight: Double = 1.0) {
+        if (value.isNaN())
+            return
+        if (buffered == bufferMeans.size)
+            compress()
+
+        bufferMeans[buffered] = value
+        bufferWeights[buffered] = weight
+        buffered++
+        count += weight
+        min = Math.min(min, value)
+        max = Math.max(max, value)
+    }
+
+    /**
+     * Merge another sketch into this one
+     *
+     * @param other Sketch to add the values of
+     */
+    fun merge(other: TDigest) {
+        other.compress()
+        for (i in 0 until other.centroids)
+            add(other.means[i], other.weights[i])
+        if (other.count > 0) {
+            min = Math.min(min, other.min)
+            max = Math.max(max, other.max)
+        }
+    }
+
+    /**
+     * Estimate the value at a quantile
+     *
+     * @param quantile Fraction of the values below the result between 0 and 1
+     * @return Estimated value or null if no values were added
+     */
+    fun quantile(quantile: Double): Double? {
+        compress()
+        if (centroids == 0)
+            return null
+        if (quantile <= 0.0)
+            return min
+        if (quantile >= 1.0)
+            return max
+        if (centroids == 1)
+            return means[0]
+
+        // Each centroid is centered on the middle of its weight.  Values between centers are interpolated and
+        // values before the first or after the last center are interpolated toward the minimum or maximum.
+        val target = quantile * count
+        var cumulative = weights[0] / 2.0
+        if (target < cumulative)
+            return interpolate(min, means[0], target / cumulative)
+
+        for (i in 0 until centroids - 1) {
+            val next = cumulative + (weights[i] + weights[i + 1]) / 2.0
+            if (target < next)
+                return interpolate(means[i], means[i + 1], (target - cumulative) / (next - cumulative))
+            cumulative = next
+        }
+
+        return interpolate(means[centroids - 1], max, (target - cumulative) / (count - cumulative))
+    }
+
+    /**
+     * Merge the buffered values into the centroids.  Neighbouring centroids are combined while the combined
+     * centroid spans no more than one unit of the scale function k(q) = compression / (2 * PI) * asin(2q - 1).
+     */
+    private fun compress() {
+        if (buffered == 0)
+            return
+
+        val size = centroids + buffered
+        val allMeans = DoubleArray(size)
+        val allWeights = DoubleArray(size)
+        System.arraycopy(means, 0, allMeans, 0, centroids)
+        System.arraycopy(weights, 0, allWeights, 0, centroids)
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered)
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered)
+
+        val order = (0 until size).sortedBy { allMeans[it] }
+        val mergedMeans = DoubleArray(size)
+        val mergedWeights = DoubleArray(size)
+        var merged = 0
+
+        var weightSoFar = 0.0
+        var limit = count * quantileOf(scaleOf(0.0) + 1.0)
+        order.forEach {
+            val mean = allMeans[it]
+            val weight = allWeights[it]
+            if (merged > 0 && weightSoFar + weight <= limit) {
+                val combined = mergedWeights[merged - 1] + weight
+                mergedMeans[merged - 1] += (mean - mergedMeans[merged - 1]) * weight / combined
+                mergedWeights[merged - 1] = combined
+            } else {
+                if (merged > 0)
+                    limit = count * quantileOf(scaleOf(weightSoFar / count) + 1.0)
+                mergedMeans[merged] = mean
+                mergedWeights[merged] = weight
+                merged++
+            }
+            weightSoFar += weight
+        }
+
+        means = Arrays.copyOf(mergedMeans, merged)
+        weights = Arrays.copyOf(mergedWeights, merged)
+        centroids = merged
+        buffered = 0
+    }
+
+    private fun scaleOf(quantile: Double): Double = compression / (2.0 * Math.PI) * Math.asin(2.0 * Math.min(1.0, quantile) - 1.0)
+
+    private fun quantileOf(scale: Double): Double = if (scale >= compression / 4.0) 1.0 else (Math.sin(scale * 2.0 * Math.PI / compression) + 1.0) / 2.0
+
+    private fun interpolate(from: Double, to: Double, fraction: Double): Double = from + (to - from) * Math.max(0.0, Math.min(1.0, fraction))
+
+    companion object {
+        const val DEFAULT_COMPRESSION = 100.0
+        private const val BUFFER_FACTOR = 5
+    }
+}
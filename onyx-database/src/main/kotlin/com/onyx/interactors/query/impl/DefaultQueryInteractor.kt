@@ -3,9 +3,16 @@ package com.onyx.interactors.query.impl
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.DiskMapFactory
+import com.onyx.interactors.column.data.ColumnSummary
+import com.onyx.interactors.index.IndexInteractor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.ScannerFactory
+import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.scanner.impl.FullTableScanner
+import com.onyx.interactors.scanner.impl.IdentifierScanner
+import com.onyx.interactors.scanner.impl.IndexOrderScanner
+import com.onyx.interactors.scanner.impl.IndexScanner
 import com.onyx.interactors.scanner.impl.PartitionFullTableScanner
 import com.onyx.exception.OnyxException
 import com.onyx.persistence.IManagedEntity
@@ -17,11 +24,16 @@ import com.onyx.extension.*
 import com.onyx.extension.common.catchAll
 import com.onyx.extension.common.compare
 import com.onyx.extension.common.parallelMap
-import com.onyx.persistence.context.Contexts
 import com.onyx.interactors.query.QueryInteractor
 import com.onyx.interactors.query.data.QuerySortComparator
 import com.onyx.interactors.query.data.QueryAttributeResource
+import com.onyx.interactors.query.data.QueryFunctionAccumulator
+import com.onyx.interactors.query.data.SelectionRow
+import com.onyx.interactors.query.data.SelectionSchema
+import com.onyx.interactors.query.data.SortKey
 
+import java.util.Collections
+import java.util.PriorityQueue
 import kotlin.collections.HashMap
 
 /**
@@ -30,11 +42,16 @@ import kotlin.collections.HashMap
  *
  * Controls how to query a partition
  */
-class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private var persistenceManager: PersistenceManager, context: SchemaContext) : QueryInteractor {
+class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private var persistenceManager: PersistenceManager, private val context: SchemaContext) : QueryInteractor {
 
-    private val contextId = context.contextId
     private var temporaryDataFile: DiskMapFactory = context.createTemporaryMapBuilder()
 
+    // Number of sorted runs written to the temporary map builder
+    private var sortRuns = 0
+
+    // When set, the access path of each scanned criteria is recorded
+    var plan: QueryPlan? = null
+
     /**
      * Find object ids that match the criteria
      *
@@ -45,18 +62,230 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      * been moved to CompareUtil
      */
     @Throws(OnyxException::class)
-    override fun <T : Any?> getReferencesForQuery(query: Query): MutableMap<Reference, T> = getReferencesForCriteria(query, query.criteria!!, null, query.criteria!!.isNot)
+    override fun <T : Any?> getReferencesForQuery(query: Query): MutableMap<Reference, T> =
+        if (isConjunction(query.criteria!!))
+            getReferencesForConjunction(query)
+        else
+            getReferencesForCriteria(query, query.criteria!!, null, query.criteria!!.isNot)
 
     /**
-     * Sort using order by query order objects with included values
+     * Find the first references of a query with a row limitation by reading them in the order of the leading query
+     * order.  Reading in order checks each record against the criteria, so roughly limit / selectivity records are
+     * read.  That is only worth it when it is fewer than the estimated number of matches which would otherwise be
+     * scanned and sorted.
+     *
+     * @param query Query containing order instructions and row limitations
+     * @return Sorted references or null if the references cannot or should not be read in order
+     * @throws OnyxException General query exception
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun <T : Any?> getReferencesInIndexOrder(query: Query): MutableMap<Reference, T>? {
+        val scanner = ScannerFactory.getIndexOrderScanner(context, query.entityType!!, temporaryDataFile, query, persistenceManager) ?: return null
+
+        val root = query.criteria!!
+        val tableSize = ScannerFactory.getTableSize(context, query.entityType!!, query)
+        val estimate = estimateCount(query)
+        val limit = query.firstRow + query.maxResults
+
+        if (limit.toDouble() * tableSize > estimate.toDouble() * estimate)
+            return null
+
+        val references = scan(query, root, scanner, null, estimate)
+
+        // Only the leading order is read in order.  Ties are sorted by the remaining orders.
+        @Suppress("UNCHECKED_CAST")
+        return (if (query.queryOrders!!.size > 1) sort(query, references) else references) as MutableMap<Reference, T>
+    }
+
+    /**
+     * Iterate the references matching a query as the records are scanned.  Unsorted queries that would otherwise
+     * collect every match with a full table scan check each record as the next match is requested, so the results
+     * can be consumed without holding the references.  Criteria that use an identifier or index are still collected
+     * since those are far fewer than the records.
+     *
+     * @param query Query Criteria
+     * @return References matching query criteria within the rows requested or null if they must be collected
+     * @throws OnyxException General query exception
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun streamReferences(query: Query): Iterator<Reference>? {
+        if (plan != null || query.shouldSortResults() || query.isDistinct || query.after != null || query.changeListener != null)
+            return null
+
+        val root = query.criteria!!
+        val scanner = if (root.isNot)
+            ScannerFactory.getFullTableScanner(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager)
+        else
+            ScannerFactory.getScannerForQueryCriteria(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager)
+
+        if (scanner !is FullTableScanner || (isConjunction(root) && root.subCriteria.any { it.subCriteria.isEmpty() && !it.isNot && isIndexed(context, query, it) }))
+            return null
+
+        var matches = scanner.matches().asSequence().drop(query.firstRow)
+        if (query.maxResults > 0)
+            matches = matches.take(query.maxResults)
+        return matches.iterator()
+    }
+
+    /**
+     * Sort using order by query order objects with included values.  If there are more references than the sort buffer
+     * size of the context, they are sorted externally and collected from the merged runs.  Use [sortExternally] if the
+     * sorted references do not need to be retained.
      *
      * @param query           Query containing order instructions
      * @param referenceValues Query reference values from result of scan
      * @return Sorted references
      * @throws OnyxException Error sorting objects
+     * @since 2.2.0 Results larger than the sort buffer are sorted externally.  Otherwise the sort keys are read once
+     *              and sorted rather than reading attributes with each comparison.
+     */
+    @Throws(OnyxException::class)
+    override fun <T : Any?> sort(query: Query, referenceValues: MutableMap<Reference, T>): MutableMap<Reference, T> {
+        if (referenceValues.size <= context.sortBufferSize)
+            return sortOrder(query).sortedMap(referenceValues)
+
+        val results = LinkedHashMap<Reference, T>(referenceValues.size)
+        sortExternally(query, referenceValues).forEach { results.put(it.key, it.value) }
+        return results
+    }
+
+    /**
+     * Sort references that do not fit within the sort buffer.  The sort keys of the references are read and sorted in
+     * runs no larger than the sort buffer.  Each run is written to the temporary map builder.  The runs are merged as
+     * the results are produced by keeping the head of each run within a heap, so only one sort key per run is in
+     * memory and the sorted references are never collected.
+     *
+     * @param query           Query containing order instructions
+     * @param referenceValues Query reference values from result of scan
+     * @return Entries of the references in sort order.  The sequence can be iterated once and only until the query
+     *         is cleaned up since the runs are within the temporary map builder.
+     * @throws OnyxException Error sorting objects
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun <T : Any?> sortExternally(query: Query, referenceValues: MutableMap<Reference, T>): Sequence<MutableMap.MutableEntry<Reference, T>> {
+        val comparator = sortOrder(query)
+        val bufferSize = Math.max(1, context.sortBufferSize)
+        val order = Comparator<SortKey> { first, second -> comparator.compareKeys(first, second) }
+        val runs = ArrayList<Iterator<SortKey>>()
+        val buffer = ArrayList<SortKey>(bufferSize)
+
+        val spill = {
+            buffer.sortWith(order)
+            val run: DiskMap<Int, SortKey> = temporaryDataFile.getSkipListMap("sortRun" + sortRuns++)
+            buffer.forEachIndexed { index, sortKey -> run.put(index, sortKey) }
+            buffer.clear()
+            runs.add(run.values.iterator())
+        }
+
+        referenceValues.keys.forEach {
+            buffer.add(comparator.sortKey(it, context))
+            if (buffer.size >= bufferSize)
+                spill()
+        }
+        if (buffer.isNotEmpty())
+            spill()
+
+        val heads = PriorityQueue<Pair<SortKey, Int>>(Math.max(1, runs.size), Comparator { first, second -> order.compare(first.first, second.first) })
+        runs.forEachIndexed { index, run -> if (run.hasNext()) heads.add(Pair(run.next(), index)) }
+
+        return generateSequence {
+            val head = heads.poll() ?: return@generateSequence null
+            val run = runs[head.second]
+            if (run.hasNext())
+                heads.add(Pair(run.next(), head.second))
+            @Suppress("UNCHECKED_CAST")
+            java.util.AbstractMap.SimpleEntry<Reference, T>(head.first.reference, referenceValues[head.first.reference] as T)
+        }
+    }
+
+    /**
+     * Sort and retain only the first firstRow + maxResults references.  Rather than sorting every matching reference,
+     * a bounded heap keeps the lowest references seen so far.  When querying all partitions, each partition is
+     * reduced in parallel and the sorted runs are merged.  References at or before the keyset cursor of the query are
+     * skipped as their sort keys are read.
+     *
+     * @param query           Query containing order instructions and row limitations
+     * @param referenceValues Query reference values from result of scan
+     * @return Sorted references limited to the rows requested
+     * @throws OnyxException Error sorting objects
+     * @since 2.2.0
      */
     @Throws(OnyxException::class)
-    override fun <T : Any?> sort(query: Query, referenceValues: MutableMap<Reference, T>): MutableMap<Reference, T> = referenceValues.toSortedMap(QuerySortComparator(query, if (query.queryOrders == null) arrayOf() else query.queryOrders!!.toTypedArray(), descriptor, Contexts.get(contextId)!!))
+    override fun <T : Any?> sortFirstRows(query: Query, referenceValues: MutableMap<Reference, T>): MutableMap<Reference, T> {
+        val limit = if (query.maxResults > 0) query.firstRow + query.maxResults else referenceValues.size
+        val partitions = if (descriptor.hasPartition && query.partition === QueryPartitionMode.ALL) referenceValues.keys.groupBy { it.partition }.values.toList() else emptyList()
+
+        // Each run gets its own comparator since reading sort keys is not thread safe
+        val sorted = if (partitions.size > 1)
+            mergeRuns(partitions.parallelMap { firstRows(it, limit, sortOrder(query), query.after) }, limit, sortOrder(query))
+        else
+            firstRows(referenceValues.keys, limit, sortOrder(query), query.after)
+
+        val results = LinkedHashMap<Reference, T>()
+        @Suppress("UNCHECKED_CAST")
+        sorted.forEach { results.put(it.reference, referenceValues[it.reference] as T) }
+        return results
+    }
+
+    /**
+     * Comparator for the query order
+     */
+    private fun sortOrder(query: Query): QuerySortComparator = QuerySortComparator(query, if (query.queryOrders == null) arrayOf() else query.queryOrders!!.toTypedArray(), descriptor, context)
+
+    /**
+     * Find the first references in sort order using a bounded max heap.  The head of the heap is the greatest of the
+     * sort keys retained so it is replaced whenever a lower sort key is found.  The sort key of each reference is
+     * read once.
+     *
+     * @param references References to sort
+     * @param limit Maximum number of references to retain
+     * @param comparator Sort order
+     * @param after Keyset cursor.  Only references after it are retained.
+     * @return Sort keys in sort order no larger than the limit
+     */
+    private fun firstRows(references: Collection<Reference>, limit: Int, comparator: QuerySortComparator, after: QueryCursor? = null): List<SortKey> {
+        val order = Comparator<SortKey> { first, second -> comparator.compareKeys(first, second) }
+        val heap = PriorityQueue<SortKey>(Math.min(limit, references.size) + 1, Collections.reverseOrder(order))
+        val cursorKey = comparator.cursorKey(after)
+        references.forEach {
+            val sortKey = comparator.sortKey(it, context)
+            if (cursorKey != null && order.compare(sortKey, cursorKey) <= 0)
+                return@forEach
+            if (heap.size < limit)
+                heap.add(sortKey)
+            else if (order.compare(sortKey, heap.peek()) < 0) {
+                heap.poll()
+                heap.add(sortKey)
+            }
+        }
+        return heap.sortedWith(order)
+    }
+
+    /**
+     * Merge sorted runs of sort keys.  This is a k-way merge that keeps the head of each run within a heap.
+     *
+     * @param runs Sorted runs of sort keys
+     * @param limit Maximum number of sort keys to merge
+     * @param comparator Sort order
+     * @return Merged sort keys no larger than the limit
+     */
+    private fun mergeRuns(runs: List<List<SortKey>>, limit: Int, comparator: QuerySortComparator): List<SortKey> {
+        val heads = PriorityQueue<IntArray>(Math.max(1, runs.size), Comparator { first, second -> comparator.compareKeys(runs[first[0]][first[1]], runs[second[0]][second[1]]) })
+        runs.forEachIndexed { index, run -> if (run.isNotEmpty()) heads.add(intArrayOf(index, 0)) }
+
+        val merged = ArrayList<SortKey>()
+        while (merged.size < limit && heads.isNotEmpty()) {
+            val head = heads.poll()
+            val run = runs[head[0]]
+            merged.add(run[head[1]])
+            if (head[1] + 1 < run.size)
+                heads.add(intArrayOf(head[0], head[1] + 1))
+        }
+        return merged
+    }
 
     /**
      * Sort using order by query order objects with included values
@@ -104,24 +333,27 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      * @throws OnyxException Error hydrating entities
      */
     @Throws(OnyxException::class)
-    override fun <T : Any?> referencesToResults(query: Query, references: MutableMap<Reference, T>): List<T> {
-        val context = Contexts.get(contextId)!!
-
-        val lower = query.firstRow
-        val upper = lower + if(query.maxResults > 0) query.maxResults else references.size
+    override fun <T : Any?> referencesToResults(query: Query, references: MutableMap<Reference, T>): List<T> = referencesToResults(query, references.entries.asSequence())
 
-        return references.entries
-                .asSequence()
-                .filterIndexedTo(ArrayList()) { index, _ -> index in lower..(upper - 1) }
-                .map {
-                    if(it.value !is IManagedEntity) {
-                        @Suppress("UNCHECKED_CAST")
-                        it.setValue(it.key.toManagedEntity(context = context, clazz = query.entityType!!) as T)
-                        (it.value as IManagedEntity?)?.hydrateRelationships(context, RelationshipTransaction())
-                    }
-                    it.value
-                }.filter { it != null }
-    }
+    /**
+     * Hydrate the records of references in sort order within the rows of the query
+     *
+     * @param query      Query containing all the munging instructions
+     * @param references Entries of the references from query results
+     * @return Hydrated entities
+     * @throws OnyxException Error hydrating entities
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun <T : Any?> referencesToResults(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): List<T> =
+            filterReferences(query, references).map {
+                if(it.value !is IManagedEntity) {
+                    @Suppress("UNCHECKED_CAST")
+                    it.setValue(it.key.toManagedEntity(context = context, clazz = query.entityType!!) as T)
+                    (it.value as IManagedEntity?)?.hydrateRelationships(context, RelationshipTransaction())
+                }
+                it.value
+            }.filterTo(ArrayList()) { it != null }
 
     /**
      * Return a subset of records based on query maxResults & firstRow
@@ -142,6 +374,19 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         return filteredValues
     }
 
+    /**
+     * Return the entries within the rows of a query based on maxResults & firstRow
+     *
+     * @param query      Query containing all the munging instructions
+     * @param references Entries of the references from query results
+     * @return Entries within the rows of the query
+     * @since 2.2.0
+     */
+    override fun <T : Any?> filterReferences(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): Sequence<MutableMap.MutableEntry<Reference, T>> {
+        val rows = references.drop(query.firstRow)
+        return if (query.maxResults > 0) rows.take(query.maxResults) else rows
+    }
+
     /**
      * Hydrate given attributes
      *
@@ -152,43 +397,70 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      */
     @Throws(OnyxException::class)
     @Suppress("UNCHECKED_CAST")
-    override fun <T : Any?> referencesToSelectionResults(query: Query, references: Map<Reference, T>): List<T> {
-        val context = Contexts.get(contextId)!!
+    override fun <T : Any?> referencesToSelectionResults(query: Query, references: Map<Reference, T>): List<T> =
+            @Suppress("UNCHECKED_CAST")
+            selectionResults(query, (references as MutableMap<Reference, T>).entries.asSequence(), references)
+
+    /**
+     * Hydrate given attributes of references in sort order
+     *
+     * @param query      Query containing selection and count information
+     * @param references Entries of the references found during query execution
+     * @return Hydrated key value set for entity attributes
+     * @throws OnyxException Cannot hydrate entities
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun <T : Any?> referencesToSelectionResults(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>): List<T> = selectionResults(query, references, references)
+
+    /**
+     * Hydrate given attributes
+     *
+     * @param query      Query containing selection and count information
+     * @param references Entries of the references found during query execution
+     * @param lock       Lock held while a selection record is assigned to the value of an entry
+     * @return Hydrated key value set for entity attributes
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : Any?> selectionResults(query: Query, references: Sequence<MutableMap.MutableEntry<Reference, T>>, lock: Any): List<T> {
         val scanObjects = QueryAttributeResource.create(query.selections!!.toTypedArray(), descriptor, query, context)
+        val schema = SelectionSchema(scanObjects.map { it.selection }.distinct())
 
         val hasRelationship = scanObjects.firstOrNull { it.relationshipDescriptor != null } != null
-        val lower = query.firstRow
-        val upper = lower + if(query.maxResults > 0) query.maxResults else references.size
 
-        val results = references.entries.asSequence()
-                .filterIndexedTo(ArrayList()) { index, _ -> index in lower..(upper - 1) }
-                .parallelMap(!hasRelationship && !query.shouldSortResults()) { entry ->
-                    @Suppress("UNCHECKED_CAST")
-                    if(entry.value is Map<*,*>)
-                        entry.value
-                    else {
-                        val record = HashMap<String, Any?>()
-                        scanObjects.forEach {
-                            val recVal = when {
-                                it.relationshipDescriptor != null && it.relationshipDescriptor.isToOne -> entry.key.toOneRelationshipAsMap(context, it)
-                                it.relationshipDescriptor != null && it.relationshipDescriptor.isToMany -> entry.key.toManyRelationshipAsMap(context, it)
-                                it.function != null -> it.function.execute(entry.key.attribute(context, it.attribute, descriptor))
-                                else -> entry.key.attribute(context, it.attribute, descriptor)
-                            }
-                            record.put(it.selection, recVal)
-                        }
-                        synchronized(references) {
-                            (entry as MutableMap.MutableEntry<Reference, Any?>).setValue(record)
-                        }
-                        record as T
-                    }
+        // Rows ordered by their selections are sorted once selected so the rows of the query are taken in sort order
+        val sortSelectedRows = query.shouldSortSelections() && !query.shouldGroupResults() && !query.shouldAggregateFunctions() && (query.firstRow > 0 || query.maxResults > 0)
+        val rows = if (sortSelectedRows) references else filterReferences(query, references)
+
+        if (query.shouldAggregateGroupFunctions() && !query.isDistinct && (query.groupBy?.size ?: 0) <= 1)
+            return aggregate(query, rows, scanObjects) as List<T>
+
+        val select = { entry: MutableMap.MutableEntry<Reference, T> ->
+            if(entry.value is Map<*,*>)
+                entry.value
+            else {
+                val record = SelectionRow(schema)
+                scanObjects.forEach { record[it.selection] = selectionValue(context, entry.key, it) }
+                synchronized(lock) {
+                    (entry as MutableMap.MutableEntry<Reference, Any?>).setValue(record)
                 }
+                record as T
+            }
+        }
+
+        // Sorted rows are selected in order as they are read
+        val results = if (!hasRelationship && !query.shouldSortResults()) rows.toList().parallelMap { select(it) } else rows.mapTo(ArrayList(), select)
 
         val selectionResults = if(query.isDistinct) results.toHashSet().toList() else results
 
         if(!query.shouldGroupResults() && query.shouldAggregateGroupFunctions()) {
             return getFlatQueryFunctionResults(query, results)
         }
+        else if(sortSelectedRows) {
+            val sortedRows = sort(query, selectionResults).asSequence().drop(query.firstRow)
+            return (if (query.maxResults > 0) sortedRows.take(query.maxResults) else sortedRows).toList()
+        }
         else if(!query.shouldGroupResults())
             return selectionResults
 
@@ -200,6 +472,455 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         return getQueryFunctionResults(query, groupedResults)
     }
 
+    /**
+     * Get the selection results of a query using only the values of an index and their reference counts.  The
+     * distinct values of an indexed attribute are the index values.  The count of a group is the reference count of its
+     * index value.  The minimum and maximum are the first and last index values.  Records without an index value
+     * are the difference between the size of the table and the references of the index.  Group functions over
+     * columnar attributes are calculated by scanning their columns.
+     *
+     * @param query Query containing selections
+     * @return Selection results or null if the query cannot be answered using an index
+     * @throws OnyxException Cannot read index
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun <T : Any?> getSelectionResultsFromIndex(query: Query): List<T>? {
+        val selections = query.selections ?: return null
+        if (selections.isEmpty() || !query.isDefaultQuery(descriptor) || query.firstRow > 0 || query.maxResults > 0 || query.changeListener != null || query.shouldSortResults())
+            return null
+
+        val functions = query.functions()
+        val groupBy = query.groupBy ?: emptyList()
+        val isIndexed = { attribute: String -> descriptor.indexes[attribute]?.function == null && descriptor.indexes.containsKey(attribute) }
+        val start = System.nanoTime()
+        val descriptors = ScannerFactory.getPartitionDescriptors(context, query.entityType!!, query)
+        val indexes = { attribute: String -> descriptors.map { context.getIndexInteractor(it.indexes[attribute]!!) } }
+        var scanner = "IndexValues"
+
+        val results: List<Map<String, Any?>> = when {
+            query.isDistinct && groupBy.isEmpty() && functions.isEmpty() && selections.size == 1 && isIndexed(selections[0]) ->
+                SelectionSchema(listOf(selections[0])).let { schema ->
+                    getValueCounts(context, query, indexes(selections[0])).keys.map { value -> SelectionRow(schema, arrayOf(value)) }
+                }
+
+            !query.isDistinct && groupBy.size == 1 && isIndexed(groupBy[0]) && functions.isNotEmpty()
+                    && functions.all { it.type == QueryFunctionType.COUNT && descriptor.attributes.containsKey(it.attribute) }
+                    && selections.all { it == groupBy[0] || it.getFunctionWithinSelection() != null } ->
+                SelectionSchema((listOf(groupBy[0]) + functions.map { it.resultName }).distinct()).let { schema ->
+                    getValueCounts(context, query, indexes(groupBy[0])).map { group ->
+                        val result = SelectionRow(schema)
+                        result[groupBy[0]] = group.key
+                        functions.forEach { result[it.resultName] = group.value.toInt() }
+                        result
+                    }
+                }
+
+            !query.isDistinct && groupBy.isEmpty() && functions.size == selections.size
+                    && functions.all { (it.type == QueryFunctionType.MIN || it.type == QueryFunctionType.MAX) && isIndexed(it.attribute) } -> {
+                // Records without an index value cannot be compared to the index values
+                val tableSize = ScannerFactory.getTableSize(context, query.entityType!!, query)
+                if (functions.any { function -> indexes(function.attribute).map { it.countRecords() }.sum() != tableSize })
+                    return null
+
+                val result = HashMap<String, Any?>()
+                functions.forEach { function ->
+                    val ascending = function.type == QueryFunctionType.MIN
+                    var extreme: Any? = null
+                    indexes(function.attribute).mapNotNull { it.findFirstValue(ascending) }.forEach { value ->
+                        if (extreme == null || if (ascending) value.compare(extreme, QueryCriteriaOperator.GREATER_THAN) else extreme.compare(value, QueryCriteriaOperator.GREATER_THAN))
+                            extreme = value
+                    }
+                    result.put(function.resultName, extreme)
+                }
+                listOf(result)
+            }
+
+            !query.isDistinct && groupBy.isEmpty() && functions.size == selections.size
+                    && functions.all { it.type in COLUMN_FUNCTIONS && descriptor.attributes[it.attribute]?.isColumnar == true } -> {
+                scanner = "Columns"
+                listOf(getColumnResults(functions, descriptors))
+            }
+
+            else -> return null
+        }
+
+        plan?.let {
+            synchronized(it) {
+                it.steps.add(QueryPlanStep(
+                        criteria = selections.joinToString(),
+                        scanner = scanner,
+                        partitions = descriptors.size,
+                        estimatedRows = results.size.toLong(),
+                        actualRows = results.size.toLong(),
+                        time = System.nanoTime() - start))
+            }
+        }
+
+        return results as List<T>
+    }
+
+    /**
+     * Calculate group functions by scanning the columns of columnar attributes rather than reading the records.  Each
+     * column is scanned once per partition regardless of how many functions use it.
+     *
+     * @param functions Functions over columnar attributes
+     * @param descriptors Descriptor of each partition being queried
+     * @return Record containing the result of each function
+     */
+    private fun getColumnResults(functions: List<QueryFunction>, descriptors: List<EntityDescriptor>): Map<String, Any?> {
+        val summaries = HashMap<String, ColumnSummary>()
+        functions.map { it.attribute }.distinct().forEach { attribute ->
+            val summary = ColumnSummary()
+            descriptors.forEach { summary.add(context.getColumnInteractor(it, it.attributes[attribute]!!).summarize()) }
+            summaries.put(attribute, summary)
+        }
+
+        val names = functions.map { it.resultName }
+        val result = SelectionRow(SelectionSchema(names.distinct()))
+        functions.forEachIndexed { index, function ->
+            result[names[index]] = summaries[function.attribute]!!.result(function.type, descriptor.attributes[function.attribute]!!.type)
+        }
+        return result
+    }
+
+    /**
+     * Join the records of a query to the records of the joined entity using a hash join.  The side estimated to match
+     * fewer references using the index statistics is the build side.  Its rows are read into a hash table keyed by
+     * its join attribute.  The other side is then read once and each of its references probes the hash table for
+     * its matches.  If the build side has more rows than the sort buffer, the hash table is moved to the temporary
+     * map builder so it is not held in memory.  See [SpilledJoinTable].
+     *
+     * Numeric join values are compared as numbers so an Int attribute can be joined to a Long attribute.  Null
+     * values do not match.
+     *
+     * @param query Query containing a join
+     * @return Selection rows containing the selections of the query followed by the selections of the joined entity
+     * @throws OnyxException Error reading the joined records
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun <T : Any?> getJoinResults(query: Query): List<T> {
+        val join = query.join!!
+        val joinQuery = join.toQuery()
+        val joinDescriptor = context.getDescriptorForEntity(joinQuery.entityType, joinQuery.partition)
+        joinQuery.validate(context, joinDescriptor)
+
+        val joinInteractor = DefaultQueryInteractor(joinDescriptor, persistenceManager, context)
+        joinInteractor.plan = plan
+
+        try {
+            val selections = (query.selections?.takeIf { it.isNotEmpty() } ?: descriptor.attributes.keys.toList()).distinct()
+            val joinSelections = (join.selections?.takeIf { it.isNotEmpty() } ?: joinDescriptor.attributes.keys.toList()).distinct()
+            val schema = SelectionSchema(selections + joinSelections.map { join.prefix + "." + it })
+
+            val sides = listOf(
+                    JoinSide(this, query, join.attribute, QueryAttributeResource.create(selections.toTypedArray(), descriptor, query, context), estimateCount(query)),
+                    JoinSide(joinInteractor, joinQuery, join.joinAttribute, QueryAttributeResource.create(joinSelections.toTypedArray(), joinDescriptor, joinQuery, context), joinInteractor.estimateCount(joinQuery)))
+            val build = if (sides[0].estimate <= sides[1].estimate) sides[0] else sides[1]
+            val probe = if (build === sides[0]) sides[1] else sides[0]
+            val start = System.nanoTime()
+
+            // Build the hash table of join values to the rows with that value
+            val table = HashMap<Any, MutableList<Array<Any?>>>()
+            var spilledTable: SpilledJoinTable? = null
+            var rows = 0
+            build.interactor.getReferencesForQuery<Any?>(build.query).keys.forEach { reference ->
+                val key = build.interactor.joinValue(reference, build.attribute) ?: return@forEach
+                val row = build.interactor.joinRow(reference, build.resources)
+                if (spilledTable == null && ++rows > context.sortBufferSize) {
+                    val spill = SpilledJoinTable(temporaryDataFile)
+                    table.forEach { entry -> entry.value.forEach { spill.add(entry.key, it) } }
+                    table.clear()
+                    spilledTable = spill
+                }
+
+                val spill = spilledTable
+                if (spill == null)
+                    table.getOrPut(key) { ArrayList() }.add(row)
+                else
+                    spill.add(key, row)
+            }
+
+            // Probe the hash table with the join value of each reference on the other side
+            val spill = spilledTable
+            val results = ArrayList<Map<String, Any?>>()
+            probe.interactor.getReferencesForQuery<Any?>(probe.query).keys.forEach { reference ->
+                val key = probe.interactor.joinValue(reference, probe.attribute) ?: return@forEach
+                val matches = (if (spill == null) table[key] else spill[key]) ?: return@forEach
+                val row = probe.interactor.joinRow(reference, probe.resources)
+                matches.forEach { results.add(SelectionRow(schema, if (build === sides[0]) arrayOf(*it, *row) else arrayOf(*row, *it))) }
+            }
+
+            plan?.let {
+                synchronized(it) {
+                    it.steps.add(QueryPlanStep(
+                            criteria = descriptor.entityClass.simpleName + "." + join.attribute + " = " + joinDescriptor.entityClass.simpleName + "." + join.joinAttribute,
+                            scanner = "HashJoin(build=" + build.query.entityType!!.simpleName + (if (spill != null) ", spilled" else "") + ")",
+                            estimatedRows = build.estimate,
+                            actualRows = results.size.toLong(),
+                            time = System.nanoTime() - start))
+                }
+            }
+
+            var joined: List<Map<String, Any?>> = if (query.isDistinct) LinkedHashSet(results).toList() else results
+            if (query.queryOrders?.isNotEmpty() == true)
+                joined = sort(query, joined)
+
+            query.resultsCount = joined.size
+            val lower = query.firstRow
+            val upper = lower + if (query.maxResults > 0) query.maxResults else joined.size
+            return joined.filterIndexed { index, _ -> index in lower..(upper - 1) } as List<T>
+        } finally {
+            joinInteractor.cleanup()
+        }
+    }
+
+    /**
+     * Get the distinct values selected by a sub query.  The matching references are collected into a reference set
+     * and the selection of each is read into a set of values.  If the sub query has no criteria and selects an index
+     * without a function, the values are the index values so the records are not read.
+     *
+     * @param query Sub query selecting a single attribute.  If it has no selections, the identifier is selected.
+     * @return Distinct values of the selection that are not null
+     * @throws OnyxException Error executing the sub query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun getSubQueryValues(query: Query): Set<Any> {
+        val attribute = query.selections?.firstOrNull() ?: descriptor.identifier!!.name
+        val values = HashSet<Any>()
+
+        if (query.isDefaultQuery(descriptor) && descriptor.indexes[attribute]?.function == null && descriptor.indexes.containsKey(attribute)) {
+            ScannerFactory.getPartitionDescriptors(context, query.entityType!!, query).forEach { partition ->
+                context.getIndexInteractor(partition.indexes[attribute]!!).findAllValueCounts().forEach { if (it.value > 0) values.add(it.key) }
+            }
+        } else {
+            getReferencesForQuery<Any?>(query).keys.forEach { reference -> reference.attribute(context, attribute, descriptor)?.let { values.add(it) } }
+        }
+
+        return values
+    }
+
+    /**
+     * Side of a hash join
+     *
+     * @param interactor Query interactor of the entity
+     * @param query Query of the references on this side
+     * @param attribute Join attribute
+     * @param resources Selections of the entity
+     * @param estimate Estimated number of references from the index statistics
+     */
+    private class JoinSide(val interactor: DefaultQueryInteractor, val query: Query, val attribute: String, val resources: List<QueryAttributeResource>, val estimate: Long)
+
+    /**
+     * Hash table of the build side of a join within the temporary map builder.  Each row is stored once under its
+     * sequence number.  The rows with the same join value are chained in the order they were added, so adding a row
+     * never reads or rewrites the other rows of its join value.
+     *
+     * @param dataFile Temporary map builder the table is stored within
+     */
+    private class SpilledJoinTable(dataFile: DiskMapFactory) {
+
+        private val rows: DiskMap<Long, Array<Any?>> = dataFile.getHashMap("joinBuildRows")
+        private val next: DiskMap<Long, Long> = dataFile.getHashMap("joinBuildNext")
+        private val first: DiskMap<Any, Long> = dataFile.getHashMap("joinBuildFirst")
+        private val last: DiskMap<Any, Long> = dataFile.getHashMap("joinBuildLast")
+        private var count = 0L
+
+        /**
+         * Add a row to the end of the rows with its join value
+         *
+         * @param key Join value of the row
+         * @param row Selection values of the row
+         */
+        fun add(key: Any, row: Array<Any?>) {
+            val sequence = count++
+            rows[sequence] = row
+
+            val previous = last[key]
+            if (previous == null)
+                first[key] = sequence
+            else
+                next[previous] = sequence
+            last[key] = sequence
+        }
+
+        /**
+         * Get the rows with a join value
+         *
+         * @param key Join value
+         * @return Rows in the order they were added or null if there are none
+         */
+        operator fun get(key: Any): List<Array<Any?>>? {
+            var sequence: Long = first[key] ?: return null
+            val matches = ArrayList<Array<Any?>>()
+            while (true) {
+                matches.add(rows[sequence]!!)
+                sequence = next[sequence] ?: return matches
+            }
+        }
+    }
+
+    /**
+     * Read the join value of a reference.  Integral values are read as a Long and decimal values without a fraction
+     * are as well so equal numbers of different types have the same hash key.
+     */
+    private fun joinValue(reference: Reference, attribute: String): Any? {
+        val value = reference.attribute(context, attribute, descriptor)
+        return when (value) {
+            is Byte, is Short, is Int -> (value as Number).toLong()
+            is Float, is Double -> {
+                val number = (value as Number).toDouble()
+                val normalized: Any = if (number % 1.0 == 0.0) number.toLong() else number
+                normalized
+            }
+            else -> value
+        }
+    }
+
+    /**
+     * Read the selection values of a reference in selection order
+     */
+    private fun joinRow(reference: Reference, resources: List<QueryAttributeResource>): Array<Any?> = Array(resources.size) { selectionValue(context, reference, resources[it]) }
+
+    /**
+     * Estimate the number of references matching a query from the index statistics.  For a conjunction, it is the
+     * estimate of the most selective criteria.
+     *
+     * @param query Query to estimate
+     * @return Estimated number of references
+     */
+    private fun estimateCount(query: Query): Long {
+        val root = query.criteria!!
+        val leaves = when {
+            isConjunction(root) -> listOf(root) + root.subCriteria.filter { it.subCriteria.isEmpty() && !it.isNot }
+            root.subCriteria.isEmpty() && !root.isNot -> listOf(root)
+            else -> emptyList()
+        }
+        return leaves.map { ScannerFactory.estimateCount(context, it, query.entityType!!, query) }.min() ?: ScannerFactory.getTableSize(context, query.entityType!!, query)
+    }
+
+    /**
+     * Combine the index values and reference counts of each partition.  If there are records without an index value,
+     * they are counted under null.
+     *
+     * @param context Schema context
+     * @param query Query being answered
+     * @param indexes Index of each partition being queried
+     * @return Index values and the number of records with each
+     */
+    private fun getValueCounts(context: SchemaContext, query: Query, indexes: List<IndexInteractor>): Map<Any?, Long> {
+        val counts = HashMap<Any?, Long>()
+        indexes.forEach { index -> index.findAllValueCounts().forEach { counts.put(it.key, (counts[it.key] ?: 0L) + it.value) } }
+
+        val withoutValue = ScannerFactory.getTableSize(context, query.entityType!!, query) - counts.values.sum()
+        if (withoutValue > 0)
+            counts.put(null, withoutValue)
+        return counts
+    }
+
+    /**
+     * Get the value of a selection for a reference
+     *
+     * @param context Schema context
+     * @param reference Reference to read the selection of
+     * @param resource Selection to read
+     * @return Selection value.  Can also be a relationship value or the result of a selection function
+     */
+    private fun selectionValue(context: SchemaContext, reference: Reference, resource: QueryAttributeResource): Any? = when {
+        resource.relationshipDescriptor != null && resource.relationshipDescriptor.isToOne -> reference.toOneRelationshipAsMap(context, resource)
+        resource.relationshipDescriptor != null && resource.relationshipDescriptor.isToMany -> reference.toManyRelationshipAsMap(context, resource)
+        resource.function != null -> resource.function.execute(reference.attribute(context, resource.attribute, descriptor))
+        else -> reference.attribute(context, resource.attribute, descriptor)
+    }
+
+    /**
+     * Calculate the group functions of a query as the references are read.  Each group keeps an accumulator per
+     * function rather than a row for each of its references, so only the selections the functions and the group by
+     * depend on are read.  The results match getGroupByResults followed by getQueryFunctionResults or
+     * getFlatQueryFunctionResults if there is no group by.
+     *
+     * @param query Query containing selections, group by, and functions
+     * @param references Entries of the references within the rows of the query
+     * @param scanObjects Selections of the query
+     * @return A record for each group containing its group by value and function results
+     * @since 2.2.0
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun aggregate(query: Query, references: Sequence<Map.Entry<Reference, *>>, scanObjects: List<QueryAttributeResource>): List<Map<String, Any?>> {
+        val functions = query.functions().filter { it.type.isGroupFunction }
+        val groupBy = query.groupBy?.firstOrNull()
+        val groupResource = if (groupBy == null) -1 else scanObjects.indexOfFirst { it.selection == groupBy }
+        val functionResources = functions.map { function -> scanObjects.indexOfFirst { it.selection == function.attribute } }
+
+        // Only the selections used are read.  The values of a reference are reused for each function.
+        val used = (functionResources + groupResource).filter { it >= 0 }.distinct()
+        val values = arrayOfNulls<Any?>(scanObjects.size)
+
+        val groups = HashMap<Any?, Array<QueryFunctionAccumulator>>()
+        val extremes = arrayOfNulls<Map.Entry<Reference, *>>(functions.size)
+        val newGroup = { Array(functions.size) { QueryFunctionAccumulator(functions[it]) } }
+        if (groupBy == null)
+            groups.put(null, newGroup())
+
+        references.forEach { entry ->
+            if (query.isTerminated)
+                return emptyList()
+
+            val record = entry.value as? Map<String, Any?>
+            used.forEach { values[it] = if (record != null) record[scanObjects[it].selection] else selectionValue(context, entry.key, scanObjects[it]) }
+
+            val accumulators = groups.getOrPut(if (groupResource >= 0) values[groupResource] else null, newGroup)
+            accumulators.forEachIndexed { index, accumulator ->
+                if (accumulator.add(if (functionResources[index] >= 0) values[functionResources[index]] else null) && groupBy == null)
+                    extremes[index] = entry
+            }
+        }
+
+        // Without a group by, the other selections are taken from the record of the last minimum or maximum
+        val functionNames = functions.map { it.resultName }
+        val others = if (groupBy == null && functions.none { QueryFunctionAccumulator(it).isFullResult }) query.selections?.filter { it.getFunctionWithinSelection() == null } ?: emptyList() else emptyList()
+        val schema = SelectionSchema(((if (groupBy != null) listOf(groupBy) else emptyList()) + functionNames + others).distinct())
+
+        return groups.map { group ->
+            val result = SelectionRow(schema)
+            if (groupBy != null)
+                result[groupBy] = group.key
+            group.value.forEachIndexed { index, accumulator -> result[functionNames[index]] = accumulator.result }
+
+            if (others.isNotEmpty()) {
+                val extreme = extremes.lastOrNull { it != null }
+                val record = extreme?.value as? Map<String, Any?>
+                others.forEach { selection ->
+                    val resource = scanObjects.firstOrNull { it.selection == selection }
+                    result[selection] = when {
+                        extreme == null || resource == null -> null
+                        record != null -> record[selection]
+                        else -> selectionValue(context, extreme.key, resource)
+                    }
+                }
+            }
+            result
+        }
+    }
+
+    /**
+     * Calculate a function over a list of values in a single pass
+     *
+     * @param function Group function
+     * @param values Attribute values
+     * @return Function result
+     * @since 2.2.0
+     */
+    private fun accumulate(function: QueryFunction, values: List<Any?>): Any? {
+        val accumulator = QueryFunctionAccumulator(function)
+        values.forEach { accumulator.add(it) }
+        return accumulator.result
+    }
+
     @Suppress("UNCHECKED_CAST")
     override fun <T> getFlatQueryFunctionResults(query:Query, groupedResults:List<T>):List<T> {
         val functionResults = HashMap<String, Any?>()
@@ -221,11 +942,12 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
                     QueryFunctionType.MAX -> flatList.max()
                     QueryFunctionType.AVG -> flatList.avg()
                     QueryFunctionType.COUNT -> flatList.count()
+                    QueryFunctionType.APPROX_COUNT_DISTINCT, QueryFunctionType.PERCENTILE, QueryFunctionType.MEDIAN -> accumulate(it, flatList)
                     else -> throw Exception("Invalid function")
                 }
             }
 
-            if(it.type == QueryFunctionType.AVG || it.type == QueryFunctionType.COUNT || it.type == QueryFunctionType.SUM) {
+            if(QueryFunctionAccumulator(it).isFullResult) {
                 hasFullResultFunction = true
             } else {
                 val index = flatList.indexOf(functionResult)
@@ -233,7 +955,7 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
                     originalRecord = groupedResults[index] as Map<String, Any?>
             }
 
-            functionResults[it.type.name.toLowerCase() + "(${it.attribute})"] = functionResult
+            functionResults[it.resultName] = functionResult
         }
 
         if(!hasFullResultFunction) {
@@ -266,10 +988,11 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
                                     QueryFunctionType.MAX -> ((mutableInnerEntry.value).map { item -> (item as Map<String, Any?>)[it.attribute] }).max()
                                     QueryFunctionType.AVG -> ((mutableInnerEntry.value).map { item -> (item as Map<String, Any?>)[it.attribute] }).avg()
                                     QueryFunctionType.COUNT -> ((mutableInnerEntry.value).map { item -> (item as Map<String, Any?>)[it.attribute] }).count()
+                                    QueryFunctionType.APPROX_COUNT_DISTINCT, QueryFunctionType.PERCENTILE, QueryFunctionType.MEDIAN -> accumulate(it, (mutableInnerEntry.value).map { item -> (item as Map<String, Any?>)[it.attribute] })
                                     else -> throw Exception("Invalid function")
                                 }
                             }
-                    newValue[it.type.toString().toLowerCase() + "(" + it.attribute + ")"] = functionResult
+                    newValue[it.resultName] = functionResult
                 }
 
                 (mutableInnerEntry as MutableMap.MutableEntry<String, Any?>).setValue(newValue)
@@ -332,7 +1055,6 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
     @Throws(OnyxException::class)
     override fun <T : Any?> deleteRecordsWithReferences(records: Map<Reference, T>, query: Query): Int {
 
-        val context = Contexts.get(contextId)!!
         var deleteCount = 0
         val lower = query.firstRow
         val upper = lower + if(query.maxResults > 0) query.maxResults else records.size
@@ -362,7 +1084,6 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
     @Throws(OnyxException::class)
     override fun <T : Any?> updateRecordsWithReferences(query: Query, records: Map<Reference, T>): Int {
 
-        val context = Contexts.get(contextId)!!
         var updateCount = 0
         val lower = query.firstRow
         val upper = lower + if(query.maxResults > 0) query.maxResults else records.size
@@ -406,7 +1127,6 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      */
     @Throws(OnyxException::class)
     override fun getCountForQuery(query: Query): Long {
-        val context = Contexts.get(contextId)!!
         if (query.isDefaultQuery(descriptor)) {
             val systemEntity = context.getSystemEntityByName(query.entityType!!.name)
 
@@ -431,18 +1151,81 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
                 }
             }
         } else {
-            val results = this.getReferencesForQuery<Any>(query)
-            return results.size.toLong()
+            return countWithScanner(query) ?: this.getReferencesForQuery<Any>(query).size.toLong()
         }
     }
 
+    /**
+     * Get the count for a query only if it can be counted without reading records.  A query without criteria is
+     * counted using the size of the entity's records and a single indexed criteria using the reference counts of its
+     * index values.
+     *
+     * @param query Query to identify count for
+     * @return The number of records matching query criterion or null if the records would have to be scanned
+     * @throws OnyxException Exception occurred while counting
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun getCountFromIndexes(query: Query): Long? {
+        if (query.isDefaultQuery(descriptor))
+            return getCountForQuery(query)
+
+        val root = query.criteria!!
+        if (root.isNot || root.subCriteria.isNotEmpty())
+            return null
+
+        val scanner = ScannerFactory.getScannerForQueryCriteria(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager)
+        return if (scanner is IndexScanner) scanner.count() else null
+    }
+
+    /**
+     * Count the matches of a query using the count of the scanner that would otherwise collect the references.  A
+     * single indexed criteria is counted using the reference counts of the index values.  Criteria that are checked
+     * using a full table scan are counted as the records are scanned.
+     *
+     * @param query Query to count
+     * @return Number of records matching the query or null if the references must be collected to count them
+     * @throws OnyxException Exception occurred while scanning
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun countWithScanner(query: Query): Long? {
+        if (plan != null)
+            return null
+
+        val root = query.criteria!!
+        val scanner = if (root.isNot)
+            ScannerFactory.getFullTableScanner(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager)
+        else
+            ScannerFactory.getScannerForQueryCriteria(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager)
+
+        return when {
+            root.subCriteria.isEmpty() && (scanner is IndexScanner || scanner is FullTableScanner) -> scanner.count()
+            scanner is FullTableScanner && !isConjunction(root) -> scanner.count()
+            scanner is FullTableScanner && root.subCriteria.none { it.subCriteria.isEmpty() && !it.isNot && isIndexed(context, query, it) } -> scanner.count()
+            else -> null
+        }
+    }
+
+    /**
+     * Indicates whether a criteria is resolved using an identifier or index
+     *
+     * @param context Schema context
+     * @param query Query the criteria belongs to
+     * @param criteria Criteria to check
+     * @since 2.2.0
+     */
+    private fun isIndexed(context: SchemaContext, query: Query, criteria: QueryCriteria): Boolean {
+        val scanner = ScannerFactory.getScannerForQueryCriteria(context, criteria, query.entityType!!, temporaryDataFile, query, persistenceManager)
+        return scanner is IndexScanner || scanner is IdentifierScanner
+    }
+
     /**
      * Cleanup the query controller references so that we do not have memory leaks.
      * The most important part of this is to recycle the temporary map builders.
      */
     override fun cleanup() {
-        val context = Contexts.get(contextId)
-        context?.releaseMapBuilder(this.temporaryDataFile)
+        context.releaseMapBuilder(this.temporaryDataFile)
     }
 
     /**
@@ -457,10 +1240,9 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      */
     @Throws(OnyxException::class)
     private fun <T : Any?> getReferencesForCriteria(query: Query, criteria: QueryCriteria, existingReferences: MutableMap<Reference, Reference>?, forceFullScan: Boolean): MutableMap<Reference, T> {
-        val context = Contexts.get(contextId)!!
         // Ensure query is still valid
         if (query.isTerminated) {
-            return HashMap()
+            return ReferenceSet()
         }
 
         val scanner = if (forceFullScan) {
@@ -475,12 +1257,12 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         val criteriaResults: MutableMap<Reference, Reference>
 
         criteriaResults = if (existingReferences == null) {
-            scanner.scan()
+            scan(query, criteria, scanner, null)
         } else {
             if (criteria.isOr || criteria.isNot) {
-                scanner.scan()
+                scan(query, criteria, scanner, null)
             } else {
-                scanner.scan(existingReferences)
+                scan(query, criteria, scanner, existingReferences)
             }
         }
 
@@ -500,6 +1282,102 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
         return criteriaResults as MutableMap<Reference, T>
     }
 
+    /**
+     * Indicates whether the criteria tree is a chain of and criteria.  If so, the criteria can be evaluated in any
+     * order and the query planner is free to choose the cheapest access path first.
+     *
+     * @param criteria Root criteria
+     * @since 2.2.0
+     */
+    private fun isConjunction(criteria: QueryCriteria): Boolean = !criteria.isNot && !criteria.flip && criteria.subCriteria.isNotEmpty() && criteria.subCriteria.all { it.isAnd && !it.isOr && !it.flip }
+
+    /**
+     * Get references for a chain of and criteria.  The criteria that can be resolved using an identifier or index are
+     * ordered by their estimated number of matches.  The most selective is scanned first and the remaining are used to
+     * narrow down the candidates.  Once the candidates are empty, the scan stops.  Once the candidates are fewer than what
+     * the next index would produce, the remaining criteria are checked against the candidate entities rather
+     * than scanning additional indexes.
+     *
+     * @param query Query with an and chain of criteria
+     * @return References matching all criteria
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun <T : Any?> getReferencesForConjunction(query: Query): MutableMap<Reference, T> {
+        val root = query.criteria!!
+
+        // Grouped criteria can only be resolved by checking the entity against the entire query
+        val leaves = listOf(root) + root.subCriteria.filter { it.subCriteria.isEmpty() && !it.isNot }
+
+        val steps = leaves.map { Pair(it, ScannerFactory.getScannerForQueryCriteria(context, it, query.entityType!!, temporaryDataFile, query, persistenceManager)) }
+                .filter { it.second is IndexScanner || it.second is IdentifierScanner }
+                .map { Triple(it.first, it.second, ScannerFactory.estimateCount(context, it.first, query.entityType!!, query)) }
+                .sortedBy { it.third }
+
+        // Nothing is indexed, fall back to a full table scan
+        if (steps.isEmpty())
+            return getReferencesForCriteria(query, root, null, false)
+
+        var requiresFilter = steps.size < root.subCriteria.size + 1
+        var candidates: MutableMap<Reference, Reference>? = null
+
+        scan@ for ((criteria, scanner, estimate) in steps) {
+            if (query.isTerminated)
+                return ReferenceSet()
+
+            val current = candidates
+            candidates = when {
+                current == null -> scan(query, criteria, scanner, null, estimate)
+                current.isEmpty() -> break@scan
+                current.size * HYDRATION_COST <= estimate -> { requiresFilter = true; break@scan }
+                else -> scan(query, criteria, scanner, current, estimate)
+            }
+        }
+
+        if (requiresFilter && candidates!!.isNotEmpty())
+            candidates = scan(query, root, ScannerFactory.getFullTableScanner(context, root, query.entityType!!, temporaryDataFile, query, persistenceManager), candidates)
+
+        @Suppress("UNCHECKED_CAST")
+        return candidates as MutableMap<Reference, T>
+    }
+
+    /**
+     * Scan a criteria and record the access path within the query plan if one is being built
+     *
+     * @param query Query being executed
+     * @param criteria Criteria being scanned
+     * @param scanner Scanner chosen for the criteria
+     * @param existingReferences References to narrow down.  Null if the scanner should start from a clean slate.
+     * @param estimate Estimated number of references.  Calculated only if the plan is being built and it was not provided.
+     * @return References matching criteria
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun scan(query: Query, criteria: QueryCriteria, scanner: TableScanner, existingReferences: MutableMap<Reference, Reference>?, estimate: Long? = null): MutableMap<Reference, Reference> {
+        val plan = this.plan ?: return if (existingReferences == null) scanner.scan() else scanner.scan(existingReferences)
+
+        val estimatedRows = estimate ?: ScannerFactory.estimateCount(context, criteria, query.entityType!!, query)
+        val start = System.nanoTime()
+        val results = if (existingReferences == null) scanner.scan() else scanner.scan(existingReferences)
+        val isFullScan = scanner is FullTableScanner || scanner is PartitionFullTableScanner || scanner is IndexOrderScanner
+        val partitions = if (descriptor.hasPartition && query.partition === QueryPartitionMode.ALL)
+            context.getSystemEntityByName(query.entityType!!.name)?.partition?.entries?.size ?: 1
+        else 1
+
+        synchronized(plan) {
+            plan.steps.add(QueryPlanStep(
+                    criteria = if (isFullScan) "all criteria" else "${criteria.attribute} ${criteria.operator} ${criteria.value}",
+                    scanner = scanner.javaClass.simpleName,
+                    partitions = partitions,
+                    estimatedRows = estimatedRows,
+                    actualRows = results.size.toLong(),
+                    time = System.nanoTime() - start))
+        }
+        return results
+    }
+
     /**
      * Used to correlate existing reference sets with the criteria met from
      * a single criteria.
@@ -507,13 +1385,22 @@ class DefaultQueryInteractor(private var descriptor: EntityDescriptor, private v
      * @param criteria Root Criteria
      * @param totalResults Results from previous scan iterations
      * @param criteriaResults Criteria results used to aggregate a contrived list
+     * @since 2.2.0 Reference sets are intersected in place rather than collecting the references to remove
      */
     private fun <T : Any?> aggregateFilteredReferences(criteria: QueryCriteria, totalResults: MutableMap<Reference, T>, criteriaResults: MutableMap<Reference, T>) {
         when {
             criteria.flip ->  {totalResults.clear(); totalResults += criteriaResults}
             criteria.isOr ->  totalResults += criteriaResults
-            criteria.isAnd -> totalResults -= totalResults.filterKeys { !criteriaResults.containsKey(it) }.keys
+            criteria.isAnd -> if (totalResults is ReferenceSet<*>) totalResults.retainAll(criteriaResults) else totalResults.keys.retainAll(criteriaResults.keys)
         }
     }
 
+    companion object {
+        // Relative cost of hydrating an entity to check criteria compared to reading an index reference
+        private val HYDRATION_COST = 4
+
+        // Group functions that can be calculated from the totals of a column
+        private val COLUMN_FUNCTIONS = setOf(QueryFunctionType.SUM, QueryFunctionType.AVG, QueryFunctionType.MIN, QueryFunctionType.MAX, QueryFunctionType.COUNT)
+    }
+
 }
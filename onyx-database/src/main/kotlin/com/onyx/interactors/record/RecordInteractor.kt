@@ -132,4 +132,33 @@ interface RecordInteractor {
      */
     @Throws(OnyxException::class)
     fun findAllBelow(indexValue: Any, includeValue: Boolean): Set<Long>
+
+    /**
+     * Iterate through the entity references in the order of their identifiers.  The records are sorted so only the
+     * references that are iterated are read.
+     *
+     * @param ascending Whether to start from the lowest identifier or the highest
+     * @return Iterator of references in identifier order
+     *
+     * @throws OnyxException Exception occurred while iterating records
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllInOrder(ascending: Boolean): Iterator<Long>
+
+    /**
+     * Iterate through the record references in the order of their identifiers starting from an identifier.  The
+     * records are sought to the identifier rather than iterated from the first one.
+     *
+     * @param ascending Whether to iterate from lower identifiers to higher ones or the reverse
+     * @param from Identifier to start from.  The record of an equal identifier is included.
+     * @return Iterator of record references in identifier order starting from the identifier
+     *
+     * @throws OnyxException Exception occurred while iterating records
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun findAllInOrder(ascending: Boolean, from: Any): Iterator<Long>
 }
@@ -0,0 +1,319 @@
+package com.onyx.interactors.record.data
+
+import java.util.Arrays
+
+/**
+ * Map of references used for query results.  Rather than allocating a reference and a map entry for each match, the
+ * partition and position of each reference are packed into primitive arrays of an open addressing hash table.
+ * Reference objects are only created when the map is iterated or read by key.
+ *
+ * Query results start out with each reference mapped to itself.  Values are only stored once one is assigned to a
+ * reference, for instance when the entity is hydrated.
+ *
+ * This is not thread safe.
+ *
+ * @since 2.2.0
+ */
+class ReferenceSet<T> @JvmOverloads constructor(expectedSize: Int = 16) : AbstractMutableMap<Reference, T>() {
+
+    private var partitions: LongArray
+    private var positions: LongArray
+    private var assigned: Array<Any?>? = null
+    private var mask: Int
+    private var count = 0
+    private var used = 0
+
+    init {
+        var capacity = 16
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity = capacity shl 1
+        partitions = LongArray(capacity)
+        positions = LongArray(capacity)
+        Arrays.fill(positions, EMPTY)
+        mask = capacity - 1
+    }
+
+    override val size: Int
+        get() = count
+
+    /**
+     * Add a reference mapped to itself
+     *
+     * @param partition Partition the record is in
+     * @param position Position of the record within the partition
+     * @return Whether the reference was added or was already within the set
+     */
+    fun add(partition: Long, position: Long): Boolean {
+        if (slot(partition, position) >= 0)
+            return false
+        insert(partition, position)
+        return true
+    }
+
+    /**
+     * Whether the set contains a reference
+     *
+     * @param partition Partition the record is in
+     * @param position Position of the record within the partition
+     */
+    fun contains(partition: Long, position: Long): Boolean = slot(partition, position) >= 0
+
+    /**
+     * Iterate the references without creating reference objects
+     *
+     * @param action Invoked with the partition and position of each reference
+     */
+    inline fun forEachReference(action: (partition: Long, position: Long) -> Unit) {
+        for (i in 0 until capacity())
+            if (isOccupied(i))
+                action(partitionAt(i), positionAt(i))
+    }
+
+    /**
+     * Retain only the references contained within another map of references.  This is used to intersect the results
+     * of and criteria.
+     *
+     * @param other References to retain
+     */
+    fun retainAll(other: Map<Reference, *>) {
+        val packed = other as? ReferenceSet<*>
+        for (i in 0 until capacity()) {
+            if (!isOccupied(i))
+                continue
+            val retain = packed?.contains(partitions[i], positions[i]) ?: other.containsKey(Reference(partitions[i], positions[i]))
+            if (!retain)
+                removeAt(i)
+        }
+    }
+
+    override fun put(key: Reference, value: T): T? {
+        var index = slot(key.partition, key.reference)
+        val previous = if (index >= 0) valueAt(index) else null
+        if (index < 0)
+            index = insert(key.partition, key.reference)
+        if (value != key || assigned != null)
+            setValueAt(index, value)
+        return previous
+    }
+
+    override fun putAll(from: Map<out Reference, T>) {
+        if (from is ReferenceSet<*> && from.assigned == null && assigned == null) {
+            from.forEachReference { partition, position -> add(partition, position) }
+            return
+        }
+        from.forEach { put(it.key, it.value) }
+    }
+
+    override fun get(key: Reference): T? {
+        val index = slot(key.partition, key.reference)
+        return if (index >= 0) valueAt(index) else null
+    }
+
+    override fun containsKey(key: Reference): Boolean = slot(key.partition, key.reference) >= 0
+
+    override fun remove(key: Reference): T? {
+        val index = slot(key.partition, key.reference)
+        if (index < 0)
+            return null
+        val previous = valueAt(index)
+        removeAt(index)
+        return previous
+    }
+
+    override fun clear() {
+        Arrays.fill(positions, EMPTY)
+        assigned = null
+        count = 0
+        used = 0
+    }
+
+    override val entries: MutableSet<MutableMap.MutableEntry<Reference, T>> = object : AbstractMutableSet<MutableMap.MutableEntry<Reference, T>>() {
+        override val size: Int
+            get() = count
+
+        override fun add(element: MutableMap.MutableEntry<Reference, T>): Boolean = put(element.key, element.value) == null
+
+        override fun iterator(): MutableIterator<MutableMap.MutableEntry<Reference, T>> = object : MutableIterator<MutableMap.MutableEntry<Reference, T>> {
+            private var next = advance(0)
+            private var current = -1
+
+            private fun advance(from: Int): Int {
+                var index = from
+                while (index < capacity() && !isOccupied(index))
+                    index++
+                return index
+            }
+
+            override fun hasNext(): Boolean = next < capacity()
+
+            override fun next(): MutableMap.MutableEntry<Reference, T> {
+                if (!hasNext())
+                    throw NoSuchElementException()
+                current = next
+                next = advance(next + 1)
+                return Entry(current)
+            }
+
+            override fun remove() {
+                check(current >= 0)
+                removeAt(current)
+                current = -1
+            }
+        }
+    }
+
+    /**
+     * Entry of a slot within the table.  The table is never rehashed while iterating since neither removing nor
+     * assigning values inserts references.
+     */
+    private inner class Entry(private val index: Int) : MutableMap.MutableEntry<Reference, T> {
+        override val key: Reference = Reference(partitions[index], positions[index])
+
+        override val value: T
+            get() = valueAt(index)
+
+        override fun setValue(newValue: T): T {
+            val previous = valueAt(index)
+            setValueAt(index, newValue)
+            return previous
+        }
+
+        override fun equals(other: Any?): Boolean = other is Map.Entry<*, *> && other.key == key && other.value == value
+        override fun hashCode(): Int = key.hashCode() xor (value?.hashCode() ?: 0)
+    }
+
+    // region Table
+
+    @PublishedApi internal fun capacity(): Int = positions.size
+    @PublishedApi internal fun isOccupied(index: Int): Boolean = positions[index] >= 0
+    @PublishedApi internal fun partitionAt(index: Int): Long = partitions[index]
+    @PublishedApi internal fun positionAt(index: Int): Long = positions[index]
+
+    /**
+     * Value of a slot.  Unless a value has been assigned, the reference is its own value.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun valueAt(index: Int): T {
+        val value = assigned?.get(index)
+        return (if (value === NO_VALUE || assigned == null) Reference(partitions[index], positions[index]) else value) as T
+    }
+
+    private fun setValueAt(index: Int, value: T) {
+        var current = assigned
+        if (current == null) {
+            current = arrayOfNulls(capacity())
+            Arrays.fill(current, NO_VALUE)
+            assigned = current
+        }
+        current[index] = value
+    }
+
+    /**
+     * Find the slot of a reference
+     *
+     * @return Index of the slot or -1 if the reference is not within the set
+     */
+    private fun slot(partition: Long, position: Long): Int {
+        var index = hash(partition, position) and mask
+        while (true) {
+            val existing = positions[index]
+            if (existing == EMPTY)
+                return -1
+            if (existing == position && partitions[index] == partition)
+                return index
+            index = (index + 1) and mask
+        }
+    }
+
+    /**
+     * Insert a reference that is not within the set.  Removed slots are only reclaimed when the table is rebuilt so
+     * lookups can probe past them.
+     *
+     * @return Index of the slot
+     */
+    private fun insert(partition: Long, position: Long): Int {
+        if (used + 1 > capacity() * LOAD_FACTOR)
+            rebuild(if (count + 1 > capacity() * LOAD_FACTOR / 2) capacity() shl 1 else capacity())
+
+        var index = hash(partition, position) and mask
+        while (positions[index] != EMPTY)
+            index = (index + 1) and mask
+
+        partitions[index] = partition
+        positions[index] = position
+        count++
+        used++
+        return index
+    }
+
+    private fun removeAt(index: Int) {
+        positions[index] = REMOVED
+        assigned?.set(index, NO_VALUE)
+        count--
+    }
+
+    /**
+     * Re-insert the references into a new table dropping removed slots
+     *
+     * @param capacity Capacity of the new table
+     */
+    private fun rebuild(capacity: Int) {
+        val oldPartitions = partitions
+        val oldPositions = positions
+        val oldValues = assigned
+
+        partitions = LongArray(capacity)
+        positions = LongArray(capacity)
+        Arrays.fill(positions, EMPTY)
+        assigned = if (oldValues == null) null else arrayOfNulls<Any?>(capacity).apply { Arrays.fill(this, NO_VALUE) }
+        mask = capacity - 1
+        used = count
+
+        for (i in oldPositions.indices) {
+            if (oldPositions[i] < 0)
+                continue
+            var index = hash(oldPartitions[i], oldPositions[i]) and mask
+            while (positions[index] != EMPTY)
+                index = (index + 1) and mask
+            partitions[index] = oldPartitions[i]
+            positions[index] = oldPositions[i]
+            if (oldValues != null)
+                assigned!![index] = oldValues[i]
+        }
+    }
+
+    // endregion
+
+    companion object {
+        private const val LOAD_FACTOR = 0.75
+        private const val EMPTY = -1L
+        private const val REMOVED = -2L
+        private val NO_VALUE = Any()
+
+        private fun hash(partition: Long, position: Long): Int {
+            val hash = (position * -7046029254386353131L) xor partition
+            return (hash xor (hash ushr 32)).toInt() xor (hash ushr 16).toInt()
+        }
+
+        /**
+         * Intersect two maps of references.  The smaller is iterated and checked against the larger.
+         *
+         * @param first References from one criteria
+         * @param second References from another criteria
+         * @return References within both
+         */
+        @JvmStatic
+        fun intersect(first: Map<Reference, *>, second: Map<Reference, *>): ReferenceSet<Reference> {
+            val smaller = if (first.size <= second.size) first else second
+            val larger = if (smaller === first) second else first
+            val results = ReferenceSet<Reference>(smaller.size)
+
+            if (smaller is ReferenceSet<*> && larger is ReferenceSet<*>)
+                smaller.forEachReference { partition, position -> if (larger.contains(partition, position)) results.add(partition, position) }
+            else
+                smaller.keys.forEach { if (larger.containsKey(it)) results.add(it.partition, it.reference) }
+
+            return results
+        }
+    }
+}
@@ -209,4 +209,30 @@ open class DefaultRecordInteractor(val entityDescriptor: EntityDescriptor, prote
     @Suppress("UNCHECKED_CAST")
     override fun findAllBelow(indexValue: Any, includeValue: Boolean): Set<Long> = (records as SortedDiskMap<Any, IManagedEntity>).below(indexValue, includeValue)
 
+    /**
+     * Iterate through the entity references in the order of their identifiers.  The underlying data structure
+     * should be sorted
+     *
+     * @param ascending Whether to start from the lowest identifier or the highest
+     * @return Iterator of REFERENCES not the actual values
+     * @throws OnyxException Error when reading the store
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun findAllInOrder(ascending: Boolean): Iterator<Long> = (records as SortedDiskMap<Any, IManagedEntity>).sortedReferences(ascending)
+
+    /**
+     * Iterate through the records in identifier order starting from an identifier
+     *
+     * @param ascending Whether to iterate from lower identifiers to higher ones or the reverse
+     * @param from Identifier to start from
+     * @return Iterator of REFERENCES not the actual values
+     * @throws OnyxException Error when reading the store
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun findAllInOrder(ascending: Boolean, from: Any): Iterator<Long> = (records as SortedDiskMap<Any, IManagedEntity>).sortedReferences(ascending, from)
+
 }
@@ -8,8 +8,11 @@ import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.persistence.query.QueryPartitionMode
+import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.DiskMapFactory
+import com.onyx.persistence.IManagedEntity
 
 /**
  * Created by timothy.osborn on 1/6/15.
@@ -90,9 +93,10 @@ object ScannerFactory {
             }
         }
 
-        // Indexes must be either an equal or in so that it can make exact matches
-        val indexDescriptor = descriptor.indexes[attributeToScan]
-        if (indexDescriptor != null && criteria.operator!!.isIndexed) {
+        // Indexes must be either an equal or in so that it can make exact matches.  Expression indexes
+        // are only applicable if the criteria uses the same function e.x. lower(email)
+        val indexDescriptor = descriptor.indexes[criteria.attributeName]
+        if (indexDescriptor != null && indexDescriptor.matches(criteria.function) && criteria.operator!!.isIndexed) {
             return if (descriptor.hasPartition) {
                 PartitionIndexScanner(criteria, classToScan, descriptor, temporaryDataFile, query, context, persistenceManager)
             } else {
@@ -100,7 +104,7 @@ object ScannerFactory {
             }
         }
 
-        val attributeDescriptor = descriptor.attributes[attributeToScan]
+        val attributeDescriptor = descriptor.attributes[criteria.attributeName]
         if (attributeDescriptor != null) {
             return if (descriptor.hasPartition) {
                 PartitionFullTableScanner(criteria, classToScan, descriptor, temporaryDataFile, query, context, persistenceManager)
@@ -111,4 +115,128 @@ object ScannerFactory {
 
         throw AttributeMissingException(AttributeMissingException.ENTITY_MISSING_ATTRIBUTE + " " + attributeToScan)
     }
+
+    /**
+     * Estimate how many references the access path for a criteria will produce.  This is used by the query planner
+     * to order criteria so the most selective one is scanned first.
+     *
+     * Identifiers are estimated by the number of values, indexes use the index statistics, and everything else is
+     * estimated as the size of the table since it requires a full scan.
+     *
+     * @param context Context contains database resources
+     * @param criteria Query Criteria
+     * @param classToScan Entity class to scan
+     * @param query Query definitions
+     * @return Estimated number of references
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun estimateCount(context: SchemaContext, criteria: QueryCriteria, classToScan: Class<*>, query: Query): Long {
+        val descriptor: EntityDescriptor = if (query.partition === QueryPartitionMode.ALL) {
+            context.getDescriptorForEntity(classToScan, "")
+        } else {
+            context.getDescriptorForEntity(classToScan, query.partition)
+        }
+
+        // The partition does not exist so there is nothing to scan
+        if (descriptor.hasPartition && query.partition !== QueryPartitionMode.ALL && context.getPartitionWithValue(classToScan, query.partition) == null)
+            return 0L
+
+        val descriptors = getPartitionDescriptors(context, descriptor, classToScan, query)
+        val tableSize = descriptors.map { context.getDataFile(it).getHashMap<DiskMap<Any, IManagedEntity>>(it.entityClass.name, it.identifier!!.loadFactor.toInt()).longSize() }.sum()
+        val indexDescriptor = descriptor.indexes[criteria.attributeName]
+
+        return when {
+            criteria.flip || criteria.isRelationship!! || !criteria.operator!!.isIndexed -> tableSize
+            descriptor.identifier!!.name == criteria.attribute -> when (criteria.operator) {
+                QueryCriteriaOperator.EQUAL -> descriptors.size.toLong()
+                QueryCriteriaOperator.IN -> (criteria.comparedValue as? List<*>)?.size?.toLong()?.times(descriptors.size) ?: tableSize
+                else -> tableSize / 2
+            }
+            indexDescriptor != null && indexDescriptor.matches(criteria.function) -> descriptors.map { context.getIndexInteractor(it.indexes[indexDescriptor.name]!!).estimateCount(criteria.operator!!, criteria.comparedValue) }.sum()
+            else -> tableSize
+        }
+    }
+
+    /**
+     * Count the records a query could match.  This is the size of the table or if querying all partitions, the size
+     * of each partition combined.
+     *
+     * @param context Context contains database resources
+     * @param classToScan Entity class to scan
+     * @param query Query definitions
+     * @return Number of records within the partitions being queried
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun getTableSize(context: SchemaContext, classToScan: Class<*>, query: Query): Long =
+            getPartitionDescriptors(context, classToScan, query).map { context.getDataFile(it).getHashMap<DiskMap<Any, IManagedEntity>>(it.entityClass.name, it.identifier!!.loadFactor.toInt()).longSize() }.sum()
+
+    /**
+     * Get the descriptors of the partitions being queried.  If the query is for a partition that does not exist,
+     * there are none.
+     *
+     * @param context Context contains database resources
+     * @param classToScan Entity class to scan
+     * @param query Query definitions
+     * @return Descriptor of each partition being queried
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun getPartitionDescriptors(context: SchemaContext, classToScan: Class<*>, query: Query): List<EntityDescriptor> {
+        val descriptor: EntityDescriptor = if (query.partition === QueryPartitionMode.ALL) {
+            context.getDescriptorForEntity(classToScan, "")
+        } else {
+            context.getDescriptorForEntity(classToScan, query.partition)
+        }
+
+        if (descriptor.hasPartition && query.partition !== QueryPartitionMode.ALL && context.getPartitionWithValue(classToScan, query.partition) == null)
+            return emptyList()
+
+        return getPartitionDescriptors(context, descriptor, classToScan, query)
+    }
+
+    /**
+     * Returns a scanner that reads records in the order of the leading query order.  This is only possible if the
+     * leading query order is the identifier or has an index without a function since those are stored in order.
+     *
+     * @param context Context contains database resources
+     * @param classToScan Entity class to scan
+     * @param temporaryDataFile Query temporary data file to inject into the scanner
+     * @param query Query definitions
+     * @param persistenceManager Persistence manager
+     * @return Index order scanner or null if the leading query order cannot be read in order
+     *
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun getIndexOrderScanner(context: SchemaContext, classToScan: Class<*>, temporaryDataFile: DiskMapFactory, query: Query, persistenceManager: PersistenceManager): TableScanner? {
+        val order = query.queryOrders?.firstOrNull() ?: return null
+        val descriptor: EntityDescriptor = if (query.partition === QueryPartitionMode.ALL) {
+            context.getDescriptorForEntity(classToScan, "")
+        } else {
+            context.getDescriptorForEntity(classToScan, query.partition)
+        }
+
+        val indexDescriptor = descriptor.indexes[order.attribute]
+        val isOrdered = descriptor.identifier!!.name == order.attribute || (indexDescriptor != null && indexDescriptor.function == null)
+
+        // Negated groups of criteria are resolved by scanning references rather than checking each entity
+        if (!isOrdered || query.getAllCriteria().any { it.flip })
+            return null
+
+        return IndexOrderScanner(query.criteria!!, classToScan, descriptor, temporaryDataFile, query, context, persistenceManager)
+    }
+
+    /**
+     * Get the descriptors of the partitions being queried
+     */
+    private fun getPartitionDescriptors(context: SchemaContext, descriptor: EntityDescriptor, classToScan: Class<*>, query: Query): List<EntityDescriptor> = if (descriptor.hasPartition && query.partition === QueryPartitionMode.ALL) {
+        context.getSystemEntityByName(classToScan.name)?.partition?.entries?.map { context.getDescriptorForEntity(classToScan, it.value) } ?: emptyList()
+    } else {
+        listOf(descriptor)
+    }
 }
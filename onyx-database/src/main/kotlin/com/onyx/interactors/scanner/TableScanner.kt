@@ -29,4 +29,15 @@ interface TableScanner {
     @Throws(OnyxException::class)
     fun  scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference>
 
+    /**
+     * Count the references matching the criteria.  Scanners that can count without collecting the matching
+     * references override this.  By default the references are scanned and counted.
+     *
+     * @return Number of references matching criteria
+     * @throws OnyxException Cannot scan entity
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun count(): Long = scan().size.toLong()
+
 }
@@ -1,19 +1,21 @@
 package com.onyx.interactors.scanner.impl
 
+import com.onyx.buffer.RecordValues
 import com.onyx.descriptor.EntityDescriptor
+import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
 import com.onyx.exception.OnyxException
 import com.onyx.extension.*
+import com.onyx.extension.common.async
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
-import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -28,23 +30,158 @@ open class FullTableScanner @Throws(OnyxException::class) constructor(criteria:
      * @return Map of identifiers.  The key is the partition reference and the value is the reference within file.
      * @throws OnyxException Query exception while trying to scan elements
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
+     * @since 2.2.0 Segments of large tables are scanned in parallel
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
-        val context = Contexts.get(contextId)!!
+    override fun scan(): MutableMap<Reference, Reference> = scan(records, partitionId)
 
-        @Suppress("UNCHECKED_CAST")
-        records.entries.filter {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
-            entry.node != null && query.meetsCriteria(entry.value!!, Reference(partitionId, entry.node!!.position), context, descriptor)
-        }.forEach {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
-            val reference = Reference(partitionId, entry.node!!.position)
-            matching.put(reference, reference)
+    /**
+     * Scan the records of a partition for those meeting all criteria
+     *
+     * @param records Records of the partition
+     * @param partitionId Partition the records belong to
+     * @return References matching criteria
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    protected fun scan(records: DiskMap<Any, IManagedEntity>, partitionId: Long): MutableMap<Reference, Reference> {
+        val buffers = scanSegments(records, partitionId, { ReferenceSet<Reference>() }) { matching, position -> matching.add(partitionId, position) }
+        val matching = buffers.first()
+        (1 until buffers.size).forEach { matching += buffers[it] }
+        return matching
+    }
+
+    /**
+     * Count the records meeting all criteria without collecting their references
+     *
+     * @return Number of records meeting criteria
+     * @throws OnyxException Query exception while trying to scan elements
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun count(): Long = count(records, partitionId)
+
+    /**
+     * Count the records of a partition meeting all criteria
+     *
+     * @param records Records of the partition
+     * @param partitionId Partition the records belong to
+     * @return Number of records meeting criteria
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    protected fun count(records: DiskMap<Any, IManagedEntity>, partitionId: Long): Long =
+            scanSegments(records, partitionId, { LongArray(1) }) { count, _ -> count[0]++ }.map { it[0] }.sum()
+
+    /**
+     * Iterate the records meeting all criteria.  Rather than collecting every match, records are only read as the
+     * matches are consumed so a stream of the results holds a single record at a time.
+     *
+     * @return References matching criteria in record order
+     * @throws OnyxException Query exception while trying to scan elements
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    open fun matches(): Iterator<Reference> = matches(records, partitionId)
+
+    /**
+     * Iterate the records of a partition meeting all criteria.  This decodes attributes into reusable record values
+     * the same as a scan but checks the records on the calling thread as they are requested.
+     *
+     * @param records Records of the partition
+     * @param partitionId Partition the records belong to
+     * @return References matching criteria in record order
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    protected fun matches(records: DiskMap<Any, IManagedEntity>, partitionId: Long): Iterator<Reference> = object : Iterator<Reference> {
+        private val predicate = query.predicate(descriptor)
+        private val values = predicate.attributes?.let { RecordValues(it) }
+        private val entries = records.entries.iterator()
+        private var next: Reference? = null
+
+        override fun hasNext(): Boolean {
+            while (next == null && entries.hasNext() && !query.isTerminated) {
+                @Suppress("UNCHECKED_CAST")
+                val entry = entries.next() as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>
+                val node = entry.node ?: continue
+                val reference = Reference(partitionId, node.position)
+                val meetsCriteria = if (values != null && records.getAttributesWithRecID(node, values))
+                    predicate.test(values)
+                else
+                    predicate.test(entry.value!!, reference, context)
+                if (meetsCriteria)
+                    next = reference
+            }
+            return next != null
         }
 
-        return matching
+        override fun next(): Reference {
+            if (!hasNext())
+                throw NoSuchElementException()
+            val reference = next!!
+            next = null
+            return reference
+        }
+    }
+
+    /**
+     * Check the criteria of every record.  Tables reaching the parallel scan threshold of the context are split into
+     * the segments of the record map and each worker checks its share of segments into its own buffer so there is no
+     * contention between workers.  The calling thread takes the first share.  Only the attributes referenced by the
+     * criteria are decoded unless the entity is already cached.
+     *
+     * Each worker decodes attributes into a single reusable set of record values and matches are collected by
+     * position so checking a record does not allocate a map, boxed integral or decimal values, or a reference.  A
+     * reference is only created for criteria of relationships since it is used to fetch them.
+     *
+     * @param records Records of the partition
+     * @param partitionId Partition the records belong to
+     * @param newBuffer Create a buffer for a worker
+     * @param collect Add the position of a matching record to a worker's buffer
+     * @return Buffer of each worker
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun <T> scanSegments(records: DiskMap<Any, IManagedEntity>, partitionId: Long, newBuffer: () -> T, collect: (T, Long) -> Unit): List<T> {
+        val segments = if (records.size < context.parallelScanThreshold) listOf(records.entries) else records.entrySegments()
+        val workers = minOf(segments.size, Runtime.getRuntime().availableProcessors())
+        val predicate = query.predicate(descriptor)
+        val attributes = predicate.attributes
+
+        val scanShare: (Int) -> T = { worker ->
+            val buffer = newBuffer()
+            val values = if (attributes == null) null else RecordValues(attributes)
+            val cursor = Reference(partitionId)
+            var index = worker
+            while (index < segments.size && !query.isTerminated) {
+                @Suppress("UNCHECKED_CAST")
+                for (it in segments[index]) {
+                    val node = (it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any?, IManagedEntity>).node
+                    if (query.isTerminated)
+                        break
+                    if (node != null) {
+                        val meetsCriteria = if (values != null && records.getAttributesWithRecID(node, values)) {
+                            predicate.test(values)
+                        } else {
+                            val reference = if (values == null) Reference(partitionId, node.position) else cursor.apply { reference = node.position }
+                            predicate.test(it.value, reference, context)
+                        }
+                        if (meetsCriteria)
+                            collect(buffer, node.position)
+                    }
+                }
+                index += workers
+            }
+            buffer
+        }
+
+        if (workers <= 1)
+            return listOf(scanShare(0))
+
+        val units = (1 until workers).map { worker -> async { scanShare(worker) } }
+        val first = scanShare(0)
+        return listOf(first) + units.map { it.get() }
     }
 
     /**
@@ -57,8 +194,7 @@ open class FullTableScanner @Throws(OnyxException::class) constructor(criteria:
      */
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
-        return existingValues.filterTo(HashMap()) {
+        return existingValues.filterTo(ReferenceSet()) {
             val entity = it.value.toManagedEntity(context, descriptor)
             query.meetsCriteria(entity, it.value, context, descriptor)
         }
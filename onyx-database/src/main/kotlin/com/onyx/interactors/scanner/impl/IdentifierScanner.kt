@@ -2,6 +2,7 @@ package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.SchemaContext
@@ -11,7 +12,6 @@ import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.interactors.record.RecordInteractor
-import com.onyx.persistence.context.Contexts
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -29,32 +29,30 @@ open class IdentifierScanner @Throws(OnyxException::class) constructor(criteria:
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
         val recordInteractor = context.getRecordInteractor(descriptor)
         return scan(recordInteractor)
     }
 
     fun scan(recordInteractor: RecordInteractor, partitionId:Long = this.partitionId):MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
+        val matching = ReferenceSet<Reference>()
 
         // If it is an in clause
-        if (criteria.value is List<*>) {
-            (criteria.value as List<*>)
-                    .map { Reference(partitionId, recordInteractor.getReferenceId(it!!)) }
-                    .filter { it.reference > 0L }
-                    .forEach { matching.put(it, it) }
+        if (criteria.comparedValue is List<*>) {
+            (criteria.comparedValue as List<*>)
+                    .map { recordInteractor.getReferenceId(it!!) }
+                    .filter { it > 0L }
+                    .forEach { matching.add(partitionId, it) }
         } else {
             val values: Set<Long> = when {
-                criteria.operator === QueryCriteriaOperator.GREATER_THAN ->         recordInteractor.findAllAbove(criteria.value!!, false)
-                criteria.operator === QueryCriteriaOperator.GREATER_THAN_EQUAL ->   recordInteractor.findAllAbove(criteria.value!!, true)
-                criteria.operator === QueryCriteriaOperator.LESS_THAN ->            recordInteractor.findAllBelow(criteria.value!!, false)
-                criteria.operator === QueryCriteriaOperator.LESS_THAN_EQUAL ->      recordInteractor.findAllBelow(criteria.value!!, true)
-                else ->                                                             hashSetOf(recordInteractor.getReferenceId(criteria.value!!))
+                criteria.operator === QueryCriteriaOperator.GREATER_THAN ->         recordInteractor.findAllAbove(criteria.comparedValue!!, false)
+                criteria.operator === QueryCriteriaOperator.GREATER_THAN_EQUAL ->   recordInteractor.findAllAbove(criteria.comparedValue!!, true)
+                criteria.operator === QueryCriteriaOperator.LESS_THAN ->            recordInteractor.findAllBelow(criteria.comparedValue!!, false)
+                criteria.operator === QueryCriteriaOperator.LESS_THAN_EQUAL ->      recordInteractor.findAllBelow(criteria.comparedValue!!, true)
+                else ->                                                             hashSetOf(recordInteractor.getReferenceId(criteria.comparedValue!!))
             }
 
             values.filter { it > 0L }
-                    .map { Reference(partitionId, it) }
-                    .forEach { matching.put(it, it) }
+                    .forEach { matching.add(partitionId, it) }
         }
 
         return matching
@@ -70,6 +68,6 @@ open class IdentifierScanner @Throws(OnyxException::class) constructor(criteria:
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
         val matching = scan()
-        return existingValues.filterTo(HashMap()) { matching.containsKey(it.key) }
+        return ReferenceSet.intersect(existingValues, matching)
     }
 }
@@ -0,0 +1,183 @@
+package com.onyx.interactors.scanner.impl
+
+import com.onyx.descriptor.EntityDescriptor
+import com.onyx.descriptor.recordInteractor
+import com.onyx.diskmap.factory.DiskMapFactory
+import com.onyx.exception.OnyxException
+import com.onyx.extension.attribute
+import com.onyx.extension.common.forceCompare
+import com.onyx.extension.get
+import com.onyx.extension.meetsCriteria
+import com.onyx.extension.toManagedEntity
+import com.onyx.interactors.query.data.QuerySortComparator
+import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.scanner.TableScanner
+import com.onyx.persistence.context.SchemaContext
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCriteria
+import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryPartitionMode
+import java.util.*
+
+/**
+ * Scan records in the order of the leading query order.  Rather than finding every matching record and sorting them,
+ * the index or identifier of the leading query order is walked in order.  Each record is checked against all the
+ * query criteria and the scan stops once enough records qualify to fill the requested rows.
+ *
+ * If there are additional query orders, records sharing the leading value of the last row are included so they can be
+ * sorted by the remaining orders.
+ *
+ * If the query has a keyset cursor, the walk starts by seeking to the cursor's leading value.  Records sharing that
+ * value are compared to the cursor using all of the query orders, so a page is found without reading the rows of the
+ * pages before it.
+ *
+ * @since 2.2.0
+ */
+class IndexOrderScanner @Throws(OnyxException::class) constructor(criteria: QueryCriteria, classToScan: Class<*>, descriptor: EntityDescriptor, temporaryDataFile: DiskMapFactory, query: Query, context: SchemaContext, persistenceManager: PersistenceManager) : AbstractTableScanner(criteria, classToScan, descriptor, temporaryDataFile, query, context, persistenceManager), TableScanner {
+
+    private val order = query.queryOrders!!.first()
+    private val limit = query.firstRow + query.maxResults
+
+    // Keyset cursor the walk starts from
+    private val comparator = if (query.after == null) null else QuerySortComparator(query, query.queryOrders!!.toTypedArray(), descriptor, context)
+    private val cursorKey = comparator?.cursorKey(query.after)
+
+    /**
+     * Walk the records in order
+     *
+     * @return References meeting criteria in the order of the leading query order
+     * @throws OnyxException Cannot scan records
+     */
+    @Throws(OnyxException::class)
+    override fun scan(): MutableMap<Reference, Reference> = walk(null)
+
+    /**
+     * Walk the records in order only including existing values
+     *
+     * @param existingValues Existing values to check
+     * @return Existing values that meet the criteria in the order of the leading query order
+     * @throws OnyxException Cannot scan records
+     */
+    @Throws(OnyxException::class)
+    override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> = walk(existingValues)
+
+    /**
+     * Walk the references in order and stop once the rows requested have qualified
+     *
+     * @param existingValues References to limit the walk to.  Null if all the records are candidates.
+     * @return References meeting criteria in order
+     */
+    private fun walk(existingValues: Map<Reference, Reference>?): MutableMap<Reference, Reference> {
+        val matching = LinkedHashMap<Reference, Reference>()
+        val references = references(context)
+        val includeTies = query.queryOrders!!.size > 1
+        var lastValue: Any? = null
+
+        while (references.hasNext() && !query.isTerminated) {
+            val reference = references.next()
+            if (existingValues != null && !existingValues.containsKey(reference))
+                continue
+
+            val entity = reference.toManagedEntity(context, query.entityType!!, descriptor) ?: continue
+            if (!query.meetsCriteria(entity, reference, context, descriptor))
+                continue
+
+            // Rows sharing the leading value of the cursor may be before it
+            if (cursorKey != null && comparator!!.compareKeys(comparator.sortKey(reference, context), cursorKey) <= 0)
+                continue
+
+            if (matching.size >= limit) {
+                if (!includeTies || !entity.get<Any?>(context, descriptor, order.attribute).forceCompare(lastValue))
+                    break
+            } else if (includeTies) {
+                lastValue = entity.get<Any?>(context, descriptor, order.attribute)
+            }
+
+            matching.put(reference, reference)
+        }
+
+        return matching
+    }
+
+    /**
+     * Get the references to walk in order.  If querying all partitions, the ordered references of each partition are
+     * merged.
+     *
+     * @param context Schema context
+     * @return Iterator of references in the order of the leading query order
+     */
+    private fun references(context: SchemaContext): Iterator<Reference> {
+        if (!descriptor.hasPartition)
+            return references(context, descriptor, 0L)
+
+        if (query.partition !== QueryPartitionMode.ALL) {
+            val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
+            return if (partitionId == 0L) Collections.emptyIterator() else references(context, context.getDescriptorForEntity(query.entityType, query.partition), partitionId)
+        }
+
+        val partitions = context.getSystemEntityByName(query.entityType!!.name)?.partition?.entries ?: return Collections.emptyIterator()
+        val runs = partitions.map { references(context, context.getDescriptorForEntity(query.entityType, it.value), it.index) }
+        return merge(context, runs)
+    }
+
+    /**
+     * Get the references of a single partition in order using either the index or the identifier.  If the query has a
+     * keyset cursor, the index or identifier is sought to the cursor's leading value rather than walked from the start.
+     *
+     * @param context Schema context
+     * @param partitionDescriptor Descriptor of the partition to walk
+     * @param partitionId Partition the references belong to
+     * @return Iterator of references in the order of the leading query order
+     */
+    private fun references(context: SchemaContext, partitionDescriptor: EntityDescriptor, partitionId: Long): Iterator<Reference> {
+        val indexDescriptor = partitionDescriptor.indexes[order.attribute]
+        val from = cursorKey?.values?.first()
+        val references = when {
+            indexDescriptor != null && from != null -> context.getIndexInteractor(indexDescriptor).findAllInOrder(order.isAscending, from)
+            indexDescriptor != null -> context.getIndexInteractor(indexDescriptor).findAllInOrder(order.isAscending)
+            from != null -> partitionDescriptor.recordInteractor().findAllInOrder(order.isAscending, from)
+            else -> partitionDescriptor.recordInteractor().findAllInOrder(order.isAscending)
+        }
+
+        return references.asSequence().map { Reference(partitionId, it) }.iterator()
+    }
+
+    /**
+     * Merge ordered runs of references.  The next reference of each run is kept within a heap along with its
+     * order by value.
+     *
+     * @param context Schema context
+     * @param runs References of each partition in order
+     * @return Iterator of the merged references
+     */
+    private fun merge(context: SchemaContext, runs: List<Iterator<Reference>>): Iterator<Reference> {
+        val order = Comparator<Triple<Reference, Any?, Int>> { first, second ->
+            val compareValue = when {
+                first.second.forceCompare(second.second, QueryCriteriaOperator.GREATER_THAN) -> -1
+                first.second.forceCompare(second.second, QueryCriteriaOperator.LESS_THAN) -> 1
+                else -> 0
+            }
+            if (this.order.isAscending) compareValue else -compareValue
+        }
+
+        val heads = PriorityQueue<Triple<Reference, Any?, Int>>(Math.max(1, runs.size), order)
+        val advance = { run: Int ->
+            if (runs[run].hasNext()) {
+                val reference = runs[run].next()
+                heads.add(Triple(reference, reference.attribute(context, this.order.attribute, descriptor), run))
+            }
+        }
+        runs.indices.forEach { advance(it) }
+
+        return object : Iterator<Reference> {
+            override fun hasNext(): Boolean = heads.isNotEmpty()
+
+            override fun next(): Reference {
+                val head = heads.poll() ?: throw NoSuchElementException()
+                advance(head.third)
+                return head.first
+            }
+        }
+    }
+}
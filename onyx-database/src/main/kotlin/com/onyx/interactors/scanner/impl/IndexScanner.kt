@@ -2,6 +2,7 @@ package com.onyx.interactors.scanner.impl
 
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.index.IndexInteractor
@@ -11,7 +12,6 @@ import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
 import com.onyx.diskmap.factory.DiskMapFactory
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -20,7 +20,7 @@ import kotlin.collections.HashMap
  */
 open class IndexScanner @Throws(OnyxException::class) constructor(criteria: QueryCriteria, classToScan: Class<*>, descriptor: EntityDescriptor, temporaryDataFile: DiskMapFactory, query: Query, context: SchemaContext, persistenceManager: PersistenceManager) : AbstractTableScanner(criteria, classToScan, descriptor, temporaryDataFile, query, context, persistenceManager), TableScanner {
 
-    private var indexInteractor: IndexInteractor = context.getIndexInteractor(descriptor.indexes[criteria.attribute]!!)
+    private var indexInteractor: IndexInteractor = context.getIndexInteractor(descriptor.indexes[criteria.attributeName]!!)
 
     /**
      * Scan indexes
@@ -30,13 +30,13 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
+        val matching = ReferenceSet<Reference>()
 
         // If it is an in clause
-        if (criteria.value is List<*>) {
-            (criteria.value as List<*>).forEach { find(it).forEach { matching.put(it, it) } }
+        if (criteria.comparedValue is List<*>) {
+            findAll(criteria.comparedValue as List<*>, matching)
         } else {
-            find(criteria.value).forEach { matching.put(it, it) }
+            find(criteria.comparedValue, matching)
         }
 
         return matching
@@ -52,21 +52,58 @@ open class IndexScanner @Throws(OnyxException::class) constructor(criteria: Quer
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
         val matching = scan()
-        return existingValues.filterTo(HashMap()) { matching.containsKey(it.key) }
+        return ReferenceSet.intersect(existingValues, matching)
     }
 
+    /**
+     * Count the references of the matching index values using the reference count of each index value rather than
+     * reading the references
+     *
+     * @return Number of references matching criteria
+     * @throws OnyxException Cannot scan index
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun count(): Long = count(indexInteractor)
+
+    /**
+     * Count the references within an index matching the value for this query criteria.  The values of an in clause
+     * are only counted once.
+     *
+     * @param interactor Index interactor to count within
+     * @return Number of references matching criteria
+     * @since 2.2.0
+     */
+    protected fun count(interactor: IndexInteractor): Long = if (criteria.comparedValue is List<*>)
+        (criteria.comparedValue as List<*>).distinct().map { interactor.count(criteria.operator!!, it) }.sum()
+    else
+        interactor.count(criteria.operator!!, criteria.comparedValue)
+
     /**
      * Find all references within an index matching the value for this query criteria
      * @param indexValue Index value to find references for
-     * @return List of Partition References
+     * @param matching Set to add the references to
      *
      * @since 2.0.0
+     * @since 2.2.0 References are added to a set rather than returned
      */
-    protected fun find(indexValue:Any?, interactor: IndexInteractor = indexInteractor, partition: Long = partitionId):List<Reference> = when {
+    /**
+     * Find all references within an index matching the values of an in clause.  The index values are probed in a
+     * single batch rather than one value at a time.
+     *
+     * @param indexValues Index values to find references for
+     * @param matching Set to add the references to
+     *
+     * @since 2.2.0
+     */
+    protected fun findAll(indexValues: List<*>, matching: ReferenceSet<Reference>, interactor: IndexInteractor = indexInteractor, partition: Long = partitionId) =
+            interactor.findAllIn(indexValues).forEach { matching.add(partition, it) }
+
+    protected fun find(indexValue:Any?, matching: ReferenceSet<Reference>, interactor: IndexInteractor = indexInteractor, partition: Long = partitionId) = when {
         criteria.operator === QueryCriteriaOperator.GREATER_THAN ->         interactor.findAllAbove(indexValue, false)
         criteria.operator === QueryCriteriaOperator.GREATER_THAN_EQUAL ->   interactor.findAllAbove(indexValue, true)
         criteria.operator === QueryCriteriaOperator.LESS_THAN ->            interactor.findAllBelow(indexValue, false)
         criteria.operator === QueryCriteriaOperator.LESS_THAN_EQUAL ->      interactor.findAllBelow(indexValue, true)
         else ->                                                             interactor.findAll(indexValue).keys
-    }.map { Reference(partition, it) }
+    }.forEach { matching.add(partition, it) }
 }
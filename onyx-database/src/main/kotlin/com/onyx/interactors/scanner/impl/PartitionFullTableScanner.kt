@@ -3,11 +3,11 @@ package com.onyx.interactors.scanner.impl
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.DiskMap
 import com.onyx.diskmap.factory.DiskMapFactory
-import com.onyx.diskmap.impl.base.skiplist.AbstractIterableSkipList
 import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.extension.common.async
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
@@ -15,10 +15,7 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
-import com.onyx.extension.meetsCriteria
-import com.onyx.persistence.context.Contexts
 import java.util.concurrent.Future
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -31,28 +28,61 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
     private var systemEntity: SystemEntity = context.getSystemEntityByName(query.entityType!!.name)!!
 
     /**
-     * Scan records with existing values
+     * Count the records meeting all criteria within each partition.  Partitions are counted in parallel.
      *
-     * @param records Existing values to check for criteria
-     * @return Existing values that match the criteria
+     * @return Number of records meeting criteria
      * @throws OnyxException Cannot scan partition
+     * @since 2.2.0
      */
     @Throws(OnyxException::class)
-    private fun scanPartition(records: DiskMap<Any, IManagedEntity>, partitionId: Long): MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
-        val context = Contexts.get(contextId)!!
-
-        @Suppress("UNCHECKED_CAST")
-        records.entries.filter {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any, IManagedEntity>
-            entry.node != null && query.meetsCriteria(entry.value!!, Reference(partitionId, entry.node!!.position), context, descriptor)
-        }.forEach {
-            val entry = it as AbstractIterableSkipList<Any, IManagedEntity>.SkipListEntry<Any, IManagedEntity>
-            val reference = Reference(partitionId, entry.node!!.position)
-            matching.put(reference, reference)
+    override fun count(): Long {
+
+        if (query.partition === QueryPartitionMode.ALL) {
+            val units = systemEntity.partition!!.entries.map {
+                async {
+                    val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
+                    val dataFile = context.getDataFile(partitionDescriptor)
+                    count(dataFile.getHashMap(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt()), it.index)
+                }
+            }
+            return units.map { it.get() }.sum()
         }
 
-        return matching
+        val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
+        if (partitionId == 0L)
+            return super<FullTableScanner>.count()
+
+        val partitionDescriptor = context.getDescriptorForEntity(query.entityType, query.partition)
+        val dataFile = context.getDataFile(partitionDescriptor)
+        return count(dataFile.getHashMap(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt()), partitionId)
+    }
+
+    /**
+     * Iterate the records meeting all criteria.  When querying all partitions, each partition is iterated in turn
+     * and a partition's records are not read until the previous partition has been exhausted.
+     *
+     * @return References matching criteria
+     * @throws OnyxException Cannot scan partition
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun matches(): Iterator<Reference> {
+
+        if (query.partition === QueryPartitionMode.ALL) {
+            return systemEntity.partition!!.entries.asSequence().flatMap {
+                val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
+                val dataFile = context.getDataFile(partitionDescriptor)
+                matches(dataFile.getHashMap(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt()), it.index).asSequence()
+            }.iterator()
+        }
+
+        val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
+        if (partitionId == 0L)
+            return super<FullTableScanner>.matches()
+
+        val partitionDescriptor = context.getDescriptorForEntity(query.entityType, query.partition)
+        val dataFile = context.getDataFile(partitionDescriptor)
+        return matches(dataFile.getHashMap(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt()), partitionId)
     }
 
     /**
@@ -63,10 +93,9 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
 
         if (query.partition === QueryPartitionMode.ALL) {
-            val matching = HashMap<Reference, Reference>()
+            val matching = ReferenceSet<Reference>()
             val units = ArrayList<Future<Map<Reference, Reference>>>()
 
             systemEntity.partition!!.entries.forEach {
@@ -75,7 +104,7 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
                         val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
                         val dataFile = context.getDataFile(partitionDescriptor)
                         val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt())
-                        scanPartition(records, it.index)
+                        scan(records, it.index)
                     }
                 )
             }
@@ -85,12 +114,12 @@ class PartitionFullTableScanner @Throws(OnyxException::class) constructor(criter
         } else {
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if(partitionId == 0L) // Partition does not exist, lets do a full scan of default partition
-                return super.scan()
+                return super<FullTableScanner>.scan()
 
             val partitionDescriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             val dataFile = context.getDataFile(partitionDescriptor)
             val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt())
-            return scanPartition(records, partitionId)
+            return scan(records, partitionId)
         }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.onyx.descriptor.recordInteractor
 import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
@@ -13,9 +14,7 @@ import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.extension.common.async
-import com.onyx.persistence.context.Contexts
 import java.util.concurrent.Future
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -34,8 +33,7 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
-        val matching = HashMap<Reference, Reference>()
+        val matching = ReferenceSet<Reference>()
 
         if (query.partition === QueryPartitionMode.ALL) {
             val units = ArrayList<Future<Map<Reference, Reference>>>()
@@ -54,7 +52,7 @@ class PartitionIdentifierScanner @Throws(OnyxException::class) constructor(crite
 
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if (partitionId == 0L)
-                return HashMap()
+                return ReferenceSet()
 
             val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
             matching += scan(descriptor.recordInteractor(), partitionId)
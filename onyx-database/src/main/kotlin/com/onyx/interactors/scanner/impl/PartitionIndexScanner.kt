@@ -4,6 +4,7 @@ import com.onyx.descriptor.EntityDescriptor
 import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.persistence.context.SchemaContext
@@ -13,11 +14,9 @@ import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.extension.common.async
-import com.onyx.persistence.context.Contexts
 
 import java.util.*
 import java.util.concurrent.Future
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 2/10/15.
@@ -36,18 +35,17 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
      */
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
 
         if (query.partition === QueryPartitionMode.ALL) {
 
-            val matching = HashMap<Reference, Reference>()
+            val matching = ReferenceSet<Reference>()
 
             val units = ArrayList<Future<Map<Reference, Reference>>>()
             systemEntity.partition!!.entries.forEach {
                 units.add(
                     async {
                         val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
-                        val indexInteractor = context.getIndexInteractor(partitionDescriptor.indexes[criteria.attribute]!!)
+                        val indexInteractor = context.getIndexInteractor(partitionDescriptor.indexes[criteria.attributeName]!!)
                         scanPartition(indexInteractor, it.index)
                     }
                 )
@@ -59,14 +57,38 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
         } else {
             val partitionId = context.getPartitionWithValue(query.entityType!!, query.partition)?.index ?: 0L
             if (partitionId == 0L)
-                return HashMap()
+                return ReferenceSet()
 
             val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
-            val indexInteractor = context.getIndexInteractor(descriptor.indexes[criteria.attribute]!!)
+            val indexInteractor = context.getIndexInteractor(descriptor.indexes[criteria.attributeName]!!)
             return scanPartition(indexInteractor, partitionId)
         }
     }
 
+    /**
+     * Count the references matching the criteria within each partition
+     *
+     * @return Number of references matching criteria
+     * @throws OnyxException Cannot scan partition
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun count(): Long {
+
+        if (query.partition === QueryPartitionMode.ALL) {
+            return systemEntity.partition!!.entries.map {
+                val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
+                count(context.getIndexInteractor(partitionDescriptor.indexes[criteria.attributeName]!!))
+            }.sum()
+        }
+
+        if (context.getPartitionWithValue(query.entityType!!, query.partition) == null)
+            return 0L
+
+        val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
+        return count(context.getIndexInteractor(descriptor.indexes[criteria.attributeName]!!))
+    }
+
     /**
      * Scan indexes
      *
@@ -76,12 +98,12 @@ class PartitionIndexScanner @Throws(OnyxException::class) constructor(criteria:
     @Throws(OnyxException::class)
     @Suppress("UNCHECKED_CAST")
     private fun scanPartition(indexInteractor: IndexInteractor, partitionId: Long): MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
+        val matching = ReferenceSet<Reference>()
 
-        if (criteria.value is List<*>)
-            (criteria.value as List<Any>).forEach { find(it, indexInteractor, partitionId).forEach { matching.put(it, it) } }
+        if (criteria.comparedValue is List<*>)
+            findAll(criteria.comparedValue as List<*>, matching, indexInteractor, partitionId)
         else
-            find(criteria.value, indexInteractor, partitionId).forEach { matching[it] = it }
+            find(criteria.comparedValue, matching, indexInteractor, partitionId)
 
         return matching
     }
@@ -7,9 +7,9 @@ import com.onyx.entity.SystemEntity
 import com.onyx.exception.OnyxException
 import com.onyx.extension.common.async
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
-import com.onyx.persistence.context.Contexts
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
@@ -34,7 +34,7 @@ open class PartitionReferenceScanner @Throws(OnyxException::class) constructor(c
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableMap<Reference, Reference> = HashMap()
+    override fun scan(): MutableMap<Reference, Reference> = ReferenceSet()
 
     /**
      * Retrieve all references except those that are passed in
@@ -46,20 +46,19 @@ open class PartitionReferenceScanner @Throws(OnyxException::class) constructor(c
      */
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
 
         if (query.partition === QueryPartitionMode.ALL) {
-            val allMatching = HashMap<Reference, Reference>()
+            val allMatching = ReferenceSet<Reference>()
             val units = ArrayList<Future<Map<Reference, Reference>>>()
 
             systemEntity.partition!!.entries.forEach {
                 units.add(
                         async {
-                            val matching = HashMap<Reference, Reference>()
+                            val matching = ReferenceSet<Reference>()
                             val partitionDescriptor = context.getDescriptorForEntity(query.entityType, it.value)
                             val dataFile = context.getDataFile(partitionDescriptor)
                             val records = dataFile.getHashMap<DiskMap<Any, IManagedEntity>>(partitionDescriptor.entityClass.name, partitionDescriptor.identifier!!.loadFactor.toInt())
-                            (records.references.map { Reference(partitionId, it.position) } - existingValues.keys).forEach { matching.put(it, it) }
+                            records.references.forEach { reference -> if (!existingValues.containsKey(Reference(partitionId, reference.position))) matching.add(partitionId, reference.position) }
                             return@async matching
                         }
                 )
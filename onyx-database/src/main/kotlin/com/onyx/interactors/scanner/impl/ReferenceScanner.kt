@@ -4,6 +4,7 @@ import com.onyx.descriptor.EntityDescriptor
 import com.onyx.diskmap.factory.DiskMapFactory
 import com.onyx.exception.OnyxException
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.manager.PersistenceManager
@@ -25,7 +26,7 @@ open class ReferenceScanner @Throws(OnyxException::class) constructor(criteria:
      * @since 1.3.0 Simplified to check all criteria rather than only a single criteria
      */
     @Throws(OnyxException::class)
-    override fun scan(): MutableMap<Reference, Reference> = HashMap()
+    override fun scan(): MutableMap<Reference, Reference> = ReferenceSet()
 
     /**
      * Retrieve all references except those that are passed in
@@ -37,8 +38,8 @@ open class ReferenceScanner @Throws(OnyxException::class) constructor(criteria:
      */
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
-        val matching = HashMap<Reference, Reference>()
-        (records.references.map { Reference(0L, it.position) } - existingValues.keys).forEach { matching.put(it, it) }
+        val matching = ReferenceSet<Reference>()
+        records.references.forEach { if (!existingValues.containsKey(Reference(0L, it.position))) matching.add(0L, it.position) }
         return matching
     }
 }
\ No newline at end of file
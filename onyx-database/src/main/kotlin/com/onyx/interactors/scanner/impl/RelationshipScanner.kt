@@ -7,6 +7,7 @@ import com.onyx.exception.InvalidQueryException
 import com.onyx.extension.*
 import com.onyx.extension.common.instance
 import com.onyx.interactors.record.data.Reference
+import com.onyx.interactors.record.data.ReferenceSet
 import com.onyx.interactors.scanner.ScannerFactory
 import com.onyx.interactors.scanner.TableScanner
 import com.onyx.persistence.IManagedEntity
@@ -15,8 +16,6 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryPartitionMode
-import com.onyx.persistence.context.Contexts
-import kotlin.collections.HashMap
 
 /**
  * Created by timothy.osborn on 1/3/15.
@@ -32,8 +31,7 @@ class RelationshipScanner @Throws(OnyxException::class) constructor(criteria: Qu
     @Throws(OnyxException::class)
     override fun scan(): MutableMap<Reference, Reference> {
 
-        val startingPoint = HashMap<Reference, Reference>()
-        val context = Contexts.get(contextId)!!
+        val startingPoint = ReferenceSet<Reference>()
 
         // We do not support querying relationships by all partitions.  That would be horribly inefficient
         if (this.query.partition === QueryPartitionMode.ALL) throw InvalidQueryException()
@@ -46,7 +44,7 @@ class RelationshipScanner @Throws(OnyxException::class) constructor(criteria: Qu
             partitionId = temporaryManagedEntity.partitionId(context, descriptor)
         }
 
-        records.references.map { Reference(partitionId, it.position) }.forEach { startingPoint.put(it, it) }
+        records.references.forEach { startingPoint.add(partitionId, it.position) }
 
         return scan(startingPoint)
     }
@@ -60,7 +58,6 @@ class RelationshipScanner @Throws(OnyxException::class) constructor(criteria: Qu
      */
     @Throws(OnyxException::class)
     override fun scan(existingValues: MutableMap<Reference, Reference>): MutableMap<Reference, Reference> {
-        val context = Contexts.get(contextId)!!
 
         // Get the next scanner because we are not at the end of the line.  Otherwise, we would not have gotten to this place
         val tableScanner = ScannerFactory.getFullTableScanner(context, criteria, descriptor.entityClass, temporaryDataFile, query, persistenceManager)
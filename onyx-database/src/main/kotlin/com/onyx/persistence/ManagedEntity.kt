@@ -2,6 +2,7 @@ package com.onyx.persistence
 
 import com.onyx.buffer.BufferStream
 import com.onyx.buffer.BufferStreamable
+import com.onyx.buffer.RecordFormat
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.extension.common.catchAll
@@ -51,25 +52,18 @@ abstract class ManagedEntity : IManagedEntity, BufferStreamable {
     }
 
     override fun write(buffer: BufferStream, context: SchemaContext?) {
-
         val systemEntity = context!!.getSystemEntityByName(this::class.java.name)
-        buffer.putInt(systemEntity!!.primaryKey)
-
-        systemEntity.attributes.forEach {
-            catchAll {
-                buffer.putObject(this.get(context = context, name = it.name))
-            }
-        }
+        buffer.putInt(RecordFormat.header(systemEntity!!))
+        systemEntity.serializer(this::class.java).write(this, buffer)
     }
 
     override fun read(buffer: BufferStream, context: SchemaContext?) {
-        val serializerId = buffer.int
-        val systemEntity = context!!.getSystemEntityById(serializerId)
-        systemEntity!!.attributes.forEach {
-            catchAll {
-                this.set(context = context, name = it.name, value = buffer.value)
-            }
-        }
+        val header = buffer.int
+        val systemEntity = context!!.getSystemEntityById(RecordFormat.systemEntityId(header))
+        if (RecordFormat.isCompact(header))
+            systemEntity!!.serializer(this::class.java).read(this, buffer)
+        else
+            systemEntity!!.serializer(this::class.java).readTagged(this, buffer)
     }
 
     /**
@@ -36,4 +36,13 @@ annotation class Attribute(
      * @since 1.0.0
      * @return Attribute max size
      */
-    val size: Int = -1)
+    val size: Int = -1,
+    /**
+     * Whether the values of the attribute are also stored as a column.  A column keeps the values of every record
+     * within primitive arrays so the sum, average, minimum, maximum, and count of the attribute can be calculated
+     * without reading the records.  Only applies if the attribute is numeric.
+     *
+     * @since 2.2.0
+     * @return Whether the attribute is stored as a column
+     */
+    val columnar: Boolean = false)
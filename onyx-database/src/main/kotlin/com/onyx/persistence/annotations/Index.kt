@@ -13,6 +13,10 @@ package com.onyx.persistence.annotations
  * @Attribute(nullable = false, size = 200)
  * public long personID;
  *
+ * @Index(function = "LOWER")
+ * @Attribute
+ * public String email;
+ *
  * @see com.onyx.persistence.annotations.Identifier
  */
 @Target(AnnotationTarget.FIELD)
@@ -30,4 +34,15 @@ annotation class Index(
          *
          * @since 1.2.0
          */
-        val loadFactor: Byte = 5)
+        val loadFactor: Byte = 5,
+
+        /**
+         * Function applied to the attribute value before it is indexed.  This enables expression indexes such as
+         * lower(email).  Supported values are "LOWER" and "UPPER".  A criteria will only use the index if it
+         * specifies the same function e.x. QueryCriteria("lower(email)", QueryCriteriaOperator.EQUAL, "bob@onyx.dev")
+         *
+         * This defaults to no function meaning the raw attribute value is indexed.
+         *
+         * @since 2.2.0
+         */
+        val function: String = "")
@@ -51,6 +51,18 @@ class LazyQueryCollection<E : IManagedEntity> () : AbstractList<E>(), List<E>, B
         this.identifiers = synchronized(references) { ArrayList(references.keys) }
     }
 
+    /**
+     * Constructor with the references of the results in order
+     *
+     * @since 2.2.0
+     */
+    constructor(entityDescriptor: EntityDescriptor, references: MutableList<Reference>, context: SchemaContext):this() {
+        this.entityDescriptor = entityDescriptor
+        this.contextId = context.contextId
+        this.persistenceManager = context.serializedPersistenceManager
+        this.identifiers = references
+    }
+
     /**
      * Quantity or record references within the List
      *
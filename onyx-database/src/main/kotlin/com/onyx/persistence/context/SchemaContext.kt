@@ -1,5 +1,6 @@
 package com.onyx.persistence.context
 
+import com.onyx.descriptor.AttributeDescriptor
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.descriptor.RelationshipDescriptor
@@ -9,9 +10,11 @@ import com.onyx.entity.SystemEntity
 import com.onyx.entity.SystemPartitionEntry
 import com.onyx.exception.InitializationException
 import com.onyx.exception.OnyxException
+import com.onyx.interactors.column.ColumnInteractor
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.QueryPlan
 import com.onyx.interactors.cache.QueryCacheInteractor
 import com.onyx.interactors.record.RecordInteractor
 import com.onyx.interactors.transaction.TransactionInteractor
@@ -75,6 +78,52 @@ interface SchemaContext {
      */
     var classLoader:ClassLoader
 
+    /**
+     * Maximum number of references sorted in memory.  Larger query results are sorted in runs of this size that are
+     * written to temporary storage and then merged.
+     *
+     * @since 2.2.0
+     */
+    var sortBufferSize: Int
+
+    /**
+     * Minimum number of records a table must have before a full table scan splits its segments across workers.
+     * Smaller tables are scanned on the calling thread.
+     *
+     * @since 2.2.0
+     */
+    var parallelScanThreshold: Int
+
+    /**
+     * Queries taking longer than this threshold in milliseconds have their plan recorded in the slow query log.
+     * A negative value disables the slow query log.
+     *
+     * @since 2.2.0
+     */
+    var slowQueryThreshold: Long
+
+    /**
+     * Maximum number of plans retained within the slow query log.  Once full, the oldest plan is discarded.
+     *
+     * @since 2.2.0
+     */
+    var slowQueryLogSize: Int
+
+    /**
+     * Plans of the most recent queries that exceeded the slow query threshold, oldest first
+     *
+     * @since 2.2.0
+     */
+    val slowQueryLog: List<QueryPlan>
+
+    /**
+     * Record the plan of a query.  It is only retained if it exceeds the slow query threshold.
+     *
+     * @param plan Plan of an executed query
+     * @since 2.2.0
+     */
+    fun logSlowQuery(plan: QueryPlan)
+
     /**
      * This is used to indicate what persistence manager should be serialized.
      * In some cases the embedded or the remote could be injected but we need
@@ -232,6 +281,17 @@ interface SchemaContext {
      */
     fun getIndexInteractor(indexDescriptor: IndexDescriptor): IndexInteractor
 
+    /**
+     * Get Column Controller for a columnar attribute
+     *
+     * @since 2.2.0
+     * @param descriptor Entity descriptor of the partition the column belongs to
+     * @param attributeDescriptor Columnar attribute
+     *
+     * @return Corresponding column controller
+     */
+    fun getColumnInteractor(descriptor: EntityDescriptor, attributeDescriptor: AttributeDescriptor): ColumnInteractor
+
     /**
      * Get Relationship Controller that corresponds to the relationship descriptor
      *
@@ -1,5 +1,6 @@
 package com.onyx.persistence.context.impl
 
+import com.onyx.descriptor.AttributeDescriptor
 import com.onyx.descriptor.EntityDescriptor
 import com.onyx.descriptor.IndexDescriptor
 import com.onyx.descriptor.RelationshipDescriptor
@@ -19,6 +20,8 @@ import com.onyx.extension.createNewEntity
 import com.onyx.extension.get
 import com.onyx.interactors.cache.QueryCacheInteractor
 import com.onyx.interactors.cache.impl.DefaultQueryCacheInteractor
+import com.onyx.interactors.column.ColumnInteractor
+import com.onyx.interactors.column.impl.DefaultColumnInteractor
 import com.onyx.interactors.index.IndexInteractor
 import com.onyx.interactors.index.impl.DefaultIndexInteractor
 import com.onyx.interactors.record.RecordInteractor
@@ -89,6 +92,20 @@ open class DefaultSchemaContext : SchemaContext {
     // Class loader to dynamically add classes
     override var classLoader:ClassLoader = DefaultSchemaContext::class.java.classLoader
 
+    // Query results larger than this are sorted in runs spilled to temporary storage
+    override var sortBufferSize: Int = 100000
+
+    // Tables with at least this many records are scanned in parallel
+    override var parallelScanThreshold: Int = 5000
+
+    // Queries exceeding this threshold in milliseconds are recorded.  Disabled by default
+    override var slowQueryThreshold: Long = -1L
+
+    // Number of slow query plans retained
+    override var slowQueryLogSize: Int = 100
+
+    private val slowQueries = ArrayDeque<QueryPlan>()
+
     // endregion
 
     // region Constructors
@@ -139,6 +156,36 @@ open class DefaultSchemaContext : SchemaContext {
 
     // endregion
 
+    // region Slow Query Log
+
+    /**
+     * Plans of the most recent queries that exceeded the slow query threshold, oldest first
+     *
+     * @since 2.2.0
+     */
+    override val slowQueryLog: List<QueryPlan>
+        get() = synchronized(slowQueries) { ArrayList(slowQueries) }
+
+    /**
+     * Record the plan of a query if it took longer than the slow query threshold.  Once the log is full the
+     * oldest plan is discarded.
+     *
+     * @param plan Plan of an executed query
+     * @since 2.2.0
+     */
+    override fun logSlowQuery(plan: QueryPlan) {
+        if (slowQueryThreshold < 0 || plan.totalTime < slowQueryThreshold * 1000000L)
+            return
+
+        synchronized(slowQueries) {
+            slowQueries.addLast(plan)
+            while (slowQueries.size > slowQueryLogSize)
+                slowQueries.removeFirst()
+        }
+    }
+
+    // endregion
+
     // region Context Lifecycle - Start/Stop
 
     /**
@@ -163,6 +210,9 @@ open class DefaultSchemaContext : SchemaContext {
     override fun shutdown() {
         killSwitch = true
 
+        // Save the index statistics modified since they were last persisted
+        indexInteractors.forEach { catchAll { it.value.flushStatistics() } }
+
         // Shutdown all databases
         dataFiles.forEach {
             catchAll {
@@ -629,6 +679,26 @@ open class DefaultSchemaContext : SchemaContext {
 
     // endregion
 
+    // region Column Controller
+
+    private val columnInteractors = OptimisticLockingMap<Pair<EntityDescriptor, String>, ColumnInteractor>(HashMap())
+
+    /**
+     * Get Column Controller for a columnar attribute.
+     * This is not meant to be a public API.
+     *
+     * @param descriptor Entity descriptor of the partition the column belongs to
+     * @param attributeDescriptor Columnar attribute
+     * @return Corresponding column controller
+     * @since 2.2.0
+     */
+    override fun getColumnInteractor(descriptor: EntityDescriptor, attributeDescriptor: AttributeDescriptor): ColumnInteractor =
+        columnInteractors.getOrPut(Pair(descriptor, attributeDescriptor.name)) {
+            return@getOrPut DefaultColumnInteractor(descriptor, attributeDescriptor, this)
+        }
+
+    // endregion
+
     // region Record Controller
 
     private val recordInteractors = OptimisticLockingMap<EntityDescriptor, RecordInteractor>(HashMap())
@@ -7,8 +7,12 @@ import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.context.SchemaContext
 import com.onyx.persistence.query.*
 import com.onyx.persistence.query.QueryListener
+import com.onyx.persistence.stream.QueryPageIterator
+import com.onyx.persistence.stream.QueryPublisher
+import com.onyx.persistence.stream.QueryResultIterator
 import com.onyx.persistence.stream.QueryStream
 import java.util.*
+import java.util.stream.Stream
 
 /**
  * Persistence manager supplies a public API for performing database persistence and querying operations.
@@ -577,6 +581,65 @@ interface PersistenceManager {
     @Throws(OnyxException::class)
     fun stream(query: Query, queryStreamClass: Class<*>)
 
+    /**
+     * Execute a query and stream its results as they are consumed.  Rather than returning a list of every result,
+     * the results are read as the stream pulls them so large exports can be processed in constant memory.  Close
+     * the stream if it is not fully consumed so the resources of the query are released.
+     *
+     * By default the results are read one keyset page at a time.  Selections are not paged and are read at once.
+     *
+     * Stream<MyEntity> results = manager.stream(query);
+     *
+     * @since 2.2.0
+     *
+     * @param query Query to execute and stream
+     *
+     * @return Stream of the query results
+     *
+     * @throws OnyxException Error while executing query
+     */
+    @Throws(OnyxException::class)
+    fun <E> stream(query: Query): Stream<E> = if (query.selections?.isNotEmpty() == true)
+        QueryResultIterator<E>(executeQuery<E>(query).iterator()).stream()
+    else
+        QueryResultIterator<E>(QueryPageIterator<E>(this, query)).stream()
+
+    /**
+     * Execute a query and consume its results as a sequence.  The results are read as the sequence is iterated and
+     * the resources of the query are released once the block returns.
+     *
+     * @since 2.2.0
+     *
+     * @param query Query to execute
+     *
+     * @param block Consumes the sequence of query results
+     *
+     * @return Value returned by the block
+     *
+     * @throws OnyxException Error while executing query
+     */
+    @Throws(OnyxException::class)
+    fun <E, R> sequence(query: Query, block: (Sequence<E>) -> R): R {
+        val results = stream<E>(query)
+        try {
+            return block(results.iterator().asSequence())
+        } finally {
+            results.close()
+        }
+    }
+
+    /**
+     * Publish the results of a query to subscribers with backpressure.  The results are streamed so each subscriber
+     * only causes as many records to be read as it requests.  Cancelling a subscription terminates the query.
+     *
+     * @since 2.2.0
+     *
+     * @param query Query to publish the results of
+     *
+     * @return Publisher of the query results
+     */
+    fun <E> publish(query: Query): QueryPublisher<E> = QueryPublisher(this, query)
+
     /**
      * Get Map representation of an entity with reference id
      *
@@ -615,6 +678,40 @@ interface PersistenceManager {
     @Throws(OnyxException::class)
     fun countForQuery(query: Query): Long
 
+    /**
+     * Analyze the indexes of an entity.  This calculates the index statistics used by the query planner to choose
+     * the most selective criteria.  Statistics are maintained as entities are saved and deleted but the value
+     * distribution is only re-calculated upon analyzing.  This should be run after bulk loading data.
+     *
+     * usage:
+     *
+     * persistenceManager.analyze(Person.class);
+     *
+     * @param entityType Entity type to analyze.  If the entity is partitioned, all partitions are analyzed.
+     * @throws OnyxException Error while reading the indexes
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun analyze(entityType: Class<*>)
+
+    /**
+     * Execute a query and explain how it was executed.  The plan includes the scanner chosen for each criteria,
+     * how many partitions it fanned out to, the estimated versus actual number of matching references, and the time
+     * spent scanning, sorting, hydrating, and selecting.
+     *
+     * usage:
+     *
+     * Query query = new Query(Person.class, new QueryCriteria("firstName", QueryCriteriaOperator.EQUAL, "Bob"));
+     * QueryPlan plan = persistenceManager.explain(query);
+     *
+     * @param query Query to execute and explain
+     * @return Plan describing how the query was executed
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    fun explain(query: Query): QueryPlan
+
     /**
      * Un-register a query listener.  This will remove the listener from observing changes for that query.
      * If you do not un-register queries, they will not expire nor will they be de-registered automatically.
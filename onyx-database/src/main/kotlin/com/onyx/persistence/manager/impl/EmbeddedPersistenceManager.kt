@@ -13,9 +13,12 @@ import com.onyx.persistence.query.Query
 import com.onyx.interactors.relationship.data.RelationshipTransaction
 import com.onyx.interactors.relationship.data.RelationshipReference
 import com.onyx.persistence.query.QueryListenerEvent
+import com.onyx.persistence.query.QueryPlan
 import com.onyx.persistence.stream.QueryMapStream
+import com.onyx.persistence.stream.QueryResultIterator
 import com.onyx.persistence.stream.QueryStream
 import java.util.*
+import java.util.stream.Stream
 
 /**
  * Persistence manager supplies a public API for performing database persistence and querying operations.  This specifically is used for an embedded database.
@@ -215,32 +218,86 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
     @Throws(OnyxException::class)
     @Suppress("UNCHECKED_CAST")
     override fun <E> executeQuery(query: Query): List<E> {
+        val plan = if (context.slowQueryThreshold >= 0) QueryPlan(query.entityType?.name, query.partition.toString()) else null
+        val results = executeQuery<E>(query, plan)
+        if (plan != null)
+            context.logSlowQuery(plan)
+        return results
+    }
+
+    /**
+     * Execute a query and describe how it was executed.  The plan contains the access path chosen for each criteria,
+     * the estimated and actual number of references for each, and the time spent within each phase of the query.
+     *
+     * @param query Query to execute and explain
+     * @return Plan describing how the query was executed
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun explain(query: Query): QueryPlan {
+        val plan = QueryPlan(query.entityType?.name, query.partition.toString())
+        executeQuery<Any?>(query, plan)
+        context.logSlowQuery(plan)
+        return plan
+    }
+
+    /**
+     * Execute query and record the phases of the query within a plan
+     *
+     * @param query Query containing criteria
+     * @param plan Plan to record how the query was executed.  Null if it should not be recorded.
+     * @return Query Results
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    private fun <E> executeQuery(query: Query, plan: QueryPlan?): List<E> {
         context.checkForKillSwitch()
 
         val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
         query.validate(context, descriptor)
 
         val queryController = DefaultQueryInteractor(descriptor, this, context)
+        queryController.plan = plan
+        plan?.isCached = true
 
         try {
-            val results: MutableMap<Reference, IManagedEntity> = cache(query) {
-                val matchingReferences = queryController.getReferencesForQuery<IManagedEntity>(query)
-                return@cache if (query.shouldSortResults())
-                    queryController.sort(query, matchingReferences)
-                else
-                    matchingReferences
+            // Joined queries combine the records of both entities into selection rows
+            if (query.join != null) {
+                plan?.isCached = false
+                val joinResults = measure(plan, { selectTime = it }) { queryController.getJoinResults<E>(query) }
+                plan?.resultCount = joinResults.size
+                return joinResults
+            }
+
+            // Distinct values, grouped counts, and the minimum or maximum of an index do not require the records
+            if (query.selections?.isNotEmpty() == true) {
+                val indexResults = measure(plan, { selectTime = it }) { queryController.getSelectionResultsFromIndex<E>(query) }
+                if (indexResults != null) {
+                    plan?.isCached = false
+                    val queryResults = if (query.shouldSortSelections()) measure(plan, { sortTime = it }) { queryController.sort(query, indexResults) } else indexResults
+                    plan?.resultCount = queryResults.size
+                    return queryResults
+                }
             }
 
-            return if (query.selections != null && query.selections!!.isNotEmpty()) {
-                var selectionResults= queryController.referencesToSelectionResults(query, results) as List<E>
+            val results = getSortedReferences<IManagedEntity>(query, queryController, plan)
+
+            val queryResults = if (query.selections != null && query.selections!!.isNotEmpty()) {
+                var selectionResults = measure(plan, { selectTime = it }) { queryController.referencesToSelectionResults(query, results) as List<E> }
                 if(query.shouldSortSelections()) {
-                    selectionResults = queryController.sort(query, selectionResults)
+                    selectionResults = measure(plan, { sortTime += it }) { queryController.sort(query, selectionResults) }
                 }
                 selectionResults
             } else {
-                queryController.referencesToResults(query, results) as List<E>
+                measure(plan, { hydrateTime = it }) { queryController.referencesToResults(query, results) as List<E> }
             }
 
+            plan?.resultCount = queryResults.size
+            return queryResults
+
         } finally {
             queryController.cleanup()
         }
@@ -264,15 +321,8 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
 
         val queryController = DefaultQueryInteractor(descriptor, this, context)
         return try {
-            val results:MutableMap<Reference,IManagedEntity?> = cache(query) {
-                val matchingReferences = queryController.getReferencesForQuery<IManagedEntity?>(query)
-
-                return@cache if (query.shouldSortResults())
-                    queryController.sort(query, matchingReferences)
-                else
-                    matchingReferences
-            }
-            LazyQueryCollection(descriptor, queryController.filterReferences(query, results), context) as List<E>
+            val references = queryController.filterReferences(query, getSortedReferences<IManagedEntity?>(query, queryController)).mapTo(ArrayList()) { it.key }
+            LazyQueryCollection<E>(descriptor, references, context)
         } finally {
             queryController.cleanup()
         }
@@ -528,7 +578,7 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         query.validate(context, descriptor)
 
         val cachedResults = context.queryCacheInteractor.getCachedQueryResults(query)
-        if (cachedResults?.references != null)
+        if (cachedResults?.references != null && !query.hasSubQueries())
             return cachedResults.references!!.size.toLong()
 
         val queryController = DefaultQueryInteractor(descriptor, this, context)
@@ -540,25 +590,98 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
         }
     }
 
+    /**
+     * Analyze the indexes of an entity.  This calculates the index statistics used by the query planner.
+     *
+     * @param entityType Entity type to analyze.  If the entity is partitioned, all partitions are analyzed.
+     * @throws OnyxException Error while reading the indexes
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun analyze(entityType: Class<*>) {
+        context.checkForKillSwitch()
+
+        val descriptor = context.getBaseDescriptorForEntity(entityType)!!
+        val descriptors = if (descriptor.hasPartition)
+            context.getSystemEntityByName(entityType.name)?.partition?.entries?.map { context.getDescriptorForEntity(entityType, it.value) } ?: emptyList()
+        else
+            listOf(descriptor)
+
+        descriptors.forEach { partitionDescriptor ->
+            partitionDescriptor.indexes.values.forEach { context.getIndexInteractor(it).analyze() }
+        }
+    }
+
     /**
      * This method is used for bulk streaming data entities.  An example of bulk streaming is for analytics or bulk updates included but not limited to model changes.
      *
      * @param query    Query to execute and stream
      * @param streamer Instance of the streamer to use to stream the data
      * @since 1.0.0
+     * @since 2.2.0 Each entity is read as it is streamed rather than collecting the results first
      */
     @Throws(OnyxException::class)
     @Suppress("UNCHECKED_CAST")
     override fun <T : Any> stream(query: Query, streamer: QueryStream<T>) {
         context.checkForKillSwitch()
-        val entityList = this.executeLazyQuery<IManagedEntity>(query) as LazyQueryCollection<IManagedEntity>
+        val results = if (streamer is QueryMapStream)
+            streamResults<Any>(query) { getMapWithReferenceId(query.entityType!!, it) }
+        else
+            streamResults<Any>(query) { it.toManagedEntity(context, query.entityType!!)?.apply { hydrateRelationships(context, RelationshipTransaction()) } }
 
-        entityList.forEachIndexed { index, iManagedEntity ->
-            if (streamer is QueryMapStream) {
-                (streamer as QueryStream<Map<String, Any?>>).accept(entityList.getDict(index) as Map<String, Any?>, this)
-            } else {
-                streamer.accept(iManagedEntity as T, this)
-            }
+        try {
+            results.forEach { streamer.accept(it as T, this) }
+        } finally {
+            results.close()
+        }
+    }
+
+    /**
+     * Execute a query and stream its results as they are consumed.  Unsorted queries whose criteria are checked with a
+     * full table scan are pipelined, so each record is scanned, checked, and hydrated only as the stream pulls the
+     * next result.  Otherwise the references are collected and sorted first and each entity is hydrated as it is
+     * pulled.  Selections are aggregated before they are streamed.
+     *
+     * The temporary map builder of the query is released once the stream is exhausted or closed.
+     *
+     * @param query Query to execute and stream
+     * @return Stream of the query results
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    @Suppress("UNCHECKED_CAST")
+    override fun <E> stream(query: Query): Stream<E> {
+        context.checkForKillSwitch()
+        if (query.selections?.isNotEmpty() == true || query.join != null)
+            return QueryResultIterator<E>(executeQuery<E>(query).iterator()).stream()
+
+        return streamResults(query) { it.toManagedEntity(context, query.entityType!!)?.apply { hydrateRelationships(context, RelationshipTransaction()) } as E? }.stream()
+    }
+
+    /**
+     * Iterate the results of a query as they are consumed.  The references are streamed from the scanner if the query
+     * allows it.  Otherwise they are collected in sort order first.
+     *
+     * @param query Query to execute
+     * @param transform Read the result of a reference.  References of records that no longer exist are read as null.
+     * @return Iterator of the results that releases the query interactor when it is closed
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun <E> streamResults(query: Query, transform: (Reference) -> E?): QueryResultIterator<E> {
+        val descriptor = context.getDescriptorForEntity(query.entityType, query.partition)
+        query.validate(context, descriptor)
+
+        val queryController = DefaultQueryInteractor(descriptor, this, context)
+        try {
+            val references = queryController.streamReferences(query)
+                    ?: queryController.filterReferences(query, getSortedReferences<Reference>(query, queryController)).map { it.key }.iterator()
+            return QueryResultIterator(references, { transform(it as Reference) }, { queryController.cleanup() })
+        } catch (e: Exception) {
+            queryController.cleanup()
+            throw e
         }
     }
 
@@ -633,4 +756,127 @@ open class EmbeddedPersistenceManager(context: SchemaContext) : PersistenceManag
      * @since 2.0.0
      */
     private fun <T : Any?> cache(query: Query, body: () -> MutableMap<Reference, T>) = context.queryCacheInteractor.cache(query, body)
+
+    /**
+     * Get the references matching a query in sort order.  If only the first rows of a sorted query are requested and
+     * the query has not been cached, they are either read in the order of an index or sorted using a bounded heap.
+     * Results larger than the sort buffer are sorted externally and merged as the results are produced.  Neither are
+     * cached since the query cache must contain every matching reference in memory.
+     *
+     * When read in index order, the scan stops once the rows requested qualify.  The results count is only the total
+     * number of matches if it can be counted from the indexes.  Otherwise it is [Query.RESULTS_COUNT_UNKNOWN] so the
+     * table is not scanned after all.
+     *
+     * @param query Query to get references for
+     * @param queryController Query interactor for the query's entity
+     * @param plan Plan to record how the query was executed.  Null if it should not be recorded.
+     * @return Entries of the matching references in sort order.  They can only be iterated until the query
+     *         interactor is cleaned up.
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun <T : Any?> getSortedReferences(query: Query, queryController: DefaultQueryInteractor, plan: QueryPlan? = null): Sequence<MutableMap.MutableEntry<Reference, T>> {
+        if (query.after != null)
+            return getReferencesAfter<T>(query, queryController, plan).entries.asSequence()
+
+        if (query.shouldSortResults() && query.changeListener == null && context.queryCacheInteractor.getCachedQueryResults(query)?.references == null) {
+            plan?.isCached = false
+            if (query.maxResults > 0) {
+                val orderedReferences = measure(plan, { scanTime = it }) { queryController.getReferencesInIndexOrder<T>(query) }
+                if (orderedReferences != null) {
+                    query.resultsCount = measure(plan, { scanTime += it }) { countMatches(query) }
+                    return orderedReferences.entries.asSequence()
+                }
+            }
+
+            val matchingReferences = measure(plan, { scanTime += it }) { queryController.getReferencesForQuery<T>(query) }
+            if (query.maxResults <= 0 && matchingReferences.size <= context.sortBufferSize)
+                return cache(query) { measure(plan, { sortTime = it }) { queryController.sort(query, matchingReferences) } }.entries.asSequence()
+
+            query.resultsCount = matchingReferences.size
+            return measure(plan, { sortTime = it }) {
+                when {
+                    query.maxResults > 0 && query.firstRow + query.maxResults in 1 until matchingReferences.size -> queryController.sortFirstRows(query, matchingReferences).entries.asSequence()
+                    matchingReferences.size > context.sortBufferSize -> queryController.sortExternally(query, matchingReferences)
+                    else -> queryController.sort(query, matchingReferences).entries.asSequence()
+                }
+            }
+        }
+
+        return cache(query) {
+            plan?.isCached = false
+            val matchingReferences = measure(plan, { scanTime = it }) { queryController.getReferencesForQuery<T>(query) }
+            return@cache if (query.shouldSortResults())
+                measure(plan, { sortTime = it }) { queryController.sort(query, matchingReferences) }
+            else
+                matchingReferences
+        }.entries.asSequence()
+    }
+
+    /**
+     * Get the references of a keyset page in sort order.  If the leading query order can be read in order, the index
+     * or identifier is sought to the cursor.  Otherwise the matching references after the cursor are kept within a
+     * bounded heap as they are sorted.  Pages are not cached since they only contain part of the results.
+     *
+     * When the index or identifier is sought to the cursor, the matches are not counted so each page only reads its
+     * own rows.  The results count is then [Query.RESULTS_COUNT_UNKNOWN].  Otherwise it is the total number of
+     * matches of the query criteria including those before the cursor since they are collected to be sorted.
+     *
+     * @param query Query with a keyset cursor
+     * @param queryController Query interactor for the query's entity
+     * @param plan Plan to record how the query was executed.  Null if it should not be recorded.
+     * @return References after the cursor in sort order
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun <T : Any?> getReferencesAfter(query: Query, queryController: DefaultQueryInteractor, plan: QueryPlan?): MutableMap<Reference, T> {
+        plan?.isCached = false
+        if (query.maxResults > 0) {
+            val orderedReferences = measure(plan, { scanTime = it }) { queryController.getReferencesInIndexOrder<T>(query) }
+            if (orderedReferences != null) {
+                query.resultsCount = Query.RESULTS_COUNT_UNKNOWN
+                return orderedReferences
+            }
+        }
+
+        val matchingReferences = measure(plan, { scanTime += it }) { queryController.getReferencesForQuery<T>(query) }
+        query.resultsCount = matchingReferences.size
+        return measure(plan, { sortTime = it }) { queryController.sortFirstRows(query, matchingReferences) }
+    }
+
+    /**
+     * Count the matches of a query whose references were read in index order and stopped once its rows qualified.
+     * A separate query interactor is used so the count is not recorded within the query plan.
+     *
+     * @param query Query to count the matches of
+     * @return Number of records matching the query criteria or [Query.RESULTS_COUNT_UNKNOWN] if the records would have
+     *         to be scanned to count them
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    private fun countMatches(query: Query): Int {
+        val counter = DefaultQueryInteractor(context.getDescriptorForEntity(query.entityType, query.partition), this, context)
+        return try {
+            counter.getCountFromIndexes(query)?.toInt() ?: Query.RESULTS_COUNT_UNKNOWN
+        } finally {
+            counter.cleanup()
+        }
+    }
+
+    /**
+     * Time a phase of a query and record it within the query plan.  If there is no plan, the phase is not timed.
+     *
+     * @param plan Query plan to record the time within
+     * @param phase Assigns the elapsed nanoseconds to the phase of the plan
+     * @param body Phase to execute
+     * @since 2.2.0
+     */
+    private inline fun <T> measure(plan: QueryPlan?, phase: QueryPlan.(Long) -> Unit, body: () -> T): T {
+        if (plan == null)
+            return body()
+        val start = System.nanoTime()
+        val result = body()
+        plan.phase(System.nanoTime() - start)
+        return result
+    }
 }
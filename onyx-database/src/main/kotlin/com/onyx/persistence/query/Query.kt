@@ -2,6 +2,7 @@ package com.onyx.persistence.query
 
 import com.onyx.buffer.BufferStreamable
 import com.onyx.extension.getFunctionWithinSelection
+import com.onyx.interactors.query.data.QueryPredicate
 import com.onyx.persistence.manager.PersistenceManager
 import java.util.*
 import kotlin.collections.ArrayList
@@ -121,6 +122,9 @@ class Query : BufferStreamable {
      * Set the result count of a query after executing query
      *
      * @since 1.0.0
+     * @since 2.2.0 When the first rows are read in index order, the read stops once they qualify.  The count is then
+     *              only set if it can be taken from the index reference counts.  Otherwise it is
+     *              [RESULTS_COUNT_UNKNOWN] rather than scanning every record to count the matches.
      */
     var resultsCount: Int = 0
 
@@ -144,6 +148,25 @@ class Query : BufferStreamable {
      */
     var isTerminated: Boolean = false
 
+    /**
+     * Only return the rows after a position within the sorted results.  The rows are found by seeking to the
+     * position rather than skipping over the rows before it.  If the position is sought, the matches before it are
+     * not counted and the results count is [RESULTS_COUNT_UNKNOWN].
+     *
+     * @see QueryCursor
+     * @since 2.2.0
+     */
+    var after: QueryCursor? = null
+
+    /**
+     * Join the records of the query to the records of another entity type.  The results of a joined query are
+     * selection rows containing the columns of both entities.
+     *
+     * @see QueryJoin
+     * @since 2.2.0
+     */
+    var join: QueryJoin? = null
+
 
     private var functions: List<QueryFunction>? = null
 
@@ -420,6 +443,14 @@ class Query : BufferStreamable {
     @Transient
     private var allCriteriaValue:Array<QueryCriteria>? = null
 
+    /**
+     * Criteria compiled into a predicate.  It is compiled once the query is checked against an entity.
+     *
+     * @since 2.2.0
+     */
+    @Transient
+    internal var compiledPredicate: QueryPredicate? = null
+
     /**
      * Getter for all criteria
      */
@@ -481,6 +512,13 @@ class Query : BufferStreamable {
 
     fun shouldSortSelections(): Boolean = this.queryOrders != null && this.queryOrders!!.isNotEmpty() && this.selections?.isNotEmpty() == true && this.queryOrders?.firstOrNull { this.selections?.contains(it.attribute) == false } == null
 
+    /**
+     * Whether any criteria is compared to the values of a sub query
+     *
+     * @since 2.2.0
+     */
+    fun hasSubQueries(): Boolean = getAllCriteria().any { it.value is Query }
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (javaClass != other?.javaClass) return false
@@ -493,6 +531,8 @@ class Query : BufferStreamable {
         if (entityType != other.entityType) return false
         if (isDistinct != other.isDistinct) return false
         if (partition != other.partition) return false
+        if (after != other.after) return false
+        if (join != other.join) return false
 
         return true
     }
@@ -504,6 +544,18 @@ class Query : BufferStreamable {
         result = 31 * result + (entityType?.hashCode() ?: 0)
         result = 31 * result + isDistinct.hashCode()
         result = 31 * result + partition.hashCode()
+        result = 31 * result + (after?.hashCode() ?: 0)
+        result = 31 * result + (join?.hashCode() ?: 0)
         return result
     }
+
+    companion object {
+
+        /**
+         * Results count of a query whose matches were not counted
+         *
+         * @since 2.2.0
+         */
+        const val RESULTS_COUNT_UNKNOWN = -1
+    }
 }
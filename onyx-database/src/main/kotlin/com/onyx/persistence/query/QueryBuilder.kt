@@ -1,7 +1,10 @@
 package com.onyx.persistence.query
 
+import com.onyx.extension.cursorAfter
 import com.onyx.persistence.IManagedEntity
 import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.stream.QueryPublisher
+import java.util.stream.Stream
 import kotlin.reflect.KClass
 
 class QueryBuilder(var manager:PersistenceManager, var query: Query) {
@@ -21,6 +24,27 @@ class QueryBuilder(var manager:PersistenceManager, var query: Query) {
         return manager.executeLazyQuery(this.query)
     }
 
+    /**
+     * Stream the results as they are consumed.  Close the stream if it is not fully consumed.
+     *
+     * @since 2.2.0
+     */
+    fun <T> stream(): Stream<T> = manager.stream(this.query)
+
+    /**
+     * Consume the results as a sequence that is read as it is iterated
+     *
+     * @since 2.2.0
+     */
+    fun <T, R> sequence(block: (Sequence<T>) -> R): R = manager.sequence(this.query, block)
+
+    /**
+     * Publish the results to subscribers as they request them
+     *
+     * @since 2.2.0
+     */
+    fun <T> publish(): QueryPublisher<T> = manager.publish(this.query)
+
     fun <T> forEach(unit:(T) -> Unit) {
         list<T>().forEach { unit.invoke(it) }
     }
@@ -130,6 +154,32 @@ class QueryBuilder(var manager:PersistenceManager, var query: Query) {
         return this
     }
 
+    /**
+     * Only return the rows after the position of a cursor.  Use [QueryCursor.START] for the first page.
+     *
+     * @since 2.2.0
+     */
+    fun after(cursor: QueryCursor): QueryBuilder {
+        this.query.after = cursor
+        return this
+    }
+
+    /**
+     * Only return the rows after the last row of the previous page
+     *
+     * @param lastValues Order by values of the last row followed by its identifier
+     * @since 2.2.0
+     */
+    fun after(vararg lastValues: Any?): QueryBuilder = after(QueryCursor(lastValues.toList()))
+
+    /**
+     * Get the cursor positioned at a row of the results so the next page can be queried after it
+     *
+     * @param result Entity or selection of the last row
+     * @since 2.2.0
+     */
+    fun cursorAfter(result: Any): QueryCursor = query.cursorAfter(result, manager.context)
+
     fun distinct():QueryBuilder {
         this.query.isDistinct = true
         return this
@@ -140,6 +190,23 @@ class QueryBuilder(var manager:PersistenceManager, var query: Query) {
         return this
     }
 
+    /**
+     * Join the results to the records of another entity type whose attribute value is equal
+     *
+     * @param type Entity type to join to
+     * @param attribute Attribute of the queried entity
+     * @param joinAttribute Attribute of the joined entity
+     * @param criteria Criteria the joined records must match
+     * @param selections Attributes of the joined entity to return
+     * @param alias Prefix of the columns of the joined entity
+     * @since 2.2.0
+     */
+    @JvmOverloads
+    fun join(type: KClass<*>, attribute: String, joinAttribute: String, criteria: QueryCriteria? = null, selections: List<String>? = null, alias: String? = null): QueryBuilder {
+        this.query.join = QueryJoin(type.javaObjectType, attribute, joinAttribute, criteria, selections, alias)
+        return this
+    }
+
     fun <T> first(): T {
         limit(1)
         return list<T>().first()
@@ -215,6 +282,11 @@ infix fun <T> String.neq(value:T):QueryCriteria = QueryCriteria(this, QueryCrite
 infix fun <T> String.notIn(values:List<T>):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.NOT_IN, values)
 @Suppress("FunctionName")
 infix fun <T> String.IN(values:List<T>):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.IN, values)
+@Suppress("FunctionName")
+infix fun String.IN(subQuery:QueryBuilder):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.IN, subQuery.query)
+infix fun String.notIn(subQuery:QueryBuilder):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.NOT_IN, subQuery.query)
+infix fun String.exists(subQuery:QueryBuilder):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.EXISTS, subQuery.query)
+infix fun String.notExists(subQuery:QueryBuilder):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.NOT_EXISTS, subQuery.query)
 infix fun <T> String.gte(value:T):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.GREATER_THAN_EQUAL, value)
 infix fun <T> String.gt(value:T):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.GREATER_THAN, value)
 infix fun <T> String.lte(value:T):QueryCriteria = QueryCriteria(this, QueryCriteriaOperator.LESS_THAN_EQUAL, value)
@@ -255,6 +327,9 @@ fun sum(attribute:String) = "sum($attribute)"
 fun count(attribute:String) = "count($attribute)"
 fun min(attribute:String) = "min($attribute)"
 fun max(attribute:String) = "max($attribute)"
+fun approxCountDistinct(attribute:String) = "approx_count_distinct($attribute)"
+fun percentile(attribute:String, percentile:Double) = "percentile($attribute, $percentile)"
+fun median(attribute:String) = "median($attribute)"
 fun upper(attribute:String) = "upper($attribute)"
 fun lower(attribute:String) = "lower($attribute)"
 fun substring(attribute:String, from:Int, length:Int) = "substring($attribute, $from, $length)"
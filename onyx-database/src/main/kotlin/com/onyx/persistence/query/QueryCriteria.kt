@@ -2,6 +2,7 @@ package com.onyx.persistence.query
 
 import com.onyx.buffer.BufferStreamable
 import com.onyx.descriptor.AttributeDescriptor
+import com.onyx.extension.getFunctionWithinSelection
 
 import java.util.*
 
@@ -49,6 +50,24 @@ class QueryCriteria : BufferStreamable {
     var value:Any? = null
     var subCriteria: MutableList<QueryCriteria> = ArrayList()
 
+    /**
+     * Distinct values selected by the sub query of an IN or NOT_IN criteria.  They are resolved each time the query
+     * is validated and are not part of the criteria's identity, so the value remains the sub query.
+     *
+     * @since 2.2.0
+     */
+    @Transient
+    var subQueryValues: List<Any?>? = null
+
+    /**
+     * Whether the sub query of an EXISTS or NOT_EXISTS criteria returns at least one row.  It is resolved each time
+     * the query is validated.
+     *
+     * @since 2.2.0
+     */
+    @Transient
+    var subQueryHasRows: Boolean = false
+
     @Transient
     var parentCriteria: QueryCriteria? = null
 
@@ -63,6 +82,47 @@ class QueryCriteria : BufferStreamable {
             return field
         }
 
+    @Transient
+    private var isFunctionParsed = false
+
+    /**
+     * Function applied to the attribute prior to comparing e.x. lower(email).  This is parsed from the attribute
+     * and is null if the criteria is on a plain attribute.
+     *
+     * @since 2.2.0
+     */
+    @Transient
+    var function: QueryFunction? = null
+        get() {
+            if(!isFunctionParsed) {
+                field = if(attribute?.contains("(") == true) attribute!!.getFunctionWithinSelection() else null
+                isFunctionParsed = true
+            }
+            return field
+        }
+
+    /**
+     * Name of the entity attribute the criteria applies to.  In the event the criteria attribute is a function
+     * such as lower(email), this returns the underlying attribute email.
+     *
+     * @since 2.2.0
+     */
+    val attributeName: String?
+        get() = function?.attribute ?: attribute
+
+    /**
+     * Value the attribute is compared to.  If the value is a sub query, these are the values it selects or, for
+     * EXISTS and NOT_EXISTS, whether it returns any rows.
+     *
+     * @since 2.2.0
+     */
+    val comparedValue: Any?
+        get() = when {
+            value !is Query -> value
+            operator == QueryCriteriaOperator.EXISTS || operator == QueryCriteriaOperator.NOT_EXISTS -> subQueryHasRows
+            else -> subQueryValues
+        }
+
     /**
      * Constructor with attribute and operator
      * @since 1.0.0
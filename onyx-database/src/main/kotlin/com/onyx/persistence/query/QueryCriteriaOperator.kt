@@ -26,7 +26,20 @@ enum class QueryCriteriaOperator {
     LESS_THAN_EQUAL,
     GREATER_THAN_EQUAL,
     IN,
-    NOT_IN;
+    NOT_IN,
+
+    /**
+     * The sub query returns at least one row.  The sub query is not correlated to the record, so the criteria either
+     * matches every record or none of them.
+     * @since 2.2.0
+     */
+    EXISTS,
+
+    /**
+     * The sub query does not return any rows
+     * @since 2.2.0
+     */
+    NOT_EXISTS;
 
     /**
      * Indicates if the operator supports indexing capabilities
@@ -65,5 +78,7 @@ enum class QueryCriteriaOperator {
             GREATER_THAN_EQUAL -> LESS_THAN
             IN -> NOT_IN
             NOT_IN -> IN
+            EXISTS -> NOT_EXISTS
+            NOT_EXISTS -> EXISTS
         }
 }
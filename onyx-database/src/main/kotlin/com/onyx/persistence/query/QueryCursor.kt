@@ -0,0 +1,82 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferPool
+import com.onyx.buffer.BufferStream
+import com.onyx.buffer.BufferStreamable
+import java.nio.ByteBuffer
+import java.util.Base64
+
+/**
+ * Position within the results of a sorted query used for keyset pagination.  Rather than skipping the first rows of
+ * the results, a query with a cursor only returns the rows after the last row of the previous page.  The query
+ * orders are followed by the entity's identifier so every row has a distinct position.  If the query orders do not
+ * end with the identifier, it is added when the query is validated.
+ *
+ * The cursor contains the order by values of the last row including its identifier.  It is serialized along with the
+ * query so it can be used with a remote persistence manager.  It can also be passed around as an opaque token.
+ *
+ * PersistenceManager manager = factory.getPersistenceManager();
+ *
+ * QueryBuilder builder = manager.from(Person.class).orderBy("lastName").after(QueryCursor.START).limit(100);
+ * List<Person> page = builder.list();
+ * while (!page.isEmpty()) {
+ *     ...
+ *     page = builder.after(builder.cursorAfter(page.get(page.size() - 1))).list();
+ * }
+ *
+ * @param values Order by values of the last row followed by its identifier.  Empty to start from the first row.
+ *
+ * @since 2.2.0
+ */
+class QueryCursor @JvmOverloads constructor(var values: List<Any?> = arrayListOf()) : BufferStreamable {
+
+    /**
+     * Whether this is the position before the first row
+     */
+    val isStart: Boolean
+        get() = values.isEmpty()
+
+    /**
+     * Opaque token representing the cursor
+     */
+    val token: String
+        get() {
+            val buffer = BufferStream.toBuffer(this)
+            val bytes = ByteArray(buffer.limit())
+            buffer.get(bytes)
+            BufferPool.recycle(buffer)
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes)
+        }
+
+    override fun read(buffer: BufferStream) {
+        values = Array(buffer.int) { buffer.value }.toList()
+    }
+
+    override fun write(buffer: BufferStream) {
+        buffer.putInt(values.size)
+        values.forEach { buffer.putObject(it) }
+    }
+
+    override fun equals(other: Any?): Boolean = other is QueryCursor && other.values == values
+
+    override fun hashCode(): Int = values.hashCode()
+
+    companion object {
+
+        /**
+         * Cursor before the first row.  Use this for the first page so rows are ordered the same as they are for the
+         * pages after it.
+         */
+        @JvmField
+        val START = QueryCursor()
+
+        /**
+         * Read a cursor from its token
+         *
+         * @param token Token of a cursor
+         * @return The cursor
+         */
+        @JvmStatic
+        fun fromToken(token: String): QueryCursor = BufferStream.fromBuffer(ByteBuffer.wrap(Base64.getUrlDecoder().decode(token))) as QueryCursor
+    }
+}
@@ -19,4 +19,21 @@ class QueryFunction @JvmOverloads constructor(var type: QueryFunctionType = Quer
         }
         else -> value
     }
+
+    /**
+     * Fraction of the values below the result of a percentile function.  The median is the 0.5 percentile.
+     *
+     * @since 2.2.0
+     */
+    val percentile: Double
+        get() = if (type == QueryFunctionType.MEDIAN) 0.5 else param1?.toDouble() ?: 0.5
+
+    /**
+     * Name of the function result within a selection result.  This is the function and its attribute such as
+     * sum(amount).  A percentile includes its fraction such as percentile(latency, 0.95).
+     *
+     * @since 2.2.0
+     */
+    val resultName: String
+        get() = type.name.toLowerCase() + "(" + attribute + (if (type == QueryFunctionType.PERCENTILE && param1 != null) ", $param1" else "") + ")"
 }
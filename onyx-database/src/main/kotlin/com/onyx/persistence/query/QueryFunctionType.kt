@@ -9,7 +9,10 @@ enum class QueryFunctionType(val isGroupFunction:Boolean) {
     UPPER(false),
     LOWER(false),
     REPLACE(false),
-    SUBSTRING(false)
+    SUBSTRING(false),
+    APPROX_COUNT_DISTINCT(true),
+    PERCENTILE(true),
+    MEDIAN(true)
     ;
 
     companion object {
@@ -23,6 +26,9 @@ enum class QueryFunctionType(val isGroupFunction:Boolean) {
             "lower" -> LOWER
             "replace" -> REPLACE
             "substring" -> SUBSTRING
+            "approx_count_distinct" -> APPROX_COUNT_DISTINCT
+            "percentile" -> PERCENTILE
+            "median" -> MEDIAN
             else -> { throw Exception("Query function not found") }
         }
     }
@@ -0,0 +1,54 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStreamable
+import com.onyx.persistence.manager.PersistenceManager
+
+/**
+ * Joins the records of a query to the records of another entity type whose attribute value is equal.  Unlike a
+ * relationship, the join is not declared on the entity.  Any attribute of either entity can be joined on.
+ *
+ * The results are selection rows containing the selections of the query followed by the selections of the joined
+ * entity.  The columns of the joined entity are prefixed by the alias e.x. customer.name.  Only records with a match
+ * on both sides are returned.
+ *
+ * @param entityType Entity type to join to
+ * @param attribute Attribute of the queried entity
+ * @param joinAttribute Attribute of the joined entity that must be equal to the attribute of the queried entity
+ * @param criteria Criteria the joined records must match.  If null, every record of the joined entity is considered.
+ * @param selections Attributes of the joined entity to return.  If null, all of its attributes are returned.
+ * @param alias Prefix of the columns of the joined entity.  Defaults to the entity name with a lower case first letter.
+ *
+ * @since 2.2.0
+ *
+ * Query query = new Query(Order.class);
+ * query.setSelections(Arrays.asList("orderId", "total"));
+ * query.setJoin(new QueryJoin(Customer.class, "customerCode", "code"));
+ *
+ * List results = manager.executeQuery(query); // Rows containing orderId, total, customer.code, customer.name, ...
+ *
+ * @see com.onyx.persistence.query.Query
+ * @see PersistenceManager.executeQuery
+ */
+data class QueryJoin @JvmOverloads constructor(var entityType: Class<*>? = null,
+                                               var attribute: String = "",
+                                               var joinAttribute: String = "",
+                                               var criteria: QueryCriteria? = null,
+                                               var selections: List<String>? = null,
+                                               var alias: String? = null) : BufferStreamable {
+
+    /**
+     * Prefix of the columns of the joined entity
+     */
+    val prefix: String
+        get() = alias ?: entityType!!.simpleName.decapitalize()
+
+    /**
+     * Query of the joined records
+     */
+    fun toQuery(): Query {
+        val query = Query()
+        query.entityType = entityType
+        query.criteria = criteria
+        return query
+    }
+}
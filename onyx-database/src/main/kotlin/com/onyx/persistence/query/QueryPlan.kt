@@ -0,0 +1,66 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStreamable
+import com.onyx.persistence.manager.PersistenceManager
+
+/**
+ * Describes how a query was executed.  It contains the access path chosen for each criteria along with the time spent
+ * within each phase of the query.  All times are in nanoseconds.
+ *
+ * @since 2.2.0
+ *
+ * PersistenceManager manager = factory.getPersistenceManager(); // Get the Persistence manager from the persistence manager factory
+ *
+ * Query query = new Query(MyEntity.class, new QueryCriteria("attributeName", QueryCriteriaOperator.EQUAL, "key"));
+ * QueryPlan plan = manager.explain(query);
+ *
+ * System.out.println(plan);
+ *
+ * @see PersistenceManager.explain
+ */
+class QueryPlan @JvmOverloads constructor(var entityType: String? = null, var partition: String? = null) : BufferStreamable {
+
+    // Access path used for each criteria in the order they were scanned
+    var steps: MutableList<QueryPlanStep> = ArrayList()
+
+    // Indicates the references were pulled from the query cache rather than scanned
+    var isCached = false
+
+    var resultCount = 0
+    var scanTime = 0L
+    var sortTime = 0L
+    var hydrateTime = 0L
+    var selectTime = 0L
+
+    /**
+     * Total time spent executing the query in nanoseconds
+     */
+    val totalTime: Long
+        get() = scanTime + sortTime + hydrateTime + selectTime
+
+    override fun toString(): String {
+        val builder = StringBuilder()
+        builder.append("Query Plan for ").append(entityType)
+        if (partition != null && partition!!.isNotEmpty())
+            builder.append(" partition ").append(partition)
+        builder.append('\n')
+        if (isCached)
+            builder.append("  Cached Results\n")
+        steps.forEach {
+            builder.append("  ").append(it.scanner).append(" on ").append(it.criteria)
+                    .append(" partitions=").append(it.partitions)
+                    .append(" estimated=").append(it.estimatedRows)
+                    .append(" actual=").append(it.actualRows)
+                    .append(" time=").append(toMillis(it.time)).append("ms\n")
+        }
+        builder.append("  scan=").append(toMillis(scanTime)).append("ms")
+                .append(" sort=").append(toMillis(sortTime)).append("ms")
+                .append(" hydrate=").append(toMillis(hydrateTime)).append("ms")
+                .append(" select=").append(toMillis(selectTime)).append("ms")
+                .append(" total=").append(toMillis(totalTime)).append("ms")
+                .append(" results=").append(resultCount)
+        return builder.toString()
+    }
+
+    private fun toMillis(nanos: Long): String = String.format("%.3f", nanos / 1000000.0)
+}
@@ -0,0 +1,25 @@
+package com.onyx.persistence.query
+
+import com.onyx.buffer.BufferStreamable
+
+/**
+ * A single access path within a query plan.  Each criteria resolved while executing a query produces a step indicating
+ * which scanner was used, how many partitions it fanned out to, and how many references it was estimated to produce
+ * versus how many it actually produced.
+ *
+ * @param criteria Description of the criteria that was scanned
+ * @param scanner Name of the scanner used to resolve the criteria e.x. IndexScanner, FullTableScanner
+ * @param partitions Number of partitions scanned
+ * @param estimatedRows Number of references the planner estimated the criteria would match
+ * @param actualRows Number of references after scanning the criteria
+ * @param time Time in nanoseconds spent scanning
+ *
+ * @since 2.2.0
+ * @see QueryPlan
+ */
+data class QueryPlanStep @JvmOverloads constructor(var criteria: String? = null,
+                                                   var scanner: String? = null,
+                                                   var partitions: Int = 1,
+                                                   var estimatedRows: Long = 0L,
+                                                   var actualRows: Long = 0L,
+                                                   var time: Long = 0L) : BufferStreamable
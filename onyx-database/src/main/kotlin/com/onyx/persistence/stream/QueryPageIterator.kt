@@ -0,0 +1,66 @@
+package com.onyx.persistence.stream
+
+import com.onyx.extension.cursorAfter
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.Query
+import com.onyx.persistence.query.QueryCursor
+
+/**
+ * Iterator of the results of a query that reads them one keyset page at a time.  Each page is queried after the
+ * cursor of the last result of the previous page so only a single page is held at a time.  This is used to stream
+ * results from a persistence manager that cannot produce them as they are scanned such as a remote persistence
+ * manager.
+ *
+ * The query is not modified.  A copy of it is executed for each page.
+ *
+ * @param manager Persistence manager to execute the pages with
+ * @param query Query to read the results of
+ * @param pageSize Maximum number of results within a page
+ *
+ * @since 2.2.0
+ */
+class QueryPageIterator<E> @JvmOverloads constructor(private val manager: PersistenceManager, query: Query, private val pageSize: Int = DEFAULT_PAGE_SIZE) : Iterator<E> {
+
+    private val page = Query().apply {
+        entityType = query.entityType
+        criteria = query.criteria
+        queryOrders = query.queryOrders
+        partition = query.partition
+        firstRow = query.firstRow
+        after = query.after ?: QueryCursor.START
+    }
+
+    private var remaining = if (query.maxResults > 0) query.maxResults else Int.MAX_VALUE
+    private var results: Iterator<E> = emptyList<E>().iterator()
+    private var isExhausted = false
+
+    override fun hasNext(): Boolean {
+        while (!results.hasNext() && !isExhausted && remaining > 0)
+            nextPage()
+        return results.hasNext() && remaining > 0
+    }
+
+    override fun next(): E {
+        if (!hasNext())
+            throw NoSuchElementException()
+        remaining--
+        return results.next()
+    }
+
+    /**
+     * Read the page after the last result of the previous page
+     */
+    private fun nextPage() {
+        page.maxResults = Math.min(pageSize, remaining)
+        val rows = manager.executeQuery<E>(page)
+        isExhausted = rows.size < page.maxResults
+        if (rows.isNotEmpty())
+            page.after = page.cursorAfter(rows.last() as Any, manager.context)
+        page.firstRow = 0
+        results = rows.iterator()
+    }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 1000
+    }
+}
@@ -0,0 +1,154 @@
+package com.onyx.persistence.stream
+
+import com.onyx.persistence.manager.PersistenceManager
+import com.onyx.persistence.query.Query
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.stream.Stream
+
+/**
+ * Publishes the results of a query to subscribers with backpressure.  Results are pulled from the stream of the
+ * query only as they are requested so a subscriber that requests n results causes no more than n matches to be
+ * scanned and hydrated.  The query is not executed until the first results are requested.
+ *
+ * Results are sent on the thread requesting them.  Cancelling a subscription or terminating the query stops the
+ * results and releases the resources of the query.  Each subscription executes its own copy of the query so
+ * cancelling one subscription does not affect the others.
+ *
+ * PersistenceManager manager = factory.getPersistenceManager();
+ *
+ * manager.publish(query).subscribe(new QuerySubscriber<Person>() {
+ *     public void onSubscribe(QuerySubscription subscription) { subscription.request(100); }
+ *     ...
+ * });
+ *
+ * @param manager Persistence manager to stream the query results from
+ * @param query Query to publish the results of
+ *
+ * @since 2.2.0
+ */
+class QueryPublisher<E>(private val manager: PersistenceManager, private val query: Query) {
+
+    /**
+     * Subscribe to the results of the query.  Each subscription executes the query.
+     *
+     * @param subscriber Subscriber to send the results to
+     */
+    fun subscribe(subscriber: QuerySubscriber<E>) {
+        val subscription = Subscription(subscriber)
+        subscriber.onSubscribe(subscription)
+    }
+
+    /**
+     * Subscription that sends results while there is outstanding demand.  Requests and cancellation may come from
+     * any thread so results are sent by a single drain loop at a time.  A request made while the loop is running,
+     * including from within onNext, is picked up by the running loop.
+     */
+    private inner class Subscription(private val subscriber: QuerySubscriber<E>) : QuerySubscription {
+
+        /**
+         * Copy of the query executed by this subscription so cancelling only terminates its own execution
+         */
+        private val execution = Query().apply {
+            entityType = query.entityType
+            selections = query.selections
+            groupBy = query.groupBy
+            criteria = query.criteria
+            queryOrders = query.queryOrders
+            partition = query.partition
+            firstRow = query.firstRow
+            maxResults = query.maxResults
+            isDistinct = query.isDistinct
+            after = query.after
+            join = query.join
+        }
+
+        private val requested = AtomicLong()
+        private val work = AtomicInteger()
+
+        @Volatile
+        private var isCancelled = false
+        private var error: Throwable? = null
+        private var isDone = false
+        private var stream: Stream<E>? = null
+        private var results: Iterator<E>? = null
+
+        override fun request(n: Long) {
+            if (n <= 0) {
+                error = IllegalArgumentException("Requested results must be positive")
+                isCancelled = true
+            } else {
+                while (true) {
+                    val current = requested.get()
+                    val next = if (current + n < 0) Long.MAX_VALUE else current + n
+                    if (requested.compareAndSet(current, next))
+                        break
+                }
+            }
+            drain()
+        }
+
+        override fun cancel() {
+            isCancelled = true
+            execution.isTerminated = true
+            drain()
+        }
+
+        private fun drain() {
+            if (work.getAndIncrement() != 0)
+                return
+            var missed = 1
+            while (true) {
+                emit()
+                missed = work.addAndGet(-missed)
+                if (missed == 0)
+                    break
+            }
+        }
+
+        /**
+         * Send results until the demand is met, the results are exhausted, or the subscription is cancelled
+         */
+        private fun emit() {
+            if (isDone)
+                return
+
+            try {
+                while (true) {
+                    val failure = error
+                    when {
+                        failure != null -> { finish(); subscriber.onError(failure); return }
+                        isCancelled -> { finish(); return }
+                        requested.get() == 0L -> return
+                    }
+
+                    val iterator = results ?: manager.stream<E>(execution).also { stream = it }.iterator().also { results = it }
+                    if (query.isTerminated || execution.isTerminated || !iterator.hasNext()) {
+                        finish()
+                        subscriber.onComplete()
+                        return
+                    }
+
+                    subscriber.onNext(iterator.next())
+                    if (requested.get() != Long.MAX_VALUE)
+                        requested.decrementAndGet()
+                }
+            } catch (e: Throwable) {
+                if (!isDone) {
+                    finish()
+                    subscriber.onError(e)
+                }
+            }
+        }
+
+        /**
+         * Close the stream of results so the query releases its resources
+         */
+        private fun finish() {
+            isDone = true
+            results = null
+            stream?.close()
+            stream = null
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.onyx.persistence.stream
+
+import java.util.Spliterator
+import java.util.Spliterators
+import java.util.stream.Stream
+import java.util.stream.StreamSupport
+
+/**
+ * Iterator of query results that are produced as they are consumed.  Each result is read from its source and
+ * transformed only when it is requested so scanning, filtering, and hydrating are pipelined with the consumer.
+ *
+ * Resources held by the query such as its temporary map builder are released once the results are exhausted or
+ * the iterator is closed, whichever happens first.  Close the iterator or the stream created from it if the results
+ * are not fully consumed.
+ *
+ * PersistenceManager manager = factory.getPersistenceManager();
+ *
+ * try (Stream<Person> people = manager.stream(query)) {
+ *     people.filter(...).forEach(...);
+ * }
+ *
+ * @param source Source of the results such as the references of matching records
+ * @param transform Transform a value of the source into a result.  Results transformed to null are skipped.
+ * @param release Release the resources of the query
+ *
+ * @since 2.2.0
+ */
+class QueryResultIterator<E> @JvmOverloads constructor(private val source: Iterator<Any?>, private val transform: (Any?) -> E? = { @Suppress("UNCHECKED_CAST") (it as E?) }, private val release: () -> Unit = {}) : Iterator<E>, AutoCloseable {
+
+    private var next: E? = null
+    private var isClosed = false
+
+    override fun hasNext(): Boolean {
+        while (next == null && !isClosed) {
+            if (!source.hasNext()) {
+                close()
+                break
+            }
+            next = transform(source.next())
+        }
+        return next != null
+    }
+
+    override fun next(): E {
+        if (!hasNext())
+            throw NoSuchElementException()
+        val result = next!!
+        next = null
+        return result
+    }
+
+    /**
+     * Stop producing results and release the resources of the query.  This can be invoked more than once.
+     */
+    override fun close() {
+        if (isClosed)
+            return
+        isClosed = true
+        next = null
+        release()
+    }
+
+    /**
+     * Sequential stream of the results.  Closing the stream closes this iterator.
+     */
+    fun stream(): Stream<E> = StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED or Spliterator.NONNULL), false).onClose { close() }
+
+    /**
+     * Sequence of the results.  It can only be iterated once.
+     */
+    fun sequence(): Sequence<E> = Sequence { this }.constrainOnce()
+}
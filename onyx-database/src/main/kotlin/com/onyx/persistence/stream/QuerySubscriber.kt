@@ -0,0 +1,37 @@
+package com.onyx.persistence.stream
+
+/**
+ * Receives the results of a query published by a [QueryPublisher].  The signals follow the same contract as a
+ * reactive streams subscriber: onSubscribe first, then no more onNext signals than requested, followed by either
+ * onComplete or onError unless the subscription is cancelled.  Signals are never sent concurrently.
+ *
+ * @since 2.2.0
+ */
+interface QuerySubscriber<in T> {
+
+    /**
+     * Invoked once before any other signal
+     *
+     * @param subscription Subscription used to request results or cancel
+     */
+    fun onSubscribe(subscription: QuerySubscription)
+
+    /**
+     * Invoked with the next result of the query
+     *
+     * @param item Entity or selection map
+     */
+    fun onNext(item: T)
+
+    /**
+     * Invoked if the query failed.  No further signals are sent.
+     *
+     * @param throwable Reason the query failed
+     */
+    fun onError(throwable: Throwable)
+
+    /**
+     * Invoked once every result has been sent.  No further signals are sent.
+     */
+    fun onComplete()
+}
@@ -0,0 +1,22 @@
+package com.onyx.persistence.stream
+
+/**
+ * Subscription of a [QuerySubscriber] to the results of a query
+ *
+ * @since 2.2.0
+ */
+interface QuerySubscription {
+
+    /**
+     * Request more results.  Demand is additive and Long.MAX_VALUE requests every result.  Records are only scanned
+     * as results are requested.
+     *
+     * @param n Number of results to request.  Must be positive.
+     */
+    fun request(n: Long)
+
+    /**
+     * Stop sending results.  The query of this subscription is terminated and its resources are released.
+     */
+    fun cancel()
+}
@@ -12,6 +12,7 @@ import com.onyx.persistence.manager.PersistenceManager
 import com.onyx.persistence.query.Query
 import com.onyx.persistence.query.QueryCriteria
 import com.onyx.persistence.query.QueryCriteriaOperator
+import com.onyx.persistence.query.QueryPlan
 import com.onyx.persistence.query.RemoteQueryListener
 import com.onyx.persistence.stream.QueryStream
 
@@ -447,6 +448,27 @@ open class RemotePersistenceManager : PersistenceManager {
     @Throws(OnyxException::class)
     override fun countForQuery(query: Query): Long = proxy.countForQuery(query)
 
+    /**
+     * Analyze the indexes of an entity.  This calculates the index statistics used by the query planner.
+     *
+     * @param entityType Entity type to analyze.  If the entity is partitioned, all partitions are analyzed.
+     * @throws OnyxException Error while reading the indexes
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun analyze(entityType: Class<*>) = proxy.analyze(entityType)
+
+    /**
+     * Execute a query on the server and explain how it was executed.
+     *
+     * @param query Query to execute and explain
+     * @return Plan describing how the query was executed
+     * @throws OnyxException Error while executing query
+     * @since 2.2.0
+     */
+    @Throws(OnyxException::class)
+    override fun explain(query: Query): QueryPlan = proxy.explain(query)
+
     /**
      * Un-register a query listener.  This will remove the listener from observing changes for that query.
      * If you do not un-register queries, they will not expire nor will they be de-registered automatically.